@@ -29,7 +29,7 @@ import java.io.Serializable;
 public enum MessageType implements Serializable {
 
 	// __[static]______________________________________________________________
-	UNKNOWN("unknown"), RELATED_GENES("rg"), TEXT2NETWORK("t2n"), PROFILE2NETWORK("p2n"), STATS("stats");
+	UNKNOWN("unknown"), RELATED_GENES("rg"), RELATED_GENES_BINARY("rgb"), TEXT2NETWORK("t2n"), PROFILE2NETWORK("p2n"), STATS("stats");
 
 	// __[attributes]__________________________________________________________
 	private String code = "";
@@ -33,7 +33,7 @@ import org.genemania.engine.IMania;
 import org.genemania.engine.Mania2;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.cache.FileSerializedObjectCache;
-import org.genemania.engine.cache.MemObjectCache;
+import org.genemania.engine.cache.LruObjectCache;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ApplicationConfig;
 import org.genemania.util.BrokerUtils;
@@ -69,7 +69,7 @@ public class SyncWorker {
 			LOG.error("Worker thread missing required parameter: engine cache dir");
 		}
 
-		engine = new Mania2(new DataCache(new MemObjectCache(new FileSerializedObjectCache(cacheDir))));
+		engine = new Mania2(new DataCache(new LruObjectCache(new FileSerializedObjectCache(cacheDir))));
 
 		// output startup info
 		LOG.info("GeneMANIA SyncWebWorker ver: " + appVer);
@@ -25,8 +25,10 @@
 package org.genemania.broker;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import javax.jms.*;
@@ -49,7 +51,9 @@ import org.genemania.engine.IMania;
 import org.genemania.engine.Mania2;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.cache.FileSerializedObjectCache;
-import org.genemania.engine.cache.MemObjectCache;
+import org.genemania.engine.cache.IObjectCache;
+import org.genemania.engine.cache.LruObjectCache;
+import org.genemania.engine.cache.MappedObjectCache;
 import org.genemania.exception.ApplicationException;
 import org.genemania.message.RelatedGenesRequestMessage;
 import org.genemania.message.RelatedGenesResponseMessage;
@@ -57,27 +61,36 @@ import org.genemania.message.UploadNetworkRequestMessage;
 import org.genemania.message.UploadNetworkResponseMessage;
 import org.genemania.util.ApplicationConfig;
 import org.genemania.util.BrokerUtils;
+import org.genemania.util.ProgressReporter;
 
-public class Worker implements MessageListener, ExceptionListener, TransportListener {
+public class Worker implements ExceptionListener, TransportListener {
 
     private static Logger LOG = Logger.getLogger(Worker.class);
 
     // configure message expiration, why are all app specific config constant names in common?
     // putting this one here.
     private static final String CONFIG_MESSAGE_EXPIRATION_MILLIS = "messageExpirationMillis";
+    private static final String CONFIG_MAPPED_CACHE_ENABLED = "mappedCacheEnabled";
+    private static final String CONFIG_WORKER_THREADS = "workerThreads";
+
+    private static final String EXPIRED_MESSAGE = "Request expired before it was processed";
+    private static final String TIMED_OUT_MESSAGE = "Request timed out";
 
     private String appVer;
     private String brokerUrl;
-    private Session session;
+    private Connection connection;
+
+    // one session per consumer, jms sessions aren't thread safe
+    private List<Session> consumerSessions = new ArrayList<Session>();
 
-    private MessageConsumer requestHandler;
-    private MessageProducer responseHandler;
+    private WorkerStats stats;
 
     private IMania engine;
     private String cacheDir;
     private String mqRequestsQueueName;
     private long messageExpirationMillis;
-    private int processedMessages = 0;
+    private boolean mappedCacheEnabled;
+    private int workerThreads;
 
     private long checkisActivePollingIntervalMillis = 60000;
     private boolean active = true;
@@ -98,15 +111,27 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
                 System.exit(1);
             }
 
-            engine = new Mania2(new DataCache(new MemObjectCache(new FileSerializedObjectCache(cacheDir))));
+            IObjectCache objectCache;
+            if (mappedCacheEnabled) {
+                objectCache = new MappedObjectCache(cacheDir);
+            }
+            else {
+                objectCache = new FileSerializedObjectCache(cacheDir);
+            }
+            engine = new Mania2(new DataCache(new LruObjectCache(objectCache)));
 
             // output startup info
             LOG.info("GeneMANIA Worker ver: " + appVer);
             LOG.info("Engine ver: " + engine.getVersion());
             LOG.info("cache dir: " + cacheDir);
+            LOG.info("mapped cache enabled: " + mappedCacheEnabled);
             LOG.info("broker URL: " + brokerUrl);
             LOG.info("request Queue Name: " + mqRequestsQueueName);
             LOG.info("messageExpirationMillis: " + messageExpirationMillis);
+            LOG.info("worker threads: " + workerThreads);
+
+            stats = new WorkerStats(workerThreads);
+            stats.register();
 
             startNewConnection();
             waitForExit();
@@ -136,62 +161,116 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
     }
 
     /*
-     * implement MessageListener interface, handling requests
-     * from website
+     * run one request and send the reply. runs on the consumer session's
+     * own thread, so the request isn't acknowledged until the reply
+     * has gone out
      */
-    @Override
-    public synchronized void onMessage(Message msg) {
-        if (!(msg instanceof TextMessage)) {
-            LOG.warn("Unexpected message instance type: " + msg.getClass().getName());
-            return;
-        }
+    void processMessage(Message requestMessage, ReplySender replySender) {
+        long receivedMillis = System.currentTimeMillis();
+        stats.started();
 
         try {
             // extract message data
-            Queue queue = (Queue) msg.getJMSDestination();
-            TextMessage requestMessage = (TextMessage) msg;
-
-            LOG.debug("new " + msg.getJMSType() + " message received on queue " + queue.getQueueName() +
-                    "[correlation id: " + msg.getJMSCorrelationID() + "]");
+            Queue queue = (Queue) requestMessage.getJMSDestination();
+
+            LOG.debug("new " + requestMessage.getJMSType() + " message received on queue " + queue.getQueueName() +
+                    "[correlation id: " + requestMessage.getJMSCorrelationID() + "]");
+
+            // the website stops waiting on a reply after the expiration
+            // period, don't spend time on requests nobody wants anymore.
+            // still reply, so the website fails fast instead of timing out
+            boolean binaryReply = MessageType.RELATED_GENES_BINARY.equals(MessageType.fromCode(requestMessage.getJMSType()));
+            if (isExpired(requestMessage, receivedMillis)) {
+                LOG.warn("expired request, correlation id " + requestMessage.getJMSCorrelationID());
+                stats.expired();
+                if (binaryReply) {
+                    replySender.send(requestMessage, buildErrorResponse(EXPIRED_MESSAGE).toBytes());
+                }
+                else {
+                    replySender.send(requestMessage, buildErrorMessage(EXPIRED_MESSAGE));
+                }
+                return;
+            }
 
-            // invoke engine
-            String responseBody = invokeEngine(requestMessage.getJMSType(), requestMessage.getText());
+            // the engine polls its progress reporter for cancellation,
+            // use that to give up on the request once the reply is too
+            // late to be of use
+            long deadline = getDeadline(requestMessage, receivedMillis);
 
-            // send reply
-            LOG.debug("Responding to " + requestMessage.getJMSDestination() + ", msg id " +
-                    requestMessage.getJMSCorrelationID() + ", response body size " + responseBody.length());
+            // invoke engine. the message type decides the format of the reply,
+            // older websites only know the xml text types
+            if (binaryReply) {
+                byte[] responseBody = invokeEngine(requestMessage, deadline);
 
-            TextMessage responseMessage = session.createTextMessage();
-            responseMessage.setJMSDestination(requestMessage.getJMSReplyTo());
-            responseMessage.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
-            responseMessage.setJMSCorrelationID(msg.getJMSCorrelationID());
-            responseMessage.setText(responseBody);
+                LOG.debug("Responding to " + requestMessage.getJMSDestination() + ", msg id " +
+                        requestMessage.getJMSCorrelationID() + ", response body size " + responseBody.length + " bytes");
+                replySender.send(requestMessage, responseBody);
+            }
+            else if (requestMessage instanceof TextMessage) {
+                String responseBody = invokeEngine(requestMessage.getJMSType(), ((TextMessage) requestMessage).getText(), deadline);
 
-            responseHandler.send(responseMessage.getJMSDestination(), responseMessage);
+                LOG.debug("Responding to " + requestMessage.getJMSDestination() + ", msg id " +
+                        requestMessage.getJMSCorrelationID() + ", response body size " + responseBody.length());
+                replySender.send(requestMessage, responseBody);
+            }
+            else {
+                LOG.warn("Unknown binary message type: " + requestMessage.getJMSType());
+                replySender.send(requestMessage, buildErrorMessage("Unknown message type"));
+            }
+            stats.processed();
 
-            processedMessages++;
-            LOG.info("successfully processed messages: " + processedMessages);
+            LOG.info("successfully processed messages: " + stats.getProcessedMessages() + " (" + stats + ")");
         }
         catch (JMSException e) {
             LOG.error("JMS Exception: ", e);
+            stats.failed();
+        }
+        catch (RuntimeException e) {
+            LOG.error("Unexpected error processing request", e);
+            stats.failed();
         }
+        finally {
+            stats.finished();
+        }
+    }
+
+    private static byte[] readBody(BytesMessage msg) throws JMSException {
+        byte[] body = new byte[(int) msg.getBodyLength()];
+        msg.readBytes(body);
+        return body;
+    }
+
+    boolean isExpired(Message msg, long receivedMillis) throws JMSException {
+        return msg.getJMSExpiration() != 0 && msg.getJMSExpiration() < receivedMillis;
+    }
+
+    /*
+     * time after which nobody is waiting on the reply, whichever comes
+     * first of the message's own expiration and our configured limit
+     */
+    long getDeadline(Message msg, long receivedMillis) throws JMSException {
+        long deadline = receivedMillis + messageExpirationMillis;
+        if (msg.getJMSExpiration() != 0) {
+            deadline = Math.min(deadline, msg.getJMSExpiration());
+        }
+        return deadline;
     }
 
     /*
      * convert given message text to an engine request, execute, and convert response
      * back to text.
      */
-    String invokeEngine(String msgType, String messageText) {
+    String invokeEngine(String msgType, String messageText, long deadline) {
         String responseBody;
 
         if (MessageType.RELATED_GENES.equals(MessageType.fromCode(msgType))) {
             RelatedGenesRequestMessage data = RelatedGenesRequestMessage.fromXml(messageText);
-            RelatedGenesResponseMessage response = getRelatedGenes(data);
+            RelatedGenesResponseMessage response = getRelatedGenes(data, deadline);
             responseBody = response.toXml();
         }
         else if (MessageType.TEXT2NETWORK.equals(MessageType.fromCode(msgType))) {
             UploadNetworkRequestMessage data = UploadNetworkRequestMessage.fromXml(messageText);
-            UploadNetworkResponseMessage response = uploadNetwork(data);
+            UploadNetworkResponseMessage response = uploadNetwork(data, deadline);
             responseBody = response.toXml();
         }
         else {
@@ -202,6 +281,33 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
         return responseBody;
     }
 
+    /*
+     * related genes request asking for a binary response. the request
+     * itself may be binary or xml text. a request that can't be decoded
+     * gets a binary error response.
+     */
+    byte[] invokeEngine(Message requestMessage, long deadline) throws JMSException {
+        RelatedGenesRequestMessage data;
+
+        try {
+            if (requestMessage instanceof BytesMessage) {
+                data = RelatedGenesRequestMessage.fromBytes(readBody((BytesMessage) requestMessage));
+            }
+            else {
+                data = RelatedGenesRequestMessage.fromXml(((TextMessage) requestMessage).getText());
+            }
+        }
+        catch (ApplicationException e) {
+            LOG.error("Failed to decode binary request", e);
+            return buildErrorResponse(e.getMessage()).toBytes();
+        }
+
+        // engine errors are logged and reported in the response
+        // by getRelatedGenes, same as for the xml requests
+        RelatedGenesResponseMessage response = getRelatedGenes(data, deadline);
+        return response.toBytes();
+    }
+
     /*
      * implement Exception listener. just log the error. depend on activemq failover transport,
      * which should be specified via brokerUrl, to handle reconnect on jms errors
@@ -223,15 +329,31 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
         mqRequestsQueueName = config.getProperty(Constants.CONFIG_PROPERTIES.MQ_REQUESTS_QUEUE_NAME);
         cacheDir = config.getProperty(org.genemania.Constants.CONFIG_PROPERTIES.CACHE_DIR);
         messageExpirationMillis = Integer.parseInt(config.getProperty(CONFIG_MESSAGE_EXPIRATION_MILLIS));
+        mappedCacheEnabled = Boolean.parseBoolean(config.getProperty(CONFIG_MAPPED_CACHE_ENABLED));
 
+        // default to a thread per core, and enough queued work to
+        // keep them all busy between messages arriving
+        workerThreads = parseInt(config.getProperty(CONFIG_WORKER_THREADS), Runtime.getRuntime().availableProcessors());
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value.trim());
     }
 
     /*
-     * setup request handler and start listening to request queue
+     * setup request handlers and start listening to request queue.
+     * one consumer per worker thread, with the queue prefetch of 1
+     * from the broker url each holds at most one unstarted message.
+     * requests are processed inside onMessage, so auto-acknowledge
+     * only happens once the reply is sent. a worker that dies mid
+     * request leaves it unacknowledged for the broker to redeliver.
      */
     private void startNewConnection() throws JMSException {
         PooledConnectionFactory connectionFactory = new PooledConnectionFactory(brokerUrl);
-        Connection connection = connectionFactory.createConnection();
+        connection = connectionFactory.createConnection();
 
         connection.setExceptionListener(this);
 
@@ -240,20 +362,21 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
         // the worker
         ((ActiveMQConnection)((PooledConnection) connection).getConnection()).addTransportListener(this);
 
-        // setup Consumer to receive requests and Producer to send results
-        // the response handler will use a temp queue specified in the request
-        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-
-        responseHandler = session.createProducer(null);
-        responseHandler.setTimeToLive(messageExpirationMillis);
-
-        Queue requestsQueue = session.createQueue(mqRequestsQueueName);
-        requestHandler = session.createConsumer(requestsQueue);
-        requestHandler.setMessageListener(this);
+        // setup Consumers to receive requests. results are sent by
+        // a ReplySender on the consumer's session, to the temp queue
+        // specified in the request
+        Queue requestsQueue = null;
+        for (int i=0; i<workerThreads; i++) {
+            Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            requestsQueue = session.createQueue(mqRequestsQueueName);
+            MessageConsumer requestHandler = session.createConsumer(requestsQueue);
+            requestHandler.setMessageListener(new RequestHandler(new ReplySender(session)));
+            consumerSessions.add(session);
+        }
 
         // everyone is on stage, we can start the dance
         connection.start();
-        LOG.info("Listening to " + requestsQueue.getQueueName());
+        LOG.info("Listening to " + requestsQueue.getQueueName() + " with " + workerThreads + " consumers");
     }
 
     /*
@@ -262,17 +385,25 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
      *
      * TODO: cleanup use of deprecated API's
      */
-    private RelatedGenesResponseMessage getRelatedGenes(RelatedGenesRequestMessage requestMessage) {
+    private RelatedGenesResponseMessage getRelatedGenes(RelatedGenesRequestMessage requestMessage, long deadline) {
         RelatedGenesResponseMessage ret = new RelatedGenesResponseMessage();
 
         try {
+            ProgressReporter progress = new DeadlineProgressReporter(deadline);
             RelatedGenesEngineRequestDto rgRequestDto = BrokerUtils.msg2dto(requestMessage);
+            rgRequestDto.setProgressReporter(progress);
             RelatedGenesEngineResponseDto rgResponseDto = engine.findRelated(rgRequestDto);
 
+            // the engine returns null when cancelled
+            if (rgResponseDto == null) {
+                throw new ApplicationException(TIMED_OUT_MESSAGE);
+            }
+
             printEngineReturn(rgResponseDto);
 
             EnrichmentEngineRequestDto eRequestDto = BrokerUtils.
                     buildEnrichmentRequestFrom(rgRequestDto, rgResponseDto, requestMessage.getOntologyId());
+            eRequestDto.setProgressReporter(progress);
             EnrichmentEngineResponseDto eResponseDto = null;
 
             try {
@@ -307,12 +438,16 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
     /*
      * process upload network request
      */
-    private UploadNetworkResponseMessage uploadNetwork(UploadNetworkRequestMessage requestMessage) {
+    private UploadNetworkResponseMessage uploadNetwork(UploadNetworkRequestMessage requestMessage, long deadline) {
         UploadNetworkResponseMessage ret = new UploadNetworkResponseMessage();
 
         try {
             UploadNetworkEngineRequestDto requestDto = BrokerUtils.msg2dto(requestMessage);
+            requestDto.setProgressReporter(new DeadlineProgressReporter(deadline));
             UploadNetworkEngineResponseDto responseDto = engine.uploadNetwork(requestDto);
+            if (responseDto == null) {
+                throw new ApplicationException(TIMED_OUT_MESSAGE);
+            }
             LOG.debug(responseDto.toString());
             ret = BrokerUtils.dto2msg(responseDto);
         }
@@ -362,12 +497,140 @@ public class Worker implements MessageListener, ExceptionListener, TransportList
      * error messages when app protocol is broken (shouldn't happen in production)
      */
     private String buildErrorMessage(String errMsg) {
+        return buildErrorResponse(errMsg).toXml();
+    }
+
+    private RelatedGenesResponseMessage buildErrorResponse(String errMsg) {
         // should have a generic response message type, reuse related genes
         // response for now
         RelatedGenesResponseMessage response = new RelatedGenesResponseMessage();
         response.setErrorCode(org.genemania.Constants.ERROR_CODES.APPLICATION_ERROR);
         response.setErrorMessage(errMsg);
-        return response.toXml();
+        return response;
+    }
+
+    /*
+     * producer for replies, on the consumer's session
+     */
+    class ReplySender {
+        private Session session;
+        private MessageProducer responseHandler;
+
+        ReplySender(Session session) throws JMSException {
+            this.session = session;
+            responseHandler = session.createProducer(null);
+            responseHandler.setTimeToLive(messageExpirationMillis);
+        }
+
+        void send(Message requestMessage, String responseBody) throws JMSException {
+            TextMessage responseMessage = session.createTextMessage();
+            responseMessage.setText(responseBody);
+            send(requestMessage, responseMessage);
+        }
+
+        void send(Message requestMessage, byte[] responseBody) throws JMSException {
+            BytesMessage responseMessage = session.createBytesMessage();
+            responseMessage.writeBytes(responseBody);
+            send(requestMessage, responseMessage);
+        }
+
+        private void send(Message requestMessage, Message responseMessage) throws JMSException {
+            responseMessage.setJMSDestination(requestMessage.getJMSReplyTo());
+            responseMessage.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
+            responseMessage.setJMSCorrelationID(requestMessage.getJMSCorrelationID());
+
+            responseHandler.send(responseMessage.getJMSDestination(), responseMessage);
+        }
+    }
+
+    /*
+     * implement MessageListener interface, handling requests
+     * from website. one per consumer session, each called on
+     * its own session's thread
+     */
+    class RequestHandler implements MessageListener {
+        private ReplySender replySender;
+
+        RequestHandler(ReplySender replySender) {
+            this.replySender = replySender;
+        }
+
+        @Override
+        public void onMessage(Message msg) {
+            if (!(msg instanceof TextMessage) && !(msg instanceof BytesMessage)) {
+                LOG.warn("Unexpected message instance type: " + msg.getClass().getName());
+                return;
+            }
+
+            processMessage(msg, replySender);
+        }
+    }
+
+    /*
+     * reports cancelled once the deadline has passed. the engine
+     * checks this between steps and gives up on the request
+     */
+    static class DeadlineProgressReporter implements ProgressReporter {
+        private long deadline;
+        private volatile boolean canceled;
+        private int maximum;
+        private int progress;
+        private String status;
+        private String description;
+
+        DeadlineProgressReporter(long deadline) {
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void cancel() {
+            canceled = true;
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return canceled || System.currentTimeMillis() > deadline;
+        }
+
+        @Override
+        public int getMaximumProgress() {
+            return maximum;
+        }
+
+        @Override
+        public void setMaximumProgress(int maximum) {
+            this.maximum = maximum;
+        }
+
+        @Override
+        public int getProgress() {
+            return progress;
+        }
+
+        @Override
+        public void setProgress(int progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        public String getStatus() {
+            return status;
+        }
+
+        @Override
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public void setDescription(String description) {
+            this.description = description;
+        }
     }
 
     public synchronized boolean isActive() {
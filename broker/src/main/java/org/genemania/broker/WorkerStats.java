@@ -0,0 +1,114 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+
+/**
+ * WorkerStats: request counters and gauges for a Worker, published over
+ * JMX so load can be watched with jconsole or any JMX poller
+ */
+package org.genemania.broker;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+public class WorkerStats implements WorkerStatsMBean {
+
+    private static Logger LOG = Logger.getLogger(WorkerStats.class);
+
+    public static final String OBJECT_NAME = "org.genemania.broker:type=Worker";
+
+    private int poolSize;
+    private AtomicInteger inFlight = new AtomicInteger();
+    private AtomicLong processedMessages = new AtomicLong();
+    private AtomicLong expiredMessages = new AtomicLong();
+    private AtomicLong failedMessages = new AtomicLong();
+
+    public WorkerStats(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /*
+     * failure to register only costs us the monitoring,
+     * so just log it
+     */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        }
+        catch (Exception e) {
+            LOG.warn("failed to register worker stats with JMX", e);
+        }
+    }
+
+    public void started() {
+        inFlight.incrementAndGet();
+    }
+
+    public void finished() {
+        inFlight.decrementAndGet();
+    }
+
+    public void processed() {
+        processedMessages.incrementAndGet();
+    }
+
+    public void failed() {
+        failedMessages.incrementAndGet();
+    }
+
+    public void expired() {
+        expiredMessages.incrementAndGet();
+    }
+
+    @Override
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    @Override
+    public long getProcessedMessages() {
+        return processedMessages.get();
+    }
+
+    @Override
+    public long getExpiredMessages() {
+        return expiredMessages.get();
+    }
+
+    @Override
+    public long getFailedMessages() {
+        return failedMessages.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("processed: %d, failed: %d, expired: %d, in flight: %d",
+                getProcessedMessages(), getFailedMessages(), getExpiredMessages(), getInFlight());
+    }
+}
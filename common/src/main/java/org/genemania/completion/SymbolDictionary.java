@@ -0,0 +1,193 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.completion;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, case-insensitive map from gene symbol to node id for one
+ * organism, held in flat arrays. Symbols are folded with
+ * Character.toLowerCase, like the index analyzer does, and looked up by
+ * open addressing without allocating, so resolving a pasted gene list is
+ * a few array probes per line rather than an index search.
+ */
+public class SymbolDictionary {
+	public static final long NOT_FOUND = Long.MIN_VALUE;
+
+	private final String[] keys;
+	private final String[] symbols;
+	private final long[] nodeIds;
+	private final int mask;
+	private final int size;
+
+	private SymbolDictionary(String[] keys, String[] symbols, long[] nodeIds, int size) {
+		this.keys = keys;
+		this.symbols = symbols;
+		this.nodeIds = nodeIds;
+		this.mask = keys.length - 1;
+		this.size = size;
+	}
+
+	/**
+	 * Returns the node id for the given symbol, or NOT_FOUND.
+	 */
+	public long getNodeId(String symbol) {
+		int slot = find(symbol);
+		return slot < 0 ? NOT_FOUND : nodeIds[slot];
+	}
+
+	/**
+	 * Returns the symbol as it was added, or null if it isn't known.
+	 */
+	public String getCanonicalSymbol(String symbol) {
+		int slot = find(symbol);
+		return slot < 0 ? null : symbols[slot];
+	}
+
+	public boolean contains(String symbol) {
+		return find(symbol) >= 0;
+	}
+
+	/**
+	 * Returns the node id for each of the given symbols, NOT_FOUND for
+	 * those that aren't known.
+	 */
+	public long[] resolve(List<String> symbols) {
+		long[] result = new long[symbols.size()];
+		int i = 0;
+		for (String symbol : symbols) {
+			result[i++] = getNodeId(symbol);
+		}
+		return result;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private int find(String symbol) {
+		if (symbol == null) {
+			return -1;
+		}
+		int slot = spread(foldedHash(symbol)) & mask;
+		while (keys[slot] != null) {
+			if (foldedEquals(keys[slot], symbol)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	static String fold(String symbol) {
+		char[] chars = new char[symbol.length()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = Character.toLowerCase(symbol.charAt(i));
+		}
+		return new String(chars);
+	}
+
+	// same as fold(symbol).hashCode(), without building the string
+	private static int foldedHash(String symbol) {
+		int hash = 0;
+		for (int i = 0; i < symbol.length(); i++) {
+			hash = 31 * hash + Character.toLowerCase(symbol.charAt(i));
+		}
+		return hash;
+	}
+
+	private static boolean foldedEquals(String key, String symbol) {
+		if (key.length() != symbol.length()) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != Character.toLowerCase(symbol.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Collects symbols for a dictionary. When a symbol is added more than
+	 * once, for different nodes or in different cases, the first one added
+	 * is kept, as the first search hit was before.
+	 */
+	public static class Builder {
+		private String[] keys = new String[16];
+		private String[] symbols = new String[16];
+		private long[] nodeIds = new long[16];
+		private int size;
+
+		public Builder add(String symbol, long nodeId) {
+			if (symbol == null || symbol.length() == 0) {
+				return this;
+			}
+			if (2 * (size + 1) > keys.length) {
+				grow();
+			}
+			String key = fold(symbol);
+			int mask = keys.length - 1;
+			int slot = spread(key.hashCode()) & mask;
+			while (keys[slot] != null) {
+				if (keys[slot].equals(key)) {
+					return this;
+				}
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			symbols[slot] = symbol;
+			nodeIds[slot] = nodeId;
+			size++;
+			return this;
+		}
+
+		public SymbolDictionary build() {
+			return new SymbolDictionary(Arrays.copyOf(keys, keys.length), Arrays.copyOf(symbols, symbols.length), Arrays.copyOf(nodeIds, nodeIds.length), size);
+		}
+
+		private void grow() {
+			String[] oldKeys = keys;
+			String[] oldSymbols = symbols;
+			long[] oldNodeIds = nodeIds;
+			keys = new String[oldKeys.length * 2];
+			symbols = new String[keys.length];
+			nodeIds = new long[keys.length];
+			int mask = keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] == null) {
+					continue;
+				}
+				int slot = spread(oldKeys[i].hashCode()) & mask;
+				while (keys[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				symbols[slot] = oldSymbols[i];
+				nodeIds[slot] = oldNodeIds[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,231 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, case-insensitive prefix index over the gene symbols of one
+ * organism. Symbols are folded like SymbolDictionary folds them and kept
+ * sorted in flat arrays, so the symbols starting with a prefix are a
+ * contiguous range found by two binary searches. Completion picks the
+ * best ranked symbols from that range without allocating anything but
+ * the result, however short the prefix is.
+ */
+public class SymbolPrefixIndex {
+	private final String[] keys;
+	private final String[] symbols;
+	private final long[] nodeIds;
+	private final byte[] ranks;
+
+	private SymbolPrefixIndex(String[] keys, String[] symbols, long[] nodeIds, byte[] ranks) {
+		this.keys = keys;
+		this.symbols = symbols;
+		this.nodeIds = nodeIds;
+		this.ranks = ranks;
+	}
+
+	/**
+	 * Returns the entries of the highest ranked symbols starting with the
+	 * given prefix, at most limit of them, best first. Symbols of the same
+	 * rank are in alphabetical order.
+	 */
+	public int[] complete(String prefix, int limit) {
+		if (limit <= 0) {
+			return new int[0];
+		}
+		int from = lowerBound(prefix);
+		int to = upperBound(prefix, from);
+		int[] top = new int[Math.min(limit, to - from)];
+		if (top.length == to - from) {
+			sortByRank(from, to, top);
+			return top;
+		}
+		int size = 0;
+		for (int entry = from; entry < to; entry++) {
+			byte rank = ranks[entry];
+			if (size == top.length) {
+				if (rank <= ranks[top[size - 1]]) {
+					continue;
+				}
+				size--;
+			}
+			int i = size;
+			while (i > 0 && ranks[top[i - 1]] < rank) {
+				top[i] = top[i - 1];
+				i--;
+			}
+			top[i] = entry;
+			size++;
+		}
+		return top;
+	}
+
+	// every entry of the range is wanted, so order them by a counting sort
+	// on rank rather than selecting them one at a time
+	private void sortByRank(int from, int to, int[] result) {
+		int[] starts = new int[257];
+		for (int entry = from; entry < to; entry++) {
+			starts[128 - ranks[entry]]++;
+		}
+		for (int i = 1; i < starts.length; i++) {
+			starts[i] += starts[i - 1];
+		}
+		for (int entry = from; entry < to; entry++) {
+			result[starts[127 - ranks[entry]]++] = entry;
+		}
+	}
+
+	/**
+	 * Returns the number of symbols starting with the given prefix.
+	 */
+	public int count(String prefix) {
+		int from = lowerBound(prefix);
+		return upperBound(prefix, from) - from;
+	}
+
+	public String getSymbol(int entry) {
+		return symbols[entry];
+	}
+
+	public long getNodeId(int entry) {
+		return nodeIds[entry];
+	}
+
+	public byte getRank(int entry) {
+		return ranks[entry];
+	}
+
+	public int size() {
+		return keys.length;
+	}
+
+	// first entry not sorting before the prefix
+	private int lowerBound(String prefix) {
+		int low = 0;
+		int high = keys.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (comparePrefix(keys[middle], prefix) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// first entry from the lower bound on that doesn't start with the prefix
+	private int upperBound(String prefix, int low) {
+		int high = keys.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (comparePrefix(keys[middle], prefix) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	// compares the key, cut to the length of the prefix, with the folded
+	// prefix. zero means the key starts with the prefix.
+	private static int comparePrefix(String key, String prefix) {
+		int length = Math.min(key.length(), prefix.length());
+		for (int i = 0; i < length; i++) {
+			char c = Character.toLowerCase(prefix.charAt(i));
+			if (key.charAt(i) != c) {
+				return key.charAt(i) - c;
+			}
+		}
+		return key.length() < prefix.length() ? -1 : 0;
+	}
+
+	/**
+	 * Collects symbols for a prefix index. When a symbol is added more than
+	 * once, for different nodes or in different cases, the one with the
+	 * highest rank is kept, or the first one added among those.
+	 */
+	public static class Builder {
+		private final List<Entry> entries = new ArrayList<Entry>();
+
+		public Builder add(String symbol, long nodeId, byte rank) {
+			if (symbol == null || symbol.length() == 0) {
+				return this;
+			}
+			entries.add(new Entry(SymbolDictionary.fold(symbol), symbol, nodeId, rank, entries.size()));
+			return this;
+		}
+
+		public SymbolPrefixIndex build() {
+			Collections.sort(entries);
+			int size = 0;
+			for (int i = 0; i < entries.size(); i++) {
+				if (i == 0 || !entries.get(i).key.equals(entries.get(i - 1).key)) {
+					entries.set(size++, entries.get(i));
+				}
+			}
+			String[] keys = new String[size];
+			String[] symbols = new String[size];
+			long[] nodeIds = new long[size];
+			byte[] ranks = new byte[size];
+			for (int i = 0; i < size; i++) {
+				Entry entry = entries.get(i);
+				keys[i] = entry.key;
+				symbols[i] = entry.symbol;
+				nodeIds[i] = entry.nodeId;
+				ranks[i] = entry.rank;
+			}
+			return new SymbolPrefixIndex(keys, symbols, nodeIds, ranks);
+		}
+	}
+
+	private static class Entry implements Comparable<Entry> {
+		final String key;
+		final String symbol;
+		final long nodeId;
+		final byte rank;
+		final int order;
+
+		Entry(String key, String symbol, long nodeId, byte rank, int order) {
+			this.key = key;
+			this.symbol = symbol;
+			this.nodeId = nodeId;
+			this.rank = rank;
+			this.order = order;
+		}
+
+		// by key, then best rank first, then in the order added
+		@Override
+		public int compareTo(Entry other) {
+			int result = key.compareTo(other.key);
+			if (result != 0) {
+				return result;
+			}
+			if (rank != other.rank) {
+				return other.rank - rank;
+			}
+			return order - other.order;
+		}
+	}
+}
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
@@ -32,12 +33,14 @@ import org.apache.lucene.search.Searchable;
 import org.apache.lucene.search.Searcher;
 import org.apache.lucene.store.FSDirectory;
 import org.genemania.Constants;
+import org.genemania.completion.SymbolPrefixIndex;
 import org.genemania.domain.Attribute;
 import org.genemania.domain.AttributeGroup;
 import org.genemania.domain.Gene;
 import org.genemania.domain.InteractionNetwork;
 import org.genemania.domain.InteractionNetworkGroup;
 import org.genemania.domain.Node;
+import org.genemania.domain.OntologyCategory;
 import org.genemania.domain.Organism;
 import org.genemania.domain.Statistics;
 import org.genemania.exception.DataStoreException;
@@ -46,6 +49,7 @@ import org.genemania.mediator.lucene.LuceneGeneMediator;
 import org.genemania.mediator.lucene.LuceneMediator;
 import org.genemania.mediator.lucene.LuceneNetworkMediator;
 import org.genemania.mediator.lucene.LuceneNodeMediator;
+import org.genemania.mediator.lucene.LuceneOntologyMediator;
 import org.genemania.mediator.lucene.LuceneOrganismMediator;
 import org.genemania.mediator.lucene.LuceneStatsMediator;
 import org.genemania.util.ApplicationConfig;
@@ -61,6 +65,7 @@ public class LuceneConnector {
 	private LuceneGeneMediator geneMediator = null;
 	private LuceneNetworkMediator networkMediator = null;
 	private LuceneNodeMediator nodeMediator = null;
+	private LuceneOntologyMediator ontologyMediator = null;
 	private LuceneStatsMediator statsMediator = null;
 	private LuceneAttributeMediator attributeMediator = null;
 
@@ -78,6 +83,7 @@ public class LuceneConnector {
 			geneMediator = new LuceneGeneMediator(searcher, analyzer);
 			networkMediator = new LuceneNetworkMediator(searcher, analyzer);
 			nodeMediator = new LuceneNodeMediator(searcher, analyzer);
+			ontologyMediator = new LuceneOntologyMediator(searcher, analyzer);
 			statsMediator = new LuceneStatsMediator(searcher, analyzer);
 			attributeMediator = new LuceneAttributeMediator(searcher, analyzer);
 		} catch (IOException e) {
@@ -123,10 +129,23 @@ public class LuceneConnector {
 		return networkMediator.getNetwork(networkId);
 	}
 
+	public Map<Long, InteractionNetwork> findNetworksByIds(long[] networkIds)
+			throws DataStoreException {
+		return networkMediator.getNetworks(networkIds);
+	}
+
 	public Node findNodeById(long nodeId, long organismId) {
 		return nodeMediator.getNode(nodeId, organismId);
 	}
 
+	public Map<Long, Node> findNodesByIds(long[] nodeIds, long organismId) {
+		return nodeMediator.getNodes(nodeIds, organismId);
+	}
+
+	public Map<Long, OntologyCategory> findCategoriesByIds(long[] categoryIds) {
+		return ontologyMediator.getCategories(categoryIds);
+	}
+
 	public Statistics getLatestStatistics() {
 		return statsMediator.getLatestStatistics();
 	}
@@ -139,6 +158,25 @@ public class LuceneConnector {
 		return geneMediator.getNodeId(organismId, symbol);
 	}
 
+	public List<Long> getNodeIds(long organismId, List<String> symbols) {
+		return geneMediator.getNodeIds(organismId, symbols);
+	}
+
+	public SymbolPrefixIndex getSymbolPrefixIndex(long organismId) {
+		return geneMediator.getSymbolPrefixIndex(organismId);
+	}
+
+	/**
+	 * Reads the gene symbol dictionary and prefix index of every organism
+	 * up front, rather than on the first lookup for each.
+	 */
+	public void loadSymbolDictionaries() throws DataStoreException {
+		for (Organism organism : organismMediator.getAllOrganisms()) {
+			int size = geneMediator.getSymbolDictionary(organism.getId()).size();
+			LOG.info(String.format("Loaded %d gene symbols for %s", size, organism.getName()));
+		}
+	}
+
 	public InteractionNetworkGroup getNetworkGroupByName(long organismId,
 			String groupName) {
 		return networkMediator.getNetworkGroupByName(groupName, organismId);
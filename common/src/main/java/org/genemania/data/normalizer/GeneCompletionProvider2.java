@@ -19,34 +19,20 @@
 
 package org.genemania.data.normalizer;
 
-import java.io.IOException;
-import java.io.StringReader;
-
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.TokenStream;
-import org.apache.lucene.analysis.tokenattributes.TermAttribute;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.search.BooleanClause.Occur;
-import org.apache.lucene.search.BooleanQuery;
-import org.apache.lucene.search.BooleanQuery.TooManyClauses;
-import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Searcher;
-import org.apache.lucene.search.TermQuery;
 import org.genemania.completion.CompletionConsumer;
 import org.genemania.completion.CompletionProvider;
+import org.genemania.completion.SymbolPrefixIndex;
 import org.genemania.domain.Gene;
 import org.genemania.domain.Organism;
 import org.genemania.mediator.GeneMediator;
-import org.genemania.mediator.lucene.AbstractCollector;
 import org.genemania.mediator.lucene.LuceneGeneMediator;
-import org.genemania.mediator.lucene.LuceneMediator;
 
 public class GeneCompletionProvider2 implements CompletionProvider {
 	private Organism organism;
 	private GeneMediator mediator;
-	private Searcher searcher;
-	private Analyzer analyzer;
+	private LuceneGeneMediator symbolMediator;
 
 	public GeneCompletionProvider2(Searcher searcher, Analyzer analyzer, Organism organism) {
 		this(searcher, analyzer, organism, new LuceneGeneMediator(searcher, analyzer));
@@ -54,9 +40,8 @@ public class GeneCompletionProvider2 implements CompletionProvider {
 
 	public GeneCompletionProvider2(Searcher searcher, Analyzer analyzer, Organism organism, GeneMediator mediator) {
 		this.organism = organism;
-		this.searcher = searcher;
 		this.mediator = mediator;
-		this.analyzer = analyzer;
+		this.symbolMediator = new LuceneGeneMediator(searcher, analyzer);
 	}
 
 	@Override
@@ -64,36 +49,28 @@ public class GeneCompletionProvider2 implements CompletionProvider {
 	}
 
 	@Override
-	public void computeProposals(final CompletionConsumer consumer, String queryString) {
+	public void computeProposals(CompletionConsumer consumer, String queryString) {
+		computeProposals(consumer, queryString, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Proposes at most limit of the symbols starting with the given query,
+	 * those from the best ranked naming sources first, and tells the
+	 * consumer when there were more.
+	 */
+	public void computeProposals(CompletionConsumer consumer, String queryString, int limit) {
 		try {
 			if (queryString.length() == 0) {
 				return;
 			}
 
-			TokenStream stream = analyzer.tokenStream(LuceneGeneMediator.GENE_SYMBOL, new StringReader(queryString));
-			TermAttribute term = stream.getAttribute(TermAttribute.class);
-			if (!stream.incrementToken()) {
-				return;
+			SymbolPrefixIndex index = symbolMediator.getSymbolPrefixIndex(organism.getId());
+			for (int entry : index.complete(queryString, limit)) {
+				consumer.consume(index.getSymbol(entry));
+			}
+			if (index.count(queryString) > limit) {
+				consumer.tooManyCompletions();
 			}
-
-			BooleanQuery query = new BooleanQuery();
-			query.add(new TermQuery(new Term(LuceneMediator.GENE_ORGANISM_ID, String.valueOf(organism.getId()))), Occur.MUST);
-			query.add(new PrefixQuery(new Term(LuceneMediator.GENE_SYMBOL, term.term())), Occur.MUST);
-			searcher.search(query, new AbstractCollector() {
-				@Override
-				public void handleHit(int id) {
-					try {
-						Document document = searcher.doc(id);
-						consumer.consume(document.get(LuceneMediator.GENE_SYMBOL));
-					} catch (IOException e) {
-						log(e);
-					}
-				}
-			});
-		} catch (IOException e) {
-			log(e);
-		} catch (TooManyClauses e) {
-			consumer.tooManyCompletions();
 		} finally {
 			consumer.finish();
 		}
@@ -116,8 +93,4 @@ public class GeneCompletionProvider2 implements CompletionProvider {
 	public Long getNodeId(String symbol) {
 		return mediator.getNodeId(organism.getId(), symbol);
 	}
-
-	private void log(IOException e) {
-		e.printStackTrace();
-	}
 }
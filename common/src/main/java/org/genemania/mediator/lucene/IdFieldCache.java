@@ -0,0 +1,108 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.mediator.lucene;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.search.Searcher;
+
+/**
+ * Numeric id fields of a searcher's documents, by document number, shared
+ * by every mediator over the same searcher and dropped along with it.
+ * Values are read a page of documents at a time, loading just the one
+ * field, so once a page has been seen the ids of its hits are array reads
+ * rather than stored document loads.
+ */
+class IdFieldCache {
+	public static final long MISSING = Long.MIN_VALUE;
+
+	private static final int PAGE_BITS = 10;
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	private static final Map<Searcher, IdFieldCache> caches = new WeakHashMap<Searcher, IdFieldCache>();
+
+	private final ConcurrentMap<String, AtomicReferenceArray<long[]>> fields = new ConcurrentHashMap<String, AtomicReferenceArray<long[]>>();
+
+	private IdFieldCache() {
+	}
+
+	public static IdFieldCache getInstance(Searcher searcher) {
+		synchronized (caches) {
+			IdFieldCache cache = caches.get(searcher);
+			if (cache == null) {
+				cache = new IdFieldCache();
+				caches.put(searcher, cache);
+			}
+			return cache;
+		}
+	}
+
+	/**
+	 * Returns the value of the field in the given document, or MISSING if
+	 * the document doesn't have one.
+	 */
+	public long get(Searcher searcher, int doc, String field) throws IOException {
+		AtomicReferenceArray<long[]> pages = fields.get(field);
+		if (pages == null) {
+			AtomicReferenceArray<long[]> created = new AtomicReferenceArray<long[]>((searcher.maxDoc() >> PAGE_BITS) + 1);
+			pages = fields.putIfAbsent(field, created);
+			if (pages == null) {
+				pages = created;
+			}
+		}
+		int page = doc >> PAGE_BITS;
+		long[] values = pages.get(page);
+		if (values == null) {
+			// threads racing on a new page read the same values, so
+			// whichever one is kept doesn't matter
+			values = readPage(searcher, field, page);
+			pages.set(page, values);
+		}
+		return values[doc & (PAGE_SIZE - 1)];
+	}
+
+	private static long[] readPage(Searcher searcher, String field, int page) throws IOException {
+		FieldSelector selector = new MapFieldSelector(new String[] { field });
+		int first = page << PAGE_BITS;
+		int last = Math.min(searcher.maxDoc(), first + PAGE_SIZE);
+		long[] values = new long[PAGE_SIZE];
+		for (int doc = first; doc < last; doc++) {
+			values[doc - first] = parse(searcher, doc, selector, field);
+		}
+		return values;
+	}
+
+	private static long parse(Searcher searcher, int doc, FieldSelector selector, String field) throws IOException {
+		try {
+			String value = searcher.doc(doc, selector).get(field);
+			return value == null ? MISSING : Long.parseLong(value);
+		} catch (IllegalArgumentException e) {
+			// a deleted document, or a value that isn't a number
+			return MISSING;
+		}
+	}
+}
@@ -32,7 +32,7 @@ public class LuceneAttributeMediator extends LuceneMediator implements
 
         final Attribute[] attribute = new Attribute[1];
         
-        search(String.format("+%s:\"%d\" +%s:\"%d\"", LuceneMediator.ATTRIBUTE_ORGANISM_ID, organismId, LuceneMediator.ATTRIBUTE_ID, attributeId), new AbstractCollector() {
+        search(allOf(idQuery(LuceneMediator.ATTRIBUTE_ORGANISM_ID, organismId), idQuery(LuceneMediator.ATTRIBUTE_ID, attributeId)), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -67,7 +67,7 @@ public class LuceneAttributeMediator extends LuceneMediator implements
     @Override
     public boolean isValidAttribute(long organismId, long attributeId) {
         final Long[] groupId = new Long[1];
-        search(String.format("+%s:\"%d\"", LuceneMediator.ATTRIBUTE_ID, attributeId), new AbstractCollector() {
+        search(idQuery(LuceneMediator.ATTRIBUTE_ID, attributeId), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -89,7 +89,7 @@ public class LuceneAttributeMediator extends LuceneMediator implements
         }
 
         final Long[] organism = new Long[1];
-        search(String.format("+%s:\"%d\"", LuceneMediator.ATTRIBUTEGROUP_ID, groupId[0]), new AbstractCollector() {
+        search(idQuery(LuceneMediator.ATTRIBUTEGROUP_ID, groupId[0]), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -115,7 +115,7 @@ public class LuceneAttributeMediator extends LuceneMediator implements
             long attributeGroupId) {
         final List<Attribute> result = new ArrayList<Attribute>();
 
-        search(String.format("+%s:\"%d\" +%s:\"%d\"", LuceneMediator.ATTRIBUTE_ORGANISM_ID, organismId, LuceneMediator.ATTRIBUTE_GROUP_ID, attributeGroupId), new AbstractCollector() {        
+        search(allOf(idQuery(LuceneMediator.ATTRIBUTE_ORGANISM_ID, organismId), idQuery(LuceneMediator.ATTRIBUTE_GROUP_ID, attributeGroupId)), new AbstractCollector() {        
             @Override
             public void handleHit(int doc) throws IOException {
                 try {
@@ -139,7 +139,7 @@ public class LuceneAttributeMediator extends LuceneMediator implements
     public List<AttributeGroup> findAttributeGroupsByOrganism(long organismId) {
         
         final List<AttributeGroup> result = new ArrayList<AttributeGroup>();
-        search(String.format("+%s:\"%d\"", LuceneMediator.ATTRIBUTEGROUP_ORGANISM_ID, organismId), new AbstractCollector() {        
+        search(idQuery(LuceneMediator.ATTRIBUTEGROUP_ORGANISM_ID, organismId), new AbstractCollector() {        
             @Override
             public void handleHit(int doc) throws IOException {
                 try {
@@ -164,7 +164,7 @@ public class LuceneAttributeMediator extends LuceneMediator implements
             long attributeGroupId) {
         final AttributeGroup[] attributeGroup = new AttributeGroup[1];
 
-        search(String.format("+%s:\"%d\" +%s:\"%d\"", LuceneMediator.ATTRIBUTEGROUP_ID, attributeGroupId, LuceneMediator.ATTRIBUTEGROUP_ORGANISM_ID, organismId), new AbstractCollector() {
+        search(allOf(idQuery(LuceneMediator.ATTRIBUTEGROUP_ID, attributeGroupId), idQuery(LuceneMediator.ATTRIBUTEGROUP_ORGANISM_ID, organismId)), new AbstractCollector() {
             public void handleHit(int doc) {
                 try {   
                     Document document = searcher.doc(doc);
@@ -20,17 +20,22 @@
 package org.genemania.mediator.lucene;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.search.Searcher;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.BooleanQuery.TooManyClauses;
+import org.genemania.completion.SymbolDictionary;
+import org.genemania.completion.SymbolPrefixIndex;
 import org.genemania.completion.lucene.GeneIndexBuilder;
 import org.genemania.domain.Gene;
 import org.genemania.domain.GeneData;
@@ -40,6 +45,21 @@ import org.genemania.mediator.GeneMediator;
 
 public class LuceneGeneMediator extends LuceneMediator implements GeneMediator {
 
+	// symbol dictionaries and prefix indexes by organism, shared by every
+	// mediator over the same searcher, and dropped along with the searcher
+	private static final Map<Searcher, Map<Long, OrganismSymbols>> dictionaries = new WeakHashMap<Searcher, Map<Long, OrganismSymbols>>();
+
+	private static final FieldSelector SYMBOL_FIELDS = new MapFieldSelector(new String[] { LuceneMediator.GENE_SYMBOL });
+
+	private static final FieldSelector ORGANISM_FIELDS = new MapFieldSelector(new String[] { LuceneMediator.ORGANISM_ID });
+
+	private static final OrganismSymbols NO_SYMBOLS = new OrganismSymbols(new SymbolDictionary.Builder().build(), new SymbolPrefixIndex.Builder().build());
+
+	// everything the symbol dictionary and prefix index need from a gene,
+	// read in a single stored document load
+	private static final FieldSelector DICTIONARY_FIELDS = new MapFieldSelector(new String[] {
+			LuceneMediator.GENE_SYMBOL, GeneIndexBuilder.NODE_ID_FIELD, LuceneMediator.GENE_NAMINGSOURCE_ID });
+
 	public LuceneGeneMediator(Searcher searcher, Analyzer analyzer) {
 		super(searcher, analyzer);
 	}
@@ -68,27 +88,11 @@ public class LuceneGeneMediator extends LuceneMediator implements GeneMediator {
 	}
 
 	public boolean isValid(long organismId, String proposal) {
-		return getCanonicalSymbol(organismId, proposal) != null;
+		return getSymbolDictionary(organismId).contains(proposal);
 	}
 
 	public String getCanonicalSymbol(long organismId, String proposal) {
-		try {
-			if (proposal.length() == 0) {
-				return null;
-			}
-			TopDocs topDocs = search(String.format("+%s:\"%d\" +%s:\"%s\"", LuceneMediator.GENE_ORGANISM_ID, organismId, LuceneMediator.GENE_SYMBOL, QueryParser.escape(proposal)), 1);
-			if (topDocs != null && topDocs.totalHits > 0) {
-				Document document = searcher.doc(topDocs.scoreDocs[0].doc);
-				return document.get(LuceneMediator.GENE_SYMBOL);
-			} else {
-				return null;
-			}
-		} catch (IOException e) {
-			log(e);
-		} catch (TooManyClauses e) {
-			log(e);
-		}
-		return null;
+		return getSymbolDictionary(organismId).getCanonicalSymbol(proposal);
 	}
 
 	public Set<String> getSynonyms(long organismId, String symbol) {
@@ -100,13 +104,12 @@ public class LuceneGeneMediator extends LuceneMediator implements GeneMediator {
 	}
 
 	public Set<String> getSynonyms(long organismId, long nodeId) {
-		String query = String.format("+%s:\"%d\" +%s:\"%d\"", LuceneMediator.GENE_ORGANISM_ID, organismId, LuceneMediator.GENE_NODE_ID, nodeId);
 		final Set<String> synonyms = new HashSet<String>();
-		search(query, new AbstractCollector() {
+		search(allOf(idQuery(LuceneMediator.GENE_ORGANISM_ID, organismId), idQuery(LuceneMediator.GENE_NODE_ID, nodeId)), new AbstractCollector() {
 			@Override
 			public void handleHit(int id) {
 				try {
-					Document document = searcher.doc(id);
+					Document document = searcher.doc(id, SYMBOL_FIELDS);
 					synonyms.add(document.get(GeneIndexBuilder.GENE_FIELD));
 				} catch (IOException e) {
 					log(e);
@@ -117,16 +120,99 @@ public class LuceneGeneMediator extends LuceneMediator implements GeneMediator {
 	}
 	
 	public Long getNodeId(long organismId, String symbol) {
-		try {
-			String query = String.format("+%s:\"%d\" +%s:\"%s\"", LuceneMediator.GENE_ORGANISM_ID, organismId, LuceneMediator.GENE_SYMBOL, QueryParser.escape(symbol));
-			TopDocs topDocs = search(query, 1);
-			if (topDocs != null && topDocs.totalHits >= 1) {
-				Document document = searcher.doc(topDocs.scoreDocs[0].doc);
-				return Long.parseLong(document.get(GeneIndexBuilder.NODE_ID_FIELD));
+		long nodeId = getSymbolDictionary(organismId).getNodeId(symbol);
+		return nodeId == SymbolDictionary.NOT_FOUND ? null : nodeId;
+	}
+
+	/**
+	 * Node ids for each of the given symbols, null for those not found.
+	 */
+	public List<Long> getNodeIds(long organismId, List<String> symbols) {
+		long[] nodeIds = getSymbolDictionary(organismId).resolve(symbols);
+		List<Long> result = new ArrayList<Long>(nodeIds.length);
+		for (long nodeId : nodeIds) {
+			result.add(nodeId == SymbolDictionary.NOT_FOUND ? null : nodeId);
+		}
+		return result;
+	}
+
+	/**
+	 * Dictionary of every symbol of the organism's genes. It's read from the
+	 * index on first use and kept for the life of the searcher.
+	 */
+	public SymbolDictionary getSymbolDictionary(long organismId) {
+		return getOrganismSymbols(organismId).dictionary;
+	}
+
+	/**
+	 * Prefix index over every symbol of the organism's genes, ranked by
+	 * naming source. It's built along with the symbol dictionary.
+	 */
+	public SymbolPrefixIndex getSymbolPrefixIndex(long organismId) {
+		return getOrganismSymbols(organismId).prefixIndex;
+	}
+
+	/**
+	 * Ids that aren't in the index get empty symbols, and aren't kept, so
+	 * requests for arbitrary organism ids can't grow the cache.
+	 */
+	private OrganismSymbols getOrganismSymbols(long organismId) {
+		Map<Long, OrganismSymbols> organismSymbols;
+		synchronized (dictionaries) {
+			organismSymbols = dictionaries.get(searcher);
+			if (organismSymbols == null) {
+				organismSymbols = new HashMap<Long, OrganismSymbols>();
+				dictionaries.put(searcher, organismSymbols);
 			}
+		}
+		synchronized (organismSymbols) {
+			OrganismSymbols symbols = organismSymbols.get(organismId);
+			if (symbols == null) {
+				// only look the organism up on a miss, hits stay off the index
+				if (findDocument(idQuery(LuceneMediator.ORGANISM_ID, organismId), ORGANISM_FIELDS) == null) {
+					return NO_SYMBOLS;
+				}
+				symbols = createOrganismSymbols(organismId);
+				organismSymbols.put(organismId, symbols);
+			}
+			return symbols;
+		}
+	}
+
+	private OrganismSymbols createOrganismSymbols(long organismId) {
+		final Map<Long, GeneNamingSource> namingSources = createNamingSources();
+		final SymbolDictionary.Builder dictionary = new SymbolDictionary.Builder();
+		final SymbolPrefixIndex.Builder prefixIndex = new SymbolPrefixIndex.Builder();
+		try {
+			searcher.search(idQuery(LuceneMediator.GENE_ORGANISM_ID, organismId), new AbstractCollector() {
+				@Override
+				public void handleHit(int doc) {
+					try {
+						Document document = searcher.doc(doc, DICTIONARY_FIELDS);
+						String symbol = document.get(LuceneMediator.GENE_SYMBOL);
+						long nodeId = Long.parseLong(document.get(GeneIndexBuilder.NODE_ID_FIELD));
+						dictionary.add(symbol, nodeId);
+						String namingSourceId = document.get(LuceneMediator.GENE_NAMINGSOURCE_ID);
+						GeneNamingSource namingSource = namingSourceId == null ? null : namingSources.get(Long.parseLong(namingSourceId));
+						prefixIndex.add(symbol, nodeId, namingSource == null ? 0 : namingSource.getRank());
+					} catch (IOException e) {
+						log(e);
+					}
+				}
+			});
 		} catch (IOException e) {
 			log(e);
 		}
-		return null;
+		return new OrganismSymbols(dictionary.build(), prefixIndex.build());
+	}
+
+	private static class OrganismSymbols {
+		final SymbolDictionary dictionary;
+		final SymbolPrefixIndex prefixIndex;
+
+		OrganismSymbols(SymbolDictionary dictionary, SymbolPrefixIndex prefixIndex) {
+			this.dictionary = dictionary;
+			this.prefixIndex = prefixIndex;
+		}
 	}
 }
@@ -27,8 +27,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import net.sf.cglib.proxy.Enhancer;
@@ -40,21 +42,19 @@ import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.queryParser.ParseException;
-import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.PhraseQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Searcher;
 import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.Version;
 import org.genemania.domain.Gene;
 import org.genemania.domain.GeneData;
 import org.genemania.domain.GeneNamingSource;
@@ -189,34 +189,125 @@ public class LuceneMediator {
     public static final String ATTRIBUTE_NAME                     = "at_name";
     public static final String ATTRIBUTE_DESCRIPTION              = "at_description";
 
+    // the fields createNode(Document, long) reads
+    private static final FieldSelector NODE_FIELDS = new MapFieldSelector(new String[] { NODE_ID, NODE_NAME, NODE_GENEDATA_ID });
+
+    private final IdFieldCache idCache;
+
     public LuceneMediator(Searcher searcher, Analyzer analyzer) {
         this.searcher = searcher;
         this.analyzer = analyzer;
+        this.idCache = IdFieldCache.getInstance(searcher);
     }
 
-    protected void search(String queryString, Collector results) {
-        QueryParser parser = new QueryParser(Version.LUCENE_29, DEFAULT_FIELD, analyzer);
+    protected void search(Query query, Collector results) {
         try {
-            Query query = parser.parse(queryString);
             searcher.search(query, results);
-        } catch (ParseException e) {
-            log(e);
         } catch (IOException e) {
             log(e);
         }
     }
 
-    protected TopDocs search(String queryString, int limit) {
-        QueryParser parser = new QueryParser(Version.LUCENE_29, DEFAULT_FIELD, analyzer);
+    /*
+     * the document matching the query, with only the selected fields loaded,
+     * or null if nothing matches. when more than one does, the last one
+     * collected is used, as these lookups always have.
+     */
+    protected Document findDocument(Query query, FieldSelector fields) {
+        final int[] match = new int[] { -1 };
+        search(query, new AbstractCollector() {
+            @Override
+            public void handleHit(int doc) {
+                match[0] = doc;
+            }
+        });
+        if (match[0] == -1) {
+            return null;
+        }
         try {
-            Query query = parser.parse(queryString);
-            return searcher.search(query, limit);
-        } catch (ParseException e) {
+            return fields == null ? searcher.doc(match[0]) : searcher.doc(match[0], fields);
+        } catch (IOException e) {
             log(e);
+            return null;
+        }
+    }
+
+    protected Document findDocument(Query query) {
+        return findDocument(query, null);
+    }
+
+    /*
+     * numeric id held by a document's field, or IdFieldCache.MISSING. read
+     * through a cache shared by every mediator over the searcher, so visiting
+     * the same documents again doesn't load them again.
+     */
+    protected long getId(int doc, String field) throws IOException {
+        return idCache.get(searcher, doc, field);
+    }
+
+    /*
+     * ids are indexed as their decimal strings, which the analyzer leaves
+     * alone, so id queries are built directly instead of being formatted
+     * and parsed.
+     */
+    protected static Query idQuery(String field, long id) {
+        return termQuery(field, String.valueOf(id));
+    }
+
+    protected static Query termQuery(String field, String value) {
+        return new TermQuery(new Term(field, value));
+    }
+
+    protected static Query allOf(Query... clauses) {
+        BooleanQuery query = new BooleanQuery();
+        for (Query clause : clauses) {
+            query.add(clause, Occur.MUST);
+        }
+        return query;
+    }
+
+    /*
+     * query for a name or symbol, analyzed the way the query parser treats a
+     * quoted phrase
+     */
+    protected Query valueQuery(String field, String value) {
+        try {
+            return createPhraseQuery(field, value);
         } catch (IOException e) {
             log(e);
+            return new BooleanQuery();
+        }
+    }
+
+    /*
+     * visit every document whose field holds one of the given ids, restricted
+     * by another query when one is given. the ids are or'ed together into as
+     * few queries as lucene's clause limit allows, so a lookup of a few
+     * hundred ids costs one pass over the index instead of one per id.
+     */
+    protected void searchIds(String field, long[] ids, Query restriction, Collector results) {
+        int batchSize = BooleanQuery.getMaxClauseCount();
+        for (int start = 0; start < ids.length; start += batchSize) {
+            BooleanQuery idQuery = new BooleanQuery();
+            int end = Math.min(ids.length, start + batchSize);
+            for (int i = start; i < end; i++) {
+                idQuery.add(new TermQuery(new Term(field, String.valueOf(ids[i]))), Occur.SHOULD);
+            }
+
+            Query query = idQuery;
+            if (restriction != null) {
+                BooleanQuery restricted = new BooleanQuery();
+                restricted.add(restriction, Occur.MUST);
+                restricted.add(idQuery, Occur.MUST);
+                query = restricted;
+            }
+
+            try {
+                searcher.search(query, results);
+            } catch (IOException e) {
+                log(e);
+            }
         }
-        return null;
     }
 
     protected void log(Throwable t) {
@@ -224,21 +315,8 @@ public class LuceneMediator {
     }
 
     protected Node createNode(final long id, final long organismId) {
-        final Node[] result = new Node[1];
-        search(String.format("+%s:\"%d\" +%s:\"%d\"", LuceneMediator.NODE_ID, id, LuceneMediator.NODE_ORGANISM_ID, organismId), new AbstractCollector() {
-            @Override
-            public void handleHit(int doc) {
-                try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createNode(document, organismId);
-                } catch (CorruptIndexException e) {
-                    log(e);
-                } catch (IOException e) {
-                    log(e);
-                }
-            }
-        });
-        return result[0];
+        Document document = findDocument(allOf(idQuery(LuceneMediator.NODE_ID, id), idQuery(LuceneMediator.NODE_ORGANISM_ID, organismId)), NODE_FIELDS);
+        return document == null ? null : createNode(document, organismId);
     }
 
     @SuppressWarnings("unchecked")
@@ -264,21 +342,8 @@ public class LuceneMediator {
     }
 
     protected GeneData createGeneData(final long id) {
-        final GeneData[] result = new GeneData[1];
-        search(String.format("%s:\"%d\"", LuceneMediator.GENEDATA_ID, id), new AbstractCollector() {
-            @Override
-            public void handleHit(int doc) {
-                try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createGeneData(document);
-                } catch (CorruptIndexException e) {
-                    log(e);
-                } catch (IOException e) {
-                    log(e);
-                }
-            }
-        });
-        return result[0];
+        Document document = findDocument(idQuery(LuceneMediator.GENEDATA_ID, id));
+        return document == null ? null : createGeneData(document);
     }
 
     protected GeneData createGeneData(Document document) {
@@ -299,21 +364,8 @@ public class LuceneMediator {
     }
 
     private GeneNamingSource createNamingSource(long id) {
-        final GeneNamingSource[] result = new GeneNamingSource[1];
-        search(String.format("%s:\"%d\"", LuceneMediator.NAMINGSOURCE_ID, id), new AbstractCollector() {
-            @Override
-            public void handleHit(int doc) {
-                try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createNamingSource(document);
-                } catch (CorruptIndexException e) {
-                    log(e);
-                } catch (IOException e) {
-                    log(e);
-                }
-            }
-        });
-        return result[0];
+        Document document = findDocument(idQuery(LuceneMediator.NAMINGSOURCE_ID, id));
+        return document == null ? null : createNamingSource(document);
     }
 
     protected GeneNamingSource createNamingSource(Document document) {
@@ -330,58 +382,18 @@ public class LuceneMediator {
     }
 
     protected GeneNamingSource createNamingSource(String namingSourceName) {
-        final GeneNamingSource[] result = new GeneNamingSource[1];
-        search(String.format("%s:\"%s\"", LuceneMediator.NAMINGSOURCE_NAME, QueryParser.escape(namingSourceName)), new AbstractCollector() {
-            @Override
-            public void handleHit(int doc) {
-                try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createNamingSource(document);
-                } catch (CorruptIndexException e) {
-                    log(e);
-                } catch (IOException e) {
-                    log(e);
-                }
-            }
-        });
-        return result[0];
+        Document document = findDocument(valueQuery(LuceneMediator.NAMINGSOURCE_NAME, namingSourceName));
+        return document == null ? null : createNamingSource(document);
     }
 
     protected Gene createGene(long organismId, String geneSymbol) {
-        final Gene[] result = new Gene[1];
-        search(String.format("+%s:\"%d\" +%s:\"%s\"", LuceneMediator.GENE_ORGANISM_ID, organismId,
-                LuceneMediator.GENE_SYMBOL, QueryParser.escape(geneSymbol)), new AbstractCollector() {
-            @Override
-            public void handleHit(int doc) {
-                try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createGene(document, null, null, null);
-                } catch (CorruptIndexException e) {
-                    log(e);
-                } catch (IOException e) {
-                    log(e);
-                }
-            }
-        });
-        return result[0];
+        Document document = findDocument(allOf(idQuery(LuceneMediator.GENE_ORGANISM_ID, organismId), valueQuery(LuceneMediator.GENE_SYMBOL, geneSymbol)));
+        return document == null ? null : createGene(document, null, null, null);
     }
 
     protected Gene createGene(String geneSymbol) {
-        final Gene[] result = new Gene[1];
-        search(String.format("%s:\"%s\"", LuceneMediator.GENE_SYMBOL, QueryParser.escape(geneSymbol)), new AbstractCollector() {
-            @Override
-            public void handleHit(int doc) {
-                try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createGene(document, null, null, null);
-                } catch (CorruptIndexException e) {
-                    log(e);
-                } catch (IOException e) {
-                    log(e);
-                }
-            }
-        });
-        return result[0];
+        Document document = findDocument(valueQuery(LuceneMediator.GENE_SYMBOL, geneSymbol));
+        return document == null ? null : createGene(document, null, null, null);
     }
 
     protected Gene createGene(final Document document, Node node, Organism organism, GeneNamingSource namingSource) {
@@ -419,14 +431,81 @@ public class LuceneMediator {
         return gene;
     }
 
-    protected Organism createOrganism(long organismId) {
-        final Organism[] result = new Organism[1];
-        search(String.format("%s:\"%d\"", LuceneMediator.ORGANISM_ID, organismId), new AbstractCollector() {
+    /*
+     * nodes for the given ids, keyed by id, with their genes, gene data and
+     * naming sources filled in from a fixed number of passes over the index
+     * rather than lazily per node. ids that aren't found are left out.
+     */
+    protected Map<Long, Node> createNodes(final long organismId, long[] nodeIds) {
+        final Map<Long, Node> result = new HashMap<Long, Node>();
+        final Map<Long, Long> geneDataIds = new HashMap<Long, Long>();
+        searchIds(LuceneMediator.NODE_ID, nodeIds, idQuery(LuceneMediator.NODE_ORGANISM_ID, organismId), new AbstractCollector() {
+            @Override
+            public void handleHit(int doc) {
+                try {
+                    Document document = searcher.doc(doc, NODE_FIELDS);
+                    Node node = new Node();
+                    node.setId(Long.parseLong(document.get(LuceneMediator.NODE_ID)));
+                    node.setName(document.get(LuceneMediator.NODE_NAME));
+                    node.setGenes(new ArrayList<Gene>());
+                    result.put(node.getId(), node);
+                    geneDataIds.put(node.getId(), Long.parseLong(document.get(LuceneMediator.NODE_GENEDATA_ID)));
+                } catch (CorruptIndexException e) {
+                    log(e);
+                } catch (IOException e) {
+                    log(e);
+                }
+            }
+        });
+        if (result.isEmpty()) {
+            return result;
+        }
+
+        final Map<Long, GeneNamingSource> namingSources = createNamingSources();
+        Map<Long, GeneData> geneData = createGeneData(toArray(geneDataIds.values()), namingSources);
+        for (Map.Entry<Long, Long> entry : geneDataIds.entrySet()) {
+            result.get(entry.getKey()).setGeneData(geneData.get(entry.getValue()));
+        }
+
+        final Organism organism = (Organism) Enhancer.create(Organism.class, new LazyLoader() {
+            public Object loadObject() throws Exception {
+                return createOrganism(organismId);
+            }
+        });
+        searchIds(LuceneMediator.GENE_NODE_ID, toArray(result.keySet()), idQuery(LuceneMediator.GENE_ORGANISM_ID, organismId), new AbstractCollector() {
+            @Override
+            public void handleHit(int doc) {
+                try {
+                    Document document = searcher.doc(doc);
+                    Node node = result.get(Long.parseLong(document.get(LuceneMediator.GENE_NODE_ID)));
+                    if (node == null) {
+                        return;
+                    }
+                    GeneNamingSource namingSource = namingSources.get(Long.parseLong(document.get(LuceneMediator.GENE_NAMINGSOURCE_ID)));
+                    node.getGenes().add(createGene(document, node, organism, namingSource));
+                } catch (CorruptIndexException e) {
+                    log(e);
+                } catch (IOException e) {
+                    log(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    private Map<Long, GeneData> createGeneData(long[] ids, final Map<Long, GeneNamingSource> namingSources) {
+        final Map<Long, GeneData> result = new HashMap<Long, GeneData>();
+        searchIds(LuceneMediator.GENEDATA_ID, ids, null, new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
                     Document document = searcher.doc(doc);
-                    result[0] = createOrganism(document);
+                    GeneData data = createGeneData(document);
+                    String namingSourceId = document.get(LuceneMediator.GENEDATA_NAMINGSOURCE_ID);
+                    if (namingSourceId != null && namingSources.containsKey(Long.parseLong(namingSourceId))) {
+                        data.setLinkoutSource(namingSources.get(Long.parseLong(namingSourceId)));
+                    }
+                    result.put(data.getId(), data);
                 } catch (CorruptIndexException e) {
                     log(e);
                 } catch (IOException e) {
@@ -434,7 +513,46 @@ public class LuceneMediator {
                 }
             }
         });
-        return result[0];
+        return result;
+    }
+
+    /*
+     * the naming source table is small, so it's read whole
+     */
+    protected Map<Long, GeneNamingSource> createNamingSources() {
+        final Map<Long, GeneNamingSource> result = new HashMap<Long, GeneNamingSource>();
+        try {
+            searcher.search(new TermQuery(new Term(LuceneMediator.TYPE, LuceneMediator.NAMINGSOURCE)), new AbstractCollector() {
+                @Override
+                public void handleHit(int doc) {
+                    try {
+                        GeneNamingSource source = createNamingSource(searcher.doc(doc));
+                        result.put(source.getId(), source);
+                    } catch (CorruptIndexException e) {
+                        log(e);
+                    } catch (IOException e) {
+                        log(e);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            log(e);
+        }
+        return result;
+    }
+
+    protected static long[] toArray(Collection<Long> values) {
+        long[] result = new long[values.size()];
+        int i = 0;
+        for (Long value : values) {
+            result[i++] = value;
+        }
+        return result;
+    }
+
+    protected Organism createOrganism(long organismId) {
+        Document document = findDocument(idQuery(LuceneMediator.ORGANISM_ID, organismId));
+        return document == null ? null : createOrganism(document);
     }
 
     @SuppressWarnings("unchecked")
@@ -468,21 +586,8 @@ public class LuceneMediator {
     }
 
     protected Ontology createOntology(long ontologyId) {
-        final Ontology[] result = new Ontology[1];
-        search(String.format("%s:\"%d\"", LuceneMediator.ONTOLOGY_ID, ontologyId), new AbstractCollector() {
-            @Override
-            public void handleHit(int doc) {
-                try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createOntology(document);
-                } catch (CorruptIndexException e) {
-                    log(e);
-                } catch (IOException e) {
-                    log(e);
-                }
-            }
-        });
-        return result[0];
+        Document document = findDocument(idQuery(LuceneMediator.ONTOLOGY_ID, ontologyId));
+        return document == null ? null : createOntology(document);
     }
 
     @SuppressWarnings("unchecked")
@@ -509,7 +614,7 @@ public class LuceneMediator {
 
     protected Collection<OntologyCategory> createOntologyCategories(long ontologyId) {
         final Collection<OntologyCategory> result = new HashSet<OntologyCategory>();
-        search(String.format("%s:\"%d\"", LuceneMediator.ONTOLOGYCATEGORY_ONTOLOGY_ID, ontologyId), new AbstractCollector() {
+        search(idQuery(LuceneMediator.ONTOLOGYCATEGORY_ONTOLOGY_ID, ontologyId), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -531,7 +636,7 @@ public class LuceneMediator {
 
     protected OntologyCategory createOntologyCategory(long categoryId) {
         final OntologyCategory[] result = new OntologyCategory[1];
-        search(String.format("%s:\"%d\"", LuceneMediator.ONTOLOGYCATEGORY_ID, categoryId), new AbstractCollector() {
+        search(idQuery(LuceneMediator.ONTOLOGYCATEGORY_ID, categoryId), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -551,6 +656,24 @@ public class LuceneMediator {
         return result[0];
     }
     
+    protected Map<Long, OntologyCategory> createOntologyCategories(long[] categoryIds) {
+        final Map<Long, OntologyCategory> result = new HashMap<Long, OntologyCategory>();
+        searchIds(LuceneMediator.ONTOLOGYCATEGORY_ID, categoryIds, null, new AbstractCollector() {
+            @Override
+            public void handleHit(int doc) {
+                try {
+                    OntologyCategory category = createOntologyCategory(searcher.doc(doc));
+                    result.put(category.getId(), category);
+                } catch (CorruptIndexException e) {
+                    log(e);
+                } catch (IOException e) {
+                    log(e);
+                }
+            }
+        });
+        return result;
+    }
+
     protected OntologyCategory createOntologyCategory(String name) {
         final OntologyCategory[] result = new OntologyCategory[1];
         Query query = new TermQuery(new Term(ONTOLOGYCATEGORY_NAME, name));
@@ -580,7 +703,7 @@ public class LuceneMediator {
 
     protected Collection<InteractionNetworkGroup> createNetworkGroups(long organismId) {
         final Set<InteractionNetworkGroup> result = new HashSet<InteractionNetworkGroup>();
-        search(String.format("%s:\"%d\"", LuceneMediator.GROUP_ORGANISM_ID, organismId), new AbstractCollector() {
+        search(idQuery(LuceneMediator.GROUP_ORGANISM_ID, organismId), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -690,7 +813,7 @@ public class LuceneMediator {
 
     protected List<InteractionNetwork> createNetworks(Long groupId) {
         final List<InteractionNetwork> result = new ArrayList<InteractionNetwork>();
-        search(String.format("%s:\"%d\"", LuceneMediator.NETWORK_GROUP_ID, groupId), new AbstractCollector() {
+        search(idQuery(LuceneMediator.NETWORK_GROUP_ID, groupId), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -711,28 +834,35 @@ public class LuceneMediator {
     }
 
     protected InteractionNetwork createNetwork(Document document) {
-        InteractionNetwork network = new InteractionNetwork();
         long networkId = Long.parseLong(document.get(LuceneMediator.NETWORK_ID));
-        network.setId(networkId);
+        NetworkMetadata metadata = createNetworkMetadata(Long.parseLong(document.get(LuceneMediator.NETWORK_METADATA_ID)));
+        return createNetwork(document, metadata, createTags(networkId));
+    }
+
+    protected InteractionNetwork createNetwork(Document document, NetworkMetadata metadata, Collection<Tag> tags) {
+        InteractionNetwork network = new InteractionNetwork();
+        network.setId(Long.parseLong(document.get(LuceneMediator.NETWORK_ID)));
         network.setName(document.get(LuceneMediator.NETWORK_NAME));
         network.setDescription(document.get(LuceneMediator.NETWORK_DESCRIPTION));
         Set<Interaction> interactions = Collections.emptySet();
         network.setInteractions(interactions);
-        network.setMetadata(createNetworkMetadata(Long.parseLong(document.get(LuceneMediator.NETWORK_METADATA_ID))));
-        network.setTags(createTags(networkId));
+        network.setMetadata(metadata);
+        network.setTags(tags);
         network.setDefaultSelected(Boolean.parseBoolean(document.get(LuceneMediator.NETWORK_DEFAULT_SELECTED)));
         return network;
     }
 
-    private Collection<Tag> createTags(long networkId) {
-        final List<Tag> tags = new ArrayList<Tag>();
-        search(String.format("%s:\"%d\"", LuceneMediator.NETWORKTAGASSOC_NETWORK_ID, networkId), new AbstractCollector() {
+    /*
+     * networks for the given ids, keyed by id. metadata and tags for all of
+     * them are read in one pass each instead of per network.
+     */
+    protected Map<Long, InteractionNetwork> createNetworks(long[] networkIds) {
+        final List<Document> documents = new ArrayList<Document>();
+        searchIds(LuceneMediator.NETWORK_ID, networkIds, null, new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
-                    Document document = searcher.doc(doc);
-                    long tagId = Long.parseLong(document.get(LuceneMediator.NETWORKTAGASSOC_TAG_ID));
-                    tags.add(createTag(tagId));
+                    documents.add(searcher.doc(doc));
                 } catch (CorruptIndexException e) {
                     log(e);
                 } catch (IOException e) {
@@ -740,17 +870,18 @@ public class LuceneMediator {
                 }
             }
         });
-        return tags;
-    }
 
-    protected Tag createTag(long tagId) {
-        final Tag[] result = new Tag[1];
-        search(String.format("%s:\"%d\"", LuceneMediator.TAG_ID, tagId), new AbstractCollector() {
+        long[] metadataIds = new long[documents.size()];
+        for (int i = 0; i < metadataIds.length; i++) {
+            metadataIds[i] = Long.parseLong(documents.get(i).get(LuceneMediator.NETWORK_METADATA_ID));
+        }
+        final Map<Long, NetworkMetadata> metadata = new HashMap<Long, NetworkMetadata>();
+        searchIds(LuceneMediator.NETWORKMETADATA_ID, metadataIds, null, new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createTag(document);
+                    NetworkMetadata data = createNetworkMetadata(searcher.doc(doc));
+                    metadata.put(data.getId(), data);
                 } catch (CorruptIndexException e) {
                     log(e);
                 } catch (IOException e) {
@@ -758,24 +889,34 @@ public class LuceneMediator {
                 }
             }
         });
-        return result[0];
-    }
-
-    protected Tag createTag(Document document) {
-        Tag tag = new Tag();
-        tag.setId(Long.parseLong(document.get(LuceneMediator.TAG_ID)));
-        tag.setName(document.get(LuceneMediator.TAG_NAME));
-        return tag;
-    }
 
-    protected NetworkMetadata createNetworkMetadata(long metadataId) {
-        final NetworkMetadata[] result = new NetworkMetadata[1];
-        search(String.format("%s:\"%d\"", LuceneMediator.NETWORKMETADATA_ID, metadataId), new AbstractCollector() {
+        final Map<Long, List<Long>> networkTagIds = new HashMap<Long, List<Long>>();
+        final Set<Long> tagIds = new HashSet<Long>();
+        searchIds(LuceneMediator.NETWORKTAGASSOC_NETWORK_ID, networkIds, null, new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createNetworkMetadata(document);
+                    long networkId = getId(doc, LuceneMediator.NETWORKTAGASSOC_NETWORK_ID);
+                    long tagId = getId(doc, LuceneMediator.NETWORKTAGASSOC_TAG_ID);
+                    List<Long> ids = networkTagIds.get(networkId);
+                    if (ids == null) {
+                        ids = new ArrayList<Long>();
+                        networkTagIds.put(networkId, ids);
+                    }
+                    ids.add(tagId);
+                    tagIds.add(tagId);
+                } catch (IOException e) {
+                    log(e);
+                }
+            }
+        });
+        final Map<Long, Tag> tags = new HashMap<Long, Tag>();
+        searchIds(LuceneMediator.TAG_ID, toArray(tagIds), null, new AbstractCollector() {
+            @Override
+            public void handleHit(int doc) {
+                try {
+                    Tag tag = createTag(searcher.doc(doc));
+                    tags.put(tag.getId(), tag);
                 } catch (CorruptIndexException e) {
                     log(e);
                 } catch (IOException e) {
@@ -783,7 +924,53 @@ public class LuceneMediator {
                 }
             }
         });
-        return result[0];
+
+        Map<Long, InteractionNetwork> result = new HashMap<Long, InteractionNetwork>();
+        for (Document document : documents) {
+            long networkId = Long.parseLong(document.get(LuceneMediator.NETWORK_ID));
+            List<Tag> networkTags = new ArrayList<Tag>();
+            List<Long> ids = networkTagIds.get(networkId);
+            if (ids != null) {
+                for (Long tagId : ids) {
+                    networkTags.add(tags.get(tagId));
+                }
+            }
+            long metadataId = Long.parseLong(document.get(LuceneMediator.NETWORK_METADATA_ID));
+            result.put(networkId, createNetwork(document, metadata.get(metadataId), networkTags));
+        }
+        return result;
+    }
+
+    private Collection<Tag> createTags(long networkId) {
+        final List<Tag> tags = new ArrayList<Tag>();
+        search(idQuery(LuceneMediator.NETWORKTAGASSOC_NETWORK_ID, networkId), new AbstractCollector() {
+            @Override
+            public void handleHit(int doc) {
+                try {
+                    tags.add(createTag(getId(doc, LuceneMediator.NETWORKTAGASSOC_TAG_ID)));
+                } catch (IOException e) {
+                    log(e);
+                }
+            }
+        });
+        return tags;
+    }
+
+    protected Tag createTag(long tagId) {
+        Document document = findDocument(idQuery(LuceneMediator.TAG_ID, tagId));
+        return document == null ? null : createTag(document);
+    }
+
+    protected Tag createTag(Document document) {
+        Tag tag = new Tag();
+        tag.setId(Long.parseLong(document.get(LuceneMediator.TAG_ID)));
+        tag.setName(document.get(LuceneMediator.TAG_NAME));
+        return tag;
+    }
+
+    protected NetworkMetadata createNetworkMetadata(long metadataId) {
+        Document document = findDocument(idQuery(LuceneMediator.NETWORKMETADATA_ID, metadataId));
+        return document == null ? null : createNetworkMetadata(document);
     }
 
     protected NetworkMetadata createNetworkMetadata(Document document) {
@@ -811,63 +998,23 @@ public class LuceneMediator {
     }
 
     protected InteractionNetwork createNetwork(long networkId) {
-        final InteractionNetwork[] result = new InteractionNetwork[1];
-        search(String.format("%s:\"%d\"", LuceneMediator.NETWORK_ID, networkId), new AbstractCollector() {
-            @Override
-            public void handleHit(int doc) {
-                try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createNetwork(document);
-                } catch (CorruptIndexException e) {
-                    log(e);
-                } catch (IOException e) {
-                    log(e);
-                }
-            }
-        });
-        return result[0];
+        Document document = findDocument(idQuery(LuceneMediator.NETWORK_ID, networkId));
+        return document == null ? null : createNetwork(document);
     }
 
     protected InteractionNetworkGroup createNetworkGroup(long organismId, String groupName) {
-        final InteractionNetworkGroup[] result = new InteractionNetworkGroup[1];
-        search(String.format("+%s:\"%d\" +%s:\"%s\"", LuceneMediator.GROUP_ORGANISM_ID, organismId,
-                LuceneMediator.GROUP_NAME, QueryParser.escape(groupName)), new AbstractCollector() {
-            @Override
-            public void handleHit(int doc) {
-                try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createNetworkGroup(document);
-                } catch (CorruptIndexException e) {
-                    log(e);
-                } catch (IOException e) {
-                    log(e);
-                }
-            }
-        });
-        return result[0];
+        Document document = findDocument(allOf(idQuery(LuceneMediator.GROUP_ORGANISM_ID, organismId), valueQuery(LuceneMediator.GROUP_NAME, groupName)));
+        return document == null ? null : createNetworkGroup(document);
     }
 
     protected InteractionNetworkGroup createNetworkGroup(long groupId) {
-        final InteractionNetworkGroup[] result = new InteractionNetworkGroup[1];
-        search(String.format("+%s:\"%d\"", LuceneMediator.GROUP_ID, groupId), new AbstractCollector() {
-            @Override
-            public void handleHit(int doc) {
-                try {
-                    Document document = searcher.doc(doc);
-                    result[0] = createNetworkGroup(document);
-                } catch (CorruptIndexException e) {
-                    log(e);
-                } catch (IOException e) {
-                    log(e);
-                }
-            }
-        });
-        return result[0];
+        Document document = findDocument(idQuery(LuceneMediator.GROUP_ID, groupId));
+        return document == null ? null : createNetworkGroup(document);
     }
 
     protected Statistics createStatistics() {
         final Date[] date = new Date[1];
-        search(String.format("%s:%s", LuceneMediator.TYPE, LuceneMediator.STATISTICS), new AbstractCollector() {
+        search(termQuery(LuceneMediator.TYPE, LuceneMediator.STATISTICS), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -890,15 +1037,15 @@ public class LuceneMediator {
 
         Statistics statistics = new Statistics();
         statistics.setDate(date[0]);
-        statistics.setGenes(count("type:node"));
-        statistics.setNetworks(count("type:network"));
-        statistics.setOrganisms(count("type:organism"));
+        statistics.setGenes(count(termQuery(TYPE, NODE)));
+        statistics.setNetworks(count(termQuery(TYPE, NETWORK)));
+        statistics.setOrganisms(count(termQuery(TYPE, ORGANISM)));
         statistics
-                .setInteractions(sum(String.format("%s:%s", TYPE, NETWORKMETADATA), NETWORKMETADATA_INTERACTION_COUNT));
+                .setInteractions(sum(termQuery(TYPE, NETWORKMETADATA), NETWORKMETADATA_INTERACTION_COUNT));
         return statistics;
     }
 
-    private long count(String query) {
+    private long count(Query query) {
         final Long[] result = new Long[] { 0L };
         search(query, new AbstractCollector() {
             @Override
@@ -909,13 +1056,14 @@ public class LuceneMediator {
         return result[0];
     }
 
-    private long sum(String query, final String field) {
+    private long sum(Query query, final String field) {
         final Long[] result = new Long[] { 0L };
+        final FieldSelector fields = new MapFieldSelector(new String[] { field });
         search(query, new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
-                    Document document = searcher.doc(doc);
+                    Document document = searcher.doc(doc, fields);
                     String value = document.get(field);
                     if (value != null) {
                         result[0] += Long.parseLong(value);
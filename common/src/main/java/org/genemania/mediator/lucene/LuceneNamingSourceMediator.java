@@ -36,7 +36,7 @@ public class LuceneNamingSourceMediator extends LuceneMediator {
 	
 	public List<GeneNamingSource> getAllNamingSources() {
 		final List<GeneNamingSource> result = new ArrayList<GeneNamingSource>();
-		search(String.format("%s:%s", TYPE, NAMINGSOURCE), new AbstractCollector() {
+		search(termQuery(TYPE, NAMINGSOURCE), new AbstractCollector() {
 			@Override
 			public void handleHit(int doc) {
 				try {
@@ -22,6 +22,7 @@ package org.genemania.mediator.lucene;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import net.sf.cglib.proxy.Enhancer;
 import net.sf.cglib.proxy.LazyLoader;
@@ -48,7 +49,7 @@ public class LuceneNetworkMediator extends LuceneMediator implements
 
 	public List<InteractionNetwork> getAllNetworks() {
         final List<InteractionNetwork> result = new ArrayList<InteractionNetwork>();
-        search(String.format("%s:\"%s\"", LuceneMediator.TYPE, LuceneMediator.NETWORK), new AbstractCollector() {
+        search(termQuery(LuceneMediator.TYPE, LuceneMediator.NETWORK), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
@@ -72,6 +73,10 @@ public class LuceneNetworkMediator extends LuceneMediator implements
 		return createNetwork(networkId);
 	}
 
+	public Map<Long, InteractionNetwork> getNetworks(long[] networkIds) {
+		return createNetworks(networkIds);
+	}
+
 	public InteractionNetworkGroup getNetworkGroupByName(String groupName, long organismId) {
 		return createNetworkGroup(organismId, groupName);
 	}
@@ -89,15 +94,11 @@ public class LuceneNetworkMediator extends LuceneMediator implements
 	
 	public InteractionNetworkGroup getNetworkGroupForNetwork(long networkId) {
         final InteractionNetworkGroup[] result = new InteractionNetworkGroup[1];
-        search(String.format("+%s:\"%d\"", LuceneMediator.NETWORK_ID, networkId), new AbstractCollector() {
+        search(idQuery(LuceneMediator.NETWORK_ID, networkId), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
-                    Document document = searcher.doc(doc);
-                    Long groupId = Long.parseLong(document.get(LuceneMediator.NETWORK_GROUP_ID));
-                    result[0] = createNetworkGroup(groupId);
-                } catch (CorruptIndexException e) {
-                    log(e);
+                    result[0] = createNetworkGroup(getId(doc, LuceneMediator.NETWORK_GROUP_ID));
                 } catch (IOException e) {
                     log(e);
                 }
@@ -108,14 +109,11 @@ public class LuceneNetworkMediator extends LuceneMediator implements
 
 	public boolean isValidNetwork(long organismId, long networkId) {
         final Long[] groupId = new Long[1];
-        search(String.format("+%s:\"%d\"", LuceneMediator.NETWORK_ID, networkId), new AbstractCollector() {
+        search(idQuery(LuceneMediator.NETWORK_ID, networkId), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
-                    Document document = searcher.doc(doc);
-                    groupId[0] = Long.parseLong(document.get(LuceneMediator.NETWORK_GROUP_ID));
-                } catch (CorruptIndexException e) {
-                    log(e);
+                    groupId[0] = getId(doc, LuceneMediator.NETWORK_GROUP_ID);
                 } catch (IOException e) {
                     log(e);
                 }
@@ -126,14 +124,11 @@ public class LuceneNetworkMediator extends LuceneMediator implements
         }
         
         final Long[] organism = new Long[1];
-        search(String.format("+%s:\"%d\"", LuceneMediator.GROUP_ID, groupId[0]), new AbstractCollector() {
+        search(idQuery(LuceneMediator.GROUP_ID, groupId[0]), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
-                    Document document = searcher.doc(doc);
-                    organism[0] = Long.parseLong(document.get(LuceneMediator.GROUP_ORGANISM_ID));
-                } catch (CorruptIndexException e) {
-                    log(e);
+                    organism[0] = getId(doc, LuceneMediator.GROUP_ORGANISM_ID);
                 } catch (IOException e) {
                     log(e);
                 }
@@ -19,6 +19,8 @@
 
 package org.genemania.mediator.lucene;
 
+import java.util.Map;
+
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.search.Searcher;
 import org.genemania.domain.Node;
@@ -33,4 +35,8 @@ public class LuceneNodeMediator extends LuceneMediator implements NodeMediator {
 	public Node getNode(long nodeId, long organismId) {
 		return createNode(nodeId, organismId);
 	}
+
+	public Map<Long, Node> getNodes(long[] nodeIds, long organismId) {
+		return createNodes(organismId, nodeIds);
+	}
 }
@@ -20,6 +20,7 @@
 package org.genemania.mediator.lucene;
 
 import java.util.List;
+import java.util.Map;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.search.Searcher;
@@ -41,6 +42,10 @@ public class LuceneOntologyMediator extends LuceneMediator implements OntologyMe
 	public OntologyCategory getCategory(long categoryId) throws DataStoreException {
 		return createOntologyCategory(categoryId);
 	}
+
+	public Map<Long, OntologyCategory> getCategories(long[] categoryIds) {
+		return createOntologyCategories(categoryIds);
+	}
 	
 	public List hqlSearch(String queryString) {
 		return null;
@@ -47,7 +47,7 @@ public class LuceneOrganismMediator extends LuceneMediator implements OrganismMe
 
 	public NodeCursor createNodeCursor(long organismId) {
 		final List<ObjectProvider<Document>> result = new ArrayList<ObjectProvider<Document>>();
-		search(String.format("%s:%d", NODE_ORGANISM_ID, organismId), new AbstractCollector() {
+		search(idQuery(NODE_ORGANISM_ID, organismId), new AbstractCollector() {
 			@SuppressWarnings("unchecked")
 			@Override
 			public void handleHit(final int doc) {
@@ -67,7 +67,7 @@ public class LuceneOrganismMediator extends LuceneMediator implements OrganismMe
 
 	private List<Organism> createOrganisms() {
 		final List<Organism> result = new ArrayList<Organism>();
-		search(String.format("%s:%s", LuceneMediator.TYPE, LuceneMediator.ORGANISM), new AbstractCollector() {
+		search(termQuery(LuceneMediator.TYPE, LuceneMediator.ORGANISM), new AbstractCollector() {
 			@Override
 			public void handleHit(int doc) {
 				try {
@@ -86,7 +86,7 @@ public class LuceneOrganismMediator extends LuceneMediator implements OrganismMe
 	public List<Gene> getDefaultGenes(long organismId) {
 		final Organism organism = createOrganism(organismId);
 		final List<Gene> result = new ArrayList<Gene>();
-		search(String.format("+%s:%s +%s:%s", LuceneMediator.GENE_ORGANISM_ID, String.valueOf(organismId), LuceneMediator.GENE_DEFAULT_SELECTED, String.valueOf(true)), new AbstractCollector() {
+		search(allOf(idQuery(LuceneMediator.GENE_ORGANISM_ID, organismId), termQuery(LuceneMediator.GENE_DEFAULT_SELECTED, String.valueOf(true))), new AbstractCollector() {
 			@Override
 			public void handleHit(int doc) {
 				try {
@@ -112,7 +112,7 @@ public class LuceneOrganismMediator extends LuceneMediator implements OrganismMe
 
 	public List<InteractionNetwork> getDefaultNetworks(long organismId) throws DataStoreException {
 		final Set<Long> groupIds = new HashSet<Long>();
-		search(String.format("%s:%s", LuceneMediator.GROUP_ORGANISM_ID, String.valueOf(organismId)), new AbstractCollector() {
+		search(idQuery(LuceneMediator.GROUP_ORGANISM_ID, organismId), new AbstractCollector() {
 			@Override
 			public void handleHit(int doc) {
 				try {
@@ -127,7 +127,7 @@ public class LuceneOrganismMediator extends LuceneMediator implements OrganismMe
 		});
 
 		final List<InteractionNetwork> result = new ArrayList<InteractionNetwork>();
-		search(String.format("%s:%s", LuceneMediator.NETWORK_DEFAULT_SELECTED, String.valueOf(true)), new AbstractCollector() {
+		search(termQuery(LuceneMediator.NETWORK_DEFAULT_SELECTED, String.valueOf(true)), new AbstractCollector() {
 			@Override
 			public void handleHit(int doc) {
 				try {
@@ -148,7 +148,7 @@ public class LuceneOrganismMediator extends LuceneMediator implements OrganismMe
 	
 	public Organism getOrganismForGroup(long groupId) throws DataStoreException {
         final Organism[] result = new Organism[1];
-        search(String.format("+%s:\"%d\"", LuceneMediator.GROUP_ID, groupId), new AbstractCollector() {
+        search(idQuery(LuceneMediator.GROUP_ID, groupId), new AbstractCollector() {
             @Override
             public void handleHit(int doc) {
                 try {
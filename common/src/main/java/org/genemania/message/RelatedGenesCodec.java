@@ -0,0 +1,504 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * RelatedGenesCodec: compact binary wire format for Related Genes messages
+ *
+ * Messages start with a magic number, a format version and the kind of
+ * message, followed by the fields of the message. Integers are written
+ * as variable length zig-zag encoded values, node ids as deltas from the
+ * previous id so sorted or clustered ids take one or two bytes each, and
+ * the result nodes as parallel id and score arrays. Interaction weights
+ * come from the engine's float network matrices and are written as
+ * floats, everything else keeps full precision. Ontology categories
+ * shared by several nodes are written once and referenced by index.
+ *
+ * Decoders accept any version up to their own, so the version must be
+ * bumped whenever the layout changes.
+ */
+package org.genemania.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.genemania.dto.AttributeDto;
+import org.genemania.dto.InteractionDto;
+import org.genemania.dto.NetworkDto;
+import org.genemania.dto.NodeDto;
+import org.genemania.dto.OntologyCategoryDto;
+import org.genemania.exception.ApplicationException;
+
+public class RelatedGenesCodec {
+
+	// __[static]______________________________________________________________
+	public static final int MAGIC = 0x474d5247; // "GMRG"
+	public static final int VERSION = 1;
+
+	private static final int KIND_REQUEST = 1;
+	private static final int KIND_RESPONSE = 2;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// __[constructors]________________________________________________________
+	private RelatedGenesCodec() {
+	}
+
+	// __[public helpers]______________________________________________________
+	public static byte[] encode(RelatedGenesRequestMessage msg) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			writeHeader(out, KIND_REQUEST);
+			writeBase(out, msg);
+			writeVarInt(out, msg.getResultSize());
+			writeString(out, msg.getUserDefinedNetworkNamespace());
+			writeVarInt(out, msg.getAttributesLimit());
+			writeNetworks(out, msg.getNetworks());
+			out.flush();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException("failed to encode related genes request", e);
+		}
+	}
+
+	public static byte[] encode(RelatedGenesResponseMessage msg) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			writeHeader(out, KIND_RESPONSE);
+			writeBase(out, msg);
+			writeNodes(out, msg.getNodes());
+			writeNetworks(out, msg.getNetworks());
+			writeAnnotations(out, msg.getAnnotations());
+			writeAttributes(out, msg.getAttributes());
+			out.flush();
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException("failed to encode related genes response", e);
+		}
+	}
+
+	public static RelatedGenesRequestMessage decodeRequest(byte[] data) throws ApplicationException {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			readHeader(in, KIND_REQUEST);
+			RelatedGenesRequestMessage ret = new RelatedGenesRequestMessage();
+			readBase(in, ret);
+			ret.setResultSize(readVarInt(in));
+			ret.setUserDefinedNetworkNamespace(readString(in));
+			ret.setAttributesLimit(readVarInt(in));
+			ret.setNetworks(readNetworks(in, null));
+			return ret;
+		} catch (EOFException e) {
+			throw new ApplicationException("truncated related genes request", e);
+		} catch (IOException e) {
+			throw new ApplicationException("failed to decode related genes request", e);
+		}
+	}
+
+	public static RelatedGenesResponseMessage decodeResponse(byte[] data) throws ApplicationException {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			readHeader(in, KIND_RESPONSE);
+			RelatedGenesResponseMessage ret = new RelatedGenesResponseMessage();
+			readBase(in, ret);
+			List<NodeDto> nodes = readNodes(in);
+			ret.setNodes(nodes);
+			ret.setNetworks(readNetworks(in, nodes));
+			ret.setAnnotations(readAnnotations(in));
+			ret.setAttributes(readAttributes(in));
+			return ret;
+		} catch (EOFException e) {
+			throw new ApplicationException("truncated related genes response", e);
+		} catch (IOException e) {
+			throw new ApplicationException("failed to decode related genes response", e);
+		}
+	}
+
+	// __[private helpers]_____________________________________________________
+	private static void writeHeader(DataOutputStream out, int kind) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(kind);
+	}
+
+	private static void readHeader(DataInputStream in, int kind) throws IOException, ApplicationException {
+		if (in.readInt() != MAGIC) {
+			throw new ApplicationException("not a binary related genes message");
+		}
+		int version = in.readUnsignedByte();
+		if (version > VERSION) {
+			throw new ApplicationException("unsupported related genes message version: " + version);
+		}
+		if (in.readUnsignedByte() != kind) {
+			throw new ApplicationException("unexpected related genes message kind");
+		}
+	}
+
+	private static void writeBase(DataOutputStream out, RelatedGenesMessageBase msg) throws IOException {
+		writeVarInt(out, msg.getErrorCode());
+		writeString(out, msg.getErrorMessage());
+		writeVarLong(out, msg.getOrganismId());
+		writeVarLong(out, msg.getOntologyId());
+		writeString(out, msg.getCombiningMethod());
+		writeIds(out, msg.getPositiveNodes());
+		writeIds(out, msg.getAttributeGroups());
+	}
+
+	private static void readBase(DataInputStream in, RelatedGenesMessageBase msg) throws IOException {
+		msg.setErrorCode(readVarInt(in));
+		msg.setErrorMessage(readString(in));
+		msg.setOrganismId(readVarLong(in));
+		msg.setOntologyId(readVarLong(in));
+		msg.setCombiningMethod(readString(in));
+		msg.setPositiveNodes(readIds(in));
+		msg.setAttributeGroups(readIds(in));
+	}
+
+	private static void writeIds(DataOutputStream out, Collection<Long> ids) throws IOException {
+		if (ids == null) {
+			writeCount(out, 0);
+			return;
+		}
+		writeCount(out, ids.size());
+		long previous = 0;
+		for (long id : ids) {
+			writeVarLong(out, id - previous);
+			previous = id;
+		}
+	}
+
+	private static Collection<Long> readIds(DataInputStream in) throws IOException {
+		int count = readCount(in);
+		Collection<Long> ret = new ArrayList<Long>(count);
+		long previous = 0;
+		for (int i = 0; i < count; i++) {
+			previous += readVarLong(in);
+			ret.add(previous);
+		}
+		return ret;
+	}
+
+	/*
+	 * ids then scores, so the arrays are written back to back
+	 */
+	private static void writeNodes(DataOutputStream out, List<NodeDto> nodes) throws IOException {
+		int count = nodes == null ? 0 : nodes.size();
+		writeCount(out, count);
+		if (count == 0) {
+			return;
+		}
+		long previous = 0;
+		for (NodeDto node : nodes) {
+			writeVarLong(out, node.getId() - previous);
+			previous = node.getId();
+		}
+		for (NodeDto node : nodes) {
+			out.writeDouble(node.getScore());
+		}
+	}
+
+	private static List<NodeDto> readNodes(DataInputStream in) throws IOException {
+		int count = readCount(in);
+		long[] ids = new long[count];
+		long previous = 0;
+		for (int i = 0; i < count; i++) {
+			previous += readVarLong(in);
+			ids[i] = previous;
+		}
+		List<NodeDto> ret = new ArrayList<NodeDto>(count);
+		for (int i = 0; i < count; i++) {
+			ret.add(new NodeDto(ids[i], in.readDouble()));
+		}
+		return ret;
+	}
+
+	/*
+	 * each interaction is a pair of deltas, the first node from the first
+	 * node of the previous interaction and the second from the first,
+	 * followed by all the weights of the network
+	 */
+	private static void writeNetworks(DataOutputStream out, Collection<NetworkDto> networks) throws IOException {
+		int count = networks == null ? 0 : networks.size();
+		writeCount(out, count);
+		if (count == 0) {
+			return;
+		}
+		for (NetworkDto network : networks) {
+			writeVarLong(out, network.getId());
+			out.writeDouble(network.getWeight());
+			writeString(out, network.getType());
+
+			Collection<InteractionDto> interactions = network.getInteractions();
+			int numInteractions = interactions == null ? 0 : interactions.size();
+			writeCount(out, numInteractions);
+			if (numInteractions == 0) {
+				continue;
+			}
+			long previous = 0;
+			for (InteractionDto interaction : interactions) {
+				long from = interaction.getNodeVO1().getId();
+				writeVarLong(out, from - previous);
+				writeVarLong(out, interaction.getNodeVO2().getId() - from);
+				previous = from;
+			}
+			for (InteractionDto interaction : interactions) {
+				out.writeFloat((float) interaction.getWeight());
+			}
+		}
+	}
+
+	/*
+	 * interactions refer to the given result nodes where present, like the
+	 * shared references in the xml format
+	 */
+	private static Collection<NetworkDto> readNetworks(DataInputStream in, List<NodeDto> nodes) throws IOException {
+		Map<Long, NodeDto> nodesById = new HashMap<Long, NodeDto>();
+		if (nodes != null) {
+			for (NodeDto node : nodes) {
+				nodesById.put(node.getId(), node);
+			}
+		}
+
+		int count = readCount(in);
+		Collection<NetworkDto> ret = new ArrayList<NetworkDto>(count);
+		for (int i = 0; i < count; i++) {
+			NetworkDto network = new NetworkDto(readVarLong(in), in.readDouble());
+			network.setType(readString(in));
+
+			int numInteractions = readCount(in);
+			long[] from = new long[numInteractions];
+			long[] to = new long[numInteractions];
+			long previous = 0;
+			for (int j = 0; j < numInteractions; j++) {
+				from[j] = previous + readVarLong(in);
+				to[j] = from[j] + readVarLong(in);
+				previous = from[j];
+			}
+			Collection<InteractionDto> interactions = new ArrayList<InteractionDto>(numInteractions);
+			for (int j = 0; j < numInteractions; j++) {
+				interactions.add(new InteractionDto(node(nodesById, from[j]), node(nodesById, to[j]), in.readFloat()));
+			}
+			network.setInteractions(interactions);
+			ret.add(network);
+		}
+		return ret;
+	}
+
+	private static NodeDto node(Map<Long, NodeDto> nodesById, long id) {
+		NodeDto ret = nodesById.get(id);
+		if (ret == null) {
+			ret = new NodeDto(id);
+			nodesById.put(id, ret);
+		}
+		return ret;
+	}
+
+	private static void writeAnnotations(DataOutputStream out, Map<Long, Collection<OntologyCategoryDto>> annotations)
+			throws IOException {
+		if (annotations == null) {
+			writeCount(out, 0);
+			writeCount(out, 0);
+			return;
+		}
+
+		Map<Long, Integer> indices = new LinkedHashMap<Long, Integer>();
+		List<OntologyCategoryDto> categories = new ArrayList<OntologyCategoryDto>();
+		for (Collection<OntologyCategoryDto> nodeCategories : annotations.values()) {
+			for (OntologyCategoryDto category : nodeCategories) {
+				if (!indices.containsKey(category.getId())) {
+					indices.put(category.getId(), categories.size());
+					categories.add(category);
+				}
+			}
+		}
+
+		writeCount(out, categories.size());
+		for (OntologyCategoryDto category : categories) {
+			writeVarLong(out, category.getId());
+			out.writeDouble(category.getpValue());
+			out.writeDouble(category.getqValue());
+			writeVarInt(out, category.getNumAnnotatedInSample());
+			writeVarInt(out, category.getNumAnnotatedInTotal());
+		}
+
+		writeCount(out, annotations.size());
+		for (Map.Entry<Long, Collection<OntologyCategoryDto>> entry : annotations.entrySet()) {
+			writeVarLong(out, entry.getKey());
+			writeCount(out, entry.getValue().size());
+			for (OntologyCategoryDto category : entry.getValue()) {
+				writeCount(out, indices.get(category.getId()));
+			}
+		}
+	}
+
+	private static Map<Long, Collection<OntologyCategoryDto>> readAnnotations(DataInputStream in)
+			throws IOException {
+		int numCategories = readCount(in);
+		OntologyCategoryDto[] categories = new OntologyCategoryDto[numCategories];
+		for (int i = 0; i < numCategories; i++) {
+			OntologyCategoryDto category = new OntologyCategoryDto();
+			category.setId(readVarLong(in));
+			category.setpValue(in.readDouble());
+			category.setqValue(in.readDouble());
+			category.setNumAnnotatedInSample(readVarInt(in));
+			category.setNumAnnotatedInTotal(readVarInt(in));
+			categories[i] = category;
+		}
+
+		int count = readCount(in);
+		Map<Long, Collection<OntologyCategoryDto>> ret = new Hashtable<Long, Collection<OntologyCategoryDto>>();
+		for (int i = 0; i < count; i++) {
+			long nodeId = readVarLong(in);
+			int numNodeCategories = readCount(in);
+			Collection<OntologyCategoryDto> nodeCategories = new ArrayList<OntologyCategoryDto>(numNodeCategories);
+			for (int j = 0; j < numNodeCategories; j++) {
+				int index = readCount(in);
+				if (index >= numCategories) {
+					throw new IOException("ontology category index out of range: " + index);
+				}
+				nodeCategories.add(categories[index]);
+			}
+			ret.put(nodeId, nodeCategories);
+		}
+		return ret;
+	}
+
+	private static void writeAttributes(DataOutputStream out, Map<Long, Collection<AttributeDto>> attributes)
+			throws IOException {
+		int count = attributes == null ? 0 : attributes.size();
+		writeCount(out, count);
+		if (count == 0) {
+			return;
+		}
+		for (Map.Entry<Long, Collection<AttributeDto>> entry : attributes.entrySet()) {
+			writeVarLong(out, entry.getKey());
+			writeCount(out, entry.getValue().size());
+			for (AttributeDto attribute : entry.getValue()) {
+				writeVarLong(out, attribute.getId());
+				writeVarLong(out, attribute.getGroupId());
+				out.writeDouble(attribute.getWeight());
+			}
+		}
+	}
+
+	private static Map<Long, Collection<AttributeDto>> readAttributes(DataInputStream in) throws IOException {
+		int count = readCount(in);
+		Map<Long, Collection<AttributeDto>> ret = new Hashtable<Long, Collection<AttributeDto>>();
+		for (int i = 0; i < count; i++) {
+			long nodeId = readVarLong(in);
+			int numAttributes = readCount(in);
+			Collection<AttributeDto> nodeAttributes = new ArrayList<AttributeDto>(numAttributes);
+			for (int j = 0; j < numAttributes; j++) {
+				AttributeDto attribute = new AttributeDto();
+				attribute.setId(readVarLong(in));
+				attribute.setGroupId(readVarLong(in));
+				attribute.setWeight(in.readDouble());
+				nodeAttributes.add(attribute);
+			}
+			ret.put(nodeId, nodeAttributes);
+		}
+		return ret;
+	}
+
+	/*
+	 * null strings are written as length 0, empty strings as length 1
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			writeCount(out, 0);
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF8);
+		writeCount(out, bytes.length + 1);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = readCount(in);
+		if (length == 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length - 1];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void writeCount(DataOutputStream out, int count) throws IOException {
+		writeUnsigned(out, count);
+	}
+
+	private static int readCount(DataInputStream in) throws IOException {
+		long count = readUnsigned(in);
+		if (count > Integer.MAX_VALUE) {
+			throw new IOException("invalid count: " + count);
+		}
+		return (int) count;
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarLong(out, value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		return (int) readVarLong(in);
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		writeUnsigned(out, (value << 1) ^ (value >> 63));
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = readUnsigned(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeUnsigned(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.writeByte((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readUnsigned(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("malformed variable length value");
+	}
+
+}
@@ -24,6 +24,7 @@
  */
 package org.genemania.message;
 
+import org.genemania.exception.ApplicationException;
 
 public class RelatedGenesRequestMessage extends RelatedGenesMessageBase {
 
@@ -71,6 +72,14 @@ public class RelatedGenesRequestMessage extends RelatedGenesMessageBase {
 		return (RelatedGenesRequestMessage)XS.fromXML(xml);
 	}
 
+	public byte[] toBytes() {
+		return RelatedGenesCodec.encode(this);
+	}
+
+	public static RelatedGenesRequestMessage fromBytes(byte[] data) throws ApplicationException {
+		return RelatedGenesCodec.decodeRequest(data);
+	}
+
 	public int getAttributesLimit() {
 		return attributesLimit;
 	}
@@ -33,6 +33,7 @@ import java.util.Map;
 import org.genemania.dto.AttributeDto;
 import org.genemania.dto.NodeDto;
 import org.genemania.dto.OntologyCategoryDto;
+import org.genemania.exception.ApplicationException;
 
 public class RelatedGenesResponseMessage extends RelatedGenesMessageBase {
 
@@ -78,4 +79,12 @@ public class RelatedGenesResponseMessage extends RelatedGenesMessageBase {
 		return (RelatedGenesResponseMessage)XS.fromXML(xml);
 	}
 
+	public byte[] toBytes() {
+		return RelatedGenesCodec.encode(this);
+	}
+
+	public static RelatedGenesResponseMessage fromBytes(byte[] data) throws ApplicationException {
+		return RelatedGenesCodec.decodeResponse(data);
+	}
+
 }
\ No newline at end of file
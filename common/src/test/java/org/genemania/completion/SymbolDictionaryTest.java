@@ -0,0 +1,89 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.completion;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SymbolDictionaryTest {
+	@Test
+	public void testCaseInsensitiveLookup() {
+		SymbolDictionary dictionary = new SymbolDictionary.Builder()
+			.add("BRCA1", 10)
+			.add("RNF53", 10)
+			.add("tp53", 20)
+			.build();
+
+		assertEquals(3, dictionary.size());
+		assertEquals(10, dictionary.getNodeId("brca1"));
+		assertEquals(10, dictionary.getNodeId("Rnf53"));
+		assertEquals(20, dictionary.getNodeId("TP53"));
+		assertEquals("BRCA1", dictionary.getCanonicalSymbol("Brca1"));
+		assertTrue(dictionary.contains("tP53"));
+		assertFalse(dictionary.contains("brca"));
+		assertFalse(dictionary.contains(""));
+		assertEquals(SymbolDictionary.NOT_FOUND, dictionary.getNodeId("missing"));
+		assertNull(dictionary.getCanonicalSymbol("missing"));
+	}
+
+	@Test
+	public void testFirstAddedWins() {
+		SymbolDictionary dictionary = new SymbolDictionary.Builder()
+			.add("Abc", 1)
+			.add("ABC", 2)
+			.build();
+
+		assertEquals(1, dictionary.size());
+		assertEquals(1, dictionary.getNodeId("abc"));
+		assertEquals("Abc", dictionary.getCanonicalSymbol("ABC"));
+	}
+
+	@Test
+	public void testResolve() {
+		SymbolDictionary.Builder builder = new SymbolDictionary.Builder();
+		List<String> symbols = new ArrayList<String>();
+		for (int i = 0; i < 50000; i++) {
+			builder.add("GENE" + i, i);
+			if (i % 25 == 0) {
+				symbols.add("gene" + i);
+				symbols.add("nothing" + i);
+			}
+		}
+		SymbolDictionary dictionary = builder.build();
+		assertEquals(50000, dictionary.size());
+
+		long[] nodeIds = dictionary.resolve(symbols);
+		assertEquals(symbols.size(), nodeIds.length);
+		for (int i = 0; i < nodeIds.length; i += 2) {
+			assertEquals(i / 2 * 25, nodeIds[i]);
+			assertEquals(SymbolDictionary.NOT_FOUND, nodeIds[i + 1]);
+		}
+
+		assertEquals(2, dictionary.resolve(Arrays.asList("gene0", "GENE49999")).length);
+	}
+}
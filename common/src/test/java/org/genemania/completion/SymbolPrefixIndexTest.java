@@ -0,0 +1,113 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.completion;
+
+import static junit.framework.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SymbolPrefixIndexTest {
+	@Test
+	public void testRankedCompletion() {
+		SymbolPrefixIndex index = new SymbolPrefixIndex.Builder()
+			.add("BRCA1", 10, (byte) 1)
+			.add("brca2", 11, (byte) 5)
+			.add("BRAF", 12, (byte) 3)
+			.add("BRCA1P1", 13, (byte) 5)
+			.add("TP53", 20, (byte) 9)
+			.build();
+
+		assertEquals(5, index.size());
+		assertEquals(4, index.count("br"));
+		assertEquals(3, index.count("BRC"));
+		assertEquals(0, index.count("x"));
+
+		int[] entries = index.complete("Br", 3);
+		assertEquals(3, entries.length);
+		assertEquals("BRCA1P1", index.getSymbol(entries[0]));
+		assertEquals("brca2", index.getSymbol(entries[1]));
+		assertEquals("BRAF", index.getSymbol(entries[2]));
+		assertEquals(12, index.getNodeId(entries[2]));
+		assertEquals(3, index.getRank(entries[2]));
+
+		entries = index.complete("br", 10);
+		assertEquals(4, entries.length);
+		assertEquals("BRCA1P1", index.getSymbol(entries[0]));
+		assertEquals("brca2", index.getSymbol(entries[1]));
+		assertEquals("BRAF", index.getSymbol(entries[2]));
+		assertEquals("BRCA1", index.getSymbol(entries[3]));
+
+		entries = index.complete("brca1", 10);
+		assertEquals(2, entries.length);
+		assertEquals("BRCA1P1", index.getSymbol(entries[0]));
+		assertEquals("BRCA1", index.getSymbol(entries[1]));
+
+		assertEquals(0, index.complete("tp530", 10).length);
+		assertEquals(0, index.complete("a", 10).length);
+		assertEquals(0, index.complete("z", 10).length);
+	}
+
+	@Test
+	public void testDuplicateKeepsBestRank() {
+		SymbolPrefixIndex index = new SymbolPrefixIndex.Builder()
+			.add("Abc", 1, (byte) 1)
+			.add("ABC", 2, (byte) 4)
+			.add("abc", 3, (byte) 4)
+			.add("", 4, (byte) 9)
+			.build();
+
+		assertEquals(1, index.size());
+		int[] entries = index.complete("a", 10);
+		assertEquals(1, entries.length);
+		assertEquals("ABC", index.getSymbol(entries[0]));
+		assertEquals(2, index.getNodeId(entries[0]));
+	}
+
+	@Test
+	public void testNoLimit() {
+		SymbolPrefixIndex index = new SymbolPrefixIndex.Builder()
+			.add("BRCA1", 10, (byte) 1)
+			.add("BRCA2", 11, (byte) 5)
+			.build();
+
+		assertEquals(0, index.complete("br", 0).length);
+		assertEquals(0, index.complete("br", -1).length);
+		assertEquals(0, index.complete("x", 0).length);
+	}
+
+	@Test
+	public void testShortPrefix() {
+		SymbolPrefixIndex.Builder builder = new SymbolPrefixIndex.Builder();
+		for (int i = 0; i < 50000; i++) {
+			builder.add("GENE" + i, i, (byte) (i % 7));
+		}
+		SymbolPrefixIndex index = builder.build();
+		assertEquals(50000, index.count("g"));
+
+		int[] entries = index.complete("g", 15);
+		assertEquals(15, entries.length);
+		for (int i = 0; i < entries.length; i++) {
+			assertEquals(6, index.getRank(entries[i]));
+			if (i > 0) {
+				assertEquals(-1, Integer.signum(index.getSymbol(entries[i - 1]).compareTo(index.getSymbol(entries[i]))));
+			}
+		}
+	}
+}
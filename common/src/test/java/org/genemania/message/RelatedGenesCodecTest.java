@@ -0,0 +1,299 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+/**
+ * RelatedGenesCodecTest: JUnit test class for RelatedGenesCodec
+ */
+package org.genemania.message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+import org.genemania.AbstractTest;
+import org.genemania.dto.AttributeDto;
+import org.genemania.dto.InteractionDto;
+import org.genemania.dto.NetworkDto;
+import org.genemania.dto.NodeDto;
+import org.genemania.dto.OntologyCategoryDto;
+import org.genemania.exception.ApplicationException;
+import org.junit.Test;
+
+public class RelatedGenesCodecTest extends AbstractTest {
+
+	// __[static]______________________________________________________________
+	private static Logger LOG = Logger.getLogger(RelatedGenesCodecTest.class);
+
+	// __[constructors]________________________________________________________
+	public RelatedGenesCodecTest() {
+		super();
+	}
+
+	// __[test cases]__________________________________________________________
+	@Test
+	public void testRequestRoundTrip() throws Exception {
+		RelatedGenesRequestMessage msg = new RelatedGenesRequestMessage();
+		msg.setOrganismId(4);
+		msg.setOntologyId(-1);
+		msg.setCombiningMethod("automatic");
+		msg.setResultSize(100);
+		msg.setAttributesLimit(10);
+		msg.setUserDefinedNetworkNamespace("user-ns \u00e9");
+		msg.setPositiveNodes(Arrays.asList(300L, 5L, Long.MAX_VALUE, -7L));
+		msg.setAttributeGroups(Arrays.asList(2L, 1L));
+		Collection<NetworkDto> networks = new ArrayList<NetworkDto>();
+		networks.add(network(12, 0, "Co-expression"));
+		networks.add(network(-3, 0, null));
+		msg.setNetworks(networks);
+
+		RelatedGenesRequestMessage actual = RelatedGenesRequestMessage.fromBytes(msg.toBytes());
+		assertEquals("organism", 4, actual.getOrganismId());
+		assertEquals("ontology", -1, actual.getOntologyId());
+		assertEquals("combining method", "automatic", actual.getCombiningMethod());
+		assertEquals("result size", 100, actual.getResultSize());
+		assertEquals("attributes limit", 10, actual.getAttributesLimit());
+		assertEquals("namespace", "user-ns \u00e9", actual.getUserDefinedNetworkNamespace());
+		assertEquals("positive nodes", msg.getPositiveNodes(), actual.getPositiveNodes());
+		assertEquals("attribute groups", msg.getAttributeGroups(), actual.getAttributeGroups());
+		assertEquals("networks", 2, actual.getNetworks().size());
+		Iterator<NetworkDto> iterator = actual.getNetworks().iterator();
+		NetworkDto first = iterator.next();
+		assertEquals("first id", 12, first.getId());
+		assertEquals("first type", "Co-expression", first.getType());
+		NetworkDto second = iterator.next();
+		assertEquals("second id", -3, second.getId());
+		assertNull("second type", second.getType());
+		assertEquals("no interactions", 0, second.getInteractions().size());
+	}
+
+	@Test
+	public void testResponseRoundTrip() throws Exception {
+		RelatedGenesResponseMessage msg = makeResponse(new Random(17), 20, 5, 30);
+
+		RelatedGenesResponseMessage actual = RelatedGenesResponseMessage.fromBytes(msg.toBytes());
+		assertEquals("error code", 0, actual.getErrorCode());
+		assertEquals("error message", "", actual.getErrorMessage());
+		assertEquals("organism", msg.getOrganismId(), actual.getOrganismId());
+		assertEquals("combining method", msg.getCombiningMethod(), actual.getCombiningMethod());
+
+		assertEquals("nodes", msg.getNodes().size(), actual.getNodes().size());
+		for (int i = 0; i < msg.getNodes().size(); i++) {
+			assertEquals("node id", msg.getNodes().get(i).getId(), actual.getNodes().get(i).getId());
+			assertEquals("node score", msg.getNodes().get(i).getScore(), actual.getNodes().get(i).getScore(), 0d);
+		}
+
+		assertEquals("networks", msg.getNetworks().size(), actual.getNetworks().size());
+		Iterator<NetworkDto> actualNetworks = actual.getNetworks().iterator();
+		for (NetworkDto expected : msg.getNetworks()) {
+			NetworkDto network = actualNetworks.next();
+			assertEquals("network id", expected.getId(), network.getId());
+			assertEquals("network weight", expected.getWeight(), network.getWeight(), 0d);
+			assertEquals("network type", expected.getType(), network.getType());
+			assertEquals("interactions", expected.getInteractions().size(), network.getInteractions().size());
+			Iterator<InteractionDto> actualInteractions = network.getInteractions().iterator();
+			for (InteractionDto interaction : expected.getInteractions()) {
+				InteractionDto actualInteraction = actualInteractions.next();
+				assertEquals("from", interaction.getNodeVO1().getId(), actualInteraction.getNodeVO1().getId());
+				assertEquals("to", interaction.getNodeVO2().getId(), actualInteraction.getNodeVO2().getId());
+				assertEquals("weight", interaction.getWeight(), actualInteraction.getWeight(), 0d);
+			}
+		}
+
+		assertEquals("annotated nodes", msg.getAnnotations().keySet(), actual.getAnnotations().keySet());
+		for (Map.Entry<Long, Collection<OntologyCategoryDto>> entry : msg.getAnnotations().entrySet()) {
+			Collection<OntologyCategoryDto> categories = actual.getAnnotations().get(entry.getKey());
+			assertEquals("categories", entry.getValue().size(), categories.size());
+			Iterator<OntologyCategoryDto> actualCategories = categories.iterator();
+			for (OntologyCategoryDto category : entry.getValue()) {
+				OntologyCategoryDto actualCategory = actualCategories.next();
+				assertEquals("category id", category.getId(), actualCategory.getId());
+				assertEquals("p-value", category.getpValue(), actualCategory.getpValue(), 0d);
+				assertEquals("q-value", category.getqValue(), actualCategory.getqValue(), 0d);
+				assertEquals("sample", category.getNumAnnotatedInSample(), actualCategory.getNumAnnotatedInSample());
+				assertEquals("total", category.getNumAnnotatedInTotal(), actualCategory.getNumAnnotatedInTotal());
+			}
+		}
+
+		assertEquals("attribute nodes", msg.getAttributes().keySet(), actual.getAttributes().keySet());
+		for (Map.Entry<Long, Collection<AttributeDto>> entry : msg.getAttributes().entrySet()) {
+			Collection<AttributeDto> attributes = actual.getAttributes().get(entry.getKey());
+			assertEquals("attributes", entry.getValue().size(), attributes.size());
+			Iterator<AttributeDto> actualAttributes = attributes.iterator();
+			for (AttributeDto attribute : entry.getValue()) {
+				AttributeDto actualAttribute = actualAttributes.next();
+				assertEquals("attribute id", attribute.getId(), actualAttribute.getId());
+				assertEquals("attribute group", attribute.getGroupId(), actualAttribute.getGroupId());
+				assertEquals("attribute weight", attribute.getWeight(), actualAttribute.getWeight(), 0d);
+			}
+		}
+	}
+
+	@Test
+	public void testInteractionsShareResultNodes() throws Exception {
+		RelatedGenesResponseMessage msg = makeResponse(new Random(3), 10, 2, 10);
+
+		RelatedGenesResponseMessage actual = RelatedGenesResponseMessage.fromBytes(msg.toBytes());
+		NodeDto node = actual.getNetworks().iterator().next().getInteractions().iterator().next().getNodeVO1();
+		boolean found = false;
+		for (NodeDto resultNode : actual.getNodes()) {
+			found |= resultNode == node;
+		}
+		assertTrue("interaction node is a result node", found);
+		assertTrue("score carried over", node.getScore() > 0);
+	}
+
+	@Test
+	public void testErrorResponseRoundTrip() throws Exception {
+		RelatedGenesResponseMessage msg = new RelatedGenesResponseMessage();
+		msg.setErrorCode(2);
+		msg.setErrorMessage("failed");
+		msg.setNetworks(null);
+		msg.setAnnotations(null);
+		msg.setAttributes(null);
+
+		RelatedGenesResponseMessage actual = RelatedGenesResponseMessage.fromBytes(msg.toBytes());
+		assertEquals("error code", 2, actual.getErrorCode());
+		assertEquals("error message", "failed", actual.getErrorMessage());
+		assertNull("combining method", actual.getCombiningMethod());
+		assertEquals("networks", 0, actual.getNetworks().size());
+		assertEquals("nodes", 0, actual.getNodes().size());
+		assertEquals("annotations", 0, actual.getAnnotations().size());
+		assertEquals("attributes", 0, actual.getAttributes().size());
+	}
+
+	@Test
+	public void testRejectsMalformedMessages() {
+		byte[] response = new RelatedGenesResponseMessage().toBytes();
+		byte[] request = new RelatedGenesRequestMessage().toBytes();
+
+		assertDecodeFails("request as response", request);
+		assertDecodeFails("truncated", Arrays.copyOf(response, response.length - 1));
+		assertDecodeFails("xml", new RelatedGenesResponseMessage().toXml().getBytes());
+
+		byte[] newer = response.clone();
+		newer[4] = (byte) (RelatedGenesCodec.VERSION + 1);
+		assertDecodeFails("newer version", newer);
+	}
+
+	/*
+	 * size and speed against the xml format for a typical 100 gene result,
+	 * only the size is checked, timings are logged for comparison
+	 */
+	@Test
+	public void testSmallerThanXml() throws Exception {
+		RelatedGenesResponseMessage msg = makeResponse(new Random(42), 100, 40, 400);
+
+		String xml = msg.toXml();
+		byte[] bytes = msg.toBytes();
+		int xmlSize = xml.getBytes("UTF-8").length;
+		LOG.info("response size: xml " + xmlSize + " bytes, binary " + bytes.length + " bytes");
+		assertTrue("binary smaller than xml", bytes.length * 10 < xmlSize);
+
+		int repeats = 5;
+		long start = System.nanoTime();
+		for (int i = 0; i < repeats; i++) {
+			RelatedGenesResponseMessage.fromXml(msg.toXml());
+		}
+		long xmlNanos = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < repeats; i++) {
+			RelatedGenesResponseMessage.fromBytes(msg.toBytes());
+		}
+		long binaryNanos = System.nanoTime() - start;
+		LOG.info("response round trip: xml " + xmlNanos / repeats / 1000 + "us, binary " + binaryNanos / repeats / 1000 + "us");
+	}
+
+	// __[private helpers]_____________________________________________________
+	private void assertDecodeFails(String description, byte[] data) {
+		try {
+			RelatedGenesResponseMessage.fromBytes(data);
+			fail("decoding should fail: " + description);
+		} catch (ApplicationException e) {
+			// expected
+		}
+	}
+
+	private static NetworkDto network(long id, double weight, String type) {
+		NetworkDto ret = new NetworkDto(id, weight);
+		ret.setType(type);
+		return ret;
+	}
+
+	/*
+	 * response shaped like the engine's: interactions between the result
+	 * nodes with float weights, and categories shared between nodes
+	 */
+	private static RelatedGenesResponseMessage makeResponse(Random random, int numNodes, int numNetworks,
+			int numInteractions) {
+		RelatedGenesResponseMessage ret = new RelatedGenesResponseMessage();
+		ret.setOrganismId(1);
+		ret.setCombiningMethod("automatic");
+
+		List<NodeDto> nodes = new ArrayList<NodeDto>();
+		for (int i = 0; i < numNodes; i++) {
+			nodes.add(new NodeDto(100000 + random.nextInt(50000), random.nextDouble() + 0.01));
+		}
+		ret.setNodes(nodes);
+
+		Collection<NetworkDto> networks = new ArrayList<NetworkDto>();
+		for (int n = 0; n < numNetworks; n++) {
+			NetworkDto network = network(1000 + n, random.nextDouble(), n % 2 == 0 ? "Co-expression" : null);
+			for (int i = 0; i < numInteractions; i++) {
+				NodeDto from = nodes.get(random.nextInt(numNodes));
+				NodeDto to = nodes.get(random.nextInt(numNodes));
+				network.addInteraction(new InteractionDto(from, to, random.nextFloat()));
+			}
+			networks.add(network);
+		}
+		ret.setNetworks(networks);
+
+		List<OntologyCategoryDto> categories = new ArrayList<OntologyCategoryDto>();
+		for (int i = 0; i < 10; i++) {
+			OntologyCategoryDto category = new OntologyCategoryDto();
+			category.setId(5000 + i);
+			category.setpValue(random.nextDouble() / 1000);
+			category.setqValue(random.nextDouble() / 100);
+			category.setNumAnnotatedInSample(random.nextInt(numNodes));
+			category.setNumAnnotatedInTotal(random.nextInt(1000));
+			categories.add(category);
+		}
+		Map<Long, Collection<OntologyCategoryDto>> annotations = new Hashtable<Long, Collection<OntologyCategoryDto>>();
+		Map<Long, Collection<AttributeDto>> attributes = new Hashtable<Long, Collection<AttributeDto>>();
+		for (int i = 0; i < numNodes; i += 2) {
+			annotations.put(nodes.get(i).getId(), categories.subList(i % 5, i % 5 + 3));
+
+			AttributeDto attribute = new AttributeDto();
+			attribute.setId(77 + i);
+			attribute.setGroupId(3);
+			attribute.setWeight(random.nextDouble());
+			attributes.put(nodes.get(i).getId(), Arrays.asList(attribute));
+		}
+		ret.setAnnotations(annotations);
+		ret.setAttributes(attributes);
+
+		return ret;
+	}
+
+}
@@ -0,0 +1,94 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import no.uib.cipr.matrix.Vector;
+
+import org.genemania.engine.Constants.NetworkType;
+import org.genemania.engine.cache.DataCache;
+import org.genemania.engine.core.data.Data;
+import org.genemania.engine.core.integration.Feature;
+import org.genemania.engine.core.integration.FeatureList;
+import org.genemania.engine.core.integration.FeatureWeightMap;
+import org.genemania.engine.core.integration.gram.AutomaticGramBuilder;
+import org.genemania.util.NullProgressReporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * query specific network weighting, building the gram matrix of the
+ * networks restricted to the query genes and solving for the weights
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class AutomaticGramBuilderBenchmark {
+
+    @Param({"20000"})
+    public int numGenes;
+
+    @Param({"10", "50"})
+    public int numNetworks;
+
+    @Param({"100"})
+    public double degree;
+
+    @Param({"5", "100"})
+    public int numPositives;
+
+    DataCache cache;
+    FeatureList features;
+    Vector labels;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticData data = new SyntheticData(BenchmarkRunner.SEED);
+        cache = new DataCache(new HeapObjectCache());
+        long [] networkIds = data.addOrganism(cache, numGenes, numNetworks, degree, 0, 0);
+
+        features = new FeatureList();
+        for (long networkId: networkIds) {
+            features.add(new Feature(NetworkType.SPARSE_MATRIX, 0, networkId));
+        }
+
+        labels = data.labels(numGenes, numPositives);
+    }
+
+    @Benchmark
+    public FeatureWeightMap build() throws Exception {
+        AutomaticGramBuilder builder = new AutomaticGramBuilder(cache, Data.CORE, SyntheticData.ORGANISM_ID,
+                features, labels, NullProgressReporter.instance());
+        return builder.build(NullProgressReporter.instance());
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * entry point of the benchmarks jar. takes the usual jmh command line,
+ * but unless told otherwise writes the results as json to
+ * jmh-result.json so runs from different releases can be compared
+ * by script:
+ *
+ *   mvn package -pl engine-benchmarks -am
+ *   java -jar engine-benchmarks/target/benchmarks.jar                   # everything
+ *   java -jar engine-benchmarks/target/benchmarks.jar PropagateLabels   # matching a regexp
+ *   java -jar engine-benchmarks/target/benchmarks.jar -p degree=50 -rff before.json
+ *   java -jar engine-benchmarks/target/benchmarks.jar -h                # other options
+ *
+ * running everything at full size takes a while, and the larger networks
+ * need a few gb of heap in the forked jvm.
+ */
+public class BenchmarkRunner {
+
+    // all synthetic data is generated from this, so runs are comparable
+    public static final long SEED = 42;
+
+    public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    public static void main(String [] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        // help and listing are handled by jmh's own main
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+                || commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+            if (!commandLine.getResult().hasValue()) {
+                options.result(DEFAULT_RESULT_FILE);
+            }
+        }
+
+        new Runner(options.build()).run();
+    }
+}
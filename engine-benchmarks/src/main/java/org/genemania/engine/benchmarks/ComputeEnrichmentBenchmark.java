@@ -0,0 +1,97 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.genemania.dto.EnrichmentEngineRequestDto;
+import org.genemania.dto.EnrichmentEngineResponseDto;
+import org.genemania.engine.actions.ComputeEnrichment;
+import org.genemania.engine.cache.DataCache;
+import org.genemania.util.NullProgressReporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * enrichment of a result gene list against an ontology. the enrichment
+ * background is built on the first call and kept by the cache, as
+ * it is in the engine, so this times the per query work.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ComputeEnrichmentBenchmark {
+
+    @Param({"20000"})
+    public int numGenes;
+
+    @Param({"20000"})
+    public int numCategories;
+
+    @Param({"10"})
+    public double annotationsPerGene;
+
+    @Param({"20", "400"})
+    public int numSampleGenes;
+
+    DataCache cache;
+    List<Long> sampleNodes;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticData data = new SyntheticData(BenchmarkRunner.SEED);
+        cache = new DataCache(new HeapObjectCache());
+
+        // enrichment only needs the networks for the node degrees
+        data.addOrganism(cache, numGenes, 1, 50, numCategories, annotationsPerGene);
+
+        sampleNodes = new ArrayList<Long>();
+        for (long nodeId: SyntheticData.nodeIds(data.sample(numGenes, numSampleGenes))) {
+            sampleNodes.add(nodeId);
+        }
+    }
+
+    @Benchmark
+    public EnrichmentEngineResponseDto process() throws Exception {
+        EnrichmentEngineRequestDto request = new EnrichmentEngineRequestDto();
+        request.setOrganismId(SyntheticData.ORGANISM_ID);
+        request.setOntologyId(SyntheticData.ONTOLOGY_ID);
+        request.setNodes(sampleNodes);
+        request.setqValueThreshold(0.1);
+        request.setMinCategories(10);
+        request.setProgressReporter(NullProgressReporter.instance());
+
+        return new ComputeEnrichment(cache, request).process();
+    }
+}
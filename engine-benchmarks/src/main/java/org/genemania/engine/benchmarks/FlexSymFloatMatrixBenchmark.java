@@ -0,0 +1,131 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.genemania.engine.matricks.custom.DenseDoubleVector;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * products and solves on a single sparse network, the kernels under
+ * label propagation and network combination. degrees of 50, 500 and 2500
+ * over 20k genes give networks of about 1M, 10M and 50M nonzeros.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class FlexSymFloatMatrixBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Networks {
+        @Param({"20000"})
+        public int numGenes;
+
+        @Param({"50", "500", "2500"})
+        public double degree;
+
+        FlexSymFloatMatrix network;
+        FlexSymFloatMatrix other;
+        double [] x;
+        double [] y;
+
+        @Setup
+        public void setup() throws Exception {
+            SyntheticData data = new SyntheticData(BenchmarkRunner.SEED);
+
+            network = new FlexSymFloatMatrix(numGenes);
+            data.fillNetwork(network, degree);
+
+            other = new FlexSymFloatMatrix(numGenes);
+            data.fillNetwork(other, degree);
+
+            x = data.scores(numGenes).getData();
+            y = new double[numGenes];
+        }
+    }
+
+    /*
+     * the cg benchmark needs a positive definite system. the
+     * normalized network has eigenvalues in [-1, 1], so 2I - W
+     * has them in [1, 3], about as well conditioned as the
+     * propagation system (I + L).
+     */
+    @State(Scope.Benchmark)
+    public static class PropagationSystem {
+        @Param({"20000"})
+        public int numGenes;
+
+        @Param({"50", "500", "2500"})
+        public double degree;
+
+        FlexSymFloatMatrix system;
+        DenseDoubleVector b;
+
+        @Setup
+        public void setup() throws Exception {
+            SyntheticData data = new SyntheticData(BenchmarkRunner.SEED);
+
+            system = new FlexSymFloatMatrix(numGenes);
+            data.fillNetwork(system, degree);
+            system.scale(-1d);
+            system.setDiag(2d);
+
+            b = new DenseDoubleVector(data.scores(numGenes).getData());
+        }
+    }
+
+    @Benchmark
+    public double [] mult(Networks state) {
+        state.network.mult(state.x, state.y);
+        return state.y;
+    }
+
+    @Benchmark
+    public double [] multAdd(Networks state) {
+        state.network.multAdd(state.x, state.y);
+        return state.y;
+    }
+
+    @Benchmark
+    public double elementMultiplySum(Networks state) {
+        return state.network.elementMultiplySum(state.other);
+    }
+
+    @Benchmark
+    public DenseDoubleVector CG(PropagationSystem state) {
+        DenseDoubleVector x = new DenseDoubleVector(state.numGenes);
+        state.system.CG(state.b, x);
+        return x;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.genemania.engine.cache.IObjectCache;
+import org.genemania.exception.ApplicationException;
+
+/**
+ * keeps everything on the heap, by strong reference. the benchmarks
+ * want the data loaded once and then left alone, rather than paying
+ * for deserialization or having it collected from a soft reference
+ * cache between iterations.
+ */
+public class HeapObjectCache implements IObjectCache {
+
+    private ConcurrentHashMap<List<String>, Object> objects = new ConcurrentHashMap<List<String>, Object>();
+
+    public String getCacheDir() {
+        return null;
+    }
+
+    public void put(String [] key, Object value, boolean isVolatile) {
+        objects.put(Arrays.asList(key), value);
+    }
+
+    public Object get(String [] key, boolean isVolatile) throws ApplicationException {
+        Object value = objects.get(Arrays.asList(key));
+        if (value == null) {
+            throw new ApplicationException("no object in cache for key " + Arrays.toString(key));
+        }
+        return value;
+    }
+
+    public void remove(String [] key) {
+        objects.remove(Arrays.asList(key));
+    }
+
+    public boolean exists(String [] key) {
+        return objects.containsKey(Arrays.asList(key));
+    }
+
+    /*
+     * keys having the given key as a prefix
+     */
+    public List<String []> list(String [] key) {
+        List<String> prefix = Arrays.asList(key);
+        List<String []> result = new ArrayList<String []>();
+        for (List<String> existing: objects.keySet()) {
+            if (existing.size() > prefix.size() && existing.subList(0, prefix.size()).equals(prefix)) {
+                result.add(existing.toArray(new String[existing.size()]));
+            }
+        }
+        return result;
+    }
+}
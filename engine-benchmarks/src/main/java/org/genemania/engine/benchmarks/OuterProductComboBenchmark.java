@@ -0,0 +1,91 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.genemania.engine.matricks.custom.DenseDoubleVector;
+import org.genemania.engine.matricks.custom.OuterProductComboSymMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * products with a weighted combination of attribute networks, as
+ * built by CombinedKernelBuilder when a query selects attributes.
+ * the attribute data is gene x attribute indicators, a few attributes
+ * per gene, like protein domain data.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class OuterProductComboBenchmark {
+
+    @Param({"20000"})
+    public int numGenes;
+
+    @Param({"1000", "10000"})
+    public int numAttributes;
+
+    @Param({"3"})
+    public double attributesPerGene;
+
+    OuterProductComboSymMatrix combo;
+    double [] x;
+    double [] y;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticData data = new SyntheticData(BenchmarkRunner.SEED);
+
+        double [] weights = new double[numAttributes];
+        Arrays.fill(weights, 1d / numAttributes);
+
+        combo = new OuterProductComboSymMatrix(data.attributes(numGenes, numAttributes, attributesPerGene),
+                new DenseDoubleVector(weights), true);
+
+        x = data.scores(numGenes).getData();
+        y = new double[numGenes];
+    }
+
+    @Benchmark
+    public double [] mult() {
+        combo.mult(x, y);
+        return y;
+    }
+
+    @Benchmark
+    public double [] multAdd() {
+        combo.multAdd(x, y);
+        return y;
+    }
+}
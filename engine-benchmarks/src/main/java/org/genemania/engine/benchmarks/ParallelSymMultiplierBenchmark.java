@@ -0,0 +1,99 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.genemania.engine.benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.genemania.engine.matricks.custom.ParallelSymMultiplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * scaling of the row blocked sparse product used by the propagation
+ * solvers over pool sizes, on a human sized network. compare against
+ * FlexSymFloatMatrixBenchmark.mult for the serial kernel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ParallelSymMultiplierBenchmark {
+
+    @Param({"20000"})
+    public int numGenes;
+
+    @Param({"500"})
+    public double degree;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int threads;
+
+    @Param({"1", "5"})
+    public int width;
+
+    ForkJoinPool pool;
+    ParallelSymMultiplier multiplier;
+    double [] x;
+    double [] y;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticData data = new SyntheticData(BenchmarkRunner.SEED);
+
+        FlexSymFloatMatrix network = new FlexSymFloatMatrix(numGenes);
+        data.fillNetwork(network, degree);
+
+        pool = new ForkJoinPool(threads);
+        multiplier = new ParallelSymMultiplier(network, pool);
+
+        x = new double[numGenes*width];
+        for (int j=0; j<width; j++) {
+            double [] scores = data.scores(numGenes).getData();
+            for (int i=0; i<numGenes; i++) {
+                x[i*width + j] = scores[i];
+            }
+        }
+        y = new double[numGenes*width];
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public double [] mult() {
+        multiplier.mult(x, y, width);
+        return y;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Vector;
+
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.core.propagation.PropagateLabels;
+import org.genemania.util.NullProgressReporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * label propagation over a combined network, for a query of a
+ * few genes labelled against all the rest
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class PropagateLabelsBenchmark {
+
+    @Param({"20000"})
+    public int numGenes;
+
+    @Param({"50", "500", "2500"})
+    public double degree;
+
+    @Param({"5", "100"})
+    public int numPositives;
+
+    SymMatrix network;
+    Vector labels;
+
+    @Setup
+    public void setup() throws Exception {
+        SyntheticData data = new SyntheticData(BenchmarkRunner.SEED);
+        network = data.network(numGenes, degree);
+        labels = data.labels(numGenes, numPositives);
+    }
+
+    /*
+     * labels are biased in place, so each call gets a fresh copy
+     */
+    @Benchmark
+    public Vector process() throws Exception {
+        return PropagateLabels.process(network, new DenseVector(labels, true), NullProgressReporter.instance());
+    }
+}
@@ -0,0 +1,295 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Vector;
+
+import org.genemania.engine.cache.DataCache;
+import org.genemania.engine.config.Config;
+import org.genemania.engine.core.data.CategoryIds;
+import org.genemania.engine.core.data.Data;
+import org.genemania.engine.core.data.DatasetInfo;
+import org.genemania.engine.core.data.GoAnnotations;
+import org.genemania.engine.core.data.GoIds;
+import org.genemania.engine.core.data.Network;
+import org.genemania.engine.core.data.NodeDegrees;
+import org.genemania.engine.core.data.NodeIds;
+import org.genemania.engine.core.utils.Normalization;
+import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.exception.ApplicationException;
+
+/**
+ * random data for the benchmarks, along the lines of the test suite's
+ * RandomDataCacheBuilder but generated a row at a time so human sized
+ * organisms (~20k genes, tens of millions of interactions) can be made
+ * in seconds rather than visiting every pair of genes.
+ *
+ * usage:
+ *
+ *   SyntheticData data = new SyntheticData(seed);
+ *   DataCache cache = new DataCache(new HeapObjectCache());
+ *
+ *   // 20k genes, 10 networks with an average degree of 100,
+ *   // 5k categories with 10 annotations per gene
+ *   long [] networkIds = data.addOrganism(cache, 20000, 10, 100, 5000, 10);
+ */
+public class SyntheticData {
+
+    public static final long ORGANISM_ID = 1;
+    public static final long ONTOLOGY_ID = 1;
+
+    // node, network and category ids are kept in separate ranges
+    // so mixing them up in a benchmark fails loudly
+    public static final long NODE_ID_OFFSET = 1000000;
+    public static final long NETWORK_ID_OFFSET = 2000000;
+    public static final long CATEGORY_ID_OFFSET = 3000000;
+
+    private Random random;
+
+    public SyntheticData(long seed) {
+        random = new Random(seed);
+    }
+
+    /*
+     * symmetric network with zero diagonal where each gene interacts
+     * with about degree others, so nnz is about numGenes*degree. weights
+     * are uniform in (0,1), and the network is normalized as loaded
+     * networks are.
+     */
+    public SymMatrix network(int numGenes, double degree) throws ApplicationException {
+        SymMatrix matrix = Config.instance().getMatrixFactory().symSparseMatrix(numGenes);
+        fillNetwork(matrix, degree);
+        return matrix;
+    }
+
+    /*
+     * fill an empty symmetric matrix as above. the lower triangle of
+     * each row is set in increasing column order, which is the cheap
+     * direction for the row-wise sparse storage.
+     */
+    public void fillNetwork(SymMatrix matrix, double degree) throws ApplicationException {
+        int numGenes = matrix.numRows();
+
+        // half the interactions of each gene are in the lower triangle
+        double perRow = degree / 2d;
+
+        for (int i = 1; i < numGenes; i++) {
+            int count = (int) perRow;
+            if (random.nextDouble() < perRow - count) {
+                count += 1;
+            }
+
+            int [] cols = sample(i, count);
+            for (int col: cols) {
+                matrix.set(i, col, random.nextDouble());
+            }
+        }
+
+        Normalization.normalizeNetwork(matrix);
+    }
+
+    /*
+     * gene x category indicator matrix, each gene annotated to about
+     * perGene categories
+     */
+    public Matrix annotations(int numGenes, int numCategories, double perGene) throws ApplicationException {
+        Matrix annotations = Config.instance().getMatrixFactory().sparseMatrix(numGenes, numCategories);
+        fillIndicators(annotations, perGene);
+        return annotations;
+    }
+
+    /*
+     * gene x attribute indicator matrix, as used for attribute features
+     */
+    public Matrix attributes(int numGenes, int numAttributes, double perGene) throws ApplicationException {
+        Matrix attributes = Config.instance().getMatrixFactory().sparseMatrix(numGenes, numAttributes);
+        fillIndicators(attributes, perGene);
+        return attributes;
+    }
+
+    private void fillIndicators(Matrix matrix, double perRow) throws ApplicationException {
+        int numCols = matrix.numCols();
+
+        for (int i = 0; i < matrix.numRows(); i++) {
+            int count = (int) perRow;
+            if (random.nextDouble() < perRow - count) {
+                count += 1;
+            }
+
+            int [] cols = sample(numCols, count);
+            for (int col: cols) {
+                matrix.set(i, col, 1);
+            }
+        }
+    }
+
+    /*
+     * +1 for count randomly chosen genes, -1 for the rest, like the
+     * labels of a query against all genes
+     */
+    public Vector labels(int numGenes, int count) {
+        DenseVector labels = new DenseVector(numGenes);
+        Arrays.fill(labels.getData(), -1d);
+        for (int index: sample(numGenes, count)) {
+            labels.set(index, 1d);
+        }
+        return labels;
+    }
+
+    /*
+     * random scores in (0,1)
+     */
+    public DenseVector scores(int numGenes) {
+        DenseVector scores = new DenseVector(numGenes);
+        double [] data = scores.getData();
+        for (int i = 0; i < numGenes; i++) {
+            data[i] = random.nextDouble();
+        }
+        return scores;
+    }
+
+    /*
+     * up to count distinct indices in [0, n), sorted. when count is
+     * close to n the duplicates drawn are dropped, so slightly fewer
+     * may be returned, that's fine for our purposes.
+     */
+    public int [] sample(int n, int count) {
+        if (count >= n) {
+            int [] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int [] indices = new int[count];
+        for (int i = 0; i < count; i++) {
+            indices[i] = random.nextInt(n);
+        }
+        Arrays.sort(indices);
+
+        int m = 0;
+        for (int i = 0; i < count; i++) {
+            if (m == 0 || indices[i] != indices[m-1]) {
+                indices[m++] = indices[i];
+            }
+        }
+
+        return Arrays.copyOf(indices, m);
+    }
+
+    /*
+     * put the data a query needs for organism ORGANISM_ID into the cache:
+     * node ids, networks, node degrees, dataset info, and annotations
+     * for ontology ONTOLOGY_ID. returns the ids of the networks created.
+     */
+    public long [] addOrganism(DataCache cache, int numGenes, int numNetworks, double degree,
+            int numCategories, double annotationsPerGene) throws ApplicationException {
+
+        long [] nodeIdData = new long[numGenes];
+        for (int i = 0; i < numGenes; i++) {
+            nodeIdData[i] = NODE_ID_OFFSET + i;
+        }
+        NodeIds nodeIds = new NodeIds(ORGANISM_ID);
+        nodeIds.setNodeIds(nodeIdData);
+        cache.putNodeIds(nodeIds);
+
+        double [] degrees = new double[numGenes];
+        double [] networkDegrees = new double[numGenes];
+        long [] networkIds = new long[numNetworks];
+
+        for (int n = 0; n < numNetworks; n++) {
+            SymMatrix data = network(numGenes, degree);
+            networkIds[n] = NETWORK_ID_OFFSET + n;
+            cache.putNetwork(new Network(Data.CORE, ORGANISM_ID, networkIds[n], data));
+
+            Arrays.fill(networkDegrees, 0d);
+            data.rowSums(networkDegrees);
+            for (int i = 0; i < numGenes; i++) {
+                degrees[i] += networkDegrees[i];
+            }
+        }
+
+        int numInteracting = 0;
+        for (int i = 0; i < numGenes; i++) {
+            if (degrees[i] > 0) {
+                numInteracting += 1;
+            }
+        }
+
+        NodeDegrees nodeDegrees = new NodeDegrees(Data.CORE, ORGANISM_ID);
+        nodeDegrees.setDegrees(new DenseVector(degrees, false));
+        cache.putNodeDegrees(nodeDegrees);
+
+        DatasetInfo info = new DatasetInfo(ORGANISM_ID);
+        info.setNumGenes(numGenes);
+        info.setNumInteractingGenes(numInteracting);
+        cache.putDatasetInfo(info);
+
+        if (numCategories > 0) {
+            addAnnotations(cache, numGenes, numCategories, annotationsPerGene);
+        }
+
+        return networkIds;
+    }
+
+    /*
+     * enrichment looks up annotations by the ontology id as a
+     * string in place of a go branch
+     */
+    private void addAnnotations(DataCache cache, int numGenes, int numCategories, double perGene) throws ApplicationException {
+        String branch = "" + ONTOLOGY_ID;
+
+        GoAnnotations annos = new GoAnnotations(ORGANISM_ID, branch);
+        annos.setData(annotations(numGenes, numCategories, perGene));
+        cache.putGoAnnotations(annos);
+
+        String [] goIdData = new String[numCategories];
+        long [] categoryIdData = new long[numCategories];
+        for (int j = 0; j < numCategories; j++) {
+            goIdData[j] = String.format("GO:%07d", j);
+            categoryIdData[j] = CATEGORY_ID_OFFSET + j;
+        }
+
+        GoIds goIds = new GoIds(ORGANISM_ID, branch);
+        goIds.setGoIds(goIdData);
+        cache.putGoIds(goIds);
+
+        CategoryIds categoryIds = new CategoryIds(ORGANISM_ID, ONTOLOGY_ID);
+        categoryIds.setCategoryIds(categoryIdData);
+        cache.putCategoryIds(categoryIds);
+    }
+
+    /*
+     * node ids for the given matrix indices
+     */
+    public static long [] nodeIds(int [] indices) {
+        long [] ids = new long[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            ids[i] = NODE_ID_OFFSET + indices[i];
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import no.uib.cipr.matrix.Vector;
+
+import org.genemania.engine.core.MatrixUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * picking the highest scoring genes from a propagated score vector,
+ * against the previous sort of every score
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TopScoresBenchmark {
+
+    @Param({"20000"})
+    public int numGenes;
+
+    @Param({"20", "100", "1000"})
+    public int limitResults;
+
+    @Param({"5", "100"})
+    public int numPositives;
+
+    Vector scores;
+    List<Integer> positives;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData(BenchmarkRunner.SEED);
+        scores = data.scores(numGenes);
+
+        positives = new ArrayList<Integer>();
+        for (int index: data.sample(numGenes, numPositives)) {
+            positives.add(index);
+        }
+    }
+
+    @Benchmark
+    public int [] getIndicesForTopScores() {
+        return MatrixUtils.getIndicesForTopScores(scores, positives, limitResults, 0d);
+    }
+
+    @Benchmark
+    public int [] getIndicesForTopScoresBySort() {
+        return MatrixUtils.getIndicesForTopScoresBySort(scores, positives, limitResults, 0d);
+    }
+}
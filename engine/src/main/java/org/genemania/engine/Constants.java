@@ -36,6 +36,18 @@ public class Constants {
     public static final boolean DEFAULT_NORMALIZE_NETWORK_WEIGHTS_ENABLED = true;
     public static final boolean DEFAULT_COMBINED_NETWORK_NORMALIZATION_ENABLED = false;
     public static final int DEFAULT_ATTRIBUTE_ENRICHMENT_MAX_SIZE = 100;
+
+    // 0 means size the memory cache from the max heap
+    public static final long DEFAULT_MEM_CACHE_MAX_BYTES = 0;
+
+    // responses kept for repeated queries
+    public static final long DEFAULT_QUERY_CACHE_MAX_BYTES = 64*1024*1024;
+
+    // 0 means one compute thread per core
+    public static final int DEFAULT_ENGINE_THREADS = 0;
+
+    // 0 means combine every network with a nonzero weight
+    public static final double DEFAULT_COMBINE_WEIGHT_TOLERANCE = 0d;
     
     public static final double DISCRIMINANT_THRESHOLD = 0.0d;
     
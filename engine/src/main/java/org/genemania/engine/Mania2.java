@@ -54,26 +54,81 @@ import org.genemania.engine.actions.RemoveAttributeGroup;
 import org.genemania.engine.actions.RemoveNetworks;
 import org.genemania.engine.actions.UploadNetwork;
 import org.genemania.engine.cache.DataCache;
+import org.genemania.engine.cache.QueryResultCache;
 import org.genemania.engine.config.Config;
 import org.genemania.exception.ApplicationException;
+import org.genemania.util.ProgressReporter;
 
 /**
  * Algorithm implementation on top of data objects implemented
  * in the core.data and cache packages.
+ *
+ * Related genes and enrichment responses are kept in a QueryResultCache
+ * so repeated queries are answered without recomputing, requests that
+ * change data invalidate the affected results.
  */
 public class Mania2 implements IMania {
 
     private static Logger logger = Logger.getLogger(Mania2.class);
     private DataCache cache;
+    private QueryResultCache resultCache;
     
     public Mania2(DataCache cache) {
+        this(cache, new QueryResultCache(Config.instance().getQueryCacheMaxBytes()));
+    }
+
+    public Mania2(DataCache cache, QueryResultCache resultCache) {
         this.cache = cache;
+        this.resultCache = resultCache;
     }
 
     @Override
     public RelatedGenesEngineResponseDto findRelated(RelatedGenesEngineRequestDto request) throws ApplicationException {
+        String key = null;
+        if (resultCache.isEnabled()) {
+            key = getKey(request);
+            if (key != null) {
+                RelatedGenesEngineResponseDto response = (RelatedGenesEngineResponseDto) resultCache.get(key);
+                if (response != null) {
+                    logger.info("returning cached result for related genes query");
+                    completeProgress(request.getProgressReporter());
+                    return response;
+                }
+            }
+        }
+
+        long generation = resultCache.getGeneration();
         FindRelated findRelated = new FindRelated(cache, request);
-        return findRelated.process();
+        RelatedGenesEngineResponseDto response = findRelated.process();
+
+        if (key != null) {
+            resultCache.put(key, QueryResultCache.getNamespace(request), response, generation);
+        }
+        return response;
+    }
+
+    /*
+     * a bad request gets no key, and fails as usual when computed
+     */
+    private String getKey(RelatedGenesEngineRequestDto request) {
+        try {
+            return QueryResultCache.getKey(request, cache);
+        }
+        catch (Exception e) {
+            logger.debug("not caching query: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+     * what a completed computation leaves the progress reporter at
+     */
+    private void completeProgress(ProgressReporter progress) {
+        if (progress != null) {
+            progress.setMaximumProgress(Constants.PROGRESS_COMPLETE);
+            progress.setStatus(Constants.PROGRESS_COMPLETE_MESSAGE);
+            progress.setProgress(Constants.PROGRESS_COMPLETE);
+        }
     }
 
     @Override
@@ -85,17 +140,28 @@ public class Mania2 implements IMania {
     @Override
     public UploadNetworkEngineResponseDto uploadNetwork(UploadNetworkEngineRequestDto request) throws ApplicationException {
         UploadNetwork uploadNetwork = new UploadNetwork(cache, request);
-        return uploadNetwork.process();
+        try {
+            return uploadNetwork.process();
+        }
+        finally {
+            resultCache.invalidateNamespace(request.getNamespace());
+        }
     }
 
     public RemoveNetworkEngineResponseDto removeUserNetworks(RemoveNetworkEngineRequestDto request) throws ApplicationException {
         RemoveNetworks removeNetworks = new RemoveNetworks(cache, request);
-        return removeNetworks.process();
+        try {
+            return removeNetworks.process();
+        }
+        finally {
+            resultCache.invalidateNamespace(request.getNamespace());
+        }
     }
 
     @Override
     public void clearMemCache() {
-        logger.warn("mem cache clearing not implemented");
+        resultCache.clear();
+        cache.clearMemCache();
     }
 
     @Override
@@ -105,20 +171,47 @@ public class Mania2 implements IMania {
 
     @Override
     public EnrichmentEngineResponseDto computeEnrichment(EnrichmentEngineRequestDto request) throws ApplicationException {
+        String key = null;
+        if (resultCache.isEnabled() && request != null && request.getNodes() != null) {
+            key = QueryResultCache.getKey(request);
+            EnrichmentEngineResponseDto response = (EnrichmentEngineResponseDto) resultCache.get(key);
+            if (response != null) {
+                logger.info("returning cached result for enrichment query");
+                completeProgress(request.getProgressReporter());
+                return response;
+            }
+        }
+
+        long generation = resultCache.getGeneration();
         ComputeEnrichment computeEnrichment = new ComputeEnrichment(cache, request);
-        return computeEnrichment.process();
+        EnrichmentEngineResponseDto response = computeEnrichment.process();
+
+        if (key != null) {
+            resultCache.put(key, null, response, generation);
+        }
+        return response;
     }
 
     @Override
     public AddOrganismEngineResponseDto addOrganism(AddOrganismEngineRequestDto request) throws ApplicationException {
         AddOrganism addOrganism = new AddOrganism(cache, request);
-        return addOrganism.process();
+        try {
+            return addOrganism.process();
+        }
+        finally {
+            resultCache.clear();
+        }
     }
     
     @Override
     public AddAttributeGroupEngineResponseDto addAttributeGroup(AddAttributeGroupEngineRequestDto request) throws ApplicationException {
         AddAttributeGroup addAttributeGroup = new AddAttributeGroup(cache, request);
-        return addAttributeGroup.process();
+        try {
+            return addAttributeGroup.process();
+        }
+        finally {
+            resultCache.invalidateNamespace(request.getNamespace());
+        }
     }
     
     @Override
@@ -130,13 +223,27 @@ public class Mania2 implements IMania {
     @Override
     public RemoveAttributeGroupEngineResponseDto removeAttributeGroup(RemoveAttributeGroupEngineRequestDto request) throws ApplicationException {
         RemoveAttributeGroup removeAttributeGroup = new RemoveAttributeGroup(cache, request);
-        return removeAttributeGroup.process();
+        try {
+            return removeAttributeGroup.process();
+        }
+        finally {
+            resultCache.invalidateNamespace(request.getNamespace());
+        }
     }
 
     @Override
     public AddEnrichmentAttributesEngineResponseDto addOntology(AddEnrichmentAttributesEngineRequestDto request) throws ApplicationException {
         AddEnrichmentAttributes action = new AddEnrichmentAttributes(cache, request);
-        return action.process();
+        try {
+            return action.process();
+        }
+        finally {
+            resultCache.clear();
+        }
+    }
+
+    public QueryResultCache getResultCache() {
+        return resultCache;
     }
 
     @Override
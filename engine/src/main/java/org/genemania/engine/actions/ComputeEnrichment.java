@@ -21,6 +21,7 @@
 package org.genemania.engine.actions;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,16 +34,17 @@ import org.genemania.dto.OntologyCategoryDto;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.core.MatrixUtils;
 import org.genemania.engine.core.data.CategoryIds;
-import org.genemania.engine.core.data.Data;
-import org.genemania.engine.core.data.DatasetInfo;
+import org.genemania.engine.core.data.EnrichmentBackground;
 import org.genemania.engine.core.data.GoAnnotations;
 import org.genemania.engine.core.data.GoIds;
-import org.genemania.engine.core.data.NodeDegrees;
 import org.genemania.engine.core.data.NodeIds;
 import org.genemania.engine.core.utils.Logging;
 import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.matricks.custom.FlexFloatMatrix;
 import org.genemania.exception.ApplicationException;
+import org.genemania.util.ProgressReporter;
 
 /**
  * 
@@ -88,61 +90,45 @@ public class ComputeEnrichment {
 
         // load in annotations based on requested ontology, TODO: this needs to be updated to support ontology ids (convert to strings temporarily)
         
-        GoAnnotations goAnnos = cache.getGoAnnotations(request.getOrganismId(), "" + request.getOntologyId());
-        GoIds goIds = cache.getGoIds(request.getOrganismId(), "" + request.getOntologyId());
+        String goBranch = "" + request.getOntologyId();
+        GoAnnotations goAnnos = cache.getGoAnnotations(request.getOrganismId(), goBranch);
+        GoIds goIds = cache.getGoIds(request.getOrganismId(), goBranch);
         CategoryIds catIds = cache.getCategoryIds(request.getOrganismId(), request.getOntologyId());
-        DatasetInfo datasetInfo = cache.getDatasetInfo(request.getOrganismId());
 
+        // the background genes and their annotation counts per category only
+        // depend on the core dataset, so are computed once and kept by the cache.
+        //
         // TODO: for now we get the degrees from the core dataset, but we should extend this
         // to compute degrees for user datasets and use that instead, so if a user uploads
         // a network containing a gene for which we have no interactions (but do have annotation
         // data from GO), then that gene would get included in the enrichment calculation
-        NodeDegrees nodeDegrees = cache.getNodeDegrees(Data.CORE, request.getOrganismId());
+        EnrichmentBackground background = cache.getEnrichmentBackground(request.getOrganismId(), goBranch);
+        double [] backgroundCounts = background.getBackgroundCounts();
         
-        int numCategories = goAnnos.getData().numCols();
-        int numGenes = goAnnos.getData().numRows();  // note: this count includes genes without any interactions
+        Matrix annoData = goAnnos.getData();
+        int numCategories = annoData.numCols();
+        int numGenes = annoData.numRows();  // note: this count includes genes without any interactions
 
         logger.debug(String.format("num genes: %d, num categories: %d", numGenes, numCategories));
 
-        // compute annotations in background for all categories, using
-        // node degrees to determine what genes are in the background distribution
-        DenseVector backgroundMask = makeGeneMaskVector(nodeDegrees.getDegrees().getData(), numGenes);
-        DenseVector backgroundCounts = new DenseVector(numCategories);
-
-        Matrix annoData = goAnnos.getData();
-        annoData.transMult(backgroundMask.getData(), backgroundCounts.getData());
-
-        // for sample, we are only interested in genes in the sample which are in our background
+        // for sample, we are only interested in genes in the sample which are in our background,
+        // and only need to visit the annotations of those genes
         NodeIds nodeIds = cache.getNodeIds(request.getOrganismId());
-        DenseVector sampleMask = makeGeneMaskVector(nodeIds, numGenes);
-        dotMult(sampleMask, backgroundMask);
+        int [] sampleRows = getSampleRows(nodeIds, background.getInBackground());
         
-        DenseVector sampleCounts = new DenseVector(numCategories);
-        annoData.transMult(sampleMask.getData(), sampleCounts.getData());
+        double [] sampleCounts = new double[numCategories];
+        addRows(annoData, sampleRows, sampleCounts);
 
         // only count number of genes in sample that are in the background
-        //long n = request.getNodes().size();
-        long n = Math.round(MatrixUtils.sum(sampleMask));
+        int n = sampleRows.length;
 
-        // TODO: this N won't be right if user networks to contribute information on genes with degree 0 in our core data set
-        int N = datasetInfo.getNumInteractingGenes(); 
+        int N = background.getNumBackgroundGenes(); 
 
         logger.debug(String.format("enrichment sample size: %d, background size: %d", n, N));
         
         DenseVector pvals = new DenseVector(numCategories);
-
-        for (int category = 0; category < numCategories; category++) {
-
-            if (request.getProgressReporter().isCanceled()) {
-                throw new CancellationException();
-            }
-
-            long x = Math.round(sampleCounts.get(category));
-            long k = Math.round(backgroundCounts.get(category));
-            double pval = computeCumulHyperGeo(x, N, n, k);
-
-            pvals.set(category, pval);
-        }
+        computeCumulHyperGeo(sampleCounts, backgroundCounts, N, n, background.getLogFactorials(), 
+                pvals.getData(), request.getProgressReporter());
 
         DenseVector qvals = computeFDRqval(N, pvals);
 
@@ -162,8 +148,8 @@ public class ComputeEnrichment {
                 categoryVO.setId(catId);
                 categoryVO.setpValue(pvals.get(category));
                 categoryVO.setqValue(qvals.get(category));
-                categoryVO.setNumAnnotatedInSample((int) Math.round(sampleCounts.get(category)));
-                categoryVO.setNumAnnotatedInTotal((int) Math.round(backgroundCounts.get(category)));
+                categoryVO.setNumAnnotatedInSample((int) Math.round(sampleCounts[category]));
+                categoryVO.setNumAnnotatedInTotal((int) Math.round(backgroundCounts[category]));
 
                 enrichedCategories.add(categoryVO);
                 categoryIdToVO.put(categoryName, categoryVO);
@@ -251,18 +237,23 @@ public class ComputeEnrichment {
 
             int index = nodeIds.getIndexForId(nodeId);
 
-            // this loop doesn't take advantage of the sparsity of the goAnnos matrix,
-            // it tests each category
-            for (int category=0; category<numCategories; category++) {
-                double x = annoData.get(index, category);
-                long longx = Math.round(x);
-                if (longx == 1) {
-                    String categoryName = goIds.getIdForIndex(category);
-                    OntologyCategoryDto categoryVO = categoryIdToVO.get(categoryName);
-
-                    // only the *enriched* categories are in the map
-                    if (categoryVO != null) {
-                        categories.add(categoryVO);
+            if (annoData instanceof FlexFloatMatrix) {
+                // just the categories the node is annotated to
+                MatrixCursor cursor = ((FlexFloatMatrix) annoData).getRow(index).cursor();
+                while (cursor.next()) {
+                    if (Math.round(cursor.val()) == 1) {
+                        addEnrichedCategory(cursor.row(), goIds, categoryIdToVO, categories);
+                    }
+                }
+            }
+            else {
+                // this loop doesn't take advantage of the sparsity of the goAnnos matrix,
+                // it tests each category
+                for (int category=0; category<numCategories; category++) {
+                    double x = annoData.get(index, category);
+                    long longx = Math.round(x);
+                    if (longx == 1) {
+                        addEnrichedCategory(category, goIds, categoryIdToVO, categories);
                     }
                 }
             }
@@ -273,6 +264,17 @@ public class ComputeEnrichment {
          return annotations;
     }
 
+    private static void addEnrichedCategory(int category, GoIds goIds, Map<String, OntologyCategoryDto> categoryIdToVO,
+            Collection<OntologyCategoryDto> categories) throws ApplicationException {
+        String categoryName = goIds.getIdForIndex(category);
+        OntologyCategoryDto categoryVO = categoryIdToVO.get(categoryName);
+
+        // only the *enriched* categories are in the map
+        if (categoryVO != null) {
+            categories.add(categoryVO);
+        }
+    }
+
     /*
      * N = population size
      * k = # true in population
@@ -305,6 +307,49 @@ public class ComputeEnrichment {
         return p;
     }
 
+    /*
+     * p(X >= x; N, n, k) for all categories at once, x and k given per category.
+     * the terms come from a table of log factorials up to N, so there are
+     * no log gamma evaluations or allocations per category.
+     *
+     * terms below the support of the distribution, max(0, n+k-N), are
+     * zero and skipped. falls back to computeCumulHyperGeo() if the counts
+     * don't fit the table, which shouldn't happen.
+     */
+    public static void computeCumulHyperGeo(double [] x, double [] k, int N, int n, double [] logFactorials, 
+            double [] pvals, ProgressReporter progress) throws CancellationException {
+        final double [] lf = logFactorials;
+        final boolean fitsTable = n <= N && N < lf.length;
+        final double logNChooseN = fitsTable ? lf[N] - lf[n] - lf[N-n] : 0d;
+
+        for (int category = 0; category < x.length; category++) {
+
+            if (progress != null && progress.isCanceled()) {
+                throw new CancellationException();
+            }
+
+            int xc = (int) Math.round(x[category]);
+            int kc = (int) Math.round(k[category]);
+
+            if (!fitsTable || kc > N) {
+                pvals[category] = computeCumulHyperGeo(xc, N, n, kc);
+                continue;
+            }
+
+            int upperBound = Math.min(n, kc);
+            int lowerBound = Math.max(xc, n + kc - N);
+            double p = 0;
+            for (int i = lowerBound; i <= upperBound; i++) {
+                double h = lf[kc] - lf[kc-i] - lf[i]
+                        + lf[N-kc] - lf[N-kc-n+i] - lf[n-i]
+                        - logNChooseN;
+                p += Math.exp(h);
+            }
+
+            pvals[category] = p;
+        }
+    }
+
     public static DenseVector computeFDRqval(int N, DenseVector pvals) {
 
         // compute ranks of pvals
@@ -339,64 +384,50 @@ public class ComputeEnrichment {
         return unOrderedqval;
     }
 
-    /* move to helper class
-     * 
-     */
-    void setTo(DenseVector v, double val) {
-        for (int i=0; i< v.size(); i++) {
-            v.set(i, val);
-        }
-    }
-
     /*
-     * create a vector containing 1's if the corresponding node id is in
-     * the request's list, otherwise 0.
+     * indices of the genes in the request that are also in the background,
+     * each gene once
      */
-    DenseVector makeGeneMaskVector(NodeIds nodeIds, int numGenes) throws ApplicationException {
-
-        DenseVector mask = new DenseVector(numGenes);
+    int [] getSampleRows(NodeIds nodeIds, boolean [] inBackground) throws ApplicationException {
+        boolean [] seen = new boolean[inBackground.length];
+        int [] rows = new int[request.getNodes().size()];
+        int n = 0;
 
         for (long nodeId: request.getNodes()) {
             int index = nodeIds.getIndexForId(nodeId);
-            mask.set(index, 1);
+            if (inBackground[index] && !seen[index]) {
+                seen[index] = true;
+                rows[n++] = index;
+            }
         }
 
-        return mask;
+        return Arrays.copyOf(rows, n);
     }
 
     /*
-     * create a vector contains 1's if the corresponding node has degree > 0,
-     * otherwise 0
+     * y = y + sum of the given rows of the matrix, i.e. A'*x for
+     * an indicator vector x, but only touching the given rows
      */
-    DenseVector makeGeneMaskVector(double [] degree, int numGenes) throws ApplicationException {
-
-        // shouldn't happen, but ...
-        if (degree.length != numGenes) {
-            throw new ApplicationException("inconsistent data");
+    static void addRows(Matrix m, int [] rows, double [] y) throws ApplicationException {
+        if (m instanceof FlexFloatMatrix) {
+            FlexFloatMatrix flex = (FlexFloatMatrix) m;
+            for (int row: rows) {
+                flex.getRow(row).addTo(y);
+            }
         }
-        
-        DenseVector mask = new DenseVector(numGenes);
-
-        for (int index = 0; index < degree.length; index++) {
-            if (degree[index] > 0) {
-                mask.set(index, 1);
+        else {
+            double [] mask = new double[m.numRows()];
+            for (int row: rows) {
+                mask[row] = 1d;
+            }
+            double [] sums = new double[y.length];
+            m.transMult(mask, sums);
+            for (int i=0; i<y.length; i++) {
+                y[i] += sums[i];
             }
         }
-        
-        return mask;
     }
 
-    /*
-     * todo: put in utils class?
-     * 
-     * x = x .* y
-     */
-    void dotMult(DenseVector x, DenseVector y) {
-        for (int i=0; i<x.size(); i++) {
-            x.set(i, x.get(i) * y.get(i));
-        }
-    }
-    
     void logStart() {
 
     }
@@ -27,6 +27,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
 
 import no.uib.cipr.matrix.DenseMatrix;
 import no.uib.cipr.matrix.DenseVector;
@@ -54,11 +56,14 @@ import org.genemania.engine.core.data.NodeIds;
 import org.genemania.engine.core.integration.Feature;
 import org.genemania.engine.core.integration.FeatureWeightMap;
 import org.genemania.engine.core.mania.CoreMania;
+import org.genemania.engine.core.utils.EnginePool;
 import org.genemania.engine.core.utils.Logging;
 import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.labels.LabelVectorGenerator;
 import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.MatrixCursor;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.CompactSymFloatMatrix;
 import org.genemania.exception.ApplicationException;
 import org.genemania.type.CombiningMethod;
 
@@ -171,6 +176,15 @@ public class FindRelated {
         NodeIds nodeIds = cache.getNodeIds(request.getOrganismId());
         AttributeGroups attributeGroups = cache.getAttributeGroups(safeGetNamespace(), request.getOrganismId());        
         Map<Long, Collection<AttributeDto>> nodeToAttributes = new HashMap<Long, Collection<AttributeDto>>();
+
+        // matrix positions of the selected nodes, looked up once for all features
+        Collection<NodeDto> nodes = response.getNodes();
+        long [] selectedIds = new long[nodes.size()];
+        int n = 0;
+        for (NodeDto node: nodes) {
+            selectedIds[n++] = node.getId();
+        }
+        int [] selectedIndices = nodeIds.indicesForIds(selectedIds);
         
         for (Feature feature: features.keySet()) {
             
@@ -190,10 +204,9 @@ public class FindRelated {
             int attributeIndex = attributeGroups.getIndexForAttributeId(feature.getGroupId(), feature.getId());
             
             Matrix data = attributeSet.getData();
-            for (NodeDto node: response.getNodes()) {
-                int nodeIndex = nodeIds.getIndexForId(node.getId());
-                if (data.get(nodeIndex, attributeIndex) != 0d) {
-                    updateNodeAttributes(node.getId(), nodeToAttributes, attributeDto);
+            for (int i=0; i<selectedIndices.length; i++) {
+                if (data.get(selectedIndices[i], attributeIndex) != 0d) {
+                    updateNodeAttributes(selectedIds[i], nodeToAttributes, attributeDto);
                 }
             }
         }    
@@ -469,66 +482,72 @@ public class FindRelated {
      * @return
      */
     public Collection<InteractionDto> matrixToInteractions(SymMatrix network, int[] indicesForTopScores, HashMap<Long, NodeDto> nodeVOs) throws ApplicationException {
-
-        ArrayList<InteractionDto> interactions = new ArrayList<InteractionDto>();
-
-
-        NodeIds nodeIds = cache.getNodeIds(request.getOrganismId());
-
+        long [] nodeIds = cache.getNodeIds(request.getOrganismId()).idsForIndices(indicesForTopScores);
+        NodeDto [] nodes = new NodeDto[indicesForTopScores.length];
         for (int i = 0; i < indicesForTopScores.length; i++) {
-            for (int j = 0; j < i; j++) {
-                int idx = indicesForTopScores[i];
-                int jdx = indicesForTopScores[j];
-                long from = nodeIds.getIdForIndex(idx);
-                long to = nodeIds.getIdForIndex(jdx);
-                double weight = network.get(idx, jdx);
-
-                // we'll be getting 0 from the sparse matrix for
-                // interactions that are not present, filter out
-                if (weight == 0d) {
-                    continue;
-                }
+            nodes[i] = nodeVOs.get(nodeIds[i]);
+            if (nodes[i] == null) {
+                throw new ApplicationException("mapping error");
+            }
+        }
 
-                NodeDto fromNodeVO = nodeVOs.get(from);
-                NodeDto toNodeVO = nodeVOs.get(to);
+        return matrixToInteractions(network, indicesForTopScores, nodes);
+    }
 
-                if (fromNodeVO == null || toNodeVO == null) {
-                    throw new ApplicationException("mapping error");
-                }
+    /*
+     * same, with the node for indicesForTopScores[i] given in nodes[i].
+     * pulls out the submatrix of the result nodes in one pass over their
+     * rows, and walks its stored entries instead of probing every pair.
+     */
+    static Collection<InteractionDto> matrixToInteractions(SymMatrix network, int[] indicesForTopScores, NodeDto [] nodes) {
+        ArrayList<InteractionDto> interactions = new ArrayList<InteractionDto>();
+
+        SymMatrix subMatrix = CompactSymFloatMatrix.compact(network.subMatrix(indicesForTopScores));
+        MatrixCursor cursor = subMatrix.cursor();
+        while (cursor.next()) {
 
-                InteractionDto interaction = new InteractionDto();
-                interaction.setNodeVO1(fromNodeVO);
-                interaction.setNodeVO2(toNodeVO);
-                interaction.setWeight(weight);
-                interactions.add(interaction);
+            // lower triangle only, and skip stored zeros
+            int i = cursor.row();
+            int j = cursor.col();
+            double weight = cursor.val();
+            if (i <= j || weight == 0d) {
+                continue;
             }
+
+            InteractionDto interaction = new InteractionDto();
+            interaction.setNodeVO1(nodes[i]);
+            interaction.setNodeVO2(nodes[j]);
+            interaction.setWeight(weight);
+            interactions.add(interaction);
         }
 
         return interactions;
-
     }
 
     /*
-     * update response with list of network dto's, and node dto's
+     * update response with list of network dto's, and node dto's. the
+     * interactions of each network are extracted on the engine pool.
      */
     public void getSourceInteractions(RelatedGenesEngineResponseDto response, int[] indicesForTopScores, Vector scores,
             FeatureWeightMap featureWeights) throws ApplicationException {
 
-        List<NetworkDto> sourceNetworks = new ArrayList<NetworkDto>();
+        final List<NetworkDto> sourceNetworks = new ArrayList<NetworkDto>();
 
         // build up NodeVO's which we'll use in our interaction graph
+        long [] nodeIds = cache.getNodeIds(request.getOrganismId()).idsForIndices(indicesForTopScores);
         HashMap<Long, NodeDto> nodeVOs = new HashMap<Long, NodeDto>();
+        final NodeDto [] nodes = new NodeDto[indicesForTopScores.length];
         for (int i = 0; i < indicesForTopScores.length; i++) {
             NodeDto nodeVO = new NodeDto();
 
-            NodeIds nodeIds = cache.getNodeIds(request.getOrganismId());
-            long nodeId = nodeIds.getIdForIndex(indicesForTopScores[i]);
+            long nodeId = nodeIds[i];
 
             double score = scores.get(indicesForTopScores[i]);
 
             nodeVO.setId(nodeId);
             nodeVO.setScore(score);
             nodeVOs.put(nodeId, nodeVO);
+            nodes[i] = nodeVO;
         }
 
         for (Feature feature: featureWeights.keySet()) {
@@ -536,10 +555,6 @@ public class FindRelated {
                 continue;
             }
 
-            if (request.getProgressReporter().isCanceled()) {
-                throw new CancellationException();
-            }
-
             Double weight = featureWeights.get(feature);
             long networkId = feature.getId();
             
@@ -558,24 +573,59 @@ public class FindRelated {
             NetworkDto sourceNetwork = new NetworkDto();
             sourceNetwork.setWeight(weight);
             sourceNetwork.setId(networkId);
+            sourceNetworks.add(sourceNetwork);
+        }
 
-            Network network = cache.getNetwork(safeGetNamespace(), request.getOrganismId(), networkId);
-            Collection<InteractionDto> sourceInteractions = matrixToInteractions(network.getData(), indicesForTopScores, nodeVOs);
-            sourceNetwork.setInteractions(sourceInteractions);
+        // the node lookup above is the only shared state, networks
+        // are filled in independently
+        final int [] indices = indicesForTopScores;
+        final String namespace = safeGetNamespace();
+        final AtomicReference<ApplicationException> failure = new AtomicReference<ApplicationException>();
+        final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(sourceNetworks.size());
+        for (final NetworkDto sourceNetwork: sourceNetworks) {
+            tasks.add(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    if (failure.get() != null) {
+                        return;
+                    }
+                    try {
+                        if (request.getProgressReporter().isCanceled()) {
+                            throw new CancellationException();
+                        }
 
-            //logger.debug(String.format("network %s has a weight of %s and contains %s interactions", networkId, weight, sourceInteractions.size()));
-            //SimpleModelConverter.logInteractions(networkId, sourceInteractions);
+                        Network network = cache.getNetwork(namespace, request.getOrganismId(), sourceNetwork.getId());
+                        sourceNetwork.setInteractions(matrixToInteractions(network.getData(), indices, nodes));
+                    }
+                    catch (ApplicationException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
 
-            sourceNetworks.add(sourceNetwork);
+        EnginePool.instance().invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        if (failure.get() != null) {
+            throw failure.get();
         }
 
         response.setNetworks(sourceNetworks);
         
         // add in the list of nodes separately in the result, nodes with attributes but not connected to networks
         // won't be present in the graph otherwise.
-        ArrayList<NodeDto> nodes = new ArrayList<NodeDto>();
-        nodes.addAll(nodeVOs.values());
-        response.setNodes(nodes);
+        ArrayList<NodeDto> nodeList = new ArrayList<NodeDto>();
+        nodeList.addAll(nodeVOs.values());
+        response.setNodes(nodeList);
     }
 
     /*
@@ -668,11 +718,7 @@ public class FindRelated {
                 throw new ApplicationException(String.format("the node id %d was passed multiple times in request", nodeId));
             }
 
-            long n = nodeId.longValue();
-            try {
-                nodeIds.getIndexForId(n);
-            }
-            catch (ApplicationException e) {
+            if (!nodeIds.containsId(nodeId.longValue())) {
                 throw new ApplicationException(String.format("node id %d is not valid for organism id %d", nodeId, organismId));
             }
         }
@@ -710,10 +756,7 @@ public class FindRelated {
                     }
                 }
 
-                try {
-                    networkIds.getIndexForId(n);
-                }
-                catch (ApplicationException e) {
+                if (!networkIds.containsId(n)) {
                     throw new ApplicationException(String.format("network id %d is not valid for organism id %d", networkId, organismId));
                 }
             }
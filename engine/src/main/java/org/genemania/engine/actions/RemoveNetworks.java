@@ -88,6 +88,7 @@ public class RemoveNetworks {
         precomputer.removeNetwork((int) request.getNetworkId());
 
         cache.removeData(network);
+        cache.removeNetworkSummary(request.getNamespace(), request.getOrganismId(), request.getNetworkId());
 
         return new RemoveNetworkEngineResponseDto();
 
@@ -65,7 +65,7 @@ public class UploadNetwork {
             request.getProgressReporter().setProgress(Constants.PROGRESS_UPLOAD_START);
             request.getProgressReporter().setStatus(Constants.PROGRESS_UPLOAD_START_MESSAGE);
 
-            UserNetworkProcessor processor = new UserNetworkProcessor(cache, cache.getCacheDir());
+            UserNetworkProcessor processor = new UserNetworkProcessor(cache);
 
             UploadNetworkEngineResponseDto response = processor.process(request);
 
@@ -30,10 +30,14 @@ import org.genemania.engine.core.data.Data;
 import org.genemania.engine.core.data.DatasetInfo;
 import org.genemania.engine.core.data.KtK;
 import org.genemania.engine.core.data.KtT;
+import org.genemania.engine.core.data.Network;
 import org.genemania.engine.core.data.NetworkIds;
+import org.genemania.engine.core.data.NetworkSummary;
 import org.genemania.engine.core.integration.gram.BasicGramBuilder;
-import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.core.integration.gram.GramProducts;
+import org.genemania.engine.matricks.MatrixCursor;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.CompactSymFloatMatrix;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ProgressReporter;
 
@@ -228,41 +232,98 @@ public class UserDataPrecomputer {
     /*
      * run through any additional computations to
      * facilitate/optimize future use of the given network
+     *
+     * the products with all the other networks, core and user, are
+     * computed in parallel. each visits the nonzeros of the sparser
+     * of the two networks and looks them up in the other, using the
+     * compacted upload as the index into its nonzeros. where a network
+     * has a summary and it shows no interactions on any of the nodes
+     * of the upload, the product is zero and the network isn't loaded.
+     * the upload's own summary is saved for later uploads to use.
      */
-    void updateKtK(long networkId, SymMatrix networkData) throws ApplicationException {
+    void updateKtK(final long networkId, SymMatrix networkData) throws ApplicationException {
+
+        final int index = networkIds.getIndexForId(networkId)+1; // +1 because of bias
 
-        int index = networkIds.getIndexForId(networkId)+1; // +1 because of bias
+        final CompactSymFloatMatrix upload = CompactSymFloatMatrix.compact(networkData);
+        final NetworkSummary uploadSummary = NetworkSummary.summarize(new Network(namespace, organismId, networkId, upload));
+        final int [] uploadNodes = uploadSummary.getNodeList();
+        cache.putNetworkSummary(uploadSummary);
 
-        double networkSum = networkData.elementSum();
-        DenseMatrix userKtKData = userKtK.getData();
+        double networkSum = upload.elementSum();
+        final DenseMatrix userKtKData = userKtK.getData();
         
         userKtKData.set(index, 0, networkSum);
         userKtKData.set(0, index, networkSum);
 
         // compute element-wise product of user matrix with all the other,
-        // matrices, both core and user
-        for (int i=0; i<networkIds.getNetworkIds().length; i++) {
-            long otherNetworkId = networkIds.getIdForIndex(i);
-            int otherIndex = i+1; // +1 because of bias. bet you forgot already
+        // matrices, both core and user. each task writes its own cells
+        new GramProducts(progress).forEach(0, networkIds.getNetworkIds().length, new GramProducts.FeatureTask() {
+            public void run(int i) throws ApplicationException {
+                long otherNetworkId = networkIds.getIdForIndex(i);
+                int otherIndex = i+1; // +1 because of bias. bet you forgot already
 
-            if (progress.isCanceled()) {
-                throw new CancellationException();
+                double val = product(networkId, upload, uploadSummary, uploadNodes, otherNetworkId);
+
+                userKtKData.set(index, otherIndex, val);
+                userKtKData.set(otherIndex, index, val);
             }
+        });
+    }
 
-            logger.debug("computing product of user network " + networkId + " with network " + otherNetworkId);
+    /*
+     * element-wise product sum of the upload with another network
+     */
+    double product(long networkId, CompactSymFloatMatrix upload, NetworkSummary uploadSummary,
+            int [] uploadNodes, long otherNetworkId) throws ApplicationException {
 
-            SymMatrix otherNetworkData = cache.getNetwork(namespace, organismId, otherNetworkId).getData();
-            //Matrix m = provider.getNetworkMatrix(otherNetworkId, NullProgressReporter.instance());
+        if (otherNetworkId == networkId) {
+            return upload.elementMultiplySum(upload);
+        }
+
+        NetworkSummary otherSummary = getNetworkSummary(otherNetworkId);
+        if (otherSummary != null && !otherSummary.overlaps(uploadNodes)) {
+            logger.debug("skipping product of user network " + networkId + " with non-overlapping network " + otherNetworkId);
+            return 0d;
+        }
+
+        logger.debug("computing product of user network " + networkId + " with network " + otherNetworkId);
+        SymMatrix otherNetworkData = cache.getNetwork(namespace, organismId, otherNetworkId).getData();
+
+        // without a summary, guess that the user network
+        // will typically be the sparser
+        if (otherSummary != null && otherSummary.getNnz() < uploadSummary.getNnz()) {
+            return elementMultiplySumByLookup(otherNetworkData, upload);
+        }
+        else {
+            return upload.elementMultiplySumByLookup(otherNetworkData);
+        }
+    }
 
-            // TODO: optimize this by determining the sparser network, and
-            // iterating over that first. for we just guess that the user network
-            // will typically be very sparse
-            double val = networkData.elementMultiplySum(otherNetworkData);
-            //logger.debug("product was: " + val);
+    /*
+     * summaries are optional, null for networks cached
+     * without one. failures reading one that exists are
+     * real errors and aren't hidden
+     */
+    NetworkSummary getNetworkSummary(long networkId) throws ApplicationException {
+        return cache.getNetworkSummary(namespace, organismId, networkId);
+    }
 
-            userKtKData.set(index, otherIndex, val);
-            userKtKData.set(otherIndex, index, val);
+    /*
+     * visit the nonzeros of the sparse matrix, looking each up in
+     * the compact one
+     */
+    static double elementMultiplySumByLookup(SymMatrix sparse, CompactSymFloatMatrix m) {
+        double sum = 0d;
+        MatrixCursor cursor = sparse.cursor();
+        while (cursor.next()) {
+            double val = cursor.val();
+            if (val != 0d) {
+                sum += val*m.get(cursor.row(), cursor.col());
+            }
         }
+
+        return sum;
     }
 
     public void reallocKtT() throws ApplicationException {
@@ -286,22 +347,21 @@ public class UserDataPrecomputer {
      * and refactoring TODO.
      */
     public void updateKtT(long networkId, SymMatrix network) throws ApplicationException {
-        int index = networkIds.getIndexForId(networkId)+1; // +1 because of bias
-        for (int branch = 0; branch < Constants.goBranches.length; branch++) {
-
-            if (progress.isCanceled()) {
-                throw new CancellationException();
-            }
+        final int index = networkIds.getIndexForId(networkId)+1; // +1 because of bias
+        final CompactSymFloatMatrix upload = CompactSymFloatMatrix.compact(network);
 
-            CoAnnotationSet annoSet = cache.getCoAnnotationSet(organismId, Constants.goBranches[branch]);
-            DenseMatrix KtTData = userKtT[branch].getData();
+        new GramProducts(progress).forEach(0, Constants.goBranches.length, new GramProducts.FeatureTask() {
+            public void run(int branch) throws ApplicationException {
+                CoAnnotationSet annoSet = cache.getCoAnnotationSet(organismId, Constants.goBranches[branch]);
+                DenseMatrix KtTData = userKtT[branch].getData();
 
-            SymMatrix coAnnotationMatrix = annoSet.GetCoAnnotationMatrix();
-            int numberOfGenes = annoSet.GetCoAnnotationMatrix().numRows();
-            double val = BasicGramBuilder.computeKttElement(numberOfGenes, network, coAnnotationMatrix, annoSet.GetBHalf(), annoSet.GetConstant());
+                SymMatrix coAnnotationMatrix = annoSet.GetCoAnnotationMatrix();
+                int numberOfGenes = coAnnotationMatrix.numRows();
+                double val = BasicGramBuilder.computeSparseKttElement(numberOfGenes, upload, coAnnotationMatrix, annoSet.GetBHalf(), annoSet.GetConstant());
 
-            KtTData.set(index, 0, val);
-        }
+                KtTData.set(index, 0, val);
+            }
+        });
     }
 
     /*
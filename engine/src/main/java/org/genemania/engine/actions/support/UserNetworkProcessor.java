@@ -20,23 +20,22 @@
 
 package org.genemania.engine.actions.support;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
-import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.apache.log4j.Logger;
 import org.genemania.dto.UploadNetworkEngineRequestDto;
 import org.genemania.dto.UploadNetworkEngineResponseDto;
 import org.genemania.engine.Constants;
 import org.genemania.engine.cache.DataCache;
-import org.genemania.engine.converter.sym.FileNetworkSymMatrixProvider;
+import org.genemania.engine.config.Config;
 import org.genemania.engine.converter.sym.INetworkSymMatrixProvider;
+import org.genemania.engine.converter.sym.ReaderNetworkSymMatrixProvider;
 import org.genemania.engine.core.data.Network;
+import org.genemania.engine.core.data.NodeIds;
 import org.genemania.engine.core.evaluation.ProfileToNetworkDriver;
 import org.genemania.engine.core.evaluation.correlation.CorrelationFactory.CorrelationType;
+import org.genemania.engine.core.utils.Normalization;
 import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.matricks.MatrixCursor;
 import org.genemania.engine.matricks.SymMatrix;
@@ -57,11 +56,17 @@ import org.genemania.util.ProgressReporter;
 public class UserNetworkProcessor {
     private static Logger logger = Logger.getLogger(UserNetworkProcessor.class);
     private DataCache cache;
-    private String tempDirname;
 
-    public UserNetworkProcessor(DataCache cache, String tempDirname) {
+    public UserNetworkProcessor(DataCache cache) {
         this.cache = cache;
-        this.tempDirname = tempDirname;
+    }
+
+    /*
+     * uploads no longer go through temp files, the
+     * directory is ignored
+     */
+    public UserNetworkProcessor(DataCache cache, String tempDirname) {
+        this(cache);
     }
 
     /*
@@ -146,75 +151,33 @@ public class UserNetworkProcessor {
     /*
      * apply p2n etc  to convert the requests data stream
      * into an interaction matrix
-     * 
-     * TODO: need to fix up to avoid the extra trip of temp user data to the filesystem. 
+     *
+     * the data is streamed from the request straight into the
+     * matrix, there's no intermediate text written out. profiles
+     * still have to be held in memory for the correlations, but
+     * the network is only ever held in sparse form.
+     *
      * TODO: break up into separate processors per layout/method combo.
      * TODO: get to doing all the todo's!
      */
     SymMatrix convertNetwork(UploadNetworkEngineRequestDto request) throws ApplicationException {
 
+        NodeIds nodeIds = cache.getNodeIds(request.getOrganismId());
+
         SymMatrix matrix = null;
         // handle profile data with pearson correlation
         if (request.getMethod() == NetworkProcessingMethod.PEARSON && request.getLayout() == DataLayout.PROFILE) {
-            ProfileToNetworkDriver p2n = new ProfileToNetworkDriver();
-
-            try {
-                File tempFile = getTempFile(request.getNamespace(), (int)request.getOrganismId(), (int)request.getNetworkId());
-                //tempFile.deleteOnExit();
-
-                logger.debug("writing temp output to " + tempFile);
-                Writer result = new BufferedWriter(new FileWriter(tempFile));
-
-                try {
-                    p2n.setSynReader(makeIdMapping((int) request.getOrganismId()));
-                    p2n.setNoHeader(true);
-                    p2n.setK(request.getSparsification());
-                    p2n.setCorrelationType(CorrelationType.PEARSON);
-                    p2n.setProfileType("CONTINUOUS");
-
-                    // better to use a child progressreporter here instead?
-                    p2n.setProgressReporter(request.getProgressReporter());
+            ProfileToNetworkDriver p2n = makeProfileConverter(request, nodeIds);
+            p2n.setCorrelationType(CorrelationType.PEARSON);
+            p2n.setProfileType("CONTINUOUS");
 
-                    p2n.process(request.getData(), result);
-
-                }
-                finally {
-                    result.close();
-                }
-
-                matrix = convertToMatrixRepresentation(request.getOrganismId(), request.getNetworkId(), request.getNamespace(), request.getProgressReporter(), false);
-                
-            }
-            // wrap ioexeption in application exception, other application exceptions
-            // pass on through
-            catch (IOException e) {
-                throw new ApplicationException("Failed to convert profile to network", e);
-            }
-
-            // TODO: proper resource cleanup (close file in finally)
-            
+            matrix = convertProfile(p2n, request, nodeIds);
         }
         // handle a direct weighted network load
         else if (request.getMethod() == NetworkProcessingMethod.DIRECT && request.getLayout() == DataLayout.WEIGHTED_NETWORK) {
 
             try {
-                File tempFile = getTempFile(request.getNamespace(), (int)request.getOrganismId(), (int)request.getNetworkId());
-                logger.debug("writing temp output to " + tempFile);
-                Writer result = new BufferedWriter(new FileWriter(tempFile));
-
-                try {
-                    char[] buf = new char[1024];
-                    Reader data = request.getData();
-                    int n;
-                    while ((n = data.read(buf)) > 0) {
-                        result.write(buf, 0, n);
-                    }
-                }
-                finally {
-                    result.close();
-                }
-
-                matrix = convertToMatrixRepresentation(request.getOrganismId(), request.getNetworkId(), request.getNamespace(), request.getProgressReporter(), false);
+                matrix = convertInteractions(request, nodeIds, false);
             }
             catch (Exception e) {
                 throw new ApplicationException("Failed to load direct network", e);
@@ -224,105 +187,29 @@ public class UserNetworkProcessor {
         else if (request.getMethod() == NetworkProcessingMethod.DIRECT && request.getLayout() == DataLayout.BINARY_NETWORK) {
 
             try {
-                File tempFile = getTempFile(request.getNamespace(), (int)request.getOrganismId(), (int)request.getNetworkId());
-                logger.debug("writing temp output to " + tempFile);
-                Writer result = new BufferedWriter(new FileWriter(tempFile));
-
-                try {
-                    char[] buf = new char[1024];
-                    Reader data = request.getData();
-                    int n;
-                    while ((n = data.read(buf)) > 0) {
-                        result.write(buf, 0, n);
-                    }
-                }
-                finally {
-                    result.close();
-                }
-
-                matrix = convertToMatrixRepresentation(request.getOrganismId(), request.getNetworkId(), request.getNamespace(), request.getProgressReporter(), true);
+                matrix = convertInteractions(request, nodeIds, true);
             }
             catch (Exception e) {
                 throw new ApplicationException("Failed to load binary network", e);
             }
         }
         else if (request.getMethod() == NetworkProcessingMethod.LOG_FREQUENCY && request.getLayout() == DataLayout.SPARSE_PROFILE) {
-            ProfileToNetworkDriver p2n = new ProfileToNetworkDriver();
-
-            try {
-                File tempFile = getTempFile(request.getNamespace(), (int)request.getOrganismId(), (int)request.getNetworkId());
-                //tempFile.deleteOnExit();
-
-                logger.debug("writing temp output to " + tempFile);
-                Writer result = new BufferedWriter(new FileWriter(tempFile));
-
-                try {
-                    p2n.setSynReader(makeIdMapping((int) request.getOrganismId()));
-                    p2n.setNoHeader(true);
-                    p2n.setK(request.getSparsification());
-                    p2n.setCorrelationType(CorrelationType.PEARSON_BIN_LOG_NO_NORM);
-                    p2n.setProfileType("BINARY");
-                    p2n.setKeepAllTies(true);
-                    p2n.setLimitTies(true);
-
-                    // better to use a child progressreporter here instead?
-                    p2n.setProgressReporter(request.getProgressReporter());
-
-                    p2n.process(request.getData(), result);
-
-                }
-                finally {
-                    result.close();
-                }
-
-                matrix = convertToMatrixRepresentation(request.getOrganismId(), request.getNetworkId(), request.getNamespace(), request.getProgressReporter(), false);
-
-            }
-            // wrap ioexeption in application exception, other application exceptions
-            // pass on through
-            catch (IOException e) {
-                throw new ApplicationException("Failed to convert profile to network", e);
-            }
+            ProfileToNetworkDriver p2n = makeProfileConverter(request, nodeIds);
+            p2n.setCorrelationType(CorrelationType.PEARSON_BIN_LOG_NO_NORM);
+            p2n.setProfileType("BINARY");
+            p2n.setKeepAllTies(true);
+            p2n.setLimitTies(true);
 
+            matrix = convertProfile(p2n, request, nodeIds);
         }
         else if (request.getMethod() == NetworkProcessingMethod.LOG_FREQUENCY && request.getLayout() == DataLayout.BINARY_NETWORK) {
-            ProfileToNetworkDriver p2n = new ProfileToNetworkDriver();
-
-            try {
-                File tempFile = getTempFile(request.getNamespace(), (int)request.getOrganismId(), (int)request.getNetworkId());
-                //tempFile.deleteOnExit();
-
-                logger.debug("writing temp output to " + tempFile);
-                Writer result = new BufferedWriter(new FileWriter(tempFile));
-
-                try {
-                    p2n.setSynReader(makeIdMapping((int) request.getOrganismId()));
-                    p2n.setNoHeader(true);
-                    p2n.setK(request.getSparsification());
-                    p2n.setCorrelationType(CorrelationType.PEARSON_BIN_LOG_NO_NORM);
-                    p2n.setProfileType("NETWORK");
-                    p2n.setKeepAllTies(true);
-                    p2n.setLimitTies(true);
+            ProfileToNetworkDriver p2n = makeProfileConverter(request, nodeIds);
+            p2n.setCorrelationType(CorrelationType.PEARSON_BIN_LOG_NO_NORM);
+            p2n.setProfileType("NETWORK");
+            p2n.setKeepAllTies(true);
+            p2n.setLimitTies(true);
 
-                    // better to use a child progressreporter here instead?
-                    p2n.setProgressReporter(request.getProgressReporter());
-
-                    p2n.process(request.getData(), result);
-
-                }
-                finally {
-                    result.close();
-                }
-
-                matrix = convertToMatrixRepresentation(request.getOrganismId(), request.getNetworkId(), request.getNamespace(), request.getProgressReporter(), false);
-
-            }
-            // wrap ioexeption in application exception, other application exceptions
-            // pass on through
-            catch (IOException e) {
-                throw new ApplicationException("Failed to convert profile to network", e);
-            }
-            
+            matrix = convertProfile(p2n, request, nodeIds);
         }
         else {
             throw new ApplicationException("unsupported processing method/data layout combination"); // shouldn't actually get here due to request checking
@@ -331,32 +218,50 @@ public class UserNetworkProcessor {
         return matrix;
     }
 
-    private File getTempFile(String namespace, int organismId, int networkId) {
-        String dirName = getUserTempDirname(namespace);
-        File dir = new File(dirName);
-        if (!dir.isDirectory()) {
-            dir.mkdir();
-        }
-
-        String fileName = dirName + File.separator + String.format("%d.%d.txt", organismId, networkId);
-        return new File(fileName);
+    /*
+     * p2n settings common to all the profile layouts
+     */
+    private ProfileToNetworkDriver makeProfileConverter(UploadNetworkEngineRequestDto request, NodeIds nodeIds) {
+        ProfileToNetworkDriver p2n = new ProfileToNetworkDriver();
+        p2n.setSynonyms(makeIdMapping(nodeIds));
+        p2n.setNoHeader(true);
+        p2n.setK(request.getSparsification());
+
+        // better to use a child progressreporter here instead?
+        p2n.setProgressReporter(request.getProgressReporter());
+        return p2n;
     }
 
-    private String getTempDirname() {
-        return tempDirname;
-    }
+    /*
+     * compute the network for the requests profile data, setting
+     * interactions directly into a sparse matrix
+     */
+    SymMatrix convertProfile(ProfileToNetworkDriver p2n, UploadNetworkEngineRequestDto request, NodeIds nodeIds) throws ApplicationException {
+        SymMatrix matrix = Config.instance().getMatrixFactory().symSparseMatrix(nodeIds.getNodeIds().length);
 
-    private String getUserTempDirname(String namespace) {
-        return getTempDirname() + File.separator + namespace;
+        try {
+            p2n.process(request.getData(), matrix, nodeIds);
+        }
+        // wrap ioexeption in application exception, other application exceptions
+        // pass on through
+        catch (IOException e) {
+            throw new ApplicationException("Failed to convert profile to network", e);
+        }
+
+        // same normalization as a network loaded through an interaction cursor
+        matrix.setDiag(0d);
+        Normalization.normalizeNetwork(matrix);
+        matrix.compact();
+        return matrix;
     }
 
     /*
-     * load up interactions from temp user file on disk and convert to matrix form
+     * load interactions from the requests data stream and convert to matrix form
      */
-    SymMatrix convertToMatrixRepresentation(long organismId, long networkId, String namespace, ProgressReporter progress, boolean isBinary) throws ApplicationException {
+    SymMatrix convertInteractions(UploadNetworkEngineRequestDto request, NodeIds nodeIds, boolean isBinary) throws ApplicationException {
 
-        INetworkSymMatrixProvider provider = new FileNetworkSymMatrixProvider(organismId, getUserTempDirname(namespace), cache.getNodeIds(organismId), isBinary);
-        SymMatrix matrix = provider.getNetworkMatrix(networkId, progress);
+        INetworkSymMatrixProvider provider = new ReaderNetworkSymMatrixProvider(request.getData(), nodeIds, isBinary);
+        SymMatrix matrix = provider.getNetworkMatrix(request.getNetworkId(), request.getProgressReporter());
         matrix.compact();
         return matrix;
 
@@ -428,24 +333,20 @@ public class UserNetworkProcessor {
     }
 
     /*
-     * synthesize a mapping file that contains nodeId<tab>nodeId in
-     * each record, to use as a mapping for profileToNetworkDriver
+     * synthesize a mapping that maps each nodeId to itself, to use
+     * as the identifier mapping for profileToNetworkDriver
      * for input files that have had identifier mappings already applied
      *
      */
-    Reader makeIdMapping(long organismId) throws ApplicationException {
-        long [] mapping = cache.getNodeIds(organismId).getNodeIds();
-
-        if (mapping == null) {
-            throw new ApplicationException("Failed to read node mapping from cache");
-        }
+    static Map<String, String> makeIdMapping(NodeIds nodeIds) {
+        long [] mapping = nodeIds.getNodeIds();
 
-        StringBuilder builder = new StringBuilder();
+        Map<String, String> synonyms = new LinkedHashMap<String, String>(mapping.length*4/3 + 1);
         for (int i=0; i<mapping.length; i++) {
-            builder.append(String.format("%s\t%s\n", mapping[i], mapping[i]));
+            String id = Long.toString(mapping[i]);
+            synonyms.put(id, id);
         }
 
-        Reader reader = new StringReader(builder.toString());
-        return reader;
+        return synonyms;
     }
 }
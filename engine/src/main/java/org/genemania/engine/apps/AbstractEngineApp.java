@@ -44,7 +44,7 @@ import org.genemania.engine.apps.support.DataConnector;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.cache.FileSerializedObjectCache;
 import org.genemania.engine.cache.IObjectCache;
-import org.genemania.engine.cache.MemObjectCache;
+import org.genemania.engine.cache.LruObjectCache;
 import org.genemania.engine.cache.SynchronizedObjectCache;
 import org.genemania.engine.config.Config;
 import org.genemania.exception.ApplicationException;
@@ -314,10 +314,12 @@ public abstract class AbstractEngineApp {
     public void initDataCache(String cacheDir, boolean memCacheEnabled) {
     	IObjectCache objectCache = new FileSerializedObjectCache(cacheDir);
     	if (memCacheEnabled) {
-    		objectCache = new MemObjectCache(objectCache);
+    		// already thread-safe
+    		objectCache = new LruObjectCache(objectCache);
+    	}
+    	else {
+    		objectCache = new SynchronizedObjectCache(objectCache);
     	}
-    	
-    	objectCache = new SynchronizedObjectCache(objectCache);
         cache = new DataCache(objectCache);
     }
  
@@ -199,7 +199,7 @@ public class CacheBuilder extends AbstractEngineApp {
 
         Network networkObj = new Network(Data.CORE, organism.getId(), network.getId());
         networkObj.setData(matrix);
-        cache.putNetwork(networkObj);
+        cache.putNetwork(networkObj, true);
     }
 
     public boolean getCommandLineArgs(String[] args) {
@@ -0,0 +1,153 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.apps;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.genemania.engine.cache.FileSerializedObjectCache;
+import org.genemania.engine.cache.MappedObjectCache;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.exception.ApplicationException;
+import org.kohsuke.args4j.Option;
+
+/**
+ * rewrite the symmetric matrices (networks, co-annotation counts) in an
+ * existing cache directory from java serialized form into the memory-mapped
+ * format read by MappedObjectCache. all other objects are left as they are.
+ *
+ * conversion is in place, under -cachedir. unless -keepSerialized is given
+ * the .ser file is removed once its mapped replacement is written, so the
+ * directory should be a copy if it is also still being served by workers
+ * using FileSerializedObjectCache.
+ */
+public class MappedCacheConverter extends AbstractEngineApp {
+
+    private static Logger logger = Logger.getLogger(MappedCacheConverter.class);
+
+    private static final String SERIALIZED_EXTENSION = ".ser";
+
+    @Option(name = "-keepSerialized", usage = "leave the original .ser files in place after conversion")
+    private boolean keepSerialized = false;
+
+    private int numConverted;
+    private int numSkipped;
+
+    public boolean isKeepSerialized() {
+        return keepSerialized;
+    }
+
+    public void setKeepSerialized(boolean keepSerialized) {
+        this.keepSerialized = keepSerialized;
+    }
+
+    public int getNumConverted() {
+        return numConverted;
+    }
+
+    public int getNumSkipped() {
+        return numSkipped;
+    }
+
+    /*
+     * no lucene index needed, just the cache dir
+     */
+    @Override
+    public void init() throws Exception {
+        setupLogging();
+        loadEngineConfig();
+    }
+
+    @Override
+    public void process() throws ApplicationException {
+        String cacheDir = getCacheDir();
+        if (cacheDir == null || !new File(cacheDir).isDirectory()) {
+            throw new ApplicationException("cache directory not found: " + cacheDir);
+        }
+
+        logger.info("converting networks in cache dir " + cacheDir);
+
+        FileSerializedObjectCache serializedCache = new FileSerializedObjectCache(cacheDir);
+        MappedObjectCache mappedCache = new MappedObjectCache(cacheDir);
+
+        numConverted = 0;
+        numSkipped = 0;
+        convertDir(new File(cacheDir), new ArrayList<String>(), serializedCache, mappedCache);
+
+        logger.info(String.format("converted %d objects, left %d in serialized form", numConverted, numSkipped));
+    }
+
+    /*
+     * walk the tree, building up the key as we descend
+     */
+    void convertDir(File dir, List<String> keyPrefix, FileSerializedObjectCache serializedCache, MappedObjectCache mappedCache) throws ApplicationException {
+        File [] entries = dir.listFiles();
+        if (entries == null) {
+            return;
+        }
+
+        for (File entry: entries) {
+            String name = entry.getName();
+            if (entry.isDirectory()) {
+                List<String> subKey = new ArrayList<String>(keyPrefix);
+                subKey.add(name);
+                convertDir(entry, subKey, serializedCache, mappedCache);
+            }
+            else if (name.endsWith(SERIALIZED_EXTENSION)) {
+                List<String> key = new ArrayList<String>(keyPrefix);
+                key.add(name.substring(0, name.length() - SERIALIZED_EXTENSION.length()));
+                convertFile(key.toArray(new String[key.size()]), serializedCache, mappedCache);
+            }
+        }
+    }
+
+    void convertFile(String [] key, FileSerializedObjectCache serializedCache, MappedObjectCache mappedCache) throws ApplicationException {
+        Object value = serializedCache.get(key, false);
+
+        if (value instanceof SymMatrix) {
+            logger.info("converting " + serializedCache.getFilename(key));
+            mappedCache.putMapped(key, (SymMatrix) value, !keepSerialized);
+            numConverted += 1;
+        }
+        else {
+            numSkipped += 1;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        MappedCacheConverter converter = new MappedCacheConverter();
+        if (!converter.getCommandLineArgs(args)) {
+            System.exit(1);
+        }
+
+        try {
+            converter.init();
+            converter.process();
+            converter.cleanup();
+        }
+        catch (Exception e) {
+            logger.error("Fatal error", e);
+            System.exit(1);
+        }
+    }
+}
@@ -184,7 +184,7 @@ public class PostSparsifier extends AbstractEngineApp {
                     overlap);
 
             network.setData(sparsifiedNetworkData);
-            getCache().putNetwork(network);
+            getCache().putNetwork(network, true);
         }
     }
 
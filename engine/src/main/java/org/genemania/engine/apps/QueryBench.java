@@ -39,6 +39,7 @@ import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.cache.FileSerializedObjectCache;
 import org.genemania.engine.cache.IObjectCache;
 import org.genemania.engine.cache.MemObjectCache;
+import org.genemania.engine.cache.QueryResultCache;
 import org.genemania.engine.validation.ResultWriter;
 import org.genemania.exception.ApplicationException;
 import org.genemania.exception.DataStoreException;
@@ -251,7 +252,9 @@ public class QueryBench extends AbstractEngineApp {
 
         IObjectCache cache = new FileSerializedObjectCache(getCacheDir(), compressedCache);
         cache = new MemObjectCache(cache);
-        return new Mania2(new DataCache(cache));
+        // don't let repeated queries be answered from the result cache,
+        // we're timing the computation
+        return new Mania2(new DataCache(cache), new QueryResultCache(0));
 
     }
 
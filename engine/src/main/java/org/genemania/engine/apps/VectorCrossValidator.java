@@ -55,8 +55,7 @@ import org.genemania.engine.Constants;
 import org.genemania.engine.apps.support.LabelWriter;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.cache.FileSerializedObjectCache;
-import org.genemania.engine.cache.MemObjectCache;
-import org.genemania.engine.cache.SynchronizedObjectCache;
+import org.genemania.engine.cache.LruObjectCache;
 import org.genemania.engine.config.Config;
 import org.genemania.engine.core.MatrixUtils;
 import org.genemania.engine.core.data.GoAnnotations;
@@ -314,7 +313,7 @@ public class VectorCrossValidator extends AbstractEngineApp {
 
         logger.info("initializing...");
 
-        cache = new DataCache(new SynchronizedObjectCache(new MemObjectCache(new FileSerializedObjectCache(getCacheDir()))));
+        cache = new DataCache(new LruObjectCache(new FileSerializedObjectCache(getCacheDir())));
 
         organism = getOrganism();
 
@@ -829,11 +828,82 @@ public class VectorCrossValidator extends AbstractEngineApp {
             Constants.CombiningMethod method, String goCategory,
             double[] averageMeasures, int k, int [] allPerm) throws ApplicationException {
 
+        FoldSetup fold = prepareFold(initialLabel, k, allPerm);
+        Vector label = fold.label;
+
+        // If a weighting method isn't specific to a particular gene list, don't
+        // recompute the weights for each fold.
+        if (!method.isQuerySpecific()) {
+            computeSharedWeights(coreMania, label, method);
+        }
+        else {
+            coreMania = new CoreMania(cache);
+            coreMania.computeWeights(namespace, organism.getId(), label, method, idList, attributeGroupIds, Config.instance().getAttributeEnrichmentMaxSize()); // TODO: make attribute limit configurable by user input);
+        }
+
+        // label propagation
+        coreMania.computeDiscriminant(namespace, organism.getId(), label, goCategory, biasingMethod);
+
+        //coreMania.compute(organism.getId(), label, method, idList, mapping, goCategory, biasingMethod);
+
+        evaluateFold(initialLabel, goCategory, averageMeasures, k, fold, coreMania.getDiscriminant());
+    }
+
+    /*
+     * all folds at once, for weighting methods that aren't query specific.
+     * the weights are shared, so the label propagations for all the folds
+     * are done together against the one combined network, see
+     * CoreMania.computeDiscriminants().
+     */
+    private void crossValidateFolds(CoreMania coreMania,
+            no.uib.cipr.matrix.Vector initialLabel,
+            Constants.CombiningMethod method, String goCategory,
+            double[] averageMeasures, int [] allPerm) throws ApplicationException {
+
+        List<FoldSetup> folds = new ArrayList<FoldSetup>(numFolds);
+        List<Vector> labels = new ArrayList<Vector>(numFolds);
+        for (int k = 0; k < numFolds; k++) {
+            FoldSetup fold = prepareFold(initialLabel, k, allPerm);
+            folds.add(fold);
+            labels.add(fold.label);
+        }
+
+        computeSharedWeights(coreMania, labels.get(0), method);
+
+        // label propagation
+        List<Vector> discriminants = coreMania.computeDiscriminants(namespace, organism.getId(), labels, biasingMethod);
+
+        for (int k = 0; k < numFolds; k++) {
+            evaluateFold(initialLabel, goCategory, averageMeasures, k, folds.get(k), discriminants.get(k));
+        }
+    }
+
+    private void computeSharedWeights(CoreMania coreMania, Vector label, Constants.CombiningMethod method) throws ApplicationException {
+        synchronized(coreMania) {
+            if (coreMania.getCombinedKernel(organism.getId(), namespace) == null) {
+                logger.info("computing weights since none saved");
+                coreMania.computeWeights(namespace, organism.getId(), label, method, idList, attributeGroupIds, Config.instance().getAttributeEnrichmentMaxSize()); // TODO: make attribute limit configurable by user input
+            }
+            else {
+                logger.info("reusing weights");
+            }
+        }
+    }
+
+    /*
+     * build the label vector for fold k, with the fold's portion of
+     * the permutation hidden
+     */
+    private FoldSetup prepareFold(no.uib.cipr.matrix.Vector initialLabel, int k, int [] allPerm) throws ApplicationException {
+
         //copy initial vector
+        FoldSetup fold = new FoldSetup();
         Vector label = new DenseVector(initialLabel);
+        fold.label = label;
 
         Collection<Integer> excludedRowIndices = new ArrayList<Integer>();
         Collection<Integer> includedRowIndices = new ArrayList<Integer>();
+        fold.excludedRowIndices = excludedRowIndices;
 
         //TODO: need to make different fold size for different negative set
         double foldSize = allPerm.length * 1.0 / numFolds;
@@ -848,29 +918,25 @@ public class VectorCrossValidator extends AbstractEngineApp {
             includedRowIndices.add(allPerm[i]);
         }
 
-        int numPosIncluded = 0;
-        int numNegIncluded = 0;
         for (int index: includedRowIndices) {
         	double value = initialLabel.get(index);
             if (value == 1) {
-                numPosIncluded++;
+                fold.numPosIncluded++;
             } else if (value == -1) {
-                numNegIncluded++;
+                fold.numNegIncluded++;
             }
         }
 
         // excluded portion
-        int numPos = 0;
-        int numNeg = 0;
         for (int j = firstIndex; j <= lastIndex; j++) {
             excludedRowIndices.add(allPerm[j]);
             label.set(allPerm[j], Constants.EXCLUDED_ROW_VALUE);
             double value = initialLabel.get(allPerm[j]);
             if (value == 1) {
-                numPos++;
+                fold.numPos++;
             }
             else if (value == -1) {
-                numNeg++;
+                fold.numNeg++;
             }
         }
 
@@ -878,43 +944,38 @@ public class VectorCrossValidator extends AbstractEngineApp {
 
         checkLabels(label);
 
-        // If a weighting method isn't specific to a particular gene list, don't
-        // recompute the weights for each fold.
-        if (!method.isQuerySpecific()) {
-        	synchronized(coreMania) {
-	            if (coreMania.getCombinedKernel(organism.getId(), namespace) == null) {
-	                logger.info("computing weights since none saved");
-	                coreMania.computeWeights(namespace, organism.getId(), label, method, idList, attributeGroupIds, Config.instance().getAttributeEnrichmentMaxSize()); // TODO: make attribute limit configurable by user input
-	            }
-	            else {
-	                logger.info("reusing weights");
-	            }
-        	}
-        }
-        else {
-            coreMania = new CoreMania(cache);
-            coreMania.computeWeights(namespace, organism.getId(), label, method, idList, attributeGroupIds, Config.instance().getAttributeEnrichmentMaxSize()); // TODO: make attribute limit configurable by user input);
-        }
-
-        // label propagation
-        coreMania.computeDiscriminant(namespace, organism.getId(), label, goCategory, biasingMethod);
+        return fold;
+    }
 
-        //coreMania.compute(organism.getId(), label, method, idList, mapping, goCategory, biasingMethod);
+    private void evaluateFold(no.uib.cipr.matrix.Vector initialLabel, String goCategory,
+            double[] averageMeasures, int k, FoldSetup fold, Vector discriminant) throws ApplicationException {
 
-        double[] measures = getMeasureResults(initialLabel, coreMania.getDiscriminant(), excludedRowIndices);
+        double[] measures = getMeasureResults(initialLabel, discriminant, fold.excludedRowIndices);
         for (int i = 0; i < measures.length; i++) {
             averageMeasures[i] += measures[i];
         }
 
-        writeResult(goCategory, k, numPosIncluded, numNegIncluded, numPos, numNeg, measures);
+        writeResult(goCategory, k, fold.numPosIncluded, fold.numNegIncluded, fold.numPos, fold.numNeg, measures);
         
         if (writeLabels) {
             LabelWriter writer = new LabelWriter(outFilename, nodeMediator, organismId);
-            writer.write(goCategory, k, initialLabel, coreMania.getDiscriminant(), excludedRowIndices, nodeIds);
+            writer.write(goCategory, k, initialLabel, discriminant, fold.excludedRowIndices, nodeIds);
         }
     	queryCounter += 1;
     }
 
+    /*
+     * the labels for one fold, and the counts reported for it
+     */
+    private static class FoldSetup {
+        Vector label;
+        Collection<Integer> excludedRowIndices;
+        int numPosIncluded;
+        int numNegIncluded;
+        int numPos;
+        int numNeg;
+    }
+
     /*
      * reloading those cache files everytime is a waste! TODO fix.
      */
@@ -1210,9 +1271,15 @@ public class VectorCrossValidator extends AbstractEngineApp {
             averageMeasures = new double[measures.size()];
 
             CoreMania coreMania = new CoreMania(cache);
-            for (int k = 0; k < numFolds; k++) {
-                logger.debug(String.format("executing fold %d of %d", k + 1, numFolds));
-                crossValidateVector(coreMania, initialLabel, combiningMethod, goCategory, averageMeasures, k, allPerm);
+            if (!combiningMethod.isQuerySpecific()) {
+                logger.debug(String.format("executing %d folds together", numFolds));
+                crossValidateFolds(coreMania, initialLabel, combiningMethod, goCategory, averageMeasures, allPerm);
+            }
+            else {
+                for (int k = 0; k < numFolds; k++) {
+                    logger.debug(String.format("executing fold %d of %d", k + 1, numFolds));
+                    crossValidateVector(coreMania, initialLabel, combiningMethod, goCategory, averageMeasures, k, allPerm);
+                }
             }
             
             for (int i = 0; i < averageMeasures.length; i++) {
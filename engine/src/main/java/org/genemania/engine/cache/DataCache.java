@@ -22,12 +22,16 @@ package org.genemania.engine.cache;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import no.uib.cipr.matrix.DenseVector;
+import org.apache.commons.math.special.Gamma;
 import org.apache.log4j.Logger;
 import org.genemania.engine.Constants;
 import org.genemania.engine.Constants.DataFileNames;
 import org.genemania.engine.Constants.NetworkType;
+import org.genemania.engine.config.Config;
 import org.genemania.engine.core.data.AttributeGroups;
 import org.genemania.engine.core.data.AttributeData;
 import org.genemania.engine.core.data.CategoryIds;
@@ -36,6 +40,7 @@ import org.genemania.engine.core.data.CombinedNetwork;
 import org.genemania.engine.core.data.Data;
 import org.genemania.engine.core.data.DataSupport;
 import org.genemania.engine.core.data.DatasetInfo;
+import org.genemania.engine.core.data.EnrichmentBackground;
 import org.genemania.engine.core.data.FeatureTargetCorrelation;
 import org.genemania.engine.core.data.GoAnnotations;
 import org.genemania.engine.core.data.GoCoAnnotationCounts;
@@ -45,6 +50,7 @@ import org.genemania.engine.core.data.KtKFeatures;
 import org.genemania.engine.core.data.KtT;
 import org.genemania.engine.core.data.Network;
 import org.genemania.engine.core.data.NetworkIds;
+import org.genemania.engine.core.data.NetworkSummary;
 import org.genemania.engine.core.data.NodeDegrees;
 import org.genemania.engine.core.data.NodeIds;
 import org.genemania.engine.core.integration.Feature;
@@ -63,6 +69,9 @@ public class DataCache {
     private static Logger logger = Logger.getLogger(DataCache.class);
     private IObjectCache cache;
 
+    // derived from core data, computed on first use, when there's no LruObjectCache to hold them
+    private ConcurrentHashMap<String, EnrichmentBackground> enrichmentBackgrounds = new ConcurrentHashMap<String, EnrichmentBackground>();
+
     public String getCacheDir() throws ApplicationException {
         return cache.getCacheDir();
     }
@@ -74,12 +83,33 @@ public class DataCache {
     /*
      * notice we don't allow writing core networks into a user's namespace,
      * this is probably an error elsewhere.
+     *
+     * the network data is stored in the configured matrix factory's compact
+     * form, which is what it will be loaded as.
      */
     public void putNetwork(Network network) throws ApplicationException {
+        putNetwork(network, false);
+    }
+
+    /*
+     * as above, optionally writing a NetworkSummary of the data as well.
+     * only worth it where later uploads will be compared against the
+     * network, so cache building asks for one, other writers don't.
+     */
+    public void putNetwork(Network network, boolean summarize) throws ApplicationException {
         if (!Data.CORE.equals(network.getNamespace()) && network.getId() >= 0) {
             throw new ApplicationException("can not write core network into user namespace");
         }
-        cache.put(network.getKey(), network.getData(), DataSupport.isVolatile(network));
+
+        SymMatrix data = network.getData();
+        if (data != null) {
+            data = Config.instance().getMatrixFactory().compact(data);
+        }
+        cache.put(network.getKey(), data, DataSupport.isVolatile(network));
+
+        if (data != null && summarize) {
+            putNetworkSummary(NetworkSummary.summarize(new Network(network.getNamespace(), network.getOrganismId(), network.getId(), data)));
+        }
     }
 
     /*
@@ -99,6 +129,36 @@ public class DataCache {
         return network;
     }
 
+    /*
+     * summaries are optional, and caches built before they were
+     * introduced won't have them, so this returns null for a network
+     * without one and callers should be prepared to fall back to the
+     * network itself. as with networks, core summaries come from the
+     * core namespace
+     */
+    public NetworkSummary getNetworkSummary(String namespace, long organismId, long networkId) throws ApplicationException {
+        NetworkSummary summary;
+        if (!Data.CORE.equals(namespace) && networkId >= 0) {
+            summary = new NetworkSummary(Data.CORE, organismId, networkId);
+        }
+        else {
+            summary = new NetworkSummary(namespace, organismId, networkId);
+        }
+
+        if (!cache.exists(summary.getKey())) {
+            return null;
+        }
+        return (NetworkSummary) getData(summary);
+    }
+
+    public void putNetworkSummary(NetworkSummary summary) throws ApplicationException {
+        putData(summary);
+    }
+
+    public void removeNetworkSummary(String namespace, long organismId, long networkId) throws ApplicationException {
+        removeData(new NetworkSummary(namespace, organismId, networkId));
+    }
+
     public NodeIds getNodeIds(long organismId) throws ApplicationException {
         NodeIds nodeIds = new NodeIds(organismId);
         nodeIds.setOrganismId(organismId);
@@ -222,6 +282,94 @@ public class DataCache {
         cache.remove(Data.getNamespaceKey(namespace));
     }
 
+    /*
+     * drop in-memory copies, if the underlying cache keeps any
+     */
+    public void clearMemCache() {
+        enrichmentBackgrounds.clear();
+        if (cache instanceof IMemObjectCache) {
+            ((IMemObjectCache) cache).clearMemCache();
+        }
+        else {
+            logger.debug("no memory cache to clear");
+        }
+    }
+
+    /*
+     * background for enrichment analysis against the given ontology. this only
+     * changes with the core dataset, so is built once from the annotations and
+     * node degrees and then kept in memory. with an LruObjectCache it's held
+     * there, counting against the budget and dropped along with the organism's
+     * core data. other caches have no budget, so it's just kept here.
+     */
+    public EnrichmentBackground getEnrichmentBackground(final long organismId, final String goBranch) throws ApplicationException {
+        if (cache instanceof LruObjectCache) {
+            String [] key = new EnrichmentBackground(organismId, goBranch).getKey();
+            return (EnrichmentBackground) ((LruObjectCache) cache).getDerived(key, new Callable<Object>() {
+                public Object call() throws Exception {
+                    return buildEnrichmentBackground(organismId, goBranch);
+                }
+            });
+        }
+
+        String key = organismId + "." + goBranch;
+        EnrichmentBackground background = enrichmentBackgrounds.get(key);
+        if (background == null) {
+            background = buildEnrichmentBackground(organismId, goBranch);
+            EnrichmentBackground existing = enrichmentBackgrounds.putIfAbsent(key, background);
+            if (existing != null) {
+                background = existing;
+            }
+        }
+        return background;
+    }
+
+    /*
+     * the background is all genes with a non-zero degree in the core networks
+     */
+    private EnrichmentBackground buildEnrichmentBackground(long organismId, String goBranch) throws ApplicationException {
+        GoAnnotations goAnnos = getGoAnnotations(organismId, goBranch);
+        NodeDegrees nodeDegrees = getNodeDegrees(Data.CORE, organismId);
+        DatasetInfo datasetInfo = getDatasetInfo(organismId);
+
+        Matrix annoData = goAnnos.getData();
+        double [] degrees = nodeDegrees.getDegrees().getData();
+        int numGenes = annoData.numRows();
+
+        // shouldn't happen, but ...
+        if (degrees.length != numGenes) {
+            throw new ApplicationException("inconsistent data");
+        }
+
+        boolean [] inBackground = new boolean[numGenes];
+        double [] mask = new double[numGenes];
+        for (int i=0; i<numGenes; i++) {
+            if (degrees[i] > 0) {
+                inBackground[i] = true;
+                mask[i] = 1d;
+            }
+        }
+
+        double [] backgroundCounts = new double[annoData.numCols()];
+        annoData.transMult(mask, backgroundCounts);
+
+        // TODO: this N won't be right if user networks to contribute information on genes with degree 0 in our core data set
+        int N = datasetInfo.getNumInteractingGenes();
+        double [] logFactorials = new double[N+1];
+        for (int i=0; i<=N; i++) {
+            logFactorials[i] = Gamma.logGamma(i+1);
+        }
+
+        EnrichmentBackground background = new EnrichmentBackground(organismId, goBranch);
+        background.setInBackground(inBackground);
+        background.setBackgroundCounts(backgroundCounts);
+        background.setNumBackgroundGenes(N);
+        background.setLogFactorials(logFactorials);
+
+        logger.debug(String.format("built enrichment background for organism %d, ontology %s, %d genes", organismId, goBranch, N));
+        return background;
+    }
+
     public NodeDegrees getNodeDegrees(String namespace, long organismId) throws ApplicationException {
         NodeDegrees nodeDegrees = new NodeDegrees(namespace, organismId);
         DenseVector degrees = (DenseVector) cache.get(nodeDegrees.getKey(), DataSupport.isVolatile(nodeDegrees));
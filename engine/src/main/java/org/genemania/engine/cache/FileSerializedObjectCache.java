@@ -44,6 +44,9 @@ import org.genemania.exception.ApplicationException;
  */
 public class FileSerializedObjectCache implements IObjectCache {
 
+    // objects being written, see serialize()
+    static final String TMP_SUFFIX = ".tmp";
+
     private String cacheDir;
     private boolean zipEnabled = false;
 
@@ -200,46 +203,42 @@ public class FileSerializedObjectCache implements IObjectCache {
     }
 
     public void putObject(String subdir, String key, Object value) throws ApplicationException {
-        try {
-
-            String filename;
-            if (subdir != null) {
-                checkCreateDir(subdir);
-                filename = getFilename(subdir, key);
-            }
-            else {
-                filename = getFilename(key);
-            }
-            
-            FileOutputStream fileOut = new FileOutputStream(filename);
-            OutputStream out = new BufferedOutputStream(fileOut);
-            if (zipEnabled) {
-                out = new GZIPOutputStream(out);
-            }
-            ObjectOutputStream objout = new ObjectOutputStream(out);
-
-            objout.writeObject(value);
-            
-            objout.flush();            
-            fileOut.getFD().sync();
-            
-            objout.close();
-            fileOut.close();
+        String filename;
+        if (subdir != null) {
+            checkCreateDir(subdir);
+            filename = getFilename(subdir, key);
+        }
+        else {
+            filename = getFilename(key);
+        }
 
-        } catch (FileNotFoundException e) {
-            throw new ApplicationException("Failed to save object with key: " + key, e);
+        try {
+            serialize(new File(filename), value);
         } catch (IOException e) {
             throw new ApplicationException("Failed to save object with key: " + key, e);
         }
     }
 
     public void put(String [] key, Object value, boolean isVolatile) throws ApplicationException {
-        try {
+        checkCreateDirs(key);
+        String filename = getFilename(key);
 
-            checkCreateDirs(key);
-            String filename = getFilename(key);
+        try {
+            serialize(new File(filename), value);
+        } catch (IOException e) {
+            throw new ApplicationException("Failed to save object with key: " + key, e);
+        }
+    }
 
-            FileOutputStream fileOut = new FileOutputStream(filename);
+    /*
+     * write to a temp file in the same dir and rename it into place,
+     * so a reader never sees a partly written object, whether another
+     * thread or another process. as in MappedObjectCache.
+     */
+    protected void serialize(File file, Object value) throws IOException {
+        File tmpFile = File.createTempFile(file.getName(), TMP_SUFFIX, file.getParentFile());
+        try {
+            FileOutputStream fileOut = new FileOutputStream(tmpFile);
             OutputStream out = new BufferedOutputStream(fileOut);
             if (zipEnabled) {
                 out = new GZIPOutputStream(out);
@@ -247,17 +246,23 @@ public class FileSerializedObjectCache implements IObjectCache {
             ObjectOutputStream objout = new ObjectOutputStream(out);
 
             objout.writeObject(value);
-            
-            objout.flush();            
+
+            objout.flush();
             fileOut.getFD().sync();
 
             objout.close();
             fileOut.close();
 
-        } catch (FileNotFoundException e) {
-            throw new ApplicationException("Failed to save object with key: " + key, e);
-        } catch (IOException e) {
-            throw new ApplicationException("Failed to save object with key: " + key, e);
+            if (!tmpFile.renameTo(file)) {
+                // some platforms won't rename over an existing file
+                file.delete();
+                if (!tmpFile.renameTo(file)) {
+                    throw new IOException("failed to move object into place: " + file);
+                }
+            }
+        }
+        finally {
+            tmpFile.delete();
         }
     }
 
@@ -373,6 +378,9 @@ public class FileSerializedObjectCache implements IObjectCache {
         File[] entries = dir.listFiles();
 
         for (File entry: entries) {
+        	if (entry.getName().endsWith(TMP_SUFFIX)) {
+        		continue;
+        	}
         	result.add(fileToKey(entry));
         }
         
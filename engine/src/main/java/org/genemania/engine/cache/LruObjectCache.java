@@ -0,0 +1,459 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+import org.genemania.engine.config.Config;
+import org.genemania.engine.core.data.Data;
+import org.genemania.exception.ApplicationException;
+
+/**
+ * wraps an underlying IObjectCache instance, keeping recently used
+ * objects in memory up to a fixed budget of heap bytes. objects are
+ * weighed with ObjectSizeEstimator when they enter the cache, and
+ * the least recently used are dropped once the budget is exceeded.
+ *
+ * core data for pinned organisms is never evicted, though it does
+ * count against the budget. objects too big to ever fit aren't
+ * cached at all.
+ *
+ * safe for use from multiple threads without any outside locking.
+ * cache hits don't lock at all. a miss loads from the underlying
+ * cache once per key, any other threads asking for the same key in
+ * the meantime wait for that load rather than starting their own,
+ * while misses on other keys load in parallel. writes and removes
+ * are serialized with each other, but not with reads, including
+ * reads of volatile keys which always go to the underlying cache.
+ * so the underlying cache must make each write appear whole, as
+ * FileSerializedObjectCache does by renaming a temp file into place.
+ */
+public class LruObjectCache implements IMemObjectCache {
+    private static Logger logger = Logger.getLogger(LruObjectCache.class);
+
+    // fraction of max heap used as budget when none is configured
+    static final double DEFAULT_HEAP_FRACTION = 0.5;
+
+    IObjectCache underlyingCache;
+    private long maxBytes;
+    private Set<String> pinnedOrganisms = new HashSet<String>();
+
+    private ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private ConcurrentHashMap<String, FutureTask<Object>> loading = new ConcurrentHashMap<String, FutureTask<Object>>();
+    private AtomicLong totalBytes = new AtomicLong();
+
+    // logical clock for recency, bumped on every access
+    private AtomicLong clock = new AtomicLong();
+
+    // bumped on every put/remove/clear, so a load that raced
+    // with a write doesn't put a stale copy in the cache
+    private AtomicLong generation = new AtomicLong();
+
+    private ReentrantLock writeLock = new ReentrantLock();
+    private ReentrantLock evictLock = new ReentrantLock();
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+    private AtomicLong loads = new AtomicLong();
+    private AtomicLong loadTimeNanos = new AtomicLong();
+
+    /*
+     * budget and pinned organisms from the engine config
+     */
+    public LruObjectCache(IObjectCache underlyingCache) {
+        this(underlyingCache, Config.instance().getMemCacheMaxBytes(), Config.instance().getMemCachePinnedOrganisms());
+    }
+
+    /*
+     * a maxBytes of 0 or less means use a fraction of the max heap
+     */
+    public LruObjectCache(IObjectCache underlyingCache, long maxBytes, long [] pinnedOrganismIds) {
+        this.underlyingCache = underlyingCache;
+
+        if (maxBytes <= 0) {
+            maxBytes = (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION);
+        }
+        this.maxBytes = maxBytes;
+
+        if (pinnedOrganismIds != null) {
+            for (long organismId: pinnedOrganismIds) {
+                pinnedOrganisms.add("" + organismId);
+            }
+        }
+
+        logger.info(String.format("memory cache budget %d bytes, pinned organisms %s", maxBytes, pinnedOrganisms));
+    }
+
+    public String getCacheDir() throws ApplicationException {
+        return underlyingCache.getCacheDir();
+    }
+
+    /*
+     * as with MemObjectCache, volatile objects skip the memory cache
+     */
+    public void put(String [] key, Object value, boolean isVolatile) throws ApplicationException {
+        String memCacheKey = makeMemCacheKey(key);
+
+        writeLock.lock();
+        try {
+            // bump before and after, loads overlapping the write
+            // in any way won't be cached
+            generation.incrementAndGet();
+            underlyingCache.put(key, value, isVolatile);
+            generation.incrementAndGet();
+            if (isVolatile) {
+                removeEntry(memCacheKey);
+            }
+            else {
+                cache(key, memCacheKey, value, generation.get());
+            }
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    public Object get(final String [] key, boolean isVolatile) throws ApplicationException {
+        String memCacheKey = makeMemCacheKey(key);
+
+        if (isVolatile) {
+            logger.debug(String.format("volatile object %s, skipping memory cache", memCacheKey));
+            return load(key, isVolatile);
+        }
+
+        Entry entry = entries.get(memCacheKey);
+        if (entry != null) {
+            entry.lastAccess = clock.incrementAndGet();
+            hits.incrementAndGet();
+            return entry.value;
+        }
+
+        misses.incrementAndGet();
+        logger.debug(String.format("memory cache miss for %s", memCacheKey));
+
+        return loadOnce(key, memCacheKey, new Callable<Object>() {
+            public Object call() throws Exception {
+                return load(key, false);
+            }
+        });
+    }
+
+    /*
+     * objects derived from cached data that only ever live in memory.
+     * on a miss the loader computes the value, which is then weighed,
+     * evicted and cleared along with everything else. nothing is
+     * written to the underlying cache.
+     */
+    public Object getDerived(String [] key, Callable<Object> loader) throws ApplicationException {
+        String memCacheKey = makeMemCacheKey(key);
+
+        Entry entry = entries.get(memCacheKey);
+        if (entry != null) {
+            entry.lastAccess = clock.incrementAndGet();
+            hits.incrementAndGet();
+            return entry.value;
+        }
+
+        misses.incrementAndGet();
+        logger.debug(String.format("memory cache miss for derived %s", memCacheKey));
+
+        return loadOnce(key, memCacheKey, loader);
+    }
+
+    /*
+     * key may name a whole organism or namespace, in
+     * which case everything under it goes too
+     */
+    public void remove(String [] key) throws ApplicationException {
+        String memCacheKey = makeMemCacheKey(key);
+        String prefix = memCacheKey + File.separator;
+
+        writeLock.lock();
+        try {
+            generation.incrementAndGet();
+            removeEntry(memCacheKey);
+            for (String k: entries.keySet()) {
+                if (k.startsWith(prefix)) {
+                    removeEntry(k);
+                }
+            }
+
+            underlyingCache.remove(key);
+            generation.incrementAndGet();
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    public boolean exists(String [] key) throws ApplicationException {
+        return underlyingCache.exists(key);
+    }
+
+    public List<String []> list(String [] key) throws ApplicationException {
+        return underlyingCache.list(key);
+    }
+
+    public void clearMemCache() {
+        logger.info(String.format("clearing memory cache, %d objects using %d bytes", entries.size(), totalBytes.get()));
+        generation.incrementAndGet();
+        for (String k: entries.keySet()) {
+            removeEntry(k);
+        }
+    }
+
+    /*
+     * first thread to miss on a key does the load, any others
+     * arriving before it's done block on the same task
+     */
+    private Object loadOnce(final String [] key, final String memCacheKey, final Callable<Object> loader) throws ApplicationException {
+        final long startGeneration = generation.get();
+        FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+            public Object call() throws Exception {
+                // may have landed since we missed
+                Entry entry = entries.get(memCacheKey);
+                if (entry != null) {
+                    return entry.value;
+                }
+
+                Object object = loader.call();
+                cache(key, memCacheKey, object, startGeneration);
+                return object;
+            }
+        });
+
+        FutureTask<Object> existing = loading.putIfAbsent(memCacheKey, task);
+        if (existing == null) {
+            try {
+                task.run();
+            }
+            finally {
+                loading.remove(memCacheKey, task);
+            }
+        }
+        else {
+            task = existing;
+        }
+
+        try {
+            return task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationException("interrupted while loading " + memCacheKey, e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof ApplicationException) {
+                throw (ApplicationException) e.getCause();
+            }
+            throw new ApplicationException("failed to load " + memCacheKey, e.getCause());
+        }
+    }
+
+    private Object load(String [] key, boolean isVolatile) throws ApplicationException {
+        long start = System.nanoTime();
+        Object object = underlyingCache.get(key, isVolatile);
+        loadTimeNanos.addAndGet(System.nanoTime() - start);
+        loads.incrementAndGet();
+        return object;
+    }
+
+    /*
+     * skip caching if anything was written since the value was read,
+     * it may be out of date. it'll just get loaded again next time.
+     */
+    private void cache(String [] key, String memCacheKey, Object value, long valueGeneration) {
+        if (value == null) {
+            return;
+        }
+
+        long weight = ObjectSizeEstimator.estimate(value);
+        boolean pinned = isPinned(key);
+
+        if (weight > maxBytes && !pinned) {
+            logger.debug(String.format("not caching %s, size %d exceeds memory cache budget", memCacheKey, weight));
+            return;
+        }
+
+        if (generation.get() != valueGeneration) {
+            return;
+        }
+
+        Entry entry = new Entry(value, weight, pinned, clock.incrementAndGet());
+        Entry old = entries.put(memCacheKey, entry);
+        totalBytes.addAndGet(weight);
+        if (old != null) {
+            totalBytes.addAndGet(-old.weight);
+        }
+
+        // lost a race with a write after the check above
+        if (generation.get() != valueGeneration && entries.remove(memCacheKey, entry)) {
+            totalBytes.addAndGet(-weight);
+            return;
+        }
+
+        if (totalBytes.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    /*
+     * drop least recently used unpinned entries until we're back
+     * under budget. if another thread is already evicting, leave it
+     * to them. recency is a snapshot, entries touched during the
+     * sort may still go.
+     */
+    private void evict() {
+        if (!evictLock.tryLock()) {
+            return;
+        }
+
+        try {
+            List<Map.Entry<String, Entry>> candidates = new ArrayList<Map.Entry<String, Entry>>();
+            for (Map.Entry<String, Entry> e: entries.entrySet()) {
+                if (!e.getValue().pinned) {
+                    candidates.add(e);
+                }
+            }
+
+            Collections.sort(candidates, new Comparator<Map.Entry<String, Entry>>() {
+                public int compare(Map.Entry<String, Entry> a, Map.Entry<String, Entry> b) {
+                    long x = a.getValue().lastAccess;
+                    long y = b.getValue().lastAccess;
+                    return x < y ? -1 : (x == y ? 0 : 1);
+                }
+            });
+
+            for (Map.Entry<String, Entry> e: candidates) {
+                if (totalBytes.get() <= maxBytes) {
+                    break;
+                }
+
+                Entry entry = e.getValue();
+                if (entries.remove(e.getKey(), entry)) {
+                    logger.debug(String.format("evicting %s, %d bytes", e.getKey(), entry.weight));
+                    totalBytes.addAndGet(-entry.weight);
+                    evictions.incrementAndGet();
+                }
+            }
+
+            if (totalBytes.get() > maxBytes) {
+                logger.warn(String.format("pinned objects use %d bytes, over memory cache budget of %d", totalBytes.get(), maxBytes));
+            }
+        }
+        finally {
+            evictLock.unlock();
+        }
+    }
+
+    private void removeEntry(String memCacheKey) {
+        Entry old = entries.remove(memCacheKey);
+        if (old != null) {
+            totalBytes.addAndGet(-old.weight);
+        }
+    }
+
+    boolean isPinned(String [] key) {
+        return key.length > 1 && Data.CORE.equals(key[0]) && pinnedOrganisms.contains(key[1]);
+    }
+
+    /*
+     * same key layout as MemObjectCache
+     */
+    private String makeMemCacheKey(String [] key) throws ApplicationException {
+        StringBuilder path = new StringBuilder();
+
+        for (int i=0; i<key.length; i++) {
+            path.append(File.separator);
+            if (key[i] == null || key[i].equals("")) {
+                throw new ApplicationException("missing key part at position " + i);
+            }
+            path.append(key[i]);
+        }
+
+        return path.toString();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getLoads() {
+        return loads.get();
+    }
+
+    public long getLoadTimeNanos() {
+        return loadTimeNanos.get();
+    }
+
+    public String getStats() {
+        return String.format("objects: %d, bytes: %d/%d, hits: %d, misses: %d, evictions: %d, loads: %d, load time: %dms",
+                getSize(), getTotalBytes(), maxBytes, getHits(), getMisses(), getEvictions(), getLoads(), getLoadTimeNanos()/1000000);
+    }
+
+    static class Entry {
+        final Object value;
+        final long weight;
+        final boolean pinned;
+        volatile long lastAccess;
+
+        Entry(Object value, long weight, boolean pinned, long lastAccess) {
+            this.value = value;
+            this.weight = weight;
+            this.pinned = pinned;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.MappedSymFloatMatrix;
+import org.genemania.exception.ApplicationException;
+
+/**
+ * Cache storing symmetric matrices (i.e. networks) in a binary
+ * compressed-row layout that is memory-mapped on load, instead of
+ * deserialized. Everything else goes through java serialization in
+ * the same directory tree as FileSerializedObjectCache, and matrices
+ * still in .ser form are read from there, so an unconverted or partially
+ * converted cache directory works as-is.
+ *
+ * Loaded matrices are read-only views over the file, see
+ * MappedSymFloatMatrix.
+ */
+public class MappedObjectCache implements IObjectCache {
+    private static Logger logger = Logger.getLogger(MappedObjectCache.class);
+
+    public static final String MAPPED_EXTENSION = ".smx";
+    private static final String SERIALIZED_EXTENSION = ".ser";
+
+    private FileSerializedObjectCache serializedCache;
+    private String cacheDir;
+
+    public MappedObjectCache(String cacheDir, boolean zipEnabled) {
+        this.cacheDir = cacheDir;
+        this.serializedCache = new FileSerializedObjectCache(cacheDir, zipEnabled);
+    }
+
+    public MappedObjectCache(String cacheDir) {
+        this(cacheDir, false);
+    }
+
+    public String getCacheDir() {
+        return cacheDir;
+    }
+
+    public String getMappedFilename(String [] key) throws ApplicationException {
+        if (key == null || key.length == 0) {
+            throw new ApplicationException("empty key");
+        }
+
+        return serializedCache.getSubdirname(key, key.length) + MAPPED_EXTENSION;
+    }
+
+    /*
+     * symmetric matrices are written in mapped form, replacing any
+     * serialized version. we write to a temp file and rename, since
+     * overwriting a file another process has mapped would pull the
+     * pages out from under it.
+     */
+    public void put(String [] key, Object value, boolean isVolatile) throws ApplicationException {
+        if (value instanceof SymMatrix) {
+            putMapped(key, (SymMatrix) value, true);
+        }
+        else {
+            serializedCache.put(key, value, isVolatile);
+        }
+    }
+
+    /*
+     * write the matrix in mapped form, optionally leaving
+     * any existing serialized copy in place.
+     */
+    public void putMapped(String [] key, SymMatrix value, boolean removeSerialized) throws ApplicationException {
+        File file = new File(getMappedFilename(key));
+        File dir = file.getParentFile();
+        if (!dir.isDirectory()) {
+            dir.mkdirs();
+        }
+
+        try {
+            File tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+            try {
+                MappedSymFloatMatrix.write(value, tmpFile);
+                if (!tmpFile.renameTo(file)) {
+                    // some platforms won't rename over an existing file
+                    file.delete();
+                    if (!tmpFile.renameTo(file)) {
+                        throw new ApplicationException("failed to move mapped matrix into place: " + file);
+                    }
+                }
+            }
+            finally {
+                tmpFile.delete();
+            }
+        }
+        catch (IOException e) {
+            throw new ApplicationException("Failed to save object with key: " + file, e);
+        }
+
+        File serializedFile = new File(serializedCache.getFilename(key));
+        if (removeSerialized && serializedFile.exists()) {
+            serializedFile.delete();
+        }
+    }
+
+    public Object get(String [] key, boolean isVolatile) throws ApplicationException {
+        File file = new File(getMappedFilename(key));
+        if (!file.exists()) {
+            return serializedCache.get(key, isVolatile);
+        }
+
+        try {
+            return MappedSymFloatMatrix.map(file);
+        }
+        catch (IOException e) {
+            throw new ApplicationException(String.format("Failed to load object with key: '%s'", file), e);
+        }
+    }
+
+    public void remove(String [] key) throws ApplicationException {
+        File file = new File(getMappedFilename(key));
+        if (file.exists() && file.isFile()) {
+            file.delete();
+        }
+        serializedCache.remove(key);
+    }
+
+    public boolean exists(String [] key) throws ApplicationException {
+        return new File(getMappedFilename(key)).exists() || serializedCache.exists(key);
+    }
+
+    /*
+     * can't delegate to the serialized cache here, it
+     * doesn't know about our files
+     */
+    public List<String []> list(String [] key) throws ApplicationException {
+        if (key == null || key.length == 0) {
+            throw new ApplicationException("null or empty object key");
+        }
+
+        List<String []> result = new ArrayList<String []>();
+
+        File dir = new File(serializedCache.getSubdirname(key, key.length));
+        if (!dir.isDirectory()) {
+            return result;
+        }
+
+        // a key may briefly exist in both forms during conversion
+        LinkedHashMap<String, String []> keys = new LinkedHashMap<String, String []>();
+        for (File entry: dir.listFiles()) {
+            String name = entry.getName();
+            String part;
+            if (name.endsWith(MAPPED_EXTENSION)) {
+                part = name.substring(0, name.length() - MAPPED_EXTENSION.length());
+            }
+            else if (name.endsWith(SERIALIZED_EXTENSION)) {
+                part = name.substring(0, name.length() - SERIALIZED_EXTENSION.length());
+            }
+            else {
+                logger.debug("skipping unrecognized cache file " + entry);
+                continue;
+            }
+
+            String [] childKey = new String[key.length + 1];
+            System.arraycopy(key, 0, childKey, 0, key.length);
+            childKey[key.length] = part;
+            keys.put(part, childKey);
+        }
+
+        result.addAll(keys.values());
+        return result;
+    }
+}
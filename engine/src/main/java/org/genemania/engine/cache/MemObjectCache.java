@@ -28,8 +28,12 @@ import org.genemania.exception.ApplicationException;
 /**
  * wraps an underlying IObjectCache instance, providing
  * mem caching support
+ *
+ * safe to read from several threads at once, as long as the
+ * underlying cache is. concurrent misses on the same key may
+ * each load it, the last one loaded is the one kept.
  */
-public class MemObjectCache implements IObjectCache {
+public class MemObjectCache implements IMemObjectCache {
     private static Logger logger = Logger.getLogger(MemObjectCache.class);
 
     IObjectCache underlyingCache;
@@ -107,6 +111,14 @@ public class MemObjectCache implements IObjectCache {
 		return underlyingCache.list(key);
 	}
 
+    /*
+     * the soft ref cache is shared, so this clears it for
+     * every instance
+     */
+    public void clearMemCache() {
+        memCache.clear();
+    }
+
 	/*
      * so we could use the same path gen code as the file cache,
      * but i'm thinking of the key's as a bit more abstract, and how
@@ -0,0 +1,159 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.DenseVector;
+
+import org.genemania.engine.core.data.AttributeData;
+import org.genemania.engine.core.data.CoAnnotationSet;
+import org.genemania.engine.core.data.CombinedNetwork;
+import org.genemania.engine.core.data.EnrichmentBackground;
+import org.genemania.engine.core.data.GoAnnotations;
+import org.genemania.engine.core.data.KtK;
+import org.genemania.engine.core.data.KtT;
+import org.genemania.engine.core.data.NetworkSummary;
+import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.custom.CompactSymFloatMatrix;
+import org.genemania.engine.matricks.custom.FlexFloatMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.genemania.engine.matricks.custom.MappedSymFloatMatrix;
+
+/**
+ * rough estimate of the heap used by objects we keep in the
+ * memory cache. only needs to be good enough to size the cache,
+ * so large matrices are weighed by element count times element
+ * width, and anything we don't recognize gets a flat guess.
+ */
+public class ObjectSizeEstimator {
+
+    static final long OBJECT_OVERHEAD = 16;
+    static final long DEFAULT_SIZE = 1024;
+
+    // per row object + two array headers in the flex row storage
+    static final long FLEX_ROW_OVERHEAD = 64;
+
+    // value + column index
+    static final long SPARSE_ELEMENT_BYTES = 8;
+
+    private ObjectSizeEstimator() {}
+
+    public static long estimate(Object object) {
+        if (object == null) {
+            return 0;
+        }
+        else if (object instanceof long []) {
+            return OBJECT_OVERHEAD + 8L*((long []) object).length;
+        }
+        else if (object instanceof double []) {
+            return OBJECT_OVERHEAD + 8L*((double []) object).length;
+        }
+        else if (object instanceof int []) {
+            return OBJECT_OVERHEAD + 4L*((int []) object).length;
+        }
+        else if (object instanceof String []) {
+            String [] strings = (String []) object;
+            long size = OBJECT_OVERHEAD + 8L*strings.length;
+            for (String s: strings) {
+                if (s != null) {
+                    size += 2*OBJECT_OVERHEAD + 2L*s.length();
+                }
+            }
+            return size;
+        }
+        else if (object instanceof DenseVector) {
+            return OBJECT_OVERHEAD + 8L*((DenseVector) object).size();
+        }
+        else if (object instanceof DenseMatrix) {
+            DenseMatrix m = (DenseMatrix) object;
+            return OBJECT_OVERHEAD + 8L*m.numRows()*m.numColumns();
+        }
+        else if (object instanceof Matrix) {
+            return estimate((Matrix) object);
+        }
+        else if (object instanceof CombinedNetwork) {
+            return DEFAULT_SIZE + estimate(((CombinedNetwork) object).getData());
+        }
+        else if (object instanceof CoAnnotationSet) {
+            CoAnnotationSet set = (CoAnnotationSet) object;
+            return DEFAULT_SIZE + estimate(set.GetCoAnnotationMatrix()) + estimate(set.GetBHalf());
+        }
+        else if (object instanceof KtK) {
+            return DEFAULT_SIZE + estimate(((KtK) object).getData());
+        }
+        else if (object instanceof KtT) {
+            return DEFAULT_SIZE + estimate(((KtT) object).getData());
+        }
+        else if (object instanceof GoAnnotations) {
+            return DEFAULT_SIZE + estimate(((GoAnnotations) object).getData());
+        }
+        else if (object instanceof AttributeData) {
+            return DEFAULT_SIZE + estimate(((AttributeData) object).getData());
+        }
+        else if (object instanceof EnrichmentBackground) {
+            EnrichmentBackground background = (EnrichmentBackground) object;
+            return DEFAULT_SIZE + OBJECT_OVERHEAD + background.getInBackground().length
+                    + estimate(background.getBackgroundCounts()) + estimate(background.getLogFactorials());
+        }
+        else if (object instanceof NetworkSummary) {
+            // a bit per node
+            NetworkSummary summary = (NetworkSummary) object;
+            return DEFAULT_SIZE + OBJECT_OVERHEAD + summary.getNodes().size()/8;
+        }
+        else {
+            return DEFAULT_SIZE;
+        }
+    }
+
+    /*
+     * mapped matrices live off-heap, only the view object counts.
+     * this runs on every insert, so it never walks the elements:
+     * types without a cheap element count are weighed by their
+     * dimensions as if dense, which overstates sparse ones but
+     * errs on the side of the budget.
+     */
+    public static long estimate(Matrix m) {
+        if (m instanceof MappedSymFloatMatrix) {
+            return DEFAULT_SIZE;
+        }
+        else if (m instanceof FlexSymFloatMatrix) {
+            FlexSymFloatMatrix flex = (FlexSymFloatMatrix) m;
+            long size = flex.numRows();
+            long offDiag = (flex.nnz() - size)/2;
+            return OBJECT_OVERHEAD + size*(4 + FLEX_ROW_OVERHEAD) + offDiag*SPARSE_ELEMENT_BYTES;
+        }
+        else if (m instanceof FlexFloatMatrix) {
+            // annotations and attributes, genes by categories. a
+            // count per row, so cheap enough for every insert
+            FlexFloatMatrix flex = (FlexFloatMatrix) m;
+            return OBJECT_OVERHEAD + flex.numRows()*FLEX_ROW_OVERHEAD + flex.nnz()*SPARSE_ELEMENT_BYTES;
+        }
+        else if (m instanceof CompactSymFloatMatrix) {
+            // diag and row pointers, plus the elements, in single arrays
+            CompactSymFloatMatrix compact = (CompactSymFloatMatrix) m;
+            long size = compact.numRows();
+            long offDiag = (compact.nnz() - size)/2;
+            return 5*OBJECT_OVERHEAD + 8*size + offDiag*SPARSE_ELEMENT_BYTES;
+        }
+        else {
+            return OBJECT_OVERHEAD + 8L*m.numRows()*m.numCols();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.genemania.dto.EnrichmentEngineRequestDto;
+import org.genemania.dto.RelatedGenesEngineRequestDto;
+import org.genemania.engine.core.data.Data;
+import org.genemania.engine.core.data.DataSupport;
+import org.genemania.engine.core.data.NetworkIds;
+import org.genemania.engine.core.integration.calculators.AbstractNetworkWeightCalculator;
+import org.genemania.exception.ApplicationException;
+
+/**
+ * bounded cache of engine responses, so repeated queries (the example
+ * gene lists on the website, bookmarked searches, ...) don't rerun
+ * the whole computation.
+ *
+ * responses are kept serialized, so each hit hands back a private copy
+ * the caller is free to modify, and the bound is on the bytes actually
+ * held. least recently used entries are dropped first.
+ *
+ * keys are canonical: gene, network and attribute group ids are sorted,
+ * so equivalent queries share an entry, see getKey(). queries using data
+ * uploaded to a user namespace are tagged with the namespace, and are
+ * dropped by invalidateNamespace() when that namespace changes. changes
+ * to the core data drop everything.
+ *
+ * thread safe.
+ */
+public class QueryResultCache {
+    private static Logger logger = Logger.getLogger(QueryResultCache.class);
+
+    private long maxBytes;
+    private long totalBytes;
+    private LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    // bumped on every invalidation, see put()
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /*
+     * maxBytes of 0 disables caching
+     */
+    public QueryResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /*
+     * returns a copy of the cached response, or null if not cached
+     */
+    public Object get(String key) throws ApplicationException {
+        byte [] data;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            data = entry.data;
+        }
+
+        return deserialize(data);
+    }
+
+    /*
+     * read before computing a response, and pass to put()
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /*
+     * responses that don't serialize, or are bigger than the whole cache,
+     * are just not cached. neither are responses computed while an
+     * invalidation happened, given the generation read before computing
+     * them, since they may be based on the old data.
+     */
+    public void put(String key, String namespace, Serializable response, long generation) {
+        if (!isEnabled() || response == null) {
+            return;
+        }
+
+        byte [] data;
+        try {
+            data = serialize(response);
+        }
+        catch (IOException e) {
+            logger.warn("failed to serialize response for caching, skipping", e);
+            return;
+        }
+
+        if (data.length > maxBytes) {
+            logger.debug(String.format("response of %d bytes too large to cache", data.length));
+            return;
+        }
+
+        synchronized (this) {
+            if (generation != this.generation) {
+                logger.debug("data changed while computing response, not caching");
+                return;
+            }
+
+            Entry previous = entries.put(key, new Entry(namespace, data));
+            if (previous != null) {
+                totalBytes -= previous.data.length;
+            }
+            totalBytes += data.length;
+
+            Iterator<Entry> iter = entries.values().iterator();
+            while (totalBytes > maxBytes && iter.hasNext()) {
+                Entry eldest = iter.next();
+                iter.remove();
+                totalBytes -= eldest.data.length;
+                evictions++;
+            }
+        }
+    }
+
+    /*
+     * drop results computed using data in the given namespace. the core
+     * namespace is used by every query, so that drops everything.
+     */
+    public synchronized void invalidateNamespace(String namespace) {
+        if (namespace == null || namespace.equals("") || Data.CORE.equals(namespace)) {
+            clear();
+            return;
+        }
+
+        generation++;
+        Iterator<Entry> iter = entries.values().iterator();
+        while (iter.hasNext()) {
+            Entry entry = iter.next();
+            if (namespace.equals(entry.namespace)) {
+                iter.remove();
+                totalBytes -= entry.data.length;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    /*
+     * the namespace a related genes query reads user data from, or
+     * CORE if it only uses core data. same rule as FindRelated.
+     */
+    public static String getNamespace(RelatedGenesEngineRequestDto request) {
+        String namespace = request.getNamespace();
+        if (namespace == null || namespace.equals("")) {
+            return Data.CORE;
+        }
+        else if (!DataSupport.queryHasUserNetworks(request.getInteractionNetworks())
+                && !DataSupport.queryHasUserAttributes(request.getAttributeGroups())) {
+            return Data.CORE;
+        }
+        else {
+            return namespace;
+        }
+    }
+
+    /*
+     * canonical key for a related genes query. for queries using user data,
+     * the user namespace's current network ids are included too, so a result
+     * can't outlive the networks it was computed from even if they are changed
+     * by another process sharing the cache directory.
+     */
+    public static String getKey(RelatedGenesEngineRequestDto request, DataCache cache) throws ApplicationException {
+        String namespace = getNamespace(request);
+
+        StringBuilder builder = new StringBuilder("findRelated");
+        builder.append("|organism=").append(request.getOrganismId());
+        builder.append("|namespace=").append(namespace);
+        builder.append("|genes=").append(formattedIdList(request.getPositiveNodes()));
+        builder.append("|networks=").append(AbstractNetworkWeightCalculator.formattedNetworkList(request.getInteractionNetworks()));
+        builder.append("|attributes=").append(formattedIdList(request.getAttributeGroups()));
+        builder.append("|attributesLimit=").append(request.getAttributesLimit());
+        builder.append("|combining=").append(request.getCombiningMethod());
+        builder.append("|limit=").append(request.getLimitResults());
+        builder.append("|scoring=").append(request.getScoringMethod());
+
+        if (!Data.CORE.equals(namespace)) {
+            NetworkIds networkIds = cache.getNetworkIds(namespace, request.getOrganismId());
+            long [] ids = networkIds.getNetworkIds().clone();
+            Arrays.sort(ids);
+            builder.append("|userNetworks=").append(Arrays.toString(ids));
+        }
+
+        return AbstractNetworkWeightCalculator.hashString(builder.toString());
+    }
+
+    /*
+     * enrichment only uses core data
+     */
+    public static String getKey(EnrichmentEngineRequestDto request) {
+        StringBuilder builder = new StringBuilder("enrichment");
+        builder.append("|organism=").append(request.getOrganismId());
+        builder.append("|ontology=").append(request.getOntologyId());
+        builder.append("|genes=").append(formattedIdList(request.getNodes()));
+        builder.append("|qval=").append(request.getqValueThreshold());
+        builder.append("|minCategories=").append(request.getMinCategories());
+
+        return AbstractNetworkWeightCalculator.hashString(builder.toString());
+    }
+
+    /*
+     * sorted, duplicates kept since they can make a query invalid
+     */
+    static String formattedIdList(Collection<Long> ids) {
+        if (ids == null) {
+            return "()";
+        }
+
+        List<Long> sorted = new ArrayList<Long>(ids);
+        Collections.sort(sorted);
+        return sorted.toString();
+    }
+
+    static byte [] serialize(Serializable object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        try {
+            out.writeObject(object);
+        }
+        finally {
+            out.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    static Object deserialize(byte [] data) throws ApplicationException {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+            try {
+                return in.readObject();
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            throw new ApplicationException("failed to read cached result", e);
+        }
+        catch (ClassNotFoundException e) {
+            throw new ApplicationException("failed to read cached result", e);
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized String getStats() {
+        return String.format("%d results, %d bytes of %d, %d hits, %d misses, %d evictions",
+                entries.size(), totalBytes, maxBytes, hits, misses, evictions);
+    }
+
+    static class Entry {
+        String namespace;
+        byte [] data;
+
+        Entry(String namespace, byte [] data) {
+            this.namespace = namespace;
+            this.data = data;
+        }
+    }
+}
@@ -20,12 +20,15 @@
 package org.genemania.engine.cache;
 
 import java.lang.ref.SoftReference;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * simple, generic softreference based object cache
  *
  * returns null for requests that aren't cache hits
+ *
+ * shared by every MemObjectCache, so may be used from many threads
+ * at once, e.g. by the engine's fork/join tasks loading networks
  */
 public class SoftRefObjectCache {
 
@@ -43,13 +46,13 @@ public class SoftRefObjectCache {
         SoftReference<Object> ref = softCache.get(key);
 
         if (ref == null) {
-            softCache.remove(key);
             return null;
         }
 
         Object object = ref.get();
         if (object == null) {
-            softCache.remove(key);
+            // only if another thread hasn't put a fresh copy meanwhile
+            softCache.remove(key, ref);
             return null;
         }
 
@@ -72,15 +75,12 @@ public class SoftRefObjectCache {
     public void compact() {
         for (String key: softCache.keySet()) {
             SoftReference<Object> ref = softCache.get(key);
-            if (ref == null) {
-                softCache.remove(key);
-            }
-            else if (ref.get() == null) {
-                softCache.remove(key);
+            if (ref != null && ref.get() == null) {
+                softCache.remove(key, ref);
             }
         }
     }
 
-    protected class RefMap extends HashMap<String, SoftReference<Object>> {
+    protected class RefMap extends ConcurrentHashMap<String, SoftReference<Object>> {
     }
 }
@@ -23,7 +23,12 @@ import java.util.List;
 
 import org.genemania.exception.ApplicationException;
 
-public class SynchronizedObjectCache implements IObjectCache {
+/**
+ * serializes all access to the wrapped cache. only needed for caches
+ * that aren't thread-safe themselves, LruObjectCache handles concurrent
+ * use on its own and shouldn't be wrapped in this.
+ */
+public class SynchronizedObjectCache implements IMemObjectCache {
 	private IObjectCache delegate;
 
 	public SynchronizedObjectCache(IObjectCache delegate) {
@@ -53,4 +58,10 @@ public class SynchronizedObjectCache implements IObjectCache {
 	public synchronized List<String[]> list(String[] key) throws ApplicationException {
 		return delegate.list(key);
 	}
+
+	public synchronized void clearMemCache() {
+		if (delegate instanceof IMemObjectCache) {
+			((IMemObjectCache) delegate).clearMemCache();
+		}
+	}
 }
@@ -51,6 +51,11 @@ public class Config {
     static final String IS_NETWORK_WEIGHT_NORMALIZATION_ENABLED = "isNetworkWeightNormalizationEnabled";
     static final String IS_COMBINED_NETWORK_NORMALIZATION_ENABLED = "isCombinedNetworkNormalizationEnabled";
     static final String ATTRIBUTE_ENRICHMENT_MAX_SIZE = "attributeEnrichmentMaxSize";
+    static final String MEM_CACHE_MAX_BYTES = "memCacheMaxBytes";
+    static final String MEM_CACHE_PINNED_ORGANISMS = "memCachePinnedOrganisms";
+    static final String QUERY_CACHE_MAX_BYTES = "queryCacheMaxBytes";
+    static final String ENGINE_THREADS = "engineThreads";
+    static final String COMBINE_WEIGHT_TOLERANCE = "combineWeightTolerance";
     
     
     private MatrixFactory matrixFactory;
@@ -147,4 +152,42 @@ public class Config {
     public int getAttributeEnrichmentMaxSize() {
     	return configData.getInt(ATTRIBUTE_ENRICHMENT_MAX_SIZE, Constants.DEFAULT_ATTRIBUTE_ENRICHMENT_MAX_SIZE);
     }
+
+    public long getMemCacheMaxBytes() {
+        return configData.getLong(MEM_CACHE_MAX_BYTES, Constants.DEFAULT_MEM_CACHE_MAX_BYTES);
+    }
+
+    /*
+     * 0 disables the query result cache
+     */
+    public long getQueryCacheMaxBytes() {
+        return configData.getLong(QUERY_CACHE_MAX_BYTES, Constants.DEFAULT_QUERY_CACHE_MAX_BYTES);
+    }
+
+    /*
+     * size of the shared compute pool, 0 for one thread per core
+     */
+    public int getEngineThreads() {
+        return configData.getInt(ENGINE_THREADS, Constants.DEFAULT_ENGINE_THREADS);
+    }
+
+    /*
+     * networks weighted below this fraction of the largest
+     * weight are left out of the combined network
+     */
+    public double getCombineWeightTolerance() {
+        return configData.getDouble(COMBINE_WEIGHT_TOLERANCE, Constants.DEFAULT_COMBINE_WEIGHT_TOLERANCE);
+    }
+
+    /*
+     * comma separated list of organism ids
+     */
+    public long [] getMemCachePinnedOrganisms() {
+        String [] values = configData.getStringArray(MEM_CACHE_PINNED_ORGANISMS);
+        long [] organismIds = new long[values.length];
+        for (int i=0; i<values.length; i++) {
+            organismIds[i] = Long.parseLong(values[i].trim());
+        }
+        return organismIds;
+    }
 }
@@ -44,4 +44,10 @@ public class FloatSymMatrixFactory implements MatrixFactory {
     public Matrix sparseColMatrix(int rows, int cols) {
         return new FlexFloatColMatrix(rows, cols);
     }
+
+    @Override
+    public SymMatrix compact(SymMatrix m) {
+        m.compact();
+        return m;
+    }
 }
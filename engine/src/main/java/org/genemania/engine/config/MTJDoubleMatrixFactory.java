@@ -43,4 +43,10 @@ public class MTJDoubleMatrixFactory implements MatrixFactory {
     public Matrix sparseColMatrix(int rows, int cols) {
         return new SparseDoubleMatrix(rows, cols);        
     }
+
+    @Override
+    public SymMatrix compact(SymMatrix m) {
+        m.compact();
+        return m;
+    }
 }
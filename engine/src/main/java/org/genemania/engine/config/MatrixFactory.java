@@ -44,4 +44,12 @@ public interface MatrixFactory {
      * sparse symmetric matrix
      */
     public SymMatrix symSparseMatrix(int size);
+
+    /*
+     * called once a symmetric matrix is fully built, e.g. before
+     * it is stored in the cache. may trim storage in place or return
+     * a different, read-mostly representation, so callers must use
+     * the returned matrix.
+     */
+    public SymMatrix compact(SymMatrix m);
 }
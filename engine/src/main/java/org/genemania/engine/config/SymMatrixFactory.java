@@ -46,4 +46,10 @@ public class SymMatrixFactory implements MatrixFactory {
     public Matrix sparseColMatrix(int rows, int cols) {
         return new FlexFloatColMatrix(rows, cols); // haven't implemented double type for this! TODO
     }
+
+    @Override
+    public SymMatrix compact(SymMatrix m) {
+        m.compact();
+        return m;
+    }
 }
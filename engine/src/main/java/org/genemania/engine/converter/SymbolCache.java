@@ -23,7 +23,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
-import org.genemania.domain.Gene;
 import org.genemania.domain.Organism;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.core.data.NodeIds;
@@ -65,25 +64,25 @@ public class SymbolCache {
         // check cache first
         Integer index = symbolToIndexCache.get(symbol.toUpperCase());
 
-        // look in db if not found
+        // look in db if not found. only the node id is needed, which the
+        // lucene mediator answers from its in-memory symbol dictionary
+        // without building a gene
         if (index == null) {
-            Gene gene = geneMediator.getGeneForSymbol(organism, symbol);
-            if (gene == null) {
+            Long nodeId = geneMediator.getNodeId(organism.getId(), symbol);
+            if (nodeId == null) {
                 // not in db either, put a marker in the cache
                 logger.info("symbol not in db: " + symbol);
                 symbolToIndexCache.put(symbol.toUpperCase(), SYMBOL_NOT_FOUND);
             }
             else {
-                // we got the gene, look up index, and again mark the
+                // we got the node, look up index, and again mark the
                 // cache if not found. otherwise, cache it
-                int nodeId = (int) gene.getNode().getId();
-
                 try {
                     index = nodeIds.getIndexForId(nodeId);
                     symbolToIndexCache.put(symbol.toUpperCase(), index);
                 }
                 catch (ApplicationException e) {
-                    logger.warn("gene not in mappings for " + gene.getSymbol());
+                    logger.warn("gene not in mappings for " + symbol);
                     symbolToIndexCache.put(symbol.toUpperCase(), SYMBOL_NOT_FOUND);
                     index = null;
                 }
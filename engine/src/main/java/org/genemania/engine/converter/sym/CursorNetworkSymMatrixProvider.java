@@ -49,7 +49,12 @@ public abstract class CursorNetworkSymMatrixProvider implements INetworkSymMatri
      */
     protected SymMatrix convertNetworkToMatrix(ProgressReporter progress) throws ApplicationException {
 //        logger.debug(String.format("loading interactions for network %d from db using cursor", cursor.getNetworkId()));
-        progress.setMaximumProgress((int) cursor.getTotalInteractions());
+        // cursors over streams can't say how many
+        // interactions there are, < 0 if unknown
+        long total = cursor.getTotalInteractions();
+        if (total >= 0) {
+            progress.setMaximumProgress((int) total);
+        }
         int count = 0;
 
         int n = nodeIds.getNodeIds().length;
@@ -58,7 +63,9 @@ public abstract class CursorNetworkSymMatrixProvider implements INetworkSymMatri
 
         try {
             while (cursor.next()) {
-                progress.setProgress(count);
+                if (total >= 0) {
+                    progress.setProgress(count);
+                }
                 int fromNodeIndex = nodeIds.getIndexForId(cursor.getFromNodeId());
                 int toNodeIndex = nodeIds.getIndexForId(cursor.getToNodeId());
                 double weight = cursor.getWeight();
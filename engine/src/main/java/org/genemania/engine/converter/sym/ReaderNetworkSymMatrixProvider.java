@@ -0,0 +1,59 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.genemania.engine.converter.sym;
+
+import java.io.Reader;
+
+import org.genemania.engine.core.data.NodeIds;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.exception.ApplicationException;
+import org.genemania.mediator.impl.ReaderInteractionCursor;
+import org.genemania.util.ProgressReporter;
+
+/**
+ * load a single network straight from a stream of
+ * id1<tab>id2[<tab>weight] records, as uploaded, without
+ * going through a file. the stream can only be read once.
+ *
+ */
+public class ReaderNetworkSymMatrixProvider extends CursorNetworkSymMatrixProvider implements INetworkSymMatrixProvider {
+
+    private Reader source;
+    private boolean isBinary;
+
+    public ReaderNetworkSymMatrixProvider(Reader source, NodeIds nodeIds, boolean isBinary) {
+        this.source = source;
+        this.nodeIds = nodeIds;
+        this.isBinary = isBinary;
+    }
+
+    public SymMatrix getNetworkMatrix(long networkId, ProgressReporter progress) throws ApplicationException {
+        if (isBinary) {
+            cursor = new ReaderInteractionCursor(networkId, source, 0, 1, -1, '\t');
+        }
+        else {
+            cursor = new ReaderInteractionCursor(networkId, source, 0, 1, 2, '\t');
+        }
+        try {
+            return convertNetworkToMatrix(progress);
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -98,7 +98,7 @@ public class KHeap {
 		            if (additionalData == null) {
 		                additionalData = new ArrayList<Double>();
 		            }
-		            additionalData.add(weight);
+		            additionalData.add(minWeight);
 		            additionalData.add(idForMinWeight);
 		        }
 				
@@ -20,6 +20,7 @@
 package org.genemania.engine.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
@@ -755,6 +756,10 @@ public class MatrixUtils {
     }
 
     /**
+     * indices of the query nodes and of the limitResults highest scoring
+     * other nodes, ordered by decreasing score. only the top scores are
+     * kept as the scores are scanned, rather than sorting them all.
+     *
      * @param scores
      * @param indicesForPositiveNodes
      * @param limitResults
@@ -763,6 +768,72 @@ public class MatrixUtils {
      */
     public static int[] getIndicesForTopScores(Vector scores, List<Integer> indicesForPositiveNodes, int limitResults, double threshold) {
 
+        // query nodes are always included, whatever their score
+        int [] positives = new int[indicesForPositiveNodes.size()];
+        for (int i=0; i<positives.length; i++) {
+            positives[i] = indicesForPositiveNodes.get(i);
+        }
+        Arrays.sort(positives);
+
+        TopScoreHeap queryNodes = new TopScoreHeap(positives.length);
+        TopScoreHeap otherNodes = new TopScoreHeap(Math.min(limitResults, scores.size()));
+        final double cutoff = threshold + DELTA;
+
+        if (scores instanceof DenseVector) {
+            double [] data = ((DenseVector) scores).getData();
+            for (int i=0; i<data.length; i++) {
+                if (Arrays.binarySearch(positives, i) >= 0) {
+                    queryNodes.offer(i, data[i]);
+                }
+                else if (data[i] > cutoff) {
+                    otherNodes.offer(i, data[i]);
+                }
+            }
+        }
+        else {
+            for (VectorEntry e: scores) {
+                if (Arrays.binarySearch(positives, e.index()) >= 0) {
+                    queryNodes.offer(e.index(), e.get());
+                }
+                else if (e.get() > cutoff) {
+                    otherNodes.offer(e.index(), e.get());
+                }
+            }
+        }
+
+        int numQueryNodes = queryNodes.size();
+        int [] queryIndices = new int[numQueryNodes];
+        double [] queryScores = new double[numQueryNodes];
+        queryNodes.drain(queryIndices, queryScores);
+
+        int numOtherNodes = otherNodes.size();
+        int [] otherIndices = new int[numOtherNodes];
+        double [] otherScores = new double[numOtherNodes];
+        otherNodes.drain(otherIndices, otherScores);
+
+        // merge the two, both best first
+        int [] result = new int[numQueryNodes + numOtherNodes];
+        int i = 0;
+        int j = 0;
+        for (int k=0; k<result.length; k++) {
+            if (j >= numOtherNodes || (i < numQueryNodes
+                    && !TopScoreHeap.worse(queryIndices[i], queryScores[i], otherIndices[j], otherScores[j]))) {
+                result[k] = queryIndices[i++];
+            }
+            else {
+                result[k] = otherIndices[j++];
+            }
+        }
+
+        return result;
+    }
+
+    /*
+     * the previous implementation, sorting all the scores. kept
+     * as a reference for checking and benchmarking the above
+     */
+    public static int[] getIndicesForTopScoresBySort(Vector scores, List<Integer> indicesForPositiveNodes, int limitResults, double threshold) {
+
         /**
          * inner class holds both score and node index, and implements
          * compareTo by comparing score in descending order. Use this to sort values.
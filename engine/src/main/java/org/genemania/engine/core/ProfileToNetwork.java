@@ -19,10 +19,15 @@
 
 package org.genemania.engine.core;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+
 import org.apache.log4j.Logger;
+import org.genemania.engine.core.utils.EnginePool;
 
 import no.uib.cipr.matrix.DenseMatrix;
 import no.uib.cipr.matrix.DenseVector;
@@ -52,6 +57,9 @@ public class ProfileToNetwork {
 
 	private static Logger logger = Logger.getLogger(ProfileToNetwork.class);
 	static boolean isNaNCheckingEnabled = false;
+	
+	// genes correlated against the whole profile per task
+	static final int BLOCK_SIZE = 64;
 
 	public static Matrix continuousProfile(Matrix profile, int k) {
 		return continuousProfile(profile, k, 25.0); // TODO: get rid of default and make caller decide?
@@ -82,25 +90,7 @@ public class ProfileToNetwork {
 		
 		findNaNs(profile);
 		
-		for (int i=0; i<numGenes; i++) {
-			
-			// this gene was filtered out. skipping is just
-			// an optimization, since the values in the profile for this
-			// gene have been set to 0 by this point, letting the calculation
-			// go through would produce 0's.
-			if (goodGenes[i] == false) {
-				continue;
-			}
-			
-			Matrix correlations = computeCorrelations(profile, i);
-			//System.out.println("correlations: " + correlations.numRows() + " " + correlations.numColumns());
-			//for (int z=0; z<correlations.numColumns(); z++) {
-			//	System.out.println("z, corr: " + z + " " + correlations.get(0, z));
-			//}
-			findNaNs(correlations);
-			
-			setTopK(network, correlations, i, k+1);  // the +1 is because we haven't removed the diagonal term yet
-		}
+		setTopK(network, profile, goodGenes, k+1);  // the +1 is because we haven't removed the diagonal term yet
 
 		MatrixUtils.setDiagonalZero(network);
 		MatrixUtils.setToMaxTranspose(network);
@@ -143,41 +133,7 @@ public class ProfileToNetwork {
 		int numGenes = profile.numColumns();
 		Matrix network = new FlexCompColMatrix(numGenes, numGenes);
 
-		for (int i=0; i<numGenes; i++) {
-			
-			// this gene was filtered out. skipping is just
-			// an optimization, since the values in the profile for this
-			// gene have been set to 0 by this point, letting the calculation
-			// go through would produce 0's.
-			if (goodGenes[i] == false) {
-				continue;
-			}
-			
-//			if ( i == 1139 ){
-//				
-//				double[] values = new double[24];
-//				
-//				for ( int l = 0; l < 24; l++ ){
-//					values[l] = profile.get(l, i);
-//				}
-//				System.out.println("here");
-//			}
-			
-			Matrix correlations = computeCorrelations(profile, i);
-			//System.out.println("correlations: " + correlations.numRows() + " " + correlations.numColumns());
-			//for (int z=0; z<correlations.numColumns(); z++) {
-			//	System.out.println("z, corr: " + z + " " + correlations.get(0, z));
-			//}
-			findNaNs(correlations);
-			
-//			if ( names[i].equals("Sc:122400") ){
-//				System.out.println("here...");
-//			}
-//			if ( names[i].equals("Sc:119951") ){
-//				System.out.println("here...");
-//			}
-			setTopK(network, correlations, i, k+1);  // the +1 is because we haven't removed the diagonal term yet
-		}
+		setTopK(network, profile, goodGenes, k+1);  // the +1 is because we haven't removed the diagonal term yet
 
 		MatrixUtils.setDiagonalZero(network);
 		MatrixUtils.setToMaxTranspose(network);
@@ -246,14 +202,18 @@ public class ProfileToNetwork {
 		}
 	}
 	
-	private static Matrix computeCorrelations(Matrix terms, int i) {
+	/**
+	 * correlations of the given genes against all genes, one row per gene,
+	 * computed as a single matrix product
+	 */
+	private static Matrix computeCorrelations(Matrix terms, int [] genes) {
 		findNaNs(terms);
 		int numGenes = terms.numColumns();
 		int numFeatures = terms.numRows();
 		
 		int [] all = Matrices.index(0, numFeatures);  
-		Matrix iTerms = Matrices.getSubMatrix(terms, all, new int[] {i}).copy(); // TODO: do we really need this copy?
-		Matrix correlations = new DenseMatrix(1, numGenes); // TODO: how about preallocating this once?
+		Matrix iTerms = Matrices.getSubMatrix(terms, all, genes).copy();
+		Matrix correlations = new DenseMatrix(genes.length, numGenes);
 		
 		iTerms.transAmult(terms, correlations);
 		//correlations.scale(1d/numFeatures);
@@ -325,21 +285,75 @@ public class ProfileToNetwork {
 	}
 
 	/**
-	 * skip elements <= minVal
+	 * Sets the top k correlations of each good gene into the network. The genes
+	 * are correlated a block at a time on the engine pool, each block holding on
+	 * to its top k until all are done, since the network can't be updated from
+	 * several threads. 
+	 * 
+	 * Filtered out genes are skipped. this is just an optimization, since the 
+	 * values in the profile for these genes have been set to 0 by this point, 
+	 * letting the calculation go through would produce 0's.
 	 * 
 	 * @param network
-	 * @param correlations
-	 * @param minVal
-	 * @param i
+	 * @param terms
+	 * @param goodGenes
 	 * @param k
 	 */
-	private static void setTopK(Matrix network, Matrix correlations, int i, int k) {
-		Vector v = MatrixUtils.extractRowToVector(correlations, 0);
-		int [] indices = MatrixUtils.getIndicesForSortedValues(v);
+	private static void setTopK(Matrix network, final Matrix terms, boolean [] goodGenes, final int k) {
+		List<Integer> genes = new ArrayList<Integer>();
+		for (int i=0; i<goodGenes.length; i++) {
+			if (goodGenes[i]) {
+				genes.add(i);
+			}
+		}
 		
-		for (int j=0; j<indices.length && j<k; j++) {
-			if (v.get(indices[j]) != 0) {  // leave 0's as sparse
-				network.set(i, indices[j], v.get(indices[j]));
+		final int [][] topIndices = new int[goodGenes.length][];
+		final double [][] topValues = new double[goodGenes.length][];
+		
+		final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for (int start=0; start<genes.size(); start+=BLOCK_SIZE) {
+			List<Integer> sublist = genes.subList(start, Math.min(start + BLOCK_SIZE, genes.size()));
+			final int [] block = new int[sublist.size()];
+			for (int b=0; b<block.length; b++) {
+				block[b] = sublist.get(b);
+			}
+			
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					Matrix correlations = computeCorrelations(terms, block);
+					findNaNs(correlations);
+					for (int b=0; b<block.length; b++) {
+						Vector v = MatrixUtils.extractRowToVector(correlations, b);
+						int [] indices = MatrixUtils.getIndicesForSortedValues(v);
+						int n = Math.min(indices.length, k);
+						topIndices[block[b]] = new int[n];
+						topValues[block[b]] = new double[n];
+						for (int j=0; j<n; j++) {
+							topIndices[block[b]][j] = indices[j];
+							topValues[block[b]][j] = v.get(indices[j]);
+						}
+					}
+				}
+			});
+		}
+		
+		EnginePool.instance().invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		
+		for (int i: genes) {
+			for (int j=0; j<topIndices[i].length; j++) {
+				if (topValues[i][j] != 0) {  // leave 0's as sparse
+					network.set(i, topIndices[i][j], topValues[i][j]);
+				}
 			}
 		}
 	}
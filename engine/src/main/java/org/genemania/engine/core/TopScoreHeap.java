@@ -0,0 +1,123 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.genemania.engine.core;
+
+/**
+ * keeps the k best of a stream of (index, score) pairs, in primitive
+ * arrays with no allocation per offer. best means highest score, with
+ * ties going to the lower index, the same order a stable descending
+ * sort of scores in index order gives.
+ *
+ * the worst kept pair sits at the top of the heap, so offers that
+ * can't make the cut are rejected with a single comparison.
+ */
+public class TopScoreHeap {
+    private final int capacity;
+    private final int [] indices;
+    private final double [] scores;
+    private int size;
+
+    public TopScoreHeap(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.indices = new int[this.capacity];
+        this.scores = new double[this.capacity];
+    }
+
+    public void offer(final int index, final double score) {
+        if (size < capacity) {
+            indices[size] = index;
+            scores[size] = score;
+            siftUp(size);
+            size++;
+        }
+        else if (size > 0 && worse(indices[0], scores[0], index, score)) {
+            indices[0] = index;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /*
+     * empties the heap into the given arrays, best first
+     */
+    public void drain(int [] sortedIndices, double [] sortedScores) {
+        for (int i=size-1; i>=0; i--) {
+            sortedIndices[i] = indices[0];
+            sortedScores[i] = scores[0];
+            size--;
+            indices[0] = indices[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+    }
+
+    /*
+     * true if pair a orders after pair b
+     */
+    static boolean worse(int indexA, double scoreA, int indexB, double scoreB) {
+        int cmp = Double.compare(scoreA, scoreB);
+        return cmp < 0 || (cmp == 0 && indexA > indexB);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i-1)/2;
+            if (!worse(indices[i], scores[i], indices[parent], scores[parent])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2*i + 1;
+            if (left >= size) {
+                return;
+            }
+
+            int child = left;
+            int right = left + 1;
+            if (right < size && worse(indices[right], scores[right], indices[left], scores[left])) {
+                child = right;
+            }
+
+            if (!worse(indices[child], scores[child], indices[i], scores[i])) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int index = indices[i];
+        indices[i] = indices[j];
+        indices[j] = index;
+
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
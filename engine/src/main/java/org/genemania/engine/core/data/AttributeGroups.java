@@ -30,7 +30,11 @@ public class AttributeGroups extends Data {
     private static final long serialVersionUID = 36730522635636429L;
 
     private HashMap<Long, ArrayList<Long>> attributeGroups;
-    private HashMap<Long, Long> reverseMap;
+
+    // lookups, built on first use from the groups above
+    private transient HashMap<Long, long []> groupAttributeIds;
+    private transient long [] attributeIds;
+    private transient long [] attributeGroupIds;
     
     public AttributeGroups(String namespace, long organismId) {
         super(namespace, organismId);
@@ -41,6 +45,9 @@ public class AttributeGroups extends Data {
     }
     public void setAttributeGroups(HashMap<Long, ArrayList<Long>> attributeGroups) {
         this.attributeGroups = attributeGroups;
+        groupAttributeIds = null;
+        attributeIds = null;
+        attributeGroupIds = null;
     }
     
     @Override
@@ -59,16 +66,16 @@ public class AttributeGroups extends Data {
     
     public long getGroupForAttribute(long attributeId) throws ApplicationException {
         
-        if (reverseMap == null) {
-            reverseMap = makeReverseMap();
+        if (attributeIds == null) {
+            makeReverseMap();
         }
 
-        Long groupId = reverseMap.get(attributeId);
-        if (groupId == null) {
+        int pos = IdIndex.forIds(attributeIds).indexOf(attributeIds, attributeId);
+        if (pos < 0) {
             throw new ApplicationException("there is no attribute group for attribute id: " + attributeId);
         }
 
-        return groupId;
+        return attributeGroupIds[pos];
     }
     
     public boolean hasAttributeGroup(long groupId) {
@@ -79,9 +86,9 @@ public class AttributeGroups extends Data {
         return false;
     }
     
-    // TODO: can optimize reverse lookups by maintaining maps
     public int getIndexForAttributeId(long groupId, long attributeId) throws ApplicationException {
-        int index = attributeGroups.get(groupId).indexOf(attributeId);
+        long [] ids = getAttributeIds(groupId);
+        int index = IdIndex.forIds(ids).indexOf(ids, attributeId);
         if (index < 0) {
             throw new ApplicationException(String.format("attribute id %d in group %d not found", attributeId, groupId));
         }
@@ -91,21 +98,84 @@ public class AttributeGroups extends Data {
     public long getAttributeIdForIndex(long groupId, int index) throws ApplicationException {
         return attributeGroups.get(groupId).get(index);        
     }
+
+    /*
+     * bulk lookups within a group, without boxing
+     */
+    public int [] indicesForIds(long groupId, long [] attributeIds) throws ApplicationException {
+        long [] ids = getAttributeIds(groupId);
+        IdIndex index = IdIndex.forIds(ids);
+
+        int [] indices = new int[attributeIds.length];
+        for (int i=0; i<attributeIds.length; i++) {
+            indices[i] = index.indexOf(ids, attributeIds[i]);
+            if (indices[i] < 0) {
+                throw new ApplicationException(String.format("attribute id %d in group %d not found", attributeIds[i], groupId));
+            }
+        }
+        return indices;
+    }
+
+    public long [] idsForIndices(long groupId, int [] indices) throws ApplicationException {
+        long [] ids = getAttributeIds(groupId);
+
+        long [] result = new long[indices.length];
+        for (int i=0; i<indices.length; i++) {
+            try {
+                result[i] = ids[indices[i]];
+            }
+            catch (IndexOutOfBoundsException e) {
+                throw new ApplicationException(String.format("there is no attribute at index %d in group %d", indices[i], groupId));
+            }
+        }
+        return result;
+    }
+
+    /*
+     * attribute ids of the group as an array, in index order
+     */
+    private long [] getAttributeIds(long groupId) throws ApplicationException {
+        if (groupAttributeIds == null) {
+            groupAttributeIds = new HashMap<Long, long []>();
+        }
+
+        long [] ids = groupAttributeIds.get(groupId);
+        if (ids == null) {
+            ArrayList<Long> attributes = getAttributesForGroup(groupId);
+            ids = new long[attributes.size()];
+            for (int i=0; i<ids.length; i++) {
+                ids[i] = attributes.get(i);
+            }
+            groupAttributeIds.put(groupId, ids);
+        }
+        return ids;
+    }
     
-    protected HashMap<Long, Long> makeReverseMap() throws ApplicationException {
-        HashMap<Long, Long> map = new HashMap<Long, Long>();
+    /*
+     * all attribute ids, with the group of each
+     */
+    protected void makeReverseMap() throws ApplicationException {
+        int n = 0;
+        for (ArrayList<Long> attributes: attributeGroups.values()) {
+            n += attributes.size();
+        }
+
+        long [] ids = new long[n];
+        long [] groups = new long[n];
+        int i = 0;
         for (long groupId: attributeGroups.keySet()) {
             ArrayList<Long> attributes = attributeGroups.get(groupId);
             for (long attributeId: attributes) {
-
-                if (map.containsKey(attributeId)) {
-                    throw new ApplicationException("key already exists (must be unique!): " + attributeId);
-                }
-
-                map.put(attributeId, groupId);
+                ids[i] = attributeId;
+                groups[i] = groupId;
+                i++;
             }
-
         }
-        return map;
+
+        // fails on repeated attribute ids
+        IdIndex.forIds(ids);
+
+        attributeGroupIds = groups;
+        attributeIds = ids;
     }    
 }
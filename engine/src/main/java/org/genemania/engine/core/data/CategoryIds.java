@@ -22,7 +22,6 @@ package org.genemania.engine.core.data;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import org.genemania.exception.ApplicationException;
 
 /**
@@ -35,7 +34,7 @@ public class CategoryIds extends Data {
     private static final long serialVersionUID = -6402995408418744458L;
     private long [] categoryIds;
     private long ontologyId;
-    private Map<Long, Integer> reverseMap;
+    private transient IdIndex index;
 
     public CategoryIds(long organismId, long ontologyId) {
         super(Data.CORE, organismId);
@@ -62,6 +61,7 @@ public class CategoryIds extends Data {
      */
     public void setCategoryIds(long[] nodeIds) {
         this.categoryIds = nodeIds;
+        index = null;
     }
 
     @Override
@@ -85,12 +85,8 @@ public class CategoryIds extends Data {
      * return matrix position index for node id
      */
     public int getIndexForId(long id) throws ApplicationException {
-        if (reverseMap == null) {
-            reverseMap = Data.makeReverseMap(categoryIds);
-        }
-
-        Integer index = reverseMap.get(id);
-        if (index == null) {
+        int index = index().indexOf(categoryIds, id);
+        if (index < 0) {
             throw new ApplicationException("there is no index position for node id: " + id);
         }
 
@@ -109,4 +105,33 @@ public class CategoryIds extends Data {
 
         return indices;
     }
+
+    /*
+     * bulk versions of the above, without boxing
+     */
+    public int [] indicesForIds(long [] ids) throws ApplicationException {
+        int [] indices = new int[ids.length];
+        for (int i=0; i<ids.length; i++) {
+            indices[i] = getIndexForId(ids[i]);
+        }
+        return indices;
+    }
+
+    public long [] idsForIndices(int [] indices) throws ApplicationException {
+        long [] ids = new long[indices.length];
+        for (int i=0; i<indices.length; i++) {
+            ids[i] = getIdForIndex(indices[i]);
+        }
+        return ids;
+    }
+
+    /*
+     * shared with every other CategoryIds over the same array
+     */
+    private IdIndex index() throws ApplicationException {
+        if (index == null) {
+            index = IdIndex.forIds(categoryIds);
+        }
+        return index;
+    }
 }
@@ -0,0 +1,98 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.data;
+
+/**
+ * the parts of an enrichment calculation that depend only on the
+ * core dataset for an organism and ontology, not on the genes in
+ * the query: which genes make up the background, how many background
+ * genes are annotated to each category, and a table of log factorials
+ * up to the background size for the hypergeometric tail.
+ *
+ * derived from GoAnnotations and NodeDegrees, held in memory
+ * by DataCache rather than stored.
+ */
+public class EnrichmentBackground extends Data {
+    private static final long serialVersionUID = 4180437516372268412L;
+
+    private String goBranch;
+    private boolean [] inBackground;
+    private double [] backgroundCounts;
+    private int numBackgroundGenes;
+    private double [] logFactorials;
+
+    public EnrichmentBackground(long organismId, String goBranch) {
+        super(Data.CORE, organismId);
+        this.goBranch = goBranch;
+    }
+
+    public String getGoBranch() {
+        return goBranch;
+    }
+
+    /**
+     * @return true at the index of each gene in the background
+     */
+    public boolean [] getInBackground() {
+        return inBackground;
+    }
+
+    public void setInBackground(boolean [] inBackground) {
+        this.inBackground = inBackground;
+    }
+
+    /**
+     * @return number of background genes annotated to each category
+     */
+    public double [] getBackgroundCounts() {
+        return backgroundCounts;
+    }
+
+    public void setBackgroundCounts(double [] backgroundCounts) {
+        this.backgroundCounts = backgroundCounts;
+    }
+
+    /**
+     * @return N, the population size for the hypergeometric test
+     */
+    public int getNumBackgroundGenes() {
+        return numBackgroundGenes;
+    }
+
+    public void setNumBackgroundGenes(int numBackgroundGenes) {
+        this.numBackgroundGenes = numBackgroundGenes;
+    }
+
+    /**
+     * @return log(i!) for i = 0 .. N
+     */
+    public double [] getLogFactorials() {
+        return logFactorials;
+    }
+
+    public void setLogFactorials(double [] logFactorials) {
+        this.logFactorials = logFactorials;
+    }
+
+    @Override
+    public String [] getKey() {
+        return new String [] {getNamespace(), "" + getOrganismId(), goBranch + ".enrichmentBackground"};
+    }
+}
@@ -32,7 +32,7 @@ public class GoIds extends Data {
 
     private String goBranch;
     private String[] goIds;
-    private Map<String, Integer> reverseMap;
+    private transient Map<String, Integer> reverseMap;
 
     public GoIds(long organismId, String goBranch) {
         super(Data.CORE, organismId);
@@ -51,6 +51,7 @@ public class GoIds extends Data {
      */
     public void setGoIds(String[] goIds) {
         this.goIds = goIds;
+        reverseMap = null;
     }
 
     /**
@@ -99,4 +100,23 @@ public class GoIds extends Data {
 
         return index;
     }
+
+    /*
+     * bulk lookups
+     */
+    public int [] indicesForIds(String [] ids) throws ApplicationException {
+        int [] indices = new int[ids.length];
+        for (int i=0; i<ids.length; i++) {
+            indices[i] = getIndexForId(ids[i]);
+        }
+        return indices;
+    }
+
+    public String [] idsForIndices(int [] indices) throws ApplicationException {
+        String [] ids = new String[indices.length];
+        for (int i=0; i<indices.length; i++) {
+            ids[i] = getIdForIndex(indices[i]);
+        }
+        return ids;
+    }
 }
@@ -0,0 +1,128 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import org.genemania.exception.ApplicationException;
+
+/**
+ * reverse lookup from id to position for an array of unique long ids,
+ * without boxing. sorted arrays are binary searched in place, anything
+ * else goes into an open addressing table.
+ *
+ * the data cache hands out the same id array to every NodeIds etc
+ * wrapping it, so indexes are shared by array, and built only once
+ * per array loaded. the index doesn't reference the array it was
+ * built for, the array is passed back in to each lookup, so the
+ * weak map can drop it when the cache lets go of the array.
+ */
+public class IdIndex {
+    private static final Map<long [], IdIndex> indexes = Collections.synchronizedMap(new WeakHashMap<long [], IdIndex>());
+
+    private static final int EMPTY = -1;
+
+    private final boolean sorted;
+    private final long [] keys;
+    private final int [] positions;
+    private final int mask;
+
+    private IdIndex(boolean sorted, long [] keys, int [] positions) {
+        this.sorted = sorted;
+        this.keys = keys;
+        this.positions = positions;
+        this.mask = keys == null ? 0 : keys.length - 1;
+    }
+
+    /*
+     * index shared by all users of the given array. arrays
+     * mustn't be modified once indexed.
+     */
+    public static IdIndex forIds(long [] ids) throws ApplicationException {
+        IdIndex index = indexes.get(ids);
+        if (index == null) {
+            index = build(ids);
+            indexes.put(ids, index);
+        }
+        return index;
+    }
+
+    /*
+     * ids must be unique
+     */
+    static IdIndex build(long [] ids) throws ApplicationException {
+        boolean sorted = true;
+        for (int i=1; i<ids.length && sorted; i++) {
+            sorted = ids[i-1] < ids[i];
+        }
+
+        if (sorted) {
+            return new IdIndex(true, null, null);
+        }
+
+        // power of two capacity, at most half full
+        int capacity = Integer.highestOneBit(Math.max(2*ids.length, 2) - 1) << 1;
+        long [] keys = new long[capacity];
+        int [] positions = new int[capacity];
+        Arrays.fill(positions, EMPTY);
+
+        int mask = capacity - 1;
+        for (int i=0; i<ids.length; i++) {
+            int slot = hash(ids[i]) & mask;
+            while (positions[slot] != EMPTY) {
+                if (keys[slot] == ids[i]) {
+                    throw new ApplicationException("key already exists (must be unique!): " + ids[i]);
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = ids[i];
+            positions[slot] = i;
+        }
+
+        return new IdIndex(false, keys, positions);
+    }
+
+    /*
+     * position of id in ids, the array the index was built for,
+     * or -1 if not present
+     */
+    public int indexOf(long [] ids, long id) {
+        if (sorted) {
+            int pos = Arrays.binarySearch(ids, id);
+            return pos >= 0 ? pos : EMPTY;
+        }
+
+        int slot = hash(id) & mask;
+        while (positions[slot] != EMPTY) {
+            if (keys[slot] == id) {
+                return positions[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
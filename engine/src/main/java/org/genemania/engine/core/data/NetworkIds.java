@@ -19,7 +19,6 @@
 
 package org.genemania.engine.core.data;
 
-import java.util.Map;
 import org.genemania.exception.ApplicationException;
 
 /**
@@ -37,7 +36,7 @@ import org.genemania.exception.ApplicationException;
 public class NetworkIds extends Data {
     private static final long serialVersionUID = 8740819123941019128L;
     private long [] networkIds;
-    private Map<Long, Integer> reverseMap;
+    private transient IdIndex index;
 
     public NetworkIds(String namespace, long organismId) {
         super(namespace, organismId);
@@ -65,7 +64,7 @@ public class NetworkIds extends Data {
      */
     public void setNetworkIds(long[] networkIds) {
         this.networkIds = networkIds;
-        reverseMap = null;
+        index = null;
     }
 
     @Override
@@ -89,10 +88,8 @@ public class NetworkIds extends Data {
      * return matrix position index for network id
      */
     public int getIndexForId(long id) throws ApplicationException {
-        checkReverseMap();
-
-        Integer index = reverseMap.get(id);
-        if (index == null) {
+        int index = index().indexOf(networkIds, id);
+        if (index < 0) {
             throw new ApplicationException("there is no index position for network id: " + id);
         }
 
@@ -103,18 +100,37 @@ public class NetworkIds extends Data {
      * an id we know about?
      */
     public boolean containsId(long id) throws ApplicationException {
-        checkReverseMap();
+        return index().indexOf(networkIds, id) >= 0;
+    }
+
+    /*
+     * bulk lookups, without boxing
+     */
+    public int [] indicesForIds(long [] ids) throws ApplicationException {
+        int [] indices = new int[ids.length];
+        for (int i=0; i<ids.length; i++) {
+            indices[i] = getIndexForId(ids[i]);
+        }
+        return indices;
+    }
 
-        return reverseMap.containsKey(id);
+    public long [] idsForIndices(int [] indices) throws ApplicationException {
+        long [] ids = new long[indices.length];
+        for (int i=0; i<indices.length; i++) {
+            ids[i] = getIdForIndex(indices[i]);
+        }
+        return ids;
     }
 
     /*
-     * lazy creation of reverse lookup
+     * lazy lookup of the reverse index, shared with every
+     * other NetworkIds over the same array
      */
-    private void checkReverseMap() throws ApplicationException {
-        if (reverseMap == null) {
-            reverseMap = Data.makeReverseMap(networkIds);
+    private IdIndex index() throws ApplicationException {
+        if (index == null) {
+            index = IdIndex.forIds(networkIds);
         }
+        return index;
     }
 
     /*
@@ -123,7 +139,7 @@ public class NetworkIds extends Data {
      * network list at once as for core networks. so this isn't
      * the most efficient thing to do but not expected to be
      * a bottleneck. we reallocate the entire array 1 larger (!)
-     * and clear the lookup map so it will get recreated on next use.
+     * and clear the index so it will get recreated on next use.
      * 
      */
     public int addNetwork(long id) {
@@ -134,14 +150,14 @@ public class NetworkIds extends Data {
        newIds[nextIndex] = id;
 
        networkIds = newIds;
-       reverseMap = null; // force rebuild next time
+       index = null; // force lookup next time
        return nextIndex;
     }
 
     /*
      * remove the given network id from the list (not the network from the disk)
      * awkward data structure, have to shift elements up. should really switch
-     * to a List. or use lib of data structures for primitive types.
+     * to a List.
      */
     public void removeNetwork(long id) throws ApplicationException {
   
@@ -160,6 +176,6 @@ public class NetworkIds extends Data {
         }
         
         networkIds = newIds;
-        reverseMap = null;
+        index = null;
     }
 }
@@ -0,0 +1,127 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.data;
+
+import java.util.BitSet;
+
+import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.matricks.SymMatrix;
+
+/**
+ * nodes with interactions and nonzero count of a network,
+ * optionally persisted alongside it. small enough to read
+ * when deciding whether a product with the network is worth
+ * loading it for: a network with no interactions on any of
+ * a set of nodes can't overlap another network on those nodes.
+ */
+public class NetworkSummary extends Data {
+    private static final long serialVersionUID = -6391825538407216473L;
+
+    private long id;
+    private BitSet nodes;
+    private long nnz;
+
+    public NetworkSummary(String namespace, long organismId, long id) {
+        super(namespace, organismId);
+        this.id = id;
+    }
+
+    /*
+     * summarize the network data in a single pass over its
+     * nonzeros
+     */
+    public static NetworkSummary summarize(Network network) {
+        NetworkSummary summary = new NetworkSummary(network.getNamespace(), network.getOrganismId(), network.getId());
+
+        SymMatrix data = network.getData();
+        BitSet nodes = new BitSet(data.numRows());
+        long nnz = 0;
+
+        MatrixCursor cursor = data.cursor();
+        while (cursor.next()) {
+            if (cursor.val() != 0d) {
+                nodes.set(cursor.row());
+                nnz += 1;
+            }
+        }
+
+        summary.setNodes(nodes);
+        summary.setNnz(nnz);
+        return summary;
+    }
+
+    /*
+     * true if the network has an interaction on any
+     * of the given nodes
+     */
+    public boolean overlaps(int [] nodes) {
+        for (int node: nodes) {
+            if (this.nodes.get(node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * indices of the nodes with at least one interaction,
+     * in increasing order
+     */
+    public int [] getNodeList() {
+        int [] list = new int[nodes.cardinality()];
+        int n = 0;
+        for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i+1)) {
+            list[n++] = i;
+        }
+        return list;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public BitSet getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(BitSet nodes) {
+        this.nodes = nodes;
+    }
+
+    /*
+     * number of nonzeros, counting both triangles
+     */
+    public long getNnz() {
+        return nnz;
+    }
+
+    public void setNnz(long nnz) {
+        this.nnz = nnz;
+    }
+
+    @Override
+    public String [] getKey() {
+        return new String[]{getNamespace(), "" + getOrganismId(), "summaries", "" + id};
+    }
+}
@@ -22,7 +22,6 @@ package org.genemania.engine.core.data;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import org.genemania.exception.ApplicationException;
 
 /**
@@ -36,7 +35,7 @@ import org.genemania.exception.ApplicationException;
 public class NodeIds extends Data {
     private static final long serialVersionUID = 7748900129975191354L;
     private long [] nodeIds;
-    private Map<Long, Integer> reverseMap;
+    private transient IdIndex index;
 
     public NodeIds(long organismId) {
         super(Data.CORE, organismId);
@@ -54,6 +53,7 @@ public class NodeIds extends Data {
      */
     public void setNodeIds(long[] nodeIds) {
         this.nodeIds = nodeIds;
+        index = null;
     }
 
     @Override
@@ -77,18 +77,21 @@ public class NodeIds extends Data {
      * return matrix position index for node id
      */
     public int getIndexForId(long id) throws ApplicationException {
-        if (reverseMap == null) {
-            reverseMap = Data.makeReverseMap(nodeIds);
-        }
-
-        Integer index = reverseMap.get(id);
-        if (index == null) {
+        int index = index().indexOf(nodeIds, id);
+        if (index < 0) {
             throw new ApplicationException("there is no index position for node id: " + id);
         }
 
         return index;
     }
 
+    /*
+     * an id we know about?
+     */
+    public boolean containsId(long id) throws ApplicationException {
+        return index().indexOf(nodeIds, id) >= 0;
+    }
+
     /*
      * conversion utility, list of ids -> corresponding list of position indices
      */
@@ -101,4 +104,33 @@ public class NodeIds extends Data {
 
         return indices;
     }
+
+    /*
+     * bulk versions of the above, without boxing
+     */
+    public int [] indicesForIds(long [] ids) throws ApplicationException {
+        int [] indices = new int[ids.length];
+        for (int i=0; i<ids.length; i++) {
+            indices[i] = getIndexForId(ids[i]);
+        }
+        return indices;
+    }
+
+    public long [] idsForIndices(int [] indices) throws ApplicationException {
+        long [] ids = new long[indices.length];
+        for (int i=0; i<indices.length; i++) {
+            ids[i] = getIdForIndex(indices[i]);
+        }
+        return ids;
+    }
+
+    /*
+     * shared with every other NodeIds over the same array
+     */
+    private IdIndex index() throws ApplicationException {
+        if (index == null) {
+            index = IdIndex.forIds(nodeIds);
+        }
+        return index;
+    }
 }
@@ -29,6 +29,7 @@ import java.io.Reader;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -51,6 +52,8 @@ import org.apache.log4j.Logger;
 import org.apache.log4j.SimpleLayout;
 import org.genemania.engine.core.KHeap;
 import org.genemania.engine.core.MatrixUtils;
+import org.genemania.engine.core.data.NodeIds;
+import org.genemania.engine.core.utils.EnginePool;
 import org.genemania.engine.core.evaluation.correlation.Correlation;
 import org.genemania.engine.core.evaluation.correlation.CorrelationFactory;
 import org.genemania.engine.core.evaluation.correlation.MutualInformationData;
@@ -65,6 +68,7 @@ import au.com.bytecode.opencsv.CSVReader;
 import java.io.StringReader;
 import java.util.HashSet;
 import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.matricks.SymMatrix;
 import org.genemania.engine.utils.FileUtils;
 import org.genemania.util.NullProgressReporter;
 import org.genemania.util.ProgressReporter;
@@ -183,6 +187,33 @@ public class ProfileToNetworkDriver {
      * @throws Exception
      */
     public void process(Reader in, Writer out) throws IOException, ApplicationException {
+        compute(in);
+
+        PrintWriter writer = new PrintWriter(out);
+        int totalInteractions = dump(writer);
+        logStats(totalInteractions);
+    }
+
+    /**
+     * as process(Reader, Writer), but the interactions are set directly
+     * into the given matrix instead of being written out as text. the
+     * gene names of the profile, after identifier mapping, must be node
+     * ids, which are mapped to matrix indices with nodeIds.
+     *
+     * @return the number of interactions set, including symmetric interactions
+     */
+    public int process(Reader in, SymMatrix out, NodeIds nodeIds) throws IOException, ApplicationException {
+        compute(in);
+
+        int totalInteractions = dump(out, nodeIds);
+        logStats(totalInteractions);
+        return totalInteractions;
+    }
+
+    /*
+     * load the profile and compute the network, ready to be dumped
+     */
+    private void compute(Reader in) throws IOException, ApplicationException {
         if ( synonyms.size() == 0 ) {
             if ( synFilename == null ){
                 throw new ApplicationException("Please pass in the location of the identifier" +
@@ -219,9 +250,9 @@ public class ProfileToNetworkDriver {
         if (progress.isCanceled()) {
             throw new CancellationException();
         }
+    }
 
-        PrintWriter writer = new PrintWriter(out);
-        int totalInteractions = dump(writer);
+    private void logStats(int totalInteractions) {
         logger.info("Total #interactions in network (including symmetric interactions): " + totalInteractions);
         logger.info(String.format("network sparsity: %.2f%%", (totalInteractions*100d)/(network.numRows()*network.numColumns())));
         logger.info("done");
@@ -518,38 +549,24 @@ public class ProfileToNetworkDriver {
         
         t1 = System.currentTimeMillis();
 
+        // score each pair of genes on the engine pool, repeated identifiers
+        // are averaged and stored under their first index
         Collection<List<Integer>> indices = identifiers.values();
-        List<Integer>[] indices_arr = indices.toArray(new ArrayList[0]);
-        for ( int i = 0; i < indices_arr.length; i++ ){
-            List<Integer> i_indices = indices_arr[i];
-            for ( int j = i + 1; j < indices_arr.length; j++ ){
-                double totalCorrelation = 0;
-                List<Integer> j_indices = indices_arr[j];
-
-                for ( int i1 : i_indices ){
-
-                    if (progress.isCanceled()) {
-                        throw new CancellationException();
-                    }
-
-                    for ( int j1 : j_indices ){
-                        double correlation = cor.computeCorrelations(i1, j1);
-                        totalCorrelation += correlation;
-                    }
-                }
-
-                // average it
-                totalCorrelation = totalCorrelation / (i_indices.size() * j_indices.size());
-
-                // record only if correlation is greater than threshold
-                if (isThresholdEnabled && totalCorrelation <= thresholdValue) {
-                    // don't need these, log?
-                }
-                else {
-                    topInteractions[i_indices.get(0)].offer(j_indices.get(0), totalCorrelation);
-                    topInteractions[j_indices.get(0)].offer(i_indices.get(0), totalCorrelation);
-                }
+        int [][] groups = new int[indices.size()][];
+        int g = 0;
+        for (List<Integer> group: indices) {
+            groups[g] = new int[group.size()];
+            for (int i = 0; i < group.size(); i++) {
+                groups[g][i] = group.get(i);
             }
+            g++;
+        }
+
+        TopCorrelations correlations = new TopCorrelations(cor, groups, k, keepAllTies,
+                isThresholdEnabled, thresholdValue, progress);
+        KHeap [] groupInteractions = correlations.compute(EnginePool.instance());
+        for ( int i = 0; i < groups.length; i++ ) {
+            topInteractions[groups[i][0]] = groupInteractions[i];
         }
 
         // control sparsity when keeping ties by dropping the
@@ -643,6 +660,43 @@ public class ProfileToNetworkDriver {
         return n;
     }
 
+    /**
+     * Set the network into the given matrix, by node index. Each
+     * gene name is mapped to its index once, on first use.
+     *
+     * @param matrix
+     * @param nodeIds
+     */
+    public int dump(SymMatrix matrix, NodeIds nodeIds) throws ApplicationException {
+        List<String> names = profile.getGeneName();
+        int [] index = new int[names.size()];
+        Arrays.fill(index, -1);
+
+        int n = 0;
+        for (MatrixEntry e: network) {
+            if (e.get() != 0d && e.row() != e.column()) {
+                int from = nodeIndex(e.row(), names, index, nodeIds);
+                int to = nodeIndex(e.column(), names, index, nodeIds);
+                matrix.set(from, to, e.get());
+                n++;
+            }
+        }
+
+        return n;
+    }
+
+    private static int nodeIndex(int gene, List<String> names, int [] index, NodeIds nodeIds) throws ApplicationException {
+        if (index[gene] < 0) {
+            try {
+                index[gene] = nodeIds.getIndexForId(Long.parseLong(names.get(gene)));
+            }
+            catch (NumberFormatException e) {
+                throw new ApplicationException("not a node id: " + names.get(gene), e);
+            }
+        }
+        return index[gene];
+    }
+
     private boolean getCommandLineArgs(String [] args) {
         CmdLineParser parser = new CmdLineParser(this);
         try {
@@ -720,6 +774,13 @@ public class ProfileToNetworkDriver {
         this.synonyms = FileUtils.loadSynonyms(synReader, synSepChar, synIdColumn, synNameColumn, true);
     }
 
+    /*
+     * identifier -> unique id, identifiers in upper case
+     */
+    public void setSynonyms(Map<String, String> synonyms) {
+        this.synonyms = synonyms;
+    }
+
     public boolean isNoHeader() {
         return this.noHeader;
     }
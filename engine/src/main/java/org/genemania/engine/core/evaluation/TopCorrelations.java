@@ -0,0 +1,258 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.evaluation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.genemania.engine.core.KHeap;
+import org.genemania.engine.core.evaluation.correlation.AbstractPearson;
+import org.genemania.engine.core.evaluation.correlation.Correlation;
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.util.ProgressReporter;
+
+/**
+ * Computes the top k correlations for every gene in a profile. The gene
+ * pairs are split into square tiles which are scored on a fork-join pool,
+ * each tile offering its correlations to heaps of its own. These are merged
+ * into the shared heaps when the tile is done, so a shared heap is locked
+ * once per tile rather than once per pair.
+ *
+ * Genes stored in several rows of the profile are passed in as groups, the
+ * correlation between two groups is the average over all pairs of their rows,
+ * and the heaps store the first row of each group as its id.
+ *
+ * For pearson, spearman and pearson rank on continuous profiles, the normalized
+ * rows of each group are averaged into a single row-major array and each tile is
+ * a small matrix product over it. Groups whose rows were all zeroed out for
+ * having no variance are left out of the heaps, rather than offered 0's that
+ * would crowd real but negative correlations out of the top k. Other
+ * correlations, mutual information included, are scored through
+ * Correlation.computeCorrelations(), which must then be safe to call from
+ * several threads.
+ */
+public class TopCorrelations {
+    // rows per tile, so a pair of tiles of a few hundred features fits in cache
+    static final int TILE_SIZE = 64;
+
+    private final Correlation cor;
+    private final int [][] groups;
+    private final int k;
+    private final boolean keepAllTies;
+    private final boolean isThresholdEnabled;
+    private final double thresholdValue;
+    private final ProgressReporter progress;
+
+    private double [] values;
+    private int numFeatures;
+    private boolean [] zeroed;
+
+    private KHeap [] heaps;
+    private Object [] locks;
+
+    public TopCorrelations(Correlation cor, int [][] groups, int k, boolean keepAllTies,
+            boolean isThresholdEnabled, double thresholdValue, ProgressReporter progress) {
+        this.cor = cor;
+        this.groups = groups;
+        this.k = k;
+        this.keepAllTies = keepAllTies;
+        this.isThresholdEnabled = isThresholdEnabled;
+        this.thresholdValue = thresholdValue;
+        this.progress = progress;
+    }
+
+    /**
+     * @return a heap of the top k correlations for each group, indexed
+     *         as the groups
+     */
+    public KHeap [] compute(ForkJoinPool pool) throws CancellationException {
+        if (cor instanceof AbstractPearson && ((AbstractPearson) cor).isDense()) {
+            averageRows((AbstractPearson) cor);
+        }
+
+        heaps = newHeaps(groups.length);
+        int numBlocks = (groups.length + TILE_SIZE - 1) / TILE_SIZE;
+        locks = new Object[numBlocks];
+        for (int b=0; b<numBlocks; b++) {
+            locks[b] = new Object();
+        }
+
+        final AtomicReference<CancellationException> canceled = new AtomicReference<CancellationException>();
+        final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(numBlocks * (numBlocks + 1) / 2);
+        for (int p=0; p<numBlocks; p++) {
+            for (int q=p; q<numBlocks; q++) {
+                final int rowBlock = p;
+                final int colBlock = q;
+                tasks.add(new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        if (canceled.get() != null) {
+                            return;
+                        }
+                        try {
+                            tile(rowBlock, colBlock);
+                        }
+                        catch (CancellationException e) {
+                            canceled.compareAndSet(null, e);
+                        }
+                    }
+                });
+            }
+        }
+
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        if (canceled.get() != null) {
+            throw canceled.get();
+        }
+
+        return heaps;
+    }
+
+    /*
+     * sum the normalized rows of each group, scaled so the dot product
+     * of two groups is the average of the correlations of their rows
+     */
+    void averageRows(AbstractPearson pearson) {
+        numFeatures = pearson.getNumberOfFeatures();
+        values = new double[groups.length * numFeatures];
+        zeroed = new boolean[groups.length];
+        for (int g=0; g<groups.length; g++) {
+            int offset = g * numFeatures;
+            for (int row: groups[g]) {
+                pearson.addValues(row, values, offset);
+            }
+            zeroed[g] = true;
+            for (int f=offset; f<offset+numFeatures && zeroed[g]; f++) {
+                zeroed[g] = values[f] == 0d;
+            }
+            if (groups[g].length > 1) {
+                double scale = 1d / groups[g].length;
+                for (int f=offset; f<offset+numFeatures; f++) {
+                    values[f] *= scale;
+                }
+            }
+        }
+    }
+
+    /*
+     * score all pairs of groups with the first in the row block and the second
+     * in the column block, then merge into the shared heaps. on the diagonal
+     * only the pairs above the diagonal are scored
+     */
+    void tile(int rowBlock, int colBlock) throws CancellationException {
+        int rowStart = rowBlock * TILE_SIZE;
+        int rowEnd = Math.min(rowStart + TILE_SIZE, groups.length);
+        int colStart = colBlock * TILE_SIZE;
+        int colEnd = Math.min(colStart + TILE_SIZE, groups.length);
+
+        KHeap [] rowHeaps = newHeaps(rowEnd - rowStart);
+        KHeap [] colHeaps = rowBlock == colBlock ? rowHeaps : newHeaps(colEnd - colStart);
+
+        for (int i=rowStart; i<rowEnd; i++) {
+            if (progress.isCanceled()) {
+                throw new CancellationException();
+            }
+
+            if (zeroed != null && zeroed[i]) {
+                continue;
+            }
+
+            int id_i = groups[i][0];
+            for (int j=Math.max(colStart, i+1); j<colEnd; j++) {
+                if (zeroed != null && zeroed[j]) {
+                    continue;
+                }
+                double correlation = values != null ? dot(i, j) : average(i, j);
+
+                // record only if correlation is greater than threshold
+                if (isThresholdEnabled && correlation <= thresholdValue) {
+                    continue;
+                }
+                rowHeaps[i - rowStart].offer(groups[j][0], correlation);
+                colHeaps[j - colStart].offer(id_i, correlation);
+            }
+        }
+
+        merge(rowBlock, rowHeaps);
+        if (colHeaps != rowHeaps) {
+            merge(colBlock, colHeaps);
+        }
+    }
+
+    private double dot(int i, int j) {
+        int oi = i * numFeatures;
+        int oj = j * numFeatures;
+        double sum = 0;
+        for (int f=0; f<numFeatures; f++) {
+            sum += values[oi + f] * values[oj + f];
+        }
+        return sum;
+    }
+
+    private double average(int i, int j) {
+        double totalCorrelation = 0;
+        for (int i1: groups[i]) {
+            for (int j1: groups[j]) {
+                totalCorrelation += cor.computeCorrelations(i1, j1);
+            }
+        }
+        return totalCorrelation / (groups[i].length * groups[j].length);
+    }
+
+    /*
+     * a tile heap holds the tile's top k and any ties with its last, so
+     * offering its contents is enough to leave the shared heap as if the
+     * tile's correlations had been offered to it directly
+     */
+    private void merge(int block, KHeap [] tileHeaps) {
+        int start = block * TILE_SIZE;
+        synchronized (locks[block]) {
+            for (int i=0; i<tileHeaps.length; i++) {
+                KHeap from = tileHeaps[i];
+                KHeap to = heaps[start + i];
+                int n = from.size();
+                for (int j=0; j<n; j++) {
+                    to.offer((int) from.getId(j), from.getWeight(j));
+                }
+            }
+        }
+    }
+
+    private KHeap [] newHeaps(int n) {
+        KHeap [] result = new KHeap[n];
+        for (int i=0; i<n; i++) {
+            result[i] = new KHeap(k, keepAllTies);
+        }
+        return result;
+    }
+}
@@ -32,8 +32,9 @@ import no.uib.cipr.matrix.Vector;
  * 
  * Computes the joint entropy on the fly as suggested by Khalid. This gives
  * flexibility in calculating arbitrary number of genes, as memory will not be a problem. To 
- * calculate all the genes and their interaction = O(n^2) as the individual entropies are calculated
- * and stored on the fly as well.
+ * calculate all the genes and their interaction = O(n^2). The individual entropies are 
+ * calculated and stored up front in init(), after which computeCorrelations() only reads 
+ * shared state and may be called from several threads at once.
  * 
  * Because the gene expression data are continuous data and mutual information works with discrete
  * values, binning is needed to get the continuous values into discrete values. There are two types
@@ -60,18 +61,23 @@ public abstract class AbstractMutualInformation implements Correlation {
 	protected List<Vector> geneExpressions;
 	
 	private double[] individualEntropies;   // array storing entropies for each gene
-	private boolean[] calculated;           // array keep track of which gene has its entropy stored
-	                                        // initialized to false;
 	
 	public void init(ProfileData data){
 		geneExpressions = data.getGeneExpression();
 		numGenes = geneExpressions.size();
 		numFeatures = geneExpressions.get(0).size();
 		
-		individualEntropies = new double[numGenes];
-		calculated = new boolean[numGenes];
-		
 		init();
+		
+		individualEntropies = new double[numGenes];
+		for ( int i = 0; i < numGenes; i++ ){
+			Vector values_i = geneExpressions.get(i);
+			int[] indCounts_i = new int[numBins];
+			for ( int k = 0; k < numFeatures; k++ ){
+				indCounts_i[getBinNumber(i, values_i, k)] += 1;
+			}
+			individualEntropies[i] = computeEntropy(indCounts_i, numFeatures);
+		}
 	}
 	
 	/**
@@ -82,61 +88,29 @@ public abstract class AbstractMutualInformation implements Correlation {
 	/**
 	 * Computes mutual information between gene i and gene j.
 	 * 
-	 * If the individual entropy for gene i or gene j has not been calculated and stored yet, the
-	 * entropy will be calculated and stored in the individualEntropies array. If the entropy is 
-	 * calculated already, the values will be loaded from the individualEntropies array. Then the
-	 * joint entropy for the two genes will be calculated.
+	 * The individual entropies for gene i and gene j are loaded from the individualEntropies
+	 * array filled in by init(), only the joint entropy for the two genes is calculated here.
 	 * 
 	 */
 	public double computeCorrelations(int i, int j) {
-		double jointEntropy;
-		double indEntropy_i;
-		double indEntropy_j;
-		
 		Vector values_i = geneExpressions.get(i);
 		Vector values_j = geneExpressions.get(j);
-		int[] indCounts_i = new int[numBins];
-		int[] indCounts_j = new int[numBins];
 		int[] jointCounts = new int[numBins*numBins];
 		
-		/*
-		 * look through the values for the ith and jth vector to calculate:
-		 * 1) the individual entropy for the i-th vector 
-		 * 2) the individual entropy for the j-th vector
-		 * 3) the joint entropy for the i-th and j-th vector
-		 */
+		// look through the values for the ith and jth vector to calculate
+		// the joint entropy for the i-th and j-th vector
 		for ( int k = 0; k < numFeatures; k++ ){
 			int binNumber_i = getBinNumber(i, values_i, k);
 			int binNumber_j = getBinNumber(j, values_j, k);
 			
-			// increment the count for i and j;
-			if ( !calculated[i] ){
-				indCounts_i[binNumber_i] += 1;
-			}
-			if ( !calculated[j] ){
-				indCounts_j[binNumber_j] += 1;
-			}
-			
 			// increment the count for i-j
 			int index = binNumber_i * numBins + binNumber_j;
 			jointCounts[index] += 1;
 		}
 		
-		if ( !calculated[i] ){
-			individualEntropies[i] = computeEntropy(indCounts_i, numFeatures);
-			calculated[i] = true;
-		} 
-		indEntropy_i = individualEntropies[i];
-		
-		if ( !calculated[j] ){
-			individualEntropies[j] = computeEntropy(indCounts_j, numFeatures);
-			calculated[j] = true;
-		} 
-		indEntropy_j = individualEntropies[j];
-		
-		jointEntropy = computeEntropy(jointCounts, numFeatures);
+		double jointEntropy = computeEntropy(jointCounts, numFeatures);
 		
-		return indEntropy_i + indEntropy_j - jointEntropy;
+		return individualEntropies[i] + individualEntropies[j] - jointEntropy;
 	}
 	
 	/**
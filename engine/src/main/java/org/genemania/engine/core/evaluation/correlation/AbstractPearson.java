@@ -75,6 +75,36 @@ public abstract class AbstractPearson implements Correlation {
 		replaceMissingData();
 	}
 	
+	/**
+	 * @return true if the profile has a value for every gene and feature, so
+	 *         copying the normalized rows out with addValues() is no bigger
+	 *         than the profile itself
+	 */
+	public boolean isDense() {
+		List<Vector> geneExpressions = geneData.getGeneExpression();
+		return geneExpressions.size() > 0 && geneExpressions.get(0) instanceof DenseVector;
+	}
+	
+	/**
+	 * @return the number of values in each row
+	 */
+	public int getNumberOfFeatures() {
+		return geneData.getGeneExpression().get(0).size();
+	}
+	
+	/**
+	 * Adds the normalized values of gene i to values, starting at offset. The
+	 * dot product of two such rows is the correlation computed by
+	 * computeCorrelations().
+	 */
+	public void addValues(int i, double[] values, int offset) {
+		PearsonRow row = rows[i];
+		int n = row.getNumberOfElements();
+		for ( int k = 0; k < n; k++ ){
+			values[offset + k] += row.getValueAt(k);
+		}
+	}
+	
 	/* 
      * default implementation gives 0 as the threshold.
 	 */
@@ -19,13 +19,23 @@
 
 package org.genemania.engine.core.integration;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.apache.log4j.Logger;
 import org.genemania.engine.Constants.NetworkType;
 import org.genemania.engine.config.Config;
 import org.genemania.engine.cache.DataCache;
 import org.genemania.engine.core.data.Network;
+import org.genemania.engine.core.utils.EnginePool;
 import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.matricks.MatrixAccumulator;
+import org.genemania.engine.matricks.RowBlockMatrixAccumulator;
 import org.genemania.engine.matricks.SymMatrix;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ProgressReporter;
@@ -84,42 +94,164 @@ public class CombineNetworksOnly {
     }
 
      /* 
-      * use the optimized accumulator to compute combined network. helps as long as
-      * we're not memory constrained ... but worse case is we'll have to reload the
-      * networks multiple time! so this suits our server use
+      * use the optimized accumulator to compute combined network, largest
+      * weight first. each network is fetched from the data cache once per
+      * accumulator block rather than held for the whole combine, so the
+      * cache's memory budget still decides what stays resident. if the
+      * accumulator can be split, its blocks are filled concurrently on
+      * the engine pool.
       */
     static SymMatrix combineWithAdder(FeatureWeightMap weightMap, String namespace, long organismId, DataCache cache, ProgressReporter progress) throws ApplicationException {
+        return combineWithAdder(weightMap, namespace, organismId, cache, progress, EnginePool.instance(),
+                Config.instance().getCombineWeightTolerance());
+    }
+
+    static SymMatrix combineWithAdder(FeatureWeightMap weightMap, String namespace, long organismId, DataCache cache, ProgressReporter progress,
+            ForkJoinPool pool, double tolerance) throws ApplicationException {
         int size = cache.getNodeIds(organismId).getNodeIds().length;
         SymMatrix combined = Config.instance().getMatrixFactory().symSparseMatrix(size);
-        
+
+        List<Feature> features = sparseFeatures(weightMap, tolerance);
+        WeightedNetworks networks = new WeightedNetworks(cache, namespace, organismId, features.size());
+        for (int i=0; i<features.size(); i++) {
+            Feature feature = features.get(i);
+            networks.weights[i] = weightMap.get(feature);
+            networks.networkIds[i] = feature.getId();
+        }
+
         MatrixAccumulator adder = combined.accumulator();
-        
-        while (adder.nextBlock()) {
-            for (Feature feature: weightMap.keySet()) {
+        if (adder instanceof RowBlockMatrixAccumulator && pool != null && pool.getParallelism() > 1) {
+            // a few blocks per thread to even out the load
+            List<MatrixAccumulator> blocks = ((RowBlockMatrixAccumulator) adder).blocks(4*pool.getParallelism());
+            accumulate(blocks, networks, progress, pool);
+        }
+        else {
+            accumulate(adder, networks, progress);
+        }
+
+        logger.info("Combine Matrix done!");
+        return combined;
+    }
+
+    /*
+     * sparse network features, by decreasing weight. those with weight
+     * below tolerance times the largest are dropped.
+     */
+    static List<Feature> sparseFeatures(final FeatureWeightMap weightMap, double tolerance) throws ApplicationException {
+        List<Feature> features = new ArrayList<Feature>();
+        double maxWeight = 0d;
+        for (Feature feature: weightMap.keySet()) {
+            if (feature.getType() == NetworkType.SPARSE_MATRIX) {
+                features.add(feature);
+                maxWeight = Math.max(maxWeight, Math.abs(weightMap.get(feature)));
+            }
+            else if (feature.getType() == NetworkType.ATTRIBUTE_VECTOR) {
+                // skip
+            }
+            else if (feature.getType() == NetworkType.BIAS) {
+                // skip
+            }
+            else {
+                throw new ApplicationException("unsupported network type");
+            }
+        }
+
+        Collections.sort(features, new Comparator<Feature>() {
+            @Override
+            public int compare(Feature a, Feature b) {
+                int cmp = Double.compare(Math.abs(weightMap.get(b)), Math.abs(weightMap.get(a)));
+                return cmp != 0 ? cmp : a.compareTo(b);
+            }
+        });
 
+        int keep = features.size();
+        while (keep > 0 && Math.abs(weightMap.get(features.get(keep-1))) < tolerance*maxWeight) {
+            keep--;
+        }
+        if (keep < features.size()) {
+            logger.debug(String.format("skipping %d of %d networks with weight below %g", features.size() - keep, features.size(), tolerance*maxWeight));
+        }
+
+        return new ArrayList<Feature>(features.subList(0, keep));
+    }
+
+    static void accumulate(MatrixAccumulator adder, WeightedNetworks networks, ProgressReporter progress) throws ApplicationException {
+        while (adder.nextBlock()) {
+            for (int i=0; i<networks.size(); i++) {
                 if (progress.isCanceled()) {
                     throw new CancellationException();
                 }
+                adder.add(networks.weights[i], networks.get(i));
+            }
+        }
+    }
 
-                if (feature.getType() == NetworkType.SPARSE_MATRIX) {
-                    double weight = weightMap.get(feature);
-                    Network network = cache.getNetwork(namespace, organismId, feature.getId());
-                    SymMatrix data = network.getData();                
-                    adder.add(weight, data);
-                }            
-                else if (feature.getType() == NetworkType.ATTRIBUTE_VECTOR) {
-                    // skip
-                }
-                else if (feature.getType() == NetworkType.BIAS) {
-                    // skip
-                }
-                else {
-                    throw new ApplicationException("unsupported network type");                
+    /*
+     * fill each block on its own task. stops at the first failure
+     * or cancellation
+     */
+    static void accumulate(List<MatrixAccumulator> blocks, final WeightedNetworks networks, final ProgressReporter progress,
+            ForkJoinPool pool) throws ApplicationException {
+        final AtomicReference<ApplicationException> failure = new AtomicReference<ApplicationException>();
+        final List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(blocks.size());
+        for (final MatrixAccumulator block: blocks) {
+            tasks.add(new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    if (failure.get() != null) {
+                        return;
+                    }
+                    try {
+                        accumulate(block, networks, progress);
+                    }
+                    catch (ApplicationException e) {
+                        failure.compareAndSet(null, e);
+                    }
                 }
+            });
+        }
+
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
             }
+        });
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /*
+     * networks to combine and their weights, fetched from
+     * the data cache each time they're needed
+     */
+    static class WeightedNetworks {
+        DataCache cache;
+        String namespace;
+        long organismId;
+        long [] networkIds;
+        double [] weights;
+
+        WeightedNetworks(DataCache cache, String namespace, long organismId, int size) {
+            this.cache = cache;
+            this.namespace = namespace;
+            this.organismId = organismId;
+            this.networkIds = new long[size];
+            this.weights = new double[size];
+        }
+
+        int size() {
+            return networkIds.length;
+        }
+
+        SymMatrix get(int i) throws ApplicationException {
+            return cache.getNetwork(namespace, organismId, networkIds[i]).getData();
         }
-        
-        logger.info("Combine Matrix done!");
-        return combined;
     }
 }
@@ -114,9 +114,10 @@ public class FeatureLoader {
     }
     
     /*
-     * quick & dirty caching of sums
+     * quick & dirty caching of sums. synchronized since gram builders
+     * load features from several threads.
      */
-    org.genemania.engine.matricks.Vector getColumnSums(AttributeData attributeSet) {
+    synchronized org.genemania.engine.matricks.Vector getColumnSums(AttributeData attributeSet) {
         if (sumsCacheGroupId == attributeSet.getAttributeGroupId() && sumsCache != null) {
             return sumsCache;
         }
@@ -35,7 +35,6 @@ import org.genemania.engine.core.integration.FeatureLoader;
 import org.genemania.engine.core.integration.Solver;
 import org.genemania.engine.core.integration.FeatureWeightMap;
 import org.genemania.engine.core.utils.Normalization;
-import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.matricks.MatricksException;
 import org.genemania.engine.matricks.Matrix;
 import org.genemania.engine.matricks.SymMatrix;
@@ -130,8 +129,8 @@ public class AutomaticGramBuilder {
         // setup constants used for the remainder of the calculation.
         // these shouldn't depend on the features, but can depend on  
         // number of positives & negatives in the label vector
-        int[] ixPos = MatrixUtils.find(labels, 1d);
-        int[] ixNeg = MatrixUtils.find(labels, -1d);
+        final int[] ixPos = MatrixUtils.find(labels, 1d);
+        final int[] ixNeg = MatrixUtils.find(labels, -1d);
         final int numPos = ixPos.length;
         final int numNeg = ixNeg.length;
         
@@ -156,49 +155,52 @@ public class AutomaticGramBuilder {
         final double posPosTarget = posConst * posConst;
         final double posNegTarget = posConst * negConst;
         
-        DenseMatrix KtK = new DenseMatrix(numFeatures, numFeatures);
-        DenseVector KtT = new DenseVector(numFeatures);
+        final DenseMatrix KtK = new DenseMatrix(numFeatures, numFeatures);
+        final DenseVector KtT = new DenseVector(numFeatures);
   
         KtK.set(0, 0, biasVal);     
         double sumOfTargets = posPosTarget * numPosPos + posNegTarget * numPosNeg;
         KtT.set(0, biasVal * sumOfTargets);
 
-        SymMatrix[] Wpp = new SymMatrix[numFeatures];
-        Matrix[] Wpn = new Matrix[numFeatures];
+        final SymMatrix[] Wpp = new SymMatrix[numFeatures];
+        final Matrix[] Wpn = new Matrix[numFeatures];
 
         boolean oldMode = false;  // comparison testing, TODO: remove, want to keep new mode
         boolean scaled = true;
-        FeatureLoader featureLoader = new FeatureLoader(cache, namespace, organismId, oldMode, scaled);
-
-        for (int ii = 1; ii<numFeatures; ii++) {
-            Feature feature_ii = featureList.get(ii);
-            
-            Wpp[ii] = featureLoader.load(feature_ii, ixPos);
-            Wpn[ii] = featureLoader.load(feature_ii, ixPos, ixNeg);            
-            
-            double ssWpp = Wpp[ii].elementSum();
-            double ssWpn = Wpn[ii].elementSum();
-            
-            KtT.set(ii, posPosTarget * ssWpp + 2d * posNegTarget * ssWpn);
-            KtK.set(ii, 0, biasVal * (ssWpp + 2 * ssWpn));
-            KtK.set(0, ii, KtK.get(ii, 0));
-
-            for (int jj = 1; jj <= ii; jj++) {
-
-                if (progress.isCanceled()) {
-                    throw new CancellationException();
-                }
-                
+        final FeatureLoader featureLoader = new FeatureLoader(cache, namespace, organismId, oldMode, scaled);
+
+        // the submatrix extraction for each feature is independent,
+        // and the pairwise products only read the extracted submatrices,
+        // so both are spread over the engine's thread pool
+        GramProducts products = new GramProducts(progress);
+
+        products.forEach(1, numFeatures, new GramProducts.FeatureTask() {
+            public void run(int ii) throws ApplicationException {
+                Feature feature_ii = featureList.get(ii);
+
+                Wpp[ii] = featureLoader.load(feature_ii, ixPos);
+                Wpn[ii] = featureLoader.load(feature_ii, ixPos, ixNeg);
+
+                double ssWpp = Wpp[ii].elementSum();
+                double ssWpn = Wpn[ii].elementSum();
+
+                KtT.set(ii, posPosTarget * ssWpp + 2d * posNegTarget * ssWpn);
+                KtK.set(ii, 0, biasVal * (ssWpp + 2 * ssWpn));
+                KtK.set(0, ii, KtK.get(ii, 0));
+            }
+        });
+
+        products.lowerTriangle(KtK, 1, numFeatures, new GramProducts.PairProduct() {
+            public double compute(int ii, int jj) throws ApplicationException {
                 double sumOfProds = 0;
-                
+
                 sumOfProds += Wpp[ii].elementMultiplySum(Wpp[jj]);
                 sumOfProds += 2 * Wpn[ii].elementMultiplySum(Wpn[jj]);
-                
-                KtK.set(ii, jj, sumOfProds);
-                KtK.set(jj, ii, sumOfProds);                
+
+                return sumOfProds;
             }
-        }
-        
+        });
+
         logger.debug("solving system of size " + featureList.size());
         return Solver.solve(KtK, KtT, featureList, progress);
     }  
@@ -33,6 +33,7 @@ import org.genemania.engine.core.integration.FeatureList;
 import org.genemania.engine.core.integration.FeatureLoader;
 import org.genemania.engine.exception.CancellationException;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.CompactSymFloatMatrix;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ProgressReporter;
 
@@ -54,39 +55,40 @@ public class BasicGramBuilder {
      * maybe later we put in the GramTarget container instead of
      * only building KtK here?
      */
-    public DenseMatrix buildBasicKtK(FeatureList featureList, ProgressReporter reporter) throws ApplicationException {
+    public DenseMatrix buildBasicKtK(final FeatureList featureList, ProgressReporter reporter) throws ApplicationException {
         checkFeatureList(featureList, true);
         
         int size = featureList.size();
         int numGenes = cache.getNodeIds(organismId).getNodeIds().length; 
         
-        DenseMatrix KtK = new DenseMatrix(size, size);
-        FeatureLoader featureLoader = new FeatureLoader(cache, namespace, organismId);
+        final DenseMatrix KtK = new DenseMatrix(size, size);
+        final FeatureLoader featureLoader = new FeatureLoader(cache, namespace, organismId);
+        GramProducts products = new GramProducts(progress);
        
         KtK.set(0, 0, numGenes*numGenes);
-        for (int i = 1; i < size; i++) {
-            Feature iFeature = featureList.get(i);
-//            logger.debug(String.format("processing %d'th feature, type %s", i, iFeature.getType().toString()));
-            SymMatrix network_i = featureLoader.load(iFeature);
-            
-            double networkSum = network_i.elementSum();
-            KtK.set(i, 0, networkSum);
-            KtK.set(0, i, networkSum);
+        products.forEach(1, size, new GramProducts.FeatureTask() {
+            public void run(int i) throws ApplicationException {
+                Feature iFeature = featureList.get(i);
+//                logger.debug(String.format("processing %d'th feature, type %s", i, iFeature.getType().toString()));
+                SymMatrix network_i = featureLoader.load(iFeature);
 
-            for (int j = 1; j <= i; j++) {
-                if (progress.isCanceled()) {
-                    throw new CancellationException();
-                }
-                
-                Feature jFeature = featureList.get(j);
-                SymMatrix network_j = featureLoader.load(jFeature);
-                
-                double prodSum = network_j.elementMultiplySum(network_i);
-//                double prodSum = network_i.elementMultiplySum(network_j);
-                KtK.set(i, j, prodSum);
-                KtK.set(j, i, prodSum);
+                double networkSum = network_i.elementSum();
+                KtK.set(i, 0, networkSum);
+                KtK.set(0, i, networkSum);
+            }
+        });
+
+        // each tile loads its few features through the data cache, so
+        // the organism's networks aren't all held at once
+        products.lowerTriangle(KtK, 1, size, new GramProducts.FeatureSource() {
+            public SymMatrix load(int i) throws ApplicationException {
+                return featureLoader.load(featureList.get(i));
             }
-        }        
+        }, new GramProducts.FeatureProduct() {
+            public double compute(SymMatrix network_i, SymMatrix network_j) {
+                return network_j.elementMultiplySum(network_i);
+            }
+        });
    
         return KtK;      
     }
@@ -150,7 +152,23 @@ public class BasicGramBuilder {
         return result;
     }    
 
-    public DenseMatrix updateBasicKtK(DenseMatrix KtK, FeatureList featureList, FeatureList featuresToAdd, ProgressReporter reporter) throws ApplicationException {
+    /*
+     * as computeKttElement(), but the co-annotation product only visits
+     * the network's nonzeros, so the cost follows the size of the network
+     * rather than that of the co-annotation matrix
+     */
+    public static double computeSparseKttElement(int numberOfGenes, CompactSymFloatMatrix network, SymMatrix CoAnnotationMatrix, DenseVector BHalf, double constant) {
+        double networkSum = network.elementSum();
+
+        DenseVector tempVec = new DenseVector(numberOfGenes);
+        network.mult(BHalf.getData(), tempVec.getData());
+        double tempVecSum = MatrixUtils.sum(tempVec);
+
+        return network.elementMultiplySumByLookup(CoAnnotationMatrix) +
+               tempVecSum + networkSum * constant;
+    }
+
+    public DenseMatrix updateBasicKtK(DenseMatrix KtK, final FeatureList featureList, final FeatureList featuresToAdd, ProgressReporter reporter) throws ApplicationException {
         checkFeatureList(featureList, true);
         checkFeatureList(featuresToAdd, false);
         
@@ -160,7 +178,7 @@ public class BasicGramBuilder {
         final int newSize = oldSize + numFeaturesToAdd;
         
         logger.debug("allocating new KtK and copying data over");
-        DenseMatrix KtKNew = new DenseMatrix(newSize, newSize);        
+        final DenseMatrix KtKNew = new DenseMatrix(newSize, newSize);        
         for (int i=0; i<oldSize; i++) {
             for (int j=0; j<oldSize; j++) {
                 KtKNew.set(i, j, KtK.get(i, j));
@@ -168,62 +186,50 @@ public class BasicGramBuilder {
         }
         
         // compute products between previous features, and new
-        FeatureLoader featureLoader = new FeatureLoader(cache, namespace, organismId);
+        final FeatureLoader featureLoader = new FeatureLoader(cache, namespace, organismId);
+        GramProducts products = new GramProducts(progress);
 
         logger.debug("preloading new features");
-        
-        SymMatrix [] newFeatures = new SymMatrix[numFeaturesToAdd];
-        for (int j=0; j<numFeaturesToAdd; j++) {
-            Feature jFeature = featuresToAdd.get(j);
-            SymMatrix network_j = featureLoader.load(jFeature);    
-            newFeatures[j] = network_j;
-        }
+
+        final SymMatrix [] newFeatures = new SymMatrix[numFeaturesToAdd];
+        products.forEach(0, numFeaturesToAdd, new GramProducts.FeatureTask() {
+            public void run(int j) throws ApplicationException {
+                Feature jFeature = featuresToAdd.get(j);
+                newFeatures[j] = featureLoader.load(jFeature);
+            }
+        });
 
         logger.debug(String.format("computing products between %d new and %d old features", numFeaturesToAdd, oldSize));
 
-        for (int i=1; i<oldSize; i++) {
-            Feature iFeature = featureList.get(i);
-            SymMatrix network_i = featureLoader.load(iFeature);
-            
-            for (int j=0; j<numFeaturesToAdd; j++) {
-                if (progress.isCanceled()) {
-                    throw new CancellationException();
-                }
-                
-//                Feature jFeature = featuresToAdd.get(j);
-//                SymMatrix network_j = featureLoader.load(jFeature); 
-                SymMatrix network_j = newFeatures[j];
-                
-                double prodSum = network_i.elementMultiplySum(network_j);
-                KtKNew.set(i, j + oldSize, prodSum);
-                KtKNew.set(j + oldSize, i, prodSum);
+        // old features are loaded per tile through the data cache,
+        // there may be many of them
+        products.rectangle(KtKNew, 1, oldSize, oldSize, newSize, new GramProducts.FeatureSource() {
+            public SymMatrix load(int i) throws ApplicationException {
+                return featureLoader.load(featureList.get(i));
             }
-        }
+        }, new GramProducts.FeatureSource() {
+            public SymMatrix load(int j) {
+                return newFeatures[j - oldSize];
+            }
+        }, new GramProducts.FeatureProduct() {
+            public double compute(SymMatrix network_i, SymMatrix network_j) {
+                return network_i.elementMultiplySum(network_j);
+            }
+        });
         
         // compute products of new features amongst themselves, and biases
         logger.debug(String.format("computing products between %d new features, and their biases", numFeaturesToAdd));
         for (int i=0; i<numFeaturesToAdd; i++) {
-//            Feature iFeature = featuresToAdd.get(i);
-//            SymMatrix network_i = featureLoader.load(iFeature);
-            SymMatrix network_i = newFeatures[i];
-            
-            double networkSum = network_i.elementSum();
+            double networkSum = newFeatures[i].elementSum();
             KtKNew.set(i + oldSize, 0, networkSum);
             KtKNew.set(0, i + oldSize, networkSum);
-            
-            for (int j=0; j<numFeaturesToAdd; j++) {
-                if (progress.isCanceled()) {
-                    throw new CancellationException();
-                }
-                
-                Feature jFeature = featuresToAdd.get(j);
-                SymMatrix network_j = featureLoader.load(jFeature);        
-                
-                double prodSum = network_i.elementMultiplySum(network_j);
-                KtKNew.set(i + oldSize, j + oldSize, prodSum);
-                KtKNew.set(j + oldSize, i + oldSize, prodSum);
+        }
+
+        products.lowerTriangle(KtKNew, oldSize, newSize, new GramProducts.PairProduct() {
+            public double compute(int i, int j) throws ApplicationException {
+                return newFeatures[i - oldSize].elementMultiplySum(newFeatures[j - oldSize]);
             }
-        }            
+        });
         
         return KtKNew;
     }
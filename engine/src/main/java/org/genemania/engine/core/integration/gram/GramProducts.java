@@ -0,0 +1,365 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.integration.gram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+import no.uib.cipr.matrix.DenseMatrix;
+
+import org.genemania.engine.core.utils.EnginePool;
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.exception.ApplicationException;
+import org.genemania.util.ProgressReporter;
+
+/*
+ * fills in the pairwise feature inner products of a gram matrix KtK
+ * on a fork-join pool.
+ *
+ * the pairs are cut into square tiles of features, one task per tile,
+ * so a task reuses the same few feature matrices while they are
+ * hot in cache. each product is written to both (i, j) and (j, i),
+ * tasks never write the same cell.
+ *
+ * builders can either hold every feature themselves and index into
+ * them from a PairProduct, or give a FeatureSource and have each tile
+ * load its own features, typically through the data cache, and drop
+ * them when it's done. then only the features of the tiles in flight
+ * are held at once, and a feature is loaded once per tile rather than
+ * once per pair.
+ *
+ * the first exception thrown by any product stops the remaining tiles
+ * and is rethrown to the caller. cancellation is checked before every
+ * product.
+ */
+public class GramProducts {
+
+    public static final int DEFAULT_TILE_SIZE = 8;
+
+    /*
+     * computes the inner product of features i and j. called
+     * concurrently, so must be thread safe.
+     */
+    public interface PairProduct {
+        public double compute(int i, int j) throws ApplicationException;
+    }
+
+    /*
+     * loads feature i for a tile. called concurrently, so must
+     * be thread safe.
+     */
+    public interface FeatureSource {
+        public SymMatrix load(int i) throws ApplicationException;
+    }
+
+    /*
+     * inner product of loaded features i and j, in that order
+     */
+    public interface FeatureProduct {
+        public double compute(SymMatrix feature_i, SymMatrix feature_j) throws ApplicationException;
+    }
+
+    /*
+     * some independent piece of work for feature i, e.g. loading it
+     */
+    public interface FeatureTask {
+        public void run(int i) throws ApplicationException;
+    }
+
+    private ForkJoinPool pool;
+    private ProgressReporter progress;
+    private int tileSize = DEFAULT_TILE_SIZE;
+
+    public GramProducts(ForkJoinPool pool, ProgressReporter progress) {
+        this.pool = pool;
+        this.progress = progress;
+    }
+
+    public GramProducts(ProgressReporter progress) {
+        this(EnginePool.instance(), progress);
+    }
+
+    /*
+     * products for all pairs start <= j <= i < end
+     */
+    public void lowerTriangle(DenseMatrix result, int start, int end, PairProduct product) throws ApplicationException {
+        Failure failure = new Failure();
+        List<RecursiveAction> tiles = new ArrayList<RecursiveAction>();
+        for (int rowStart=start; rowStart<end; rowStart+=tileSize) {
+            int rowEnd = Math.min(rowStart + tileSize, end);
+            for (int colStart=start; colStart<=rowStart; colStart+=tileSize) {
+                int colEnd = Math.min(colStart + tileSize, end);
+                tiles.add(new Tile(result, rowStart, rowEnd, colStart, colEnd, true, product, failure));
+            }
+        }
+
+        run(tiles, failure);
+    }
+
+    /*
+     * products for all pairs rowStart <= i < rowEnd, colStart <= j < colEnd
+     */
+    public void rectangle(DenseMatrix result, int rowStart, int rowEnd, int colStart, int colEnd, PairProduct product) throws ApplicationException {
+        Failure failure = new Failure();
+        List<RecursiveAction> tiles = new ArrayList<RecursiveAction>();
+        for (int r=rowStart; r<rowEnd; r+=tileSize) {
+            for (int c=colStart; c<colEnd; c+=tileSize) {
+                tiles.add(new Tile(result, r, Math.min(r + tileSize, rowEnd), c, Math.min(c + tileSize, colEnd), false, product, failure));
+            }
+        }
+
+        run(tiles, failure);
+    }
+
+    /*
+     * as lowerTriangle() above, each tile loading its features from source
+     */
+    public void lowerTriangle(DenseMatrix result, int start, int end, FeatureSource source, FeatureProduct product) throws ApplicationException {
+        Failure failure = new Failure();
+        List<RecursiveAction> tiles = new ArrayList<RecursiveAction>();
+        for (int rowStart=start; rowStart<end; rowStart+=tileSize) {
+            int rowEnd = Math.min(rowStart + tileSize, end);
+            for (int colStart=start; colStart<=rowStart; colStart+=tileSize) {
+                int colEnd = Math.min(colStart + tileSize, end);
+                tiles.add(new LoadingTile(result, rowStart, rowEnd, colStart, colEnd, true, source, source, product, failure));
+            }
+        }
+
+        run(tiles, failure);
+    }
+
+    /*
+     * as rectangle() above, each tile loading its row features from
+     * rowSource and its column features from colSource
+     */
+    public void rectangle(DenseMatrix result, int rowStart, int rowEnd, int colStart, int colEnd, FeatureSource rowSource, FeatureSource colSource, FeatureProduct product) throws ApplicationException {
+        Failure failure = new Failure();
+        List<RecursiveAction> tiles = new ArrayList<RecursiveAction>();
+        for (int r=rowStart; r<rowEnd; r+=tileSize) {
+            for (int c=colStart; c<colEnd; c+=tileSize) {
+                tiles.add(new LoadingTile(result, r, Math.min(r + tileSize, rowEnd), c, Math.min(c + tileSize, colEnd), false, rowSource, colSource, product, failure));
+            }
+        }
+
+        run(tiles, failure);
+    }
+
+    /*
+     * run task for each feature start <= i < end concurrently
+     */
+    public void forEach(int start, int end, FeatureTask task) throws ApplicationException {
+        Failure failure = new Failure();
+        List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+        for (int i=start; i<end; i++) {
+            tasks.add(new Single(i, task, failure));
+        }
+
+        run(tasks, failure);
+    }
+
+    private void run(final List<RecursiveAction> tasks, Failure failure) throws ApplicationException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        failure.rethrow();
+    }
+
+    void checkCanceled() throws CancellationException {
+        if (progress.isCanceled()) {
+            throw new CancellationException();
+        }
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public void setTileSize(int tileSize) {
+        this.tileSize = tileSize;
+    }
+
+    /*
+     * first exception raised by any task
+     */
+    static class Failure {
+        AtomicReference<ApplicationException> exception = new AtomicReference<ApplicationException>();
+
+        boolean occurred() {
+            return exception.get() != null;
+        }
+
+        void set(ApplicationException e) {
+            exception.compareAndSet(null, e);
+        }
+
+        void rethrow() throws ApplicationException {
+            ApplicationException e = exception.get();
+            if (e != null) {
+                throw e;
+            }
+        }
+    }
+
+    class Tile extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        DenseMatrix result;
+        int rowStart, rowEnd, colStart, colEnd;
+        boolean lower; // only j <= i
+        PairProduct product;
+        Failure failure;
+
+        Tile(DenseMatrix result, int rowStart, int rowEnd, int colStart, int colEnd, boolean lower, PairProduct product, Failure failure) {
+            this.result = result;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.colStart = colStart;
+            this.colEnd = colEnd;
+            this.lower = lower;
+            this.product = product;
+            this.failure = failure;
+        }
+
+        /*
+         * products for this tile, once it's started
+         */
+        PairProduct pairs() throws ApplicationException {
+            return product;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                if (failure.occurred()) {
+                    return;
+                }
+                PairProduct tileProduct = pairs();
+
+                for (int i=rowStart; i<rowEnd; i++) {
+                    int end = lower ? Math.min(colEnd, i+1) : colEnd;
+                    for (int j=colStart; j<end; j++) {
+                        if (failure.occurred()) {
+                            return;
+                        }
+                        checkCanceled();
+
+                        double val = tileProduct.compute(i, j);
+                        result.set(i, j, val);
+                        result.set(j, i, val);
+                    }
+                }
+            }
+            catch (ApplicationException e) {
+                failure.set(e);
+            }
+        }
+    }
+
+    /*
+     * loads the tile's features when it starts, they're only
+     * referenced from the tile so go when it's done
+     */
+    class LoadingTile extends Tile {
+        private static final long serialVersionUID = 1L;
+
+        FeatureSource rowSource, colSource;
+        FeatureProduct featureProduct;
+
+        LoadingTile(DenseMatrix result, int rowStart, int rowEnd, int colStart, int colEnd, boolean lower,
+                FeatureSource rowSource, FeatureSource colSource, FeatureProduct featureProduct, Failure failure) {
+            super(result, rowStart, rowEnd, colStart, colEnd, lower, null, failure);
+            this.rowSource = rowSource;
+            this.colSource = colSource;
+            this.featureProduct = featureProduct;
+        }
+
+        @Override
+        PairProduct pairs() throws ApplicationException {
+            final SymMatrix [] rows = load(rowSource, rowStart, rowEnd);
+
+            // diagonal tiles of the lower triangle pair a block with itself
+            final SymMatrix [] cols;
+            if (rowSource == colSource && rowStart == colStart && rowEnd == colEnd) {
+                cols = rows;
+            }
+            else {
+                cols = load(colSource, colStart, colEnd);
+            }
+
+            return new PairProduct() {
+                public double compute(int i, int j) throws ApplicationException {
+                    return featureProduct.compute(rows[i - rowStart], cols[j - colStart]);
+                }
+            };
+        }
+
+        private SymMatrix [] load(FeatureSource source, int start, int end) throws ApplicationException {
+            SymMatrix [] features = new SymMatrix[end - start];
+            for (int i=start; i<end; i++) {
+                checkCanceled();
+                features[i - start] = source.load(i);
+            }
+            return features;
+        }
+    }
+
+    class Single extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        int i;
+        FeatureTask task;
+        Failure failure;
+
+        Single(int i, FeatureTask task, Failure failure) {
+            this.i = i;
+            this.task = task;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (failure.occurred()) {
+                return;
+            }
+
+            try {
+                checkCanceled();
+                task.run(i);
+            }
+            catch (ApplicationException e) {
+                failure.set(e);
+            }
+        }
+    }
+}
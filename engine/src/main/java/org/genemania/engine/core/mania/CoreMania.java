@@ -21,6 +21,7 @@ package org.genemania.engine.core.mania;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import no.uib.cipr.matrix.Vector;
 import org.apache.log4j.Logger;
 import org.genemania.engine.Constants.CombiningMethod;
@@ -187,6 +188,40 @@ public class CoreMania {
 
     }
 
+    /*
+     * Compute discriminant scores for several label vectors at once against
+     * the combined kernel from the last call to computeWeights(), e.g. for the
+     * folds of a cross validation with query independent weighting. The
+     * propagations share each pass over the kernel.
+     *
+     * The scores are returned in the same order as the labels, the discriminant
+     * member field is left unchanged.
+     */
+    public List<Vector> computeDiscriminants(String namespace, long organismId, List<Vector> labels, String biasingMethod) throws ApplicationException {
+        logger.info("computing scores for " + labels.size() + " label vectors");
+
+        long t1 = System.nanoTime();
+
+        List<Vector> discriminants = null;
+        if (biasingMethod.equalsIgnoreCase("hierarchy")) {
+            logger.info("using GO hierarchy label bias method");
+            throw new ApplicationException("hierarchical biasing not implemented");
+        }
+        else if (biasingMethod.equalsIgnoreCase("average")) {
+            logger.info("using average label bias method");
+            discriminants = PropagateLabels.processBatch(
+                    getCombinedKernel(organismId, namespace), labels, progress);
+        }
+        else {
+            throw new ApplicationException("illegal biasing method name");
+        }
+
+        long t2 = System.nanoTime();
+        logger.info("time for computeDiscriminants: " + (t2-t1));
+
+        return discriminants;
+    }
+
     /**
      * @return the discriminant
      */
@@ -0,0 +1,255 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.propagation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.exception.PropagationFailedException;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.ParallelSymMultiplier;
+import org.genemania.util.ProgressReporter;
+
+/**
+ * conjugate gradient solver for the label propagation system
+ *
+ *   (I + L) x = b,  L = D - W
+ *
+ * for a symmetric network W, D the diagonal matrix of row sums of W.
+ * this is the same system EyePlusLaplacianMatrix describes, but
+ * solved directly against W so the products W*x can be split across
+ * the given pool with ParallelSymMultiplier.
+ *
+ * work vectors are allocated on the first solve and reused while
+ * the network stays the same size. checks for cancellation on every
+ * iteration. supports Jacobi (diagonal) preconditioning, and starting
+ * from any initial x, e.g. the solution for a similar query.
+ *
+ * not thread safe, use one instance per thread.
+ */
+public class ConjugateGradient {
+
+    // same convergence params we used to give MTJ's CG
+    public static final int DEFAULT_MAX_ITERATIONS = 100000;
+    public static final double DEFAULT_RELATIVE_TOLERANCE = 1e-10;
+    public static final double DEFAULT_ABSOLUTE_TOLERANCE = 1e-50;
+    public static final double DEFAULT_DIVERGENCE_TOLERANCE = 1e+5;
+
+    private int maxIterations = DEFAULT_MAX_ITERATIONS;
+    private double relativeTolerance = DEFAULT_RELATIVE_TOLERANCE;
+    private double absoluteTolerance = DEFAULT_ABSOLUTE_TOLERANCE;
+    private double divergenceTolerance = DEFAULT_DIVERGENCE_TOLERANCE;
+    private boolean preconditioned = true;
+
+    private ForkJoinPool pool;
+
+    // work vectors
+    private double [] d; // diagonal of I + D
+    private double [] invDiag; // preconditioner, 1/diag(I + L)
+    private double [] r, z, p, q;
+
+    // results of last solve
+    private int iterations;
+    private double residual;
+    private double relativeResidual;
+
+    /*
+     * pool may be null to run serially
+     */
+    public ConjugateGradient(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ConjugateGradient() {
+        this(null);
+    }
+
+    /**
+     * solve (I + L) x = b. x holds the initial guess on entry, and the
+     * solution on return.
+     *
+     * @return number of iterations taken
+     */
+    public int solve(SymMatrix network, double [] b, double [] x, ProgressReporter progress) throws PropagationFailedException, CancellationException {
+        int n = network.numRows();
+        allocate(n);
+
+        ParallelSymMultiplier multiplier = new ParallelSymMultiplier(network, pool);
+
+        // rowSums() accumulates
+        Arrays.fill(d, 0d);
+        network.rowSums(d);
+        for (int i=0; i<n; i++) {
+            d[i] += 1d;
+            invDiag[i] = preconditioned ? 1d/(d[i] - network.get(i, i)) : 1d;
+        }
+
+        // r = b - A*x
+        apply(multiplier, x, q);
+        for (int i=0; i<n; i++) {
+            r[i] = b[i] - q[i];
+        }
+
+        double bnorm = norm(b);
+        double rnorm = norm(r);
+        double initialResidual = rnorm;
+        double threshold = Math.max(relativeTolerance*bnorm, absoluteTolerance);
+
+        iterations = 0;
+        double rho = 0d;
+        while (rnorm > threshold) {
+            if (progress != null && progress.isCanceled()) {
+                throw new CancellationException();
+            }
+
+            if (iterations >= maxIterations) {
+                updateResiduals(rnorm, bnorm);
+                throw new PropagationFailedException(String.format("Label propagation failed to converge after %d iterations, residual %g", iterations, rnorm));
+            }
+
+            if (rnorm > divergenceTolerance*initialResidual || Double.isNaN(rnorm)) {
+                updateResiduals(rnorm, bnorm);
+                throw new PropagationFailedException(String.format("Label propagation diverged after %d iterations, residual %g", iterations, rnorm));
+            }
+
+            for (int i=0; i<n; i++) {
+                z[i] = invDiag[i]*r[i];
+            }
+
+            double rhoPrev = rho;
+            rho = dot(r, z);
+
+            if (iterations == 0) {
+                System.arraycopy(z, 0, p, 0, n);
+            }
+            else {
+                double beta = rho/rhoPrev;
+                for (int i=0; i<n; i++) {
+                    p[i] = z[i] + beta*p[i];
+                }
+            }
+
+            apply(multiplier, p, q);
+            double alpha = rho/dot(p, q);
+
+            for (int i=0; i<n; i++) {
+                x[i] += alpha*p[i];
+                r[i] -= alpha*q[i];
+            }
+
+            rnorm = norm(r);
+            iterations++;
+        }
+
+        updateResiduals(rnorm, bnorm);
+        return iterations;
+    }
+
+    /*
+     * y = (I + D - W)*x
+     */
+    private void apply(ParallelSymMultiplier multiplier, double [] x, double [] y) {
+        multiplier.mult(x, y);
+        for (int i=0; i<y.length; i++) {
+            y[i] = d[i]*x[i] - y[i];
+        }
+    }
+
+    private void allocate(int n) {
+        if (r == null || r.length != n) {
+            d = new double[n];
+            invDiag = new double[n];
+            r = new double[n];
+            z = new double[n];
+            p = new double[n];
+            q = new double[n];
+        }
+    }
+
+    private void updateResiduals(double rnorm, double bnorm) {
+        residual = rnorm;
+        relativeResidual = bnorm > 0 ? rnorm/bnorm : rnorm;
+    }
+
+    static double dot(double [] x, double [] y) {
+        double s = 0d;
+        for (int i=0; i<x.length; i++) {
+            s += x[i]*y[i];
+        }
+        return s;
+    }
+
+    static double norm(double [] x) {
+        return Math.sqrt(dot(x, x));
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public double getResidual() {
+        return residual;
+    }
+
+    public double getRelativeResidual() {
+        return relativeResidual;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public double getRelativeTolerance() {
+        return relativeTolerance;
+    }
+
+    public void setRelativeTolerance(double relativeTolerance) {
+        this.relativeTolerance = relativeTolerance;
+    }
+
+    public double getAbsoluteTolerance() {
+        return absoluteTolerance;
+    }
+
+    public void setAbsoluteTolerance(double absoluteTolerance) {
+        this.absoluteTolerance = absoluteTolerance;
+    }
+
+    public double getDivergenceTolerance() {
+        return divergenceTolerance;
+    }
+
+    public void setDivergenceTolerance(double divergenceTolerance) {
+        this.divergenceTolerance = divergenceTolerance;
+    }
+
+    public boolean isPreconditioned() {
+        return preconditioned;
+    }
+
+    public void setPreconditioned(boolean preconditioned) {
+        this.preconditioned = preconditioned;
+    }
+}
@@ -0,0 +1,383 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.propagation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.exception.PropagationFailedException;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.ParallelSymMultiplier;
+import org.genemania.util.ProgressReporter;
+
+/**
+ * conjugate gradient for many right hand sides against the same
+ * network, e.g. all the folds of a cross validation.
+ *
+ * runs an independent CG recurrence per right hand side, exactly as
+ * ConjugateGradient would, but does the products W*p for all of
+ * them together, so the network is streamed once per iteration
+ * rather than once per query. columns are dropped from the block as
+ * they converge.
+ *
+ * vectors are stored row-major, entry i of column j at [i*width + j].
+ *
+ * not thread safe, use one instance per batch.
+ */
+public class MultiConjugateGradient {
+
+    private int maxIterations = ConjugateGradient.DEFAULT_MAX_ITERATIONS;
+    private double relativeTolerance = ConjugateGradient.DEFAULT_RELATIVE_TOLERANCE;
+    private double absoluteTolerance = ConjugateGradient.DEFAULT_ABSOLUTE_TOLERANCE;
+    private double divergenceTolerance = ConjugateGradient.DEFAULT_DIVERGENCE_TOLERANCE;
+    private boolean preconditioned = true;
+
+    private ForkJoinPool pool;
+
+    // work vectors
+    private double [] d; // diagonal of I + D
+    private double [] invDiag; // preconditioner, 1/diag(I + L)
+    private double [] xs, r, z, p, q;
+
+    // results of last solve
+    private int iterations;
+    private int [] columnIterations;
+    private double [] residuals;
+    private double [] relativeResiduals;
+
+    /*
+     * pool may be null to run serially
+     */
+    public MultiConjugateGradient(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public MultiConjugateGradient() {
+        this(null);
+    }
+
+    /**
+     * solve (I + L) x[j] = b[j] for each j. x[j] holds the initial guess
+     * on entry, and the solution on return.
+     *
+     * @return number of block iterations taken, the most taken
+     *  by any one column
+     */
+    public int solve(SymMatrix network, double [][] b, double [][] x, ProgressReporter progress) throws PropagationFailedException, CancellationException {
+        if (b.length != x.length) {
+            throw new IllegalArgumentException(String.format("got %d right hand sides but %d solution vectors", b.length, x.length));
+        }
+
+        int n = network.numRows();
+        int k = b.length;
+        allocate(n, k);
+
+        columnIterations = new int[k];
+        residuals = new double[k];
+        relativeResiduals = new double[k];
+        iterations = 0;
+
+        if (k == 0) {
+            return 0;
+        }
+
+        ParallelSymMultiplier multiplier = new ParallelSymMultiplier(network, pool);
+
+        // rowSums() accumulates
+        Arrays.fill(d, 0d);
+        network.rowSums(d);
+        for (int i=0; i<n; i++) {
+            d[i] += 1d;
+            invDiag[i] = preconditioned ? 1d/(d[i] - network.get(i, i)) : 1d;
+        }
+
+        // state of the still active columns, packed
+        int width = k;
+        int [] cols = new int[k];
+        double [] bnorm = new double[k];
+        double [] threshold = new double[k];
+        double [] initialResidual = new double[k];
+        double [] rho = new double[k];
+        double [] rnorm = new double[k];
+
+        for (int j=0; j<k; j++) {
+            cols[j] = j;
+            double [] xj = x[j];
+            for (int i=0; i<n; i++) {
+                xs[i*k + j] = xj[i];
+            }
+        }
+
+        // r = b - A*x
+        apply(multiplier, xs, q, width);
+        for (int j=0; j<k; j++) {
+            double [] bj = b[j];
+            for (int i=0; i<n; i++) {
+                r[i*k + j] = bj[i] - q[i*k + j];
+            }
+            bnorm[j] = ConjugateGradient.norm(bj);
+            threshold[j] = Math.max(relativeTolerance*bnorm[j], absoluteTolerance);
+        }
+
+        norms(r, rnorm, n, width);
+        System.arraycopy(rnorm, 0, initialResidual, 0, k);
+
+        int [] keep = new int[k];
+        while (true) {
+
+            // retire converged columns
+            int newWidth = 0;
+            for (int j=0; j<width; j++) {
+                if (rnorm[j] > threshold[j]) {
+                    keep[newWidth++] = j;
+                }
+                else {
+                    finish(cols[j], j, width, n, x, rnorm[j], bnorm[j]);
+                }
+            }
+
+            if (newWidth == 0) {
+                break;
+            }
+
+            if (newWidth < width) {
+                pack(xs, n, width, keep, newWidth);
+                pack(r, n, width, keep, newWidth);
+                pack(p, n, width, keep, newWidth);
+                for (int jj=0; jj<newWidth; jj++) {
+                    int j = keep[jj];
+                    cols[jj] = cols[j];
+                    bnorm[jj] = bnorm[j];
+                    threshold[jj] = threshold[j];
+                    initialResidual[jj] = initialResidual[j];
+                    rho[jj] = rho[j];
+                    rnorm[jj] = rnorm[j];
+                }
+                width = newWidth;
+            }
+
+            if (progress != null && progress.isCanceled()) {
+                throw new CancellationException();
+            }
+
+            if (iterations >= maxIterations) {
+                updateResiduals(cols, rnorm, bnorm, width);
+                throw new PropagationFailedException(String.format("Label propagation failed to converge after %d iterations, residual %g", iterations, max(rnorm, width)));
+            }
+
+            for (int j=0; j<width; j++) {
+                if (rnorm[j] > divergenceTolerance*initialResidual[j] || Double.isNaN(rnorm[j])) {
+                    updateResiduals(cols, rnorm, bnorm, width);
+                    throw new PropagationFailedException(String.format("Label propagation diverged after %d iterations, residual %g", iterations, rnorm[j]));
+                }
+            }
+
+            int len = n*width;
+            for (int i=0, o=0; i<n; i++) {
+                double s = invDiag[i];
+                for (int j=0; j<width; j++, o++) {
+                    z[o] = s*r[o];
+                }
+            }
+
+            double [] rhoPrev = Arrays.copyOf(rho, width);
+            dots(r, z, rho, n, width);
+
+            if (iterations == 0) {
+                System.arraycopy(z, 0, p, 0, len);
+            }
+            else {
+                double [] beta = new double[width];
+                for (int j=0; j<width; j++) {
+                    beta[j] = rho[j]/rhoPrev[j];
+                }
+                for (int o=0; o<len; o++) {
+                    p[o] = z[o] + beta[o % width]*p[o];
+                }
+            }
+
+            apply(multiplier, p, q, width);
+
+            double [] alpha = new double[width];
+            dots(p, q, alpha, n, width);
+            for (int j=0; j<width; j++) {
+                alpha[j] = rho[j]/alpha[j];
+            }
+
+            for (int i=0, o=0; i<n; i++) {
+                for (int j=0; j<width; j++, o++) {
+                    xs[o] += alpha[j]*p[o];
+                    r[o] -= alpha[j]*q[o];
+                }
+            }
+
+            norms(r, rnorm, n, width);
+            iterations++;
+            for (int j=0; j<width; j++) {
+                columnIterations[cols[j]] = iterations;
+            }
+        }
+
+        return iterations;
+    }
+
+    /*
+     * Y = (I + D - W)*X
+     */
+    private void apply(ParallelSymMultiplier multiplier, double [] x, double [] y, int width) {
+        multiplier.mult(x, y, width);
+        int n = d.length;
+        for (int i=0, o=0; i<n; i++) {
+            double di = d[i];
+            for (int j=0; j<width; j++, o++) {
+                y[o] = di*x[o] - y[o];
+            }
+        }
+    }
+
+    /*
+     * copy packed column j out to its solution vector
+     */
+    private void finish(int col, int j, int width, int n, double [][] x, double rnorm, double bnorm) {
+        double [] xj = x[col];
+        for (int i=0; i<n; i++) {
+            xj[i] = xs[i*width + j];
+        }
+        residuals[col] = rnorm;
+        relativeResiduals[col] = bnorm > 0 ? rnorm/bnorm : rnorm;
+    }
+
+    /*
+     * compact the kept columns of a row-major block in place. safe going
+     * forward since newWidth <= width and keep[jj] >= jj
+     */
+    static void pack(double [] a, int n, int width, int [] keep, int newWidth) {
+        for (int i=0; i<n; i++) {
+            int from = i*width;
+            int to = i*newWidth;
+            for (int jj=0; jj<newWidth; jj++) {
+                a[to + jj] = a[from + keep[jj]];
+            }
+        }
+    }
+
+    static void dots(double [] x, double [] y, double [] result, int n, int width) {
+        Arrays.fill(result, 0, width, 0d);
+        for (int i=0, o=0; i<n; i++) {
+            for (int j=0; j<width; j++, o++) {
+                result[j] += x[o]*y[o];
+            }
+        }
+    }
+
+    static void norms(double [] x, double [] result, int n, int width) {
+        dots(x, x, result, n, width);
+        for (int j=0; j<width; j++) {
+            result[j] = Math.sqrt(result[j]);
+        }
+    }
+
+    static double max(double [] x, int width) {
+        double m = 0d;
+        for (int j=0; j<width; j++) {
+            m = Math.max(m, x[j]);
+        }
+        return m;
+    }
+
+    private void allocate(int n, int k) {
+        if (d == null || d.length != n) {
+            d = new double[n];
+            invDiag = new double[n];
+        }
+        int len = n*k;
+        if (r == null || r.length < len) {
+            xs = new double[len];
+            r = new double[len];
+            z = new double[len];
+            p = new double[len];
+            q = new double[len];
+        }
+    }
+
+    private void updateResiduals(int [] cols, double [] rnorm, double [] bnorm, int width) {
+        for (int j=0; j<width; j++) {
+            residuals[cols[j]] = rnorm[j];
+            relativeResiduals[cols[j]] = bnorm[j] > 0 ? rnorm[j]/bnorm[j] : rnorm[j];
+        }
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public int getIterations(int column) {
+        return columnIterations[column];
+    }
+
+    public double getResidual(int column) {
+        return residuals[column];
+    }
+
+    public double getRelativeResidual(int column) {
+        return relativeResiduals[column];
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public double getRelativeTolerance() {
+        return relativeTolerance;
+    }
+
+    public void setRelativeTolerance(double relativeTolerance) {
+        this.relativeTolerance = relativeTolerance;
+    }
+
+    public double getAbsoluteTolerance() {
+        return absoluteTolerance;
+    }
+
+    public void setAbsoluteTolerance(double absoluteTolerance) {
+        this.absoluteTolerance = absoluteTolerance;
+    }
+
+    public double getDivergenceTolerance() {
+        return divergenceTolerance;
+    }
+
+    public void setDivergenceTolerance(double divergenceTolerance) {
+        this.divergenceTolerance = divergenceTolerance;
+    }
+
+    public boolean isPreconditioned() {
+        return preconditioned;
+    }
+
+    public void setPreconditioned(boolean preconditioned) {
+        this.preconditioned = preconditioned;
+    }
+}
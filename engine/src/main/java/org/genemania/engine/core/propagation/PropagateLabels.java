@@ -19,36 +19,46 @@
 
 package org.genemania.engine.core.propagation;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Matrices;
 import no.uib.cipr.matrix.Vector;
-import no.uib.cipr.matrix.sparse.CG;
-import no.uib.cipr.matrix.sparse.DefaultIterationMonitor;
-import no.uib.cipr.matrix.sparse.IterativeSolverNotConvergedException;
 import org.apache.log4j.Logger;
 import org.genemania.engine.Constants;
 import org.genemania.engine.core.MatrixUtils;
+import org.genemania.engine.core.utils.EnginePool;
 
-import org.genemania.engine.matricks.Matrix;
-//import org.genemania.engine.matricks.Vector;
-import org.genemania.engine.exception.PropagationFailedException;
-import org.genemania.engine.matricks.MatricksException;
 import org.genemania.engine.matricks.SymMatrix;
-import org.genemania.engine.matricks.custom.EyePlusLaplacianMatrix;
-import org.genemania.engine.matricks.mtj.SymWrap;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.ProgressReporter;
 
 /**
  * This class performs labeling biasing and label propagation.
  *
- * if we want to make this interruptable (via the progress reporter),
- * we'll need to implement our own CG code. since this doesn't seem to
- * be timeconsuming step at this time, we won't try that yet.
+ * propagation solves (I + L) score = labels with our own CG code,
+ * see ConjugateGradient, so it can be cancelled through the progress
+ * reporter and can spread the matrix-vector products over a shared
+ * thread pool.
  */
 public class PropagateLabels {
 
     private static Logger logger = Logger.getLogger(PropagateLabels.class);
 
+    // shared by all queries running in this jvm
+    private static ForkJoinPool pool = EnginePool.instance();
+
+    // a solver per request thread, so its work vectors are
+    // reused from one query to the next on the same organism
+    private static ThreadLocal<ConjugateGradient> solvers = new ThreadLocal<ConjugateGradient>() {
+        @Override
+        protected ConjugateGradient initialValue() {
+            return new ConjugateGradient(pool);
+        }
+    };
+
     /**
      * Returns a propagated vector. This uses average biasing for label biasing.
      * Any unknowns get (N+ - N-) / (N+ + N-) where N+ is the number of positives 
@@ -65,22 +75,63 @@ public class PropagateLabels {
 
         setLabelBiases(labels);
 
-        SymMatrix laplacian = new EyePlusLaplacianMatrix(network);
-        try {
-            SymWrap w = new SymWrap(laplacian);
-            CG cg = new CG(new DenseVector(labels.size()));
-            
-            // tighten relative tolerance but leave other convergence params defaulted
-            cg.setIterationMonitor(new DefaultIterationMonitor(100000, 1e-10, 1e-50, 1e+5));
-            cg.solve(w, labels, score);
+        double [] b;
+        if (labels instanceof DenseVector) {
+            b = ((DenseVector) labels).getData();
         }
-        catch (IterativeSolverNotConvergedException e) {
-            throw new PropagationFailedException("Label propagation failed", e);
+        else {
+            b = Matrices.getArray(labels);
         }
 
+        ConjugateGradient solver = solvers.get();
+        solver.solve(network, b, score.getData(), progress);
+        logger.info(String.format("label propagation converged in %d iterations, residual %g, relative residual %g",
+                solver.getIterations(), solver.getResidual(), solver.getRelativeResidual()));
+
         return score;
     }
 
+    /**
+     * propagate several label vectors over the same network, e.g. the
+     * folds of a cross validation, see MultiConjugateGradient. each
+     * vector gets its own average label biasing, so the results are
+     * the same as calling process() on each in turn.
+     */
+    public static List<Vector> processBatch(SymMatrix network, List<Vector> labels, ProgressReporter progress) throws ApplicationException {
+        progress.setStatus(Constants.PROGRESS_SCORING_MESSAGE);
+        progress.setProgress(Constants.PROGRESS_SCORING);
+        int n = network.numCols();
+        int k = labels.size();
+
+        double [][] b = new double[k][];
+        double [][] x = new double[k][];
+        List<Vector> scores = new ArrayList<Vector>(k);
+        for (int j=0; j<k; j++) {
+            Vector label = labels.get(j);
+            setLabelBiases(label);
+            if (label instanceof DenseVector) {
+                b[j] = ((DenseVector) label).getData();
+            }
+            else {
+                b[j] = Matrices.getArray(label);
+            }
+
+            DenseVector score = new DenseVector(n);
+            x[j] = score.getData();
+            scores.add(score);
+        }
+
+        MultiConjugateGradient solver = new MultiConjugateGradient(pool);
+        solver.solve(network, b, x, progress);
+        logger.info(String.format("label propagation of %d vectors converged in %d iterations", k, solver.getIterations()));
+
+        return scores;
+    }
+
+    public static ForkJoinPool getPool() {
+        return pool;
+    }
+
 
     static void setLabelBiases(Vector labels) {
         //System.out.println("labels: " + labels);
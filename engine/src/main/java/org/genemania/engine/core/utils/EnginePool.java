@@ -0,0 +1,49 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.utils;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.genemania.engine.config.Config;
+
+/*
+ * fork-join pool shared by the compute heavy parts of the engine
+ * running in this jvm: label propagation, building gram matrices for
+ * network weighting, etc. sized by the engineThreads config setting,
+ * one thread per core by default. created on first use.
+ */
+public class EnginePool {
+
+    private static ForkJoinPool pool;
+
+    public static synchronized ForkJoinPool instance() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism(Config.instance().getEngineThreads()));
+        }
+        return pool;
+    }
+
+    static int parallelism(int threads) {
+        if (threads > 0) {
+            return threads;
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.genemania.engine.matricks;
+
+import java.util.List;
+
+/**
+ * accumulator whose sum can be split into independent blocks of
+ * rows. each block is an accumulator of its own, used with the same
+ * nextBlock()/add() protocol, and blocks write disjoint rows of the
+ * sum so they can be filled on separate threads.
+ */
+public interface RowBlockMatrixAccumulator extends MatrixAccumulator {
+
+    /*
+     * at least minBlocks blocks if the sum has enough rows
+     */
+    public List<MatrixAccumulator> blocks(int minBlocks);
+}
@@ -0,0 +1,49 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks;
+
+/**
+ * symmetric matrix stored as rows of its lower triangle, which can
+ * multiply any range of those rows on its own. lets a product
+ * y = A*x be split into row blocks computed in parallel, each
+ * into its own y, and summed afterwards.
+ */
+public interface RowBlockSymMatrix extends SymMatrix {
+
+    /*
+     * y = y + B*x, where B holds rows [start, end) of the lower
+     * triangle of A including the diagonal, plus their transposes.
+     * summing over a set of row ranges covering all rows gives A*x.
+     */
+    public void multAddRows(double [] x, double [] y, int start, int end);
+
+    /*
+     * same for width vectors at once, stored row-major so entry i of
+     * vector j is at [i*width + j]. walks the stored entries once for
+     * all the vectors.
+     */
+    public void multAddRows(double [] x, double [] y, int width, int start, int end);
+
+    /*
+     * number of stored off-diagonal entries in the given row of the
+     * lower triangle, for balancing work across blocks
+     */
+    public int rowEntries(int row);
+}
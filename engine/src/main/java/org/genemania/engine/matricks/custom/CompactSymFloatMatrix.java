@@ -0,0 +1,833 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import java.util.Arrays;
+
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.MatrixAccumulator;
+import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.matricks.RowBlockSymMatrix;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.Vector;
+
+/**
+ * symmetric matrix in compressed-row form on the heap. the strict
+ * lower triangle is held in three arrays, the diagonal in a fourth,
+ * same layout as MappedSymFloatMatrix:
+ *
+ *   diag     float[size]
+ *   rowPtr   int[size+1]
+ *   cols     int[nnz], ascending within each row, all < row
+ *   vals     float[nnz]
+ *
+ * compared to FlexSymFloatMatrix, which keeps a pair of arrays per row,
+ * this is a handful of objects however large the network, products
+ * stream through contiguous memory, and there is little for the gc
+ * to trace.
+ *
+ * the structure is fixed once built, see compact(SymMatrix). values
+ * can still be changed, so normalization and scaling work, but setting
+ * an element that isn't already stored throws.
+ */
+public class CompactSymFloatMatrix extends AbstractMatrix implements RowBlockSymMatrix {
+    private static final long serialVersionUID = -5314542917366154069L;
+
+    final int size;
+    final float [] diag;
+    final int [] rowPtr;
+    final int [] cols;
+    final float [] vals;
+
+    CompactSymFloatMatrix(int size, float [] diag, int [] rowPtr, int [] cols, float [] vals) {
+        this.size = size;
+        this.diag = diag;
+        this.rowPtr = rowPtr;
+        this.cols = cols;
+        this.vals = vals;
+    }
+
+    /*
+     * compact copy of the given matrix, or the matrix itself if it
+     * is already compact. explicitly stored zeros are dropped.
+     */
+    public static CompactSymFloatMatrix compact(SymMatrix m) {
+        if (m instanceof CompactSymFloatMatrix) {
+            return (CompactSymFloatMatrix) m;
+        }
+        else if (m instanceof FlexSymFloatMatrix) {
+            return compact((FlexSymFloatMatrix) m);
+        }
+        else if (m instanceof MappedSymFloatMatrix) {
+            return compact((MappedSymFloatMatrix) m);
+        }
+
+        int size = m.numRows();
+        int [] rowPtr = new int[size+1];
+        float [] diag = new float[size];
+
+        // two passes, count then fill. cursor order is unspecified
+        // so sort each row afterwards
+        MatrixCursor cursor = m.cursor();
+        while (cursor.next()) {
+            if (cursor.row() > cursor.col() && cursor.val() != 0d) {
+                rowPtr[cursor.row()+1] += 1;
+            }
+        }
+        for (int row=0; row<size; row++) {
+            rowPtr[row+1] += rowPtr[row];
+        }
+
+        int [] cols = new int[rowPtr[size]];
+        float [] vals = new float[rowPtr[size]];
+        int [] next = new int[size];
+        System.arraycopy(rowPtr, 0, next, 0, size);
+
+        cursor = m.cursor();
+        while (cursor.next()) {
+            int row = cursor.row();
+            int col = cursor.col();
+            if (row > col && cursor.val() != 0d) {
+                cols[next[row]] = col;
+                vals[next[row]] = (float) cursor.val();
+                next[row] += 1;
+            }
+            else if (row == col) {
+                diag[row] = (float) cursor.val();
+            }
+        }
+
+        for (int row=0; row<size; row++) {
+            sortRow(cols, vals, rowPtr[row], rowPtr[row+1]);
+        }
+
+        return new CompactSymFloatMatrix(size, diag, rowPtr, cols, vals);
+    }
+
+    /*
+     * flex rows are already sorted, so just concatenate them
+     */
+    static CompactSymFloatMatrix compact(FlexSymFloatMatrix flex) {
+        int size = flex.size;
+        int [] rowPtr = new int[size+1];
+        for (int row=0; row<size; row++) {
+            rowPtr[row+1] = rowPtr[row] + nonZeros(flex.data[row]);
+        }
+
+        int [] cols = new int[rowPtr[size]];
+        float [] vals = new float[rowPtr[size]];
+        for (int row=0; row<size; row++) {
+            FlexFloatArray a = flex.data[row];
+            int pos = rowPtr[row];
+            for (int k=0; k<a.used; k++) {
+                if (a.data[k] != 0f) {
+                    cols[pos] = a.indices[k];
+                    vals[pos] = a.data[k];
+                    pos++;
+                }
+            }
+        }
+
+        float [] diag = new float[size];
+        System.arraycopy(flex.diag, 0, diag, 0, size);
+
+        return new CompactSymFloatMatrix(size, diag, rowPtr, cols, vals);
+    }
+
+    private static int nonZeros(FlexFloatArray a) {
+        int count = 0;
+        for (int k=0; k<a.used; k++) {
+            if (a.data[k] != 0f) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /*
+     * onto the heap, same layout
+     */
+    static CompactSymFloatMatrix compact(MappedSymFloatMatrix mapped) {
+        int size = mapped.size;
+        float [] diag = new float[size];
+        int [] rowPtr = new int[size+1];
+        int [] cols = new int[mapped.nnz];
+        float [] vals = new float[mapped.nnz];
+
+        mapped.diag.duplicate().get(diag);
+        mapped.rowPtr.duplicate().get(rowPtr);
+        mapped.cols.duplicate().get(cols);
+        mapped.vals.duplicate().get(vals);
+
+        return new CompactSymFloatMatrix(size, diag, rowPtr, cols, vals);
+    }
+
+    /*
+     * rows are short, insertion sort on the column index is plenty
+     */
+    static void sortRow(int [] cols, float [] vals, int start, int end) {
+        for (int i=start+1; i<end; i++) {
+            int c = cols[i];
+            float v = vals[i];
+            int j = i - 1;
+            while (j >= start && cols[j] > c) {
+                cols[j+1] = cols[j];
+                vals[j+1] = vals[j];
+                j--;
+            }
+            cols[j+1] = c;
+            vals[j+1] = v;
+        }
+    }
+
+    /*
+     * writable copy
+     */
+    public FlexSymFloatMatrix toFlexSymFloatMatrix() {
+        FlexSymFloatMatrix m = new FlexSymFloatMatrix(size);
+        for (int row=0; row<size; row++) {
+            int start = rowPtr[row];
+            int len = rowPtr[row+1] - start;
+
+            FlexFloatArray a = new FlexFloatArray(row, len);
+            System.arraycopy(cols, start, a.indices, 0, len);
+            System.arraycopy(vals, start, a.data, 0, len);
+            a.used = len;
+            m.data[row] = a;
+            m.diag[row] = diag[row];
+        }
+
+        return m;
+    }
+
+    public int numRows() {
+        return size;
+    }
+
+    public int numCols() {
+        return size;
+    }
+
+    public double get(int row, int col) {
+        checkIdx(row, col);
+
+        if (row == col) {
+            return diag[row];
+        }
+        else if (row < col) {
+            int tmp = row;
+            row = col;
+            col = tmp;
+        }
+
+        int pos = find(row, col);
+        if (pos >= 0) {
+            return vals[pos];
+        }
+        else {
+            return 0d;
+        }
+    }
+
+    /*
+     * position of (row, col) in the element arrays, or -1. requires row > col
+     */
+    int find(int row, int col) {
+        int lo = rowPtr[row];
+        int hi = rowPtr[row+1] - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = cols[mid];
+            if (c < col) {
+                lo = mid + 1;
+            }
+            else if (c > col) {
+                hi = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    private void checkIdx(final int row, final int col) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(String.format("invalid row index: %d, max size is %d", row, size));
+        }
+        if (col < 0 || col >= size) {
+            throw new IndexOutOfBoundsException(String.format("invalid column index: %d", col));
+        }
+    }
+
+    /*
+     * only elements already stored, or on the diagonal, can be set
+     */
+    public void set(int row, int col, double val) throws MatricksException {
+        checkIdx(row, col);
+
+        if (row == col) {
+            diag[row] = (float) val;
+            return;
+        }
+        else if (row < col) {
+            int tmp = row;
+            row = col;
+            col = tmp;
+        }
+
+        int pos = find(row, col);
+        if (pos < 0) {
+            throw new MatricksException(String.format("can't add element (%d, %d) to compact matrix", row, col));
+        }
+        vals[pos] = (float) val;
+    }
+
+    public void scale(final double a) throws MatricksException {
+        for (int k=0; k<vals.length; k++) {
+            vals[k] = (float) (a*vals[k]);
+        }
+        for (int row=0; row<size; row++) {
+            diag[row] = (float) (a*diag[row]);
+        }
+    }
+
+    public void setAll(double a) throws MatricksException {
+        throw new MatricksException("compact matrix structure is fixed");
+    }
+
+    public void add(Matrix B) throws MatricksException {
+        throw new MatricksException("compact matrix structure is fixed");
+    }
+
+    public void add(double a, Matrix B) throws MatricksException {
+        throw new MatricksException("compact matrix structure is fixed");
+    }
+
+    public void add(int i, int j, double alpha) {
+        throw new MatricksException("compact matrix structure is fixed");
+    }
+
+    public void addOuterProd(double [] x) {
+        throw new MatricksException("compact matrix structure is fixed");
+    }
+
+    @Override
+    public MatrixAccumulator accumulator() {
+        throw new MatricksException("compact matrix structure is fixed");
+    }
+
+    public void setDiag(double alpha) {
+        for (int row=0; row<size; row++) {
+            diag[row] = (float) alpha;
+        }
+    }
+
+    /*
+     * A = A ./ (x*x')
+     */
+    public void dotDivOuterProd(Vector x) {
+        if (x instanceof DenseDoubleVector) {
+            dotDivOuterProd(((DenseDoubleVector) x).data);
+        }
+        else {
+            throw new RuntimeException("not implemented");
+        }
+    }
+
+    public void dotDivOuterProd(double [] x) {
+        for (int row=0; row<size; row++) {
+            final int end = rowPtr[row+1];
+            final double xr = x[row];
+            for (int k=rowPtr[row]; k<end; k++) {
+                vals[k] = (float) (vals[k] / (xr*x[cols[k]]));
+            }
+            diag[row] = (float) (diag[row] / (xr*xr));
+        }
+    }
+
+    /*
+     * visits the off-diagonal elements twice, once for
+     * each triangle, followed by the diagonal. same as
+     * FlexSymFloatMatrix
+     */
+    public MatrixCursor cursor() {
+        return new CompactSymFloatMatrixCursor();
+    }
+
+    private class CompactSymFloatMatrixCursor implements MatrixCursor {
+        int row = 0;
+        int pos = -1;
+        boolean upper = true;
+        boolean onDiag = false;
+
+        public boolean next() {
+            if (onDiag) {
+                row += 1;
+                return row < size;
+            }
+
+            if (!upper) {
+                upper = true;
+                return true;
+            }
+
+            pos += 1;
+            while (row < size && pos >= rowPtr[row+1]) {
+                row += 1;
+            }
+
+            if (row >= size) {
+                onDiag = true;
+                row = 0;
+                return size > 0;
+            }
+
+            upper = false;
+            return true;
+        }
+
+        public int row() {
+            if (onDiag) {
+                return row;
+            }
+            return upper ? cols[pos] : row;
+        }
+
+        public int col() {
+            if (onDiag) {
+                return row;
+            }
+            return upper ? row : cols[pos];
+        }
+
+        public double val() {
+            if (onDiag) {
+                return diag[row];
+            }
+            return vals[pos];
+        }
+
+        public void set(double val) {
+            if (onDiag) {
+                diag[row] = (float) val;
+            }
+            else {
+                vals[pos] = (float) val;
+            }
+        }
+    }
+
+    @Override
+    public int nnz() {
+        return 2*vals.length + size;
+    }
+
+    /*
+     * already as compact as it gets
+     */
+    public void compact() {
+    }
+
+    /*
+     * twice the lower triangle, plus the diag
+     */
+    public double elementSum() {
+        double sum = 0d;
+        for (int k=0; k<vals.length; k++) {
+            sum += vals[k];
+        }
+        sum = 2*sum;
+
+        for (int row=0; row<size; row++) {
+            sum += diag[row];
+        }
+
+        return sum;
+    }
+
+    public double elementMultiplySum(Matrix m) throws MatricksException {
+        if (m instanceof CompactSymFloatMatrix) {
+            return elementMultiplySum((CompactSymFloatMatrix) m);
+        }
+        else if (m instanceof FlexSymFloatMatrix) {
+            return elementMultiplySum((FlexSymFloatMatrix) m);
+        }
+        else if (m instanceof Outer1View) {
+            return elementMultiplySum((Outer1View) m);
+        }
+        else {
+            return super.elementMultiplySum(m);
+        }
+    }
+
+    /*
+     * as FlexSymFloatMatrix.elementMultiplySumOpt2, visiting only
+     * our rows for the nonzeros of the view's vector
+     */
+    public double elementMultiplySum(final Outer1View m) throws MatricksException {
+        double sum = 0d;
+
+        final FlexFloatArray newData = m.newData;
+        final int used = newData.used;
+
+        float [] denseArray = newData.toDense();
+
+        for (int i=0; i<used; i++) {
+            double iv = newData.data[i];
+            if (iv != 0) {
+                int irow = newData.indices[i];
+                final int end = rowPtr[irow+1];
+                double rowDot = 0d;
+                for (int k=rowPtr[irow]; k<end; k++) {
+                    rowDot += vals[k]*denseArray[cols[k]];
+                }
+                sum += 2*rowDot*iv;
+
+                sum += diag[irow]*iv;
+            }
+        }
+
+        sum = m.scale*sum;
+        return sum;
+    }
+
+    /*
+     * merge each of our rows against the corresponding other row,
+     * both sorted by column
+     */
+    public double elementMultiplySum(CompactSymFloatMatrix m) {
+        double sum = 0d;
+        for (int row=0; row<size; row++) {
+            sum += 2*rowDot(row, m.cols, m.vals, m.rowPtr[row], m.rowPtr[row+1]);
+            sum += diag[row]*m.diag[row];
+        }
+
+        return sum;
+    }
+
+    public double elementMultiplySum(FlexSymFloatMatrix m) {
+        double sum = 0d;
+        for (int row=0; row<size; row++) {
+            FlexFloatArray other = m.data[row];
+            sum += 2*rowDot(row, other.indices, other.data, 0, other.used);
+            sum += diag[row]*m.diag[row];
+        }
+
+        return sum;
+    }
+
+    /*
+     * visit only our own nonzeros, looking each one up in m. the row
+     * merges above walk every stored entry of both matrices, so this
+     * is the cheaper choice when we are much sparser than m
+     */
+    public double elementMultiplySumByLookup(Matrix m) {
+        double sum = 0d;
+        for (int row=0; row<size; row++) {
+            final int end = rowPtr[row+1];
+            double rowDot = 0d;
+            for (int k=rowPtr[row]; k<end; k++) {
+                rowDot += vals[k]*m.get(row, cols[k]);
+            }
+            sum += 2*rowDot;
+
+            if (diag[row] != 0f) {
+                sum += diag[row]*m.get(row, row);
+            }
+        }
+
+        return sum;
+    }
+
+    /*
+     * dot of our row with the sorted entries [start, end) of another
+     */
+    private double rowDot(int row, int [] otherCols, float [] otherVals, int start, final int otherEnd) {
+        int i = rowPtr[row];
+        final int end = rowPtr[row+1];
+        int j = start;
+
+        double dot = 0d;
+        while (i < end && j < otherEnd) {
+            int c = cols[i];
+            int oc = otherCols[j];
+            if (c < oc) {
+                i++;
+            }
+            else if (c > oc) {
+                j++;
+            }
+            else {
+                dot += vals[i]*otherVals[j];
+                i++;
+                j++;
+            }
+        }
+
+        return dot;
+    }
+
+    public Vector rowSums() throws MatricksException {
+        double [] y = new double[size];
+        rowSums(y);
+        return new DenseDoubleVector(y);
+    }
+
+    public Vector columnSums() throws MatricksException {
+        return rowSums();
+    }
+
+    /*
+     * accumulates into result, like FlexSymFloatMatrix
+     */
+    public void rowSums(double [] result) {
+        for (int row=0; row<size; row++) {
+            final int end = rowPtr[row+1];
+            double s = 0d;
+            for (int k=rowPtr[row]; k<end; k++) {
+                double v = vals[k];
+                s += v;
+                result[cols[k]] += v;
+            }
+            result[row] += s + diag[row];
+        }
+    }
+
+    public void columnSums(double [] result) {
+        rowSums(result);
+    }
+
+    public void setToMaxTranspose() throws MatricksException {
+        return; // symmetric by construction
+    }
+
+    /*
+     * y = alpha*A*x + y
+     */
+    public void multAdd(final double alpha, double [] x, double [] y) {
+        for (int row=0; row<size; row++) {
+            final int end = rowPtr[row+1];
+            final double z = x[row];
+            double s = 0d;
+            for (int k=rowPtr[row]; k<end; k++) {
+                final int col = cols[k];
+                final double w = vals[k];
+                s += w*x[col];
+                y[col] += alpha*w*z;
+            }
+            y[row] += alpha*(s + diag[row]*z);
+        }
+    }
+
+    public void multAdd(double [] x, double [] y) {
+        multAddRows(x, y, 0, size);
+    }
+
+    /*
+     * read-only, so safe to call concurrently on disjoint row ranges
+     */
+    public void multAddRows(double [] x, double [] y, int start, int stop) {
+        for (int row=start; row<stop; row++) {
+            final int end = rowPtr[row+1];
+            final double z = x[row];
+            double s = 0d;
+            for (int k=rowPtr[row]; k<end; k++) {
+                final int col = cols[k];
+                final double w = vals[k];
+                s += w*x[col];
+                y[col] += w*z;
+            }
+            y[row] += s + diag[row]*z;
+        }
+    }
+
+    public void multAddRows(double [] x, double [] y, int width, int start, int stop) {
+        for (int row=start; row<stop; row++) {
+            final int end = rowPtr[row+1];
+            final int rowOffset = row*width;
+            for (int k=rowPtr[row]; k<end; k++) {
+                final int colOffset = cols[k]*width;
+                final double w = vals[k];
+                for (int j=0; j<width; j++) {
+                    y[rowOffset + j] += w*x[colOffset + j];
+                    y[colOffset + j] += w*x[rowOffset + j];
+                }
+            }
+
+            final double d = diag[row];
+            for (int j=0; j<width; j++) {
+                y[rowOffset + j] += d*x[rowOffset + j];
+            }
+        }
+    }
+
+    public int rowEntries(int row) {
+        return rowPtr[row+1] - rowPtr[row];
+    }
+
+    public void mult(double [] x, double [] y) {
+        FlexSymFloatMatrix.clear(y);
+        multAdd(x, y);
+    }
+
+    public void transMult(double [] x, double [] y) {
+        mult(x, y);
+    }
+
+    public void multAdd(final double alpha, Vector x, Vector y) {
+        if (x instanceof DenseDoubleVector && y instanceof DenseDoubleVector) {
+            multAdd(alpha, ((DenseDoubleVector) x).data, ((DenseDoubleVector) y).data);
+        }
+        else {
+            throw new RuntimeException("not implemented");
+        }
+    }
+
+    public void mult(Vector x, Vector y) {
+        if (x instanceof DenseDoubleVector && y instanceof DenseDoubleVector) {
+            mult(((DenseDoubleVector) x).data, ((DenseDoubleVector) y).data);
+        }
+        else {
+            throw new RuntimeException("not implemented");
+        }
+    }
+
+    public double sumDotMultOuterProd(double [] x) {
+        double sum = 0d;
+        for (int row=0; row<size; row++) {
+            final int end = rowPtr[row+1];
+            double s = 0d;
+            for (int k=rowPtr[row]; k<end; k++) {
+                s += vals[k]*x[cols[k]];
+            }
+            sum += s*x[row];
+        }
+
+        sum = 2*sum;
+
+        for (int row=0; row<size; row++) {
+            sum += diag[row]*(x[row]*x[row]);
+        }
+
+        return sum;
+    }
+
+    /*
+     * extracted submatrices are heap-allocated and writable, as for
+     * the other symmetric types. rather than looking up every pair
+     * of the given indices, the stored rows of the selected indices
+     * are scattered into the new positions, so the cost is in the
+     * number of entries of those rows.
+     */
+    public SymMatrix subMatrix(int [] rowcols) {
+        int [] newIndex = new int[size];
+        Arrays.fill(newIndex, -1);
+        for (int i=0; i<rowcols.length; i++) {
+            if (newIndex[rowcols[i]] >= 0) {
+                return subMatrixByLookup(rowcols); // repeated index
+            }
+            newIndex[rowcols[i]] = i;
+        }
+
+        int n = rowcols.length;
+        int [] subRowPtr = new int[n+1];
+        for (int i=0; i<n; i++) {
+            int row = rowcols[i];
+            for (int k=rowPtr[row]; k<rowPtr[row+1]; k++) {
+                int j = newIndex[cols[k]];
+                if (j >= 0 && vals[k] != 0f) {
+                    subRowPtr[Math.max(i, j)+1] += 1;
+                }
+            }
+        }
+        for (int i=0; i<n; i++) {
+            subRowPtr[i+1] += subRowPtr[i];
+        }
+
+        int [] subCols = new int[subRowPtr[n]];
+        float [] subVals = new float[subRowPtr[n]];
+        int [] next = new int[n];
+        System.arraycopy(subRowPtr, 0, next, 0, n);
+        float [] subDiag = new float[n];
+
+        for (int i=0; i<n; i++) {
+            int row = rowcols[i];
+            for (int k=rowPtr[row]; k<rowPtr[row+1]; k++) {
+                int j = newIndex[cols[k]];
+                if (j >= 0 && vals[k] != 0f) {
+                    int r = Math.max(i, j);
+                    subCols[next[r]] = Math.min(i, j);
+                    subVals[next[r]] = vals[k];
+                    next[r] += 1;
+                }
+            }
+            subDiag[i] = diag[row];
+        }
+
+        for (int i=0; i<n; i++) {
+            sortRow(subCols, subVals, subRowPtr[i], subRowPtr[i+1]);
+        }
+
+        return new CompactSymFloatMatrix(n, subDiag, subRowPtr, subCols, subVals).toFlexSymFloatMatrix();
+    }
+
+    private SymMatrix subMatrixByLookup(int [] rowcols) {
+        FlexSymFloatMatrix subMatrix = new FlexSymFloatMatrix(rowcols.length);
+
+        for (int i=0; i<rowcols.length; i++) {
+            int idx = rowcols[i];
+
+            for (int j=0; j<i; j++) {
+                double v = get(idx, rowcols[j]);
+                if (v != 0d) {
+                    subMatrix.set(i, j, v);
+                }
+            }
+
+            double v = diag[idx];
+            if (v != 0d) {
+                subMatrix.set(i, i, v);
+            }
+        }
+
+        return subMatrix;
+    }
+
+    public Matrix subMatrix(int [] rows, int [] cols) {
+        FlexDoubleMatrix subMatrix = new FlexDoubleMatrix(rows.length, cols.length);
+
+        for (int i=0; i<rows.length; i++) {
+            int idx = rows[i];
+
+            for (int j=0; j<cols.length; j++) {
+                double v = get(idx, cols[j]);
+                if (v != 0d) {
+                    subMatrix.set(i, j, v);
+                }
+            }
+        }
+
+        return subMatrix;
+    }
+}
@@ -71,6 +71,10 @@ public class FlexFloatArray implements Serializable {
         alloc(nz);
     }
 
+    public int nnz() {
+        return used;
+    }
+
     private void alloc(int nz) {
         data = new float[nz];
         indices = new int[nz];
@@ -317,6 +321,22 @@ public class FlexFloatArray implements Serializable {
         y[k] += s;
     }
 
+    /*
+     * partialMult for width vectors stored row-major
+     */
+    protected void partialMult(double [] x, double [] y, final int k, final int width) {
+        final int kOffset = k*width;
+
+        for (int index=0; index<used; index++) {
+            int rowOffset = indices[index]*width;
+            double w = data[index];
+            for (int j=0; j<width; j++) {
+                y[kOffset + j] += w*x[rowOffset + j];
+                y[rowOffset + j] += w*x[kOffset + j];
+            }
+        }
+    }
+
     protected void partialMult(final double alpha, double [] x, double [] y, final int k) {
         final double z = x[k];
         double s = 0d;
@@ -422,14 +442,23 @@ public class FlexFloatArray implements Serializable {
      */
     public void addWithWorkArrays(final double alpha, FlexFloatArray x,
             int[] workIndices, float[] workData) throws MatricksException {
+        addWithWorkArrays(alpha, x.indices, x.data, 0, x.used, workIndices, workData);
+    }
+
+    /*
+     * as above, adding the sorted entries [xStart, xEnd) of the given
+     * index and data arrays, e.g. a row of a CompactSymFloatMatrix
+     */
+    public void addWithWorkArrays(final double alpha, final int [] xIndices, final float [] xData,
+            final int xStart, final int xEnd, int[] workIndices, float[] workData) throws MatricksException {
         
         // adding nothing? do nothing!
-        if (x.used == 0) {
+        if (xStart >= xEnd) {
             return;
         }
         
         int i = 0; // looping over this object
-        int ix = 0; // looping over x
+        int ix = xStart; // looping over x
         int iwork = 0; // looping over work arrays
 
         int nextpos = Integer.MAX_VALUE;
@@ -437,11 +466,11 @@ public class FlexFloatArray implements Serializable {
         if (i < used) {
             nextpos = indices[i];
         }
-        if (ix < x.used) {
-            nextxpos = x.indices[ix];
+        if (ix < xEnd) {
+            nextxpos = xIndices[ix];
         }
 
-        while (i < used || ix < x.used) {
+        while (i < used || ix < xEnd) {
             if (nextpos < nextxpos) {
                 workIndices[iwork] = nextpos;
                 workData[iwork] = data[i];
@@ -454,17 +483,17 @@ public class FlexFloatArray implements Serializable {
                 }
             } else if (nextpos > nextxpos) {
                 workIndices[iwork] = nextxpos;
-                workData[iwork] = (float) (alpha * x.data[ix]);
+                workData[iwork] = (float) (alpha * xData[ix]);
                 ix++;
                 iwork++;
-                if (ix < x.used) {
-                    nextxpos = x.indices[ix];
+                if (ix < xEnd) {
+                    nextxpos = xIndices[ix];
                 } else {
                     nextxpos = Integer.MAX_VALUE;
                 }
             } else {
                 workIndices[iwork] = nextpos; // == nextxpos
-                workData[iwork] = (float) (data[i] + alpha * x.data[ix]);
+                workData[iwork] = (float) (data[i] + alpha * xData[ix]);
                 i++;
                 ix++;
                 iwork++;
@@ -473,8 +502,8 @@ public class FlexFloatArray implements Serializable {
                 } else {
                     nextpos = Integer.MAX_VALUE;
                 }
-                if (ix < x.used) {
-                    nextxpos = x.indices[ix];
+                if (ix < xEnd) {
+                    nextxpos = xIndices[ix];
                 } else {
                     nextxpos = Integer.MAX_VALUE;
                 }
@@ -55,6 +55,15 @@ public class FlexFloatMatrix extends AbstractMatrix {
         return rows;
     }
 
+    @Override
+    public int nnz() {
+        int nnz = 0;
+        for (int i=0; i<rows; i++) {
+            nnz += data[i].nnz();
+        }
+        return nnz;
+    }
+
     public int numCols() {
         return cols;
     }
@@ -218,4 +227,11 @@ public class FlexFloatMatrix extends AbstractMatrix {
            data[row].add(x[row], y);
         }
     }
+
+    /*
+     * sparse row, for walking just the non-zeros of a row
+     */
+    public FlexFloatArray getRow(final int rowIndex) {
+        return data[rowIndex];
+    }
 }
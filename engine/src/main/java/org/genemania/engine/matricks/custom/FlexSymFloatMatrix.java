@@ -19,17 +19,20 @@
 
 package org.genemania.engine.matricks.custom;
 
+import java.util.Arrays;
+
 import org.genemania.engine.matricks.MatricksException;
 import org.genemania.engine.matricks.Matrix;
 import org.genemania.engine.matricks.MatrixAccumulator;
 import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.matricks.RowBlockSymMatrix;
 import org.genemania.engine.matricks.SymMatrix;
 import org.genemania.engine.matricks.Vector;
 
 /**
  *
  */
-public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
+public class FlexSymFloatMatrix extends AbstractMatrix implements RowBlockSymMatrix  {
     private static final long serialVersionUID = -888711473897241737L;
     
     int size; // rows == cols
@@ -232,6 +235,14 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
             FlexSymFloatMatrix BB = (FlexSymFloatMatrix) B;
             add(a, BB);
         }
+        else if (B instanceof MappedSymFloatMatrix) {
+            MappedSymFloatMatrix BB = (MappedSymFloatMatrix) B;
+            add(a, BB);
+        }
+        else if (B instanceof CompactSymFloatMatrix) {
+            CompactSymFloatMatrix BB = (CompactSymFloatMatrix) B;
+            add(a, BB);
+        }
         else if (B instanceof OuterProductComboSymMatrix) {
             OuterProductComboSymMatrix BB = (OuterProductComboSymMatrix) B;
             add(a, BB);
@@ -273,6 +284,32 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
         }
     }
     
+    public void add(final double alpha, MappedSymFloatMatrix B) throws MatricksException {
+        for (int row=0; row<B.size; row++) {
+            final int end = B.rowPtr.get(row+1);
+            for (int k=B.rowPtr.get(row); k<end; k++) {
+                data[row].add(B.cols.get(k), (float) (alpha*B.vals.get(k)));
+            }
+            diag[row] = (float) (diag[row] + alpha*B.diag.get(row));
+        }
+    }
+
+    /*
+     * compact rows are sorted, so merge them in like flex rows
+     */
+    public void add(final double alpha, CompactSymFloatMatrix B) throws MatricksException {
+        int [] workIndices = new int[size];
+        float [] workData = new float[size];
+
+        for (int row=0; row<B.size; row++) {
+            data[row].addWithWorkArrays(alpha, B.cols, B.vals, B.rowPtr[row], B.rowPtr[row+1], workIndices, workData);
+        }
+
+        for (int row=0; row<B.size; row++) {
+            diag[row] = (float) (diag[row] + alpha*B.diag[row]);
+        }
+    }
+
     /*
      * original add matrix implementation, does one element at a time
      */
@@ -323,6 +360,12 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
         if (m instanceof FlexSymFloatMatrix) {
             return elementMultiplySum((FlexSymFloatMatrix) m);
         }
+        else if (m instanceof MappedSymFloatMatrix) {
+            return ((MappedSymFloatMatrix) m).elementMultiplySum(this);
+        }
+        else if (m instanceof CompactSymFloatMatrix) {
+            return ((CompactSymFloatMatrix) m).elementMultiplySum(this);
+        }
         else if (m instanceof Outer1View) {   
             return elementMultiplySumOpt2((Outer1View) m);
         }
@@ -549,6 +592,28 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
         addDiag(x, y);
     }
 
+    public void multAddRows(double [] x, double [] y, int start, int end) {
+        for (int row=start; row<end; row++) {
+            data[row].partialMult(x, y, row);
+            y[row] = y[row] + x[row]*diag[row];
+        }
+    }
+
+    public void multAddRows(double [] x, double [] y, int width, int start, int end) {
+        for (int row=start; row<end; row++) {
+            data[row].partialMult(x, y, row, width);
+            final double d = diag[row];
+            final int offset = row*width;
+            for (int j=0; j<width; j++) {
+                y[offset + j] += d*x[offset + j];
+            }
+        }
+    }
+
+    public int rowEntries(int row) {
+        return data[row].used;
+    }
+
     /*
      * 
      */
@@ -703,11 +768,78 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
     }
     
     /*
+     * sorts the selected indices once, then merges the stored entries
+     * of each selected row against the selected indices below it. the
+     * cost is in the number of entries of those rows, rather than a
+     * lookup for every pair.
+     *
      * note we are checking for zeros to maintain sparsity.
      * if we happen to have some structured zero's in this matrix
      * we will lose them in the returned matrix
      */
     public SymMatrix subMatrix(int [] rowcols) {
+        int [] order = sortOrder(rowcols);
+        if (order == null) {
+            return subMatrixByLookup(rowcols); // repeated index
+        }
+
+        int n = rowcols.length;
+        FlexSymFloatMatrix subMatrix = new FlexSymFloatMatrix(n);
+        for (int s=0; s<n; s++) {
+            int i = order[s];
+            int idx = rowcols[i];
+            FlexFloatArray row = data[idx];
+
+            int k = 0;
+            int t = 0;
+            while (k < row.used && t < s) {
+                int col = row.indices[k];
+                int jdx = rowcols[order[t]];
+                if (col < jdx) {
+                    k++;
+                }
+                else if (col > jdx) {
+                    t++;
+                }
+                else {
+                    if (row.data[k] != 0f) {
+                        subMatrix.set(i, order[t], row.data[k]);
+                    }
+                    k++;
+                    t++;
+                }
+            }
+
+            if (diag[idx] != 0f) {
+                subMatrix.set(i, i, diag[idx]);
+            }
+        }
+
+        return subMatrix;
+    }
+
+    /*
+     * positions of the given indices in increasing order of index,
+     * or null if any index is repeated
+     */
+    static int [] sortOrder(int [] indices) {
+        long [] keys = new long[indices.length];
+        for (int i=0; i<indices.length; i++) {
+            keys[i] = ((long) indices[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int [] order = new int[indices.length];
+        for (int s=0; s<keys.length; s++) {
+            order[s] = (int) keys[s];
+            if (s > 0 && (keys[s] >>> 32) == (keys[s-1] >>> 32)) {
+                return null;
+            }
+        }
+        return order;
+    }
+
+    private SymMatrix subMatrixByLookup(int [] rowcols) {
         FlexSymFloatMatrix subMatrix = new FlexSymFloatMatrix(rowcols.length);
 
         for (int i=0; i<rowcols.length; i++) {
@@ -768,6 +900,19 @@ public class FlexSymFloatMatrix extends AbstractMatrix implements SymMatrix  {
         }
     }
 
+    /*
+     * counted the same way as the cursor visits elements, each
+     * off-diagonal entry twice plus the full diagonal
+     */
+    @Override
+    public int nnz() {
+        int offDiag = 0;
+        for (int row=0; row<size; row++) {
+            offDiag += data[row].used;
+        }
+        return 2*offDiag + size;
+    }
+
     /*
      * trim storage
      */
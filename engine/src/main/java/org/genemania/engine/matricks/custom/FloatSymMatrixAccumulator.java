@@ -18,11 +18,14 @@
  */
 package org.genemania.engine.matricks.custom;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.genemania.engine.matricks.MatricksException;
 import org.genemania.engine.matricks.Matrix;
 import org.genemania.engine.matricks.MatrixAccumulator;
+import org.genemania.engine.matricks.RowBlockMatrixAccumulator;
 import org.genemania.engine.matricks.SymMatrix;
 
 /*
@@ -37,10 +40,13 @@ import org.genemania.engine.matricks.SymMatrix;
  *       adder.add(matrix)
  * 
  * 
+ * to fill the blocks concurrently instead, get them from blocks()
+ * and run the same loop on each one in its own thread.
+ * 
  * TODO: completely ignores diagonal! which is ok for us since
  * our networks have zero-diagonal, but c'mon ...
  */
-public class FloatSymMatrixAccumulator implements MatrixAccumulator {
+public class FloatSymMatrixAccumulator implements RowBlockMatrixAccumulator {
     private static final long serialVersionUID = -3631959211056416493L;
 
     final int numRows;
@@ -50,7 +56,7 @@ public class FloatSymMatrixAccumulator implements MatrixAccumulator {
     // it probably wouldn't cost us too much more in time to use a buffer
     // of type double for the intermdiate results, even though we are converting
     // to floats at the end. worth it??
-    final float [] buffer;
+    float [] buffer;
     final FlexSymFloatMatrix sum;
 
     // these initial values matter to the block
@@ -72,11 +78,27 @@ public class FloatSymMatrixAccumulator implements MatrixAccumulator {
         buffer = new float[bufSizeBytes/4];
     }
 
+    /*
+     * for blocks, which allocate their buffer when started
+     */
+    FloatSymMatrixAccumulator(FlexSymFloatMatrix sum) {
+        this.numRows = sum.numRows();
+        this.numCols = sum.numCols();
+        this.bufSizeBytes = 0;
+        this.sum = sum;
+    }
+
     @Override
     public void add(double weight, Matrix m) {
         if (m instanceof FlexSymFloatMatrix) {
             add(weight, (FlexSymFloatMatrix) m);
         }
+        else if (m instanceof MappedSymFloatMatrix) {
+            add(weight, (MappedSymFloatMatrix) m);
+        }
+        else if (m instanceof CompactSymFloatMatrix) {
+            add(weight, (CompactSymFloatMatrix) m);
+        }
         else {
             throw new MatricksException("not implemented for given matrix type");
         }
@@ -98,6 +120,12 @@ public class FloatSymMatrixAccumulator implements MatrixAccumulator {
         if (m instanceof FlexSymFloatMatrix) {
             add((FlexSymFloatMatrix) m);
         }
+        else if (m instanceof MappedSymFloatMatrix) {
+            add(1d, (MappedSymFloatMatrix) m);
+        }
+        else if (m instanceof CompactSymFloatMatrix) {
+            add(1d, (CompactSymFloatMatrix) m);
+        }
         else {
             throw new MatricksException("not implemented for given matrix type");
         }
@@ -113,6 +141,34 @@ public class FloatSymMatrixAccumulator implements MatrixAccumulator {
         }
     }
 
+    /*
+     * row i of the lower triangle occupies i slots in the buffer,
+     * same as the flex layout
+     */
+    public void add(double weight, MappedSymFloatMatrix m) {
+        int offset = 0;
+        for (int row=blockStart; row<=blockStart+blockLength; row++) {
+            final int end = m.rowPtr.get(row+1);
+            for (int k=m.rowPtr.get(row); k<end; k++) {
+                final int i = offset + m.cols.get(k);
+                buffer[i] = (float) (buffer[i] + weight*m.vals.get(k));
+            }
+            offset = offset + row;
+        }
+    }
+
+    public void add(double weight, CompactSymFloatMatrix m) {
+        int offset = 0;
+        for (int row=blockStart; row<=blockStart+blockLength; row++) {
+            final int end = m.rowPtr[row+1];
+            for (int k=m.rowPtr[row]; k<end; k++) {
+                final int i = offset + m.cols[k];
+                buffer[i] = (float) (buffer[i] + weight*m.vals[k]);
+            }
+            offset = offset + row;
+        }
+    }
+
     /*
      * not sure how to encapsulate the iteration over buffer
      * size strips, without bringing knowledge of the cache 
@@ -148,32 +204,64 @@ public class FloatSymMatrixAccumulator implements MatrixAccumulator {
             return;
         }
 
+        blockLength = lastRow(blockStart, buffer.length) - blockStart;
+
+//        System.out.println(String.format("tricky block indices %d -> %d", blockStart, blockStart + blockLength));
+    }
+
+    /*
+     * last row of the block starting at blockStart that fits in
+     * a buffer of the given number of floats
+     */
+    int lastRow(int blockStart, long capacity) {
+
         // how many rows can we accommodate in the available
         // buffer space? if the next row has length n (left
         // of diag), then everything would be n + (n-1) + ... + 1 = n*(n+1)/2.
         // we want smallest k such that n + (n-1) + ... + k <= buffersize        
         long done = 0;
         if (blockStart>0) {
-            int n = sum.data[blockStart-1].size;
+            long n = sum.data[blockStart-1].size;
             done = n*(n+1)/2;
         }
         long all = numRows*(numRows+1L)/2;
         long todo = all - done;
 
-        long overflow = todo-buffer.length;
+        long overflow = todo-capacity;
 
         // oh, enough space for all the rest, set to last row
         if (overflow <=0) {
-            blockLength = numRows - blockStart - 1;
+            return numRows - 1;
         }
         else {
             // via quadratic formula
-            long p = buffer.length + done;
+            long p = capacity + done;
             int lastRow = (int) Math.floor((-1+Math.sqrt(1+8*p))/2d);
-            blockLength = lastRow - blockStart;
+            if (lastRow < blockStart) {
+                throw new MatricksException("accumulator buffer too small for row " + blockStart);
+            }
+            return lastRow;
         }
+    }
 
-//        System.out.println(String.format("tricky block indices %d -> %d", blockStart, blockStart + blockLength));
+    /*
+     * blocks are no larger than our buffer, and smaller if needed to
+     * get minBlocks of them. each holds at least one full row.
+     */
+    @Override
+    public List<MatrixAccumulator> blocks(int minBlocks) {
+        long all = numRows*(numRows+1L)/2;
+        long capacity = Math.min(bufSizeBytes/4, (all + minBlocks - 1)/Math.max(1, minBlocks));
+        capacity = Math.max(capacity, numRows);
+
+        List<MatrixAccumulator> blocks = new ArrayList<MatrixAccumulator>();
+        int start = 0;
+        while (start < numRows) {
+            int last = lastRow(start, capacity);
+            blocks.add(new Block(sum, start, last));
+            start = last + 1;
+        }
+        return blocks;
     }
 
     void compact() {
@@ -196,4 +284,39 @@ public class FloatSymMatrixAccumulator implements MatrixAccumulator {
             sum.data[row] = newRow;           
         }        
     }
+
+    /*
+     * fixed range of rows of the sum, one pass: the first call
+     * to nextBlock() loads the rows, the second writes them back
+     * and frees the buffer
+     */
+    static class Block extends FloatSymMatrixAccumulator {
+        private static final long serialVersionUID = 1L;
+
+        boolean started = false;
+
+        Block(FlexSymFloatMatrix sum, int first, int last) {
+            super(sum);
+            blockStart = first;
+            blockLength = last - first;
+        }
+
+        @Override
+        public boolean nextBlock() {
+            if (!started) {
+                started = true;
+                long first = blockStart;
+                long end = blockStart + blockLength + 1;
+                buffer = new float[(int) ((end*(end-1) - first*(first-1))/2)];
+                add(sum);
+                return true;
+            }
+
+            if (buffer != null) {
+                compact();
+                buffer = null;
+            }
+            return false;
+        }
+    }
 }
@@ -0,0 +1,772 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.Matrix;
+import org.genemania.engine.matricks.MatrixAccumulator;
+import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.matricks.RowBlockSymMatrix;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.Vector;
+
+/**
+ * read-only symmetric matrix backed by a memory-mapped file. the
+ * strict lower triangle is stored in compressed-row form, the diagonal
+ * separately, same split as FlexSymFloatMatrix:
+ *
+ *   header   magic, version, size, flags (int), nnz (long), reserved (long)
+ *   diag     float[size]
+ *   rowPtr   int[size+1]
+ *   cols     int[nnz], ascending within each row, all < row
+ *   vals     float[nnz]
+ *
+ * everything little-endian. since the file is mapped read-only,
+ * several jvm's loading the same network share pages through the
+ * os page cache, and nothing is copied onto the heap on load.
+ *
+ * serializing one of these writes out a heap FlexSymFloatMatrix copy
+ * instead (see writeReplace), so it can still be passed through
+ * the java-serialization based caches.
+ */
+public class MappedSymFloatMatrix extends AbstractMatrix implements RowBlockSymMatrix {
+    private static final long serialVersionUID = 2413087164640935212L;
+
+    public static final int MAGIC = 0x474d534d; // "GMSM"
+    public static final int FORMAT_VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int WRITE_BUFFER_BYTES = 1024*1024;
+
+    final int size;
+    final int nnz;
+    transient FloatBuffer diag;
+    transient IntBuffer rowPtr;
+    transient IntBuffer cols;
+    transient FloatBuffer vals;
+
+    MappedSymFloatMatrix(int size, int nnz, FloatBuffer diag, IntBuffer rowPtr, IntBuffer cols, FloatBuffer vals) {
+        this.size = size;
+        this.nnz = nnz;
+        this.diag = diag;
+        this.rowPtr = rowPtr;
+        this.cols = cols;
+        this.vals = vals;
+    }
+
+    /*
+     * map the given file, which must have been created by write()
+     */
+    public static MappedSymFloatMatrix map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            int magic = header.getInt();
+            int version = header.getInt();
+            int size = header.getInt();
+            header.getInt(); // flags, unused
+            long nnz = header.getLong();
+
+            if (magic != MAGIC) {
+                throw new IOException("not a mapped matrix file: " + file);
+            }
+            if (version != FORMAT_VERSION) {
+                throw new IOException(String.format("unsupported mapped matrix format version %d in %s", version, file));
+            }
+            checkSectionSize(nnz, file);
+
+            long pos = HEADER_BYTES;
+            FloatBuffer diag = mapSection(channel, pos, 4L*size).asFloatBuffer();
+            pos += 4L*size;
+            IntBuffer rowPtr = mapSection(channel, pos, 4L*(size+1)).asIntBuffer();
+            pos += 4L*(size+1);
+            IntBuffer cols = mapSection(channel, pos, 4L*nnz).asIntBuffer();
+            pos += 4L*nnz;
+            FloatBuffer vals = mapSection(channel, pos, 4L*nnz).asFloatBuffer();
+            pos += 4L*nnz;
+
+            if (pos != channel.size()) {
+                throw new IOException(String.format("mapped matrix file %s has size %d, expected %d", file, channel.size(), pos));
+            }
+
+            return new MappedSymFloatMatrix(size, (int) nnz, diag, rowPtr, cols, vals);
+        }
+        finally {
+            // the mappings stay valid after the channel is closed
+            raf.close();
+        }
+    }
+
+    private static ByteBuffer mapSection(FileChannel channel, long pos, long len) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, pos, len).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /*
+     * each section is mapped as a single buffer, so is limited to 2GB
+     */
+    private static void checkSectionSize(long nnz, File file) throws IOException {
+        if (nnz < 0 || 4L*nnz > Integer.MAX_VALUE) {
+            throw new IOException(String.format("too many elements (%d) for mapped matrix in %s", nnz, file));
+        }
+    }
+
+    /*
+     * write the given symmetric matrix out in mapped format, which
+     * has the same layout as CompactSymFloatMatrix
+     */
+    public static void write(SymMatrix m, File file) throws IOException {
+        CompactSymFloatMatrix compact = CompactSymFloatMatrix.compact(m);
+        int size = compact.size;
+        int [] rowPtr = compact.rowPtr;
+        float [] diag = compact.diag;
+        int [] colData = compact.cols;
+        float [] valData = compact.vals;
+
+        checkSectionSize(colData.length, file);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buf = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            buf.putInt(MAGIC);
+            buf.putInt(FORMAT_VERSION);
+            buf.putInt(size);
+            buf.putInt(0);
+            buf.putLong(colData.length);
+            buf.putLong(0L);
+
+            writeFloats(channel, buf, diag);
+            writeInts(channel, buf, rowPtr);
+            writeInts(channel, buf, colData);
+            writeFloats(channel, buf, valData);
+
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(true);
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buf, int [] a) throws IOException {
+        for (int i=0; i<a.length; i++) {
+            if (buf.remaining() < 4) {
+                drain(channel, buf);
+            }
+            buf.putInt(a[i]);
+        }
+    }
+
+    private static void writeFloats(FileChannel channel, ByteBuffer buf, float [] a) throws IOException {
+        for (int i=0; i<a.length; i++) {
+            if (buf.remaining() < 4) {
+                drain(channel, buf);
+            }
+            buf.putFloat(a[i]);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    /*
+     * copy onto the heap
+     */
+    public FlexSymFloatMatrix toFlexSymFloatMatrix() {
+        FlexSymFloatMatrix m = new FlexSymFloatMatrix(size);
+        for (int row=0; row<size; row++) {
+            int start = rowPtr.get(row);
+            int len = rowPtr.get(row+1) - start;
+
+            FlexFloatArray a = new FlexFloatArray(row, len);
+            for (int k=0; k<len; k++) {
+                a.indices[k] = cols.get(start+k);
+                a.data[k] = vals.get(start+k);
+            }
+            a.used = len;
+            m.data[row] = a;
+            m.diag[row] = diag.get(row);
+        }
+
+        return m;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return toFlexSymFloatMatrix();
+    }
+
+    public int numRows() {
+        return size;
+    }
+
+    public int numCols() {
+        return size;
+    }
+
+    public double get(int row, int col) {
+        checkIdx(row, col);
+
+        if (row == col) {
+            return diag.get(row);
+        }
+        else if (row < col) {
+            int tmp = row;
+            row = col;
+            col = tmp;
+        }
+
+        int pos = find(row, col);
+        if (pos >= 0) {
+            return vals.get(pos);
+        }
+        else {
+            return 0d;
+        }
+    }
+
+    /*
+     * position of (row, col) in the element arrays, or -1. requires row > col
+     */
+    int find(int row, int col) {
+        int lo = rowPtr.get(row);
+        int hi = rowPtr.get(row+1) - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = cols.get(mid);
+            if (c < col) {
+                lo = mid + 1;
+            }
+            else if (c > col) {
+                hi = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+
+    private void checkIdx(final int row, final int col) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(String.format("invalid row index: %d, max size is %d", row, size));
+        }
+        if (col < 0 || col >= size) {
+            throw new IndexOutOfBoundsException(String.format("invalid column index: %d", col));
+        }
+    }
+
+    public void set(int row, int col, double val) throws MatricksException {
+        throw new MatricksException("mapped matrix is read-only");
+    }
+
+    public void scale(double a) throws MatricksException {
+        throw new MatricksException("mapped matrix is read-only");
+    }
+
+    public void setAll(double a) throws MatricksException {
+        throw new MatricksException("mapped matrix is read-only");
+    }
+
+    public void add(Matrix B) throws MatricksException {
+        throw new MatricksException("mapped matrix is read-only");
+    }
+
+    public void add(double a, Matrix B) throws MatricksException {
+        throw new MatricksException("mapped matrix is read-only");
+    }
+
+    public void add(int i, int j, double alpha) {
+        throw new MatricksException("mapped matrix is read-only");
+    }
+
+    public void setDiag(double alpha) {
+        throw new MatricksException("mapped matrix is read-only");
+    }
+
+    public void dotDivOuterProd(Vector x) {
+        throw new MatricksException("mapped matrix is read-only");
+    }
+
+    public void addOuterProd(double [] x) {
+        throw new MatricksException("mapped matrix is read-only");
+    }
+
+    @Override
+    public MatrixAccumulator accumulator() {
+        throw new MatricksException("mapped matrix is read-only");
+    }
+
+    /*
+     * visits the off-diagonal elements twice, once for
+     * each triangle, followed by the diagonal. same as
+     * FlexSymFloatMatrix
+     */
+    public MatrixCursor cursor() {
+        return new MappedSymFloatMatrixCursor();
+    }
+
+    private class MappedSymFloatMatrixCursor implements MatrixCursor {
+        int row = 0;
+        int pos = -1;
+        boolean upper = true;
+        boolean onDiag = false;
+
+        public boolean next() {
+            if (onDiag) {
+                row += 1;
+                return row < size;
+            }
+
+            if (!upper) {
+                upper = true;
+                return true;
+            }
+
+            pos += 1;
+            while (row < size && pos >= rowPtr.get(row+1)) {
+                row += 1;
+            }
+
+            if (row >= size) {
+                onDiag = true;
+                row = 0;
+                return size > 0;
+            }
+
+            upper = false;
+            return true;
+        }
+
+        public int row() {
+            if (onDiag) {
+                return row;
+            }
+            return upper ? cols.get(pos) : row;
+        }
+
+        public int col() {
+            if (onDiag) {
+                return row;
+            }
+            return upper ? row : cols.get(pos);
+        }
+
+        public double val() {
+            if (onDiag) {
+                return diag.get(row);
+            }
+            return vals.get(pos);
+        }
+
+        public void set(double val) {
+            throw new MatricksException("mapped matrix is read-only");
+        }
+    }
+
+    @Override
+    public int nnz() {
+        return 2*nnz + size;
+    }
+
+    /*
+     * twice the lower triangle, plus the diag
+     */
+    public double elementSum() {
+        double sum = 0d;
+        for (int k=0; k<nnz; k++) {
+            sum += vals.get(k);
+        }
+        sum = 2*sum;
+
+        for (int row=0; row<size; row++) {
+            sum += diag.get(row);
+        }
+
+        return sum;
+    }
+
+    public double elementMultiplySum(Matrix m) throws MatricksException {
+        if (m instanceof FlexSymFloatMatrix) {
+            return elementMultiplySum((FlexSymFloatMatrix) m);
+        }
+        else if (m instanceof MappedSymFloatMatrix) {
+            return elementMultiplySum((MappedSymFloatMatrix) m);
+        }
+        else if (m instanceof CompactSymFloatMatrix) {
+            return elementMultiplySum((CompactSymFloatMatrix) m);
+        }
+        else {
+            return super.elementMultiplySum(m);
+        }
+    }
+
+    /*
+     * merge each of our rows against the corresponding
+     * sorted flex row
+     */
+    public double elementMultiplySum(FlexSymFloatMatrix m) {
+        double sum = 0d;
+        for (int row=0; row<size; row++) {
+            FlexFloatArray other = m.data[row];
+            int i = rowPtr.get(row);
+            final int end = rowPtr.get(row+1);
+            int j = 0;
+
+            double rowDot = 0d;
+            while (i < end && j < other.used) {
+                int c = cols.get(i);
+                int oc = other.indices[j];
+                if (c < oc) {
+                    i++;
+                }
+                else if (c > oc) {
+                    j++;
+                }
+                else {
+                    rowDot += vals.get(i)*other.data[j];
+                    i++;
+                    j++;
+                }
+            }
+
+            sum += 2*rowDot;
+            sum += diag.get(row)*m.diag[row];
+        }
+
+        return sum;
+    }
+
+    public double elementMultiplySum(MappedSymFloatMatrix m) {
+        double sum = 0d;
+        for (int row=0; row<size; row++) {
+            int i = rowPtr.get(row);
+            final int end = rowPtr.get(row+1);
+            int j = m.rowPtr.get(row);
+            final int otherEnd = m.rowPtr.get(row+1);
+
+            double rowDot = 0d;
+            while (i < end && j < otherEnd) {
+                int c = cols.get(i);
+                int oc = m.cols.get(j);
+                if (c < oc) {
+                    i++;
+                }
+                else if (c > oc) {
+                    j++;
+                }
+                else {
+                    rowDot += vals.get(i)*m.vals.get(j);
+                    i++;
+                    j++;
+                }
+            }
+
+            sum += 2*rowDot;
+            sum += diag.get(row)*m.diag.get(row);
+        }
+
+        return sum;
+    }
+
+    public double elementMultiplySum(CompactSymFloatMatrix m) {
+        double sum = 0d;
+        for (int row=0; row<size; row++) {
+            int i = rowPtr.get(row);
+            final int end = rowPtr.get(row+1);
+            int j = m.rowPtr[row];
+            final int otherEnd = m.rowPtr[row+1];
+
+            double rowDot = 0d;
+            while (i < end && j < otherEnd) {
+                int c = cols.get(i);
+                int oc = m.cols[j];
+                if (c < oc) {
+                    i++;
+                }
+                else if (c > oc) {
+                    j++;
+                }
+                else {
+                    rowDot += vals.get(i)*m.vals[j];
+                    i++;
+                    j++;
+                }
+            }
+
+            sum += 2*rowDot;
+            sum += diag.get(row)*m.diag[row];
+        }
+
+        return sum;
+    }
+
+    public Vector rowSums() throws MatricksException {
+        double [] y = new double[size];
+        rowSums(y);
+        return new DenseDoubleVector(y);
+    }
+
+    public Vector columnSums() throws MatricksException {
+        return rowSums();
+    }
+
+    public void rowSums(double [] result) {
+        for (int row=0; row<size; row++) {
+            final int end = rowPtr.get(row+1);
+            double s = 0d;
+            for (int k=rowPtr.get(row); k<end; k++) {
+                double v = vals.get(k);
+                s += v;
+                result[cols.get(k)] += v;
+            }
+            result[row] += s + diag.get(row);
+        }
+    }
+
+    public void columnSums(double [] result) {
+        rowSums(result);
+    }
+
+    public void setToMaxTranspose() throws MatricksException {
+        return; // symmetric by construction
+    }
+
+    /*
+     * y = alpha*A*x + y
+     */
+    public void multAdd(final double alpha, double [] x, double [] y) {
+        for (int row=0; row<size; row++) {
+            final int end = rowPtr.get(row+1);
+            final double z = x[row];
+            double s = 0d;
+            for (int k=rowPtr.get(row); k<end; k++) {
+                int col = cols.get(k);
+                double w = vals.get(k);
+                s += w*x[col];
+                y[col] += alpha*w*z;
+            }
+            y[row] += alpha*(s + diag.get(row)*z);
+        }
+    }
+
+    public void multAdd(double [] x, double [] y) {
+        multAddRows(x, y, 0, size);
+    }
+
+    /*
+     * absolute buffer reads only, so safe to call
+     * concurrently on disjoint row ranges
+     */
+    public void multAddRows(double [] x, double [] y, int start, int stop) {
+        for (int row=start; row<stop; row++) {
+            final int end = rowPtr.get(row+1);
+            final double z = x[row];
+            double s = 0d;
+            for (int k=rowPtr.get(row); k<end; k++) {
+                int col = cols.get(k);
+                double w = vals.get(k);
+                s += w*x[col];
+                y[col] += w*z;
+            }
+            y[row] += s + diag.get(row)*z;
+        }
+    }
+
+    public void multAddRows(double [] x, double [] y, int width, int start, int stop) {
+        for (int row=start; row<stop; row++) {
+            final int end = rowPtr.get(row+1);
+            final int rowOffset = row*width;
+            for (int k=rowPtr.get(row); k<end; k++) {
+                final int colOffset = cols.get(k)*width;
+                final double w = vals.get(k);
+                for (int j=0; j<width; j++) {
+                    y[rowOffset + j] += w*x[colOffset + j];
+                    y[colOffset + j] += w*x[rowOffset + j];
+                }
+            }
+
+            final double d = diag.get(row);
+            for (int j=0; j<width; j++) {
+                y[rowOffset + j] += d*x[rowOffset + j];
+            }
+        }
+    }
+
+    public int rowEntries(int row) {
+        return rowPtr.get(row+1) - rowPtr.get(row);
+    }
+
+    public void mult(double [] x, double [] y) {
+        FlexSymFloatMatrix.clear(y);
+        multAdd(x, y);
+    }
+
+    public void transMult(double [] x, double [] y) {
+        mult(x, y);
+    }
+
+    public void multAdd(final double alpha, Vector x, Vector y) {
+        if (x instanceof DenseDoubleVector && y instanceof DenseDoubleVector) {
+            multAdd(alpha, ((DenseDoubleVector) x).data, ((DenseDoubleVector) y).data);
+        }
+        else {
+            throw new RuntimeException("not implemented");
+        }
+    }
+
+    public void mult(Vector x, Vector y) {
+        if (x instanceof DenseDoubleVector && y instanceof DenseDoubleVector) {
+            mult(((DenseDoubleVector) x).data, ((DenseDoubleVector) y).data);
+        }
+        else {
+            throw new RuntimeException("not implemented");
+        }
+    }
+
+    public double sumDotMultOuterProd(double [] x) {
+        double sum = 0d;
+        for (int row=0; row<size; row++) {
+            final int end = rowPtr.get(row+1);
+            double s = 0d;
+            for (int k=rowPtr.get(row); k<end; k++) {
+                s += vals.get(k)*x[cols.get(k)];
+            }
+            sum += s*x[row];
+        }
+
+        sum = 2*sum;
+
+        for (int row=0; row<size; row++) {
+            sum += diag.get(row)*(x[row]*x[row]);
+        }
+
+        return sum;
+    }
+
+    /*
+     * merges each selected row against the sorted selected
+     * indices, as for FlexSymFloatMatrix. extracted submatrices
+     * are heap-allocated and writable
+     */
+    public SymMatrix subMatrix(int [] rowcols) {
+        int [] order = FlexSymFloatMatrix.sortOrder(rowcols);
+        if (order == null) {
+            return subMatrixByLookup(rowcols); // repeated index
+        }
+
+        int n = rowcols.length;
+        FlexSymFloatMatrix subMatrix = new FlexSymFloatMatrix(n);
+        for (int s=0; s<n; s++) {
+            int i = order[s];
+            int idx = rowcols[i];
+
+            int k = rowPtr.get(idx);
+            final int end = rowPtr.get(idx+1);
+            int t = 0;
+            while (k < end && t < s) {
+                int col = cols.get(k);
+                int jdx = rowcols[order[t]];
+                if (col < jdx) {
+                    k++;
+                }
+                else if (col > jdx) {
+                    t++;
+                }
+                else {
+                    float v = vals.get(k);
+                    if (v != 0f) {
+                        subMatrix.set(i, order[t], v);
+                    }
+                    k++;
+                    t++;
+                }
+            }
+
+            double v = diag.get(idx);
+            if (v != 0d) {
+                subMatrix.set(i, i, v);
+            }
+        }
+
+        return subMatrix;
+    }
+
+    private SymMatrix subMatrixByLookup(int [] rowcols) {
+        FlexSymFloatMatrix subMatrix = new FlexSymFloatMatrix(rowcols.length);
+
+        for (int i=0; i<rowcols.length; i++) {
+            int idx = rowcols[i];
+
+            for (int j=0; j<i; j++) {
+                double v = get(idx, rowcols[j]);
+                if (v != 0d) {
+                    subMatrix.set(i, j, v);
+                }
+            }
+
+            double v = diag.get(idx);
+            if (v != 0d) {
+                subMatrix.set(i, i, v);
+            }
+        }
+
+        return subMatrix;
+    }
+
+    public Matrix subMatrix(int [] rows, int [] cols) {
+        FlexDoubleMatrix subMatrix = new FlexDoubleMatrix(rows.length, cols.length);
+
+        for (int i=0; i<rows.length; i++) {
+            int idx = rows[i];
+
+            for (int j=0; j<cols.length; j++) {
+                double v = get(idx, cols[j]);
+                if (v != 0d) {
+                    subMatrix.set(i, j, v);
+                }
+            }
+        }
+
+        return subMatrix;
+    }
+}
@@ -120,7 +120,7 @@ public class Outer1View extends AbstractMatrix implements SymMatrix {
     
     @Override
     public double elementMultiplySum(Matrix m) throws MatricksException {
-        if (m instanceof FlexSymFloatMatrix) {
+        if (m instanceof FlexSymFloatMatrix || m instanceof CompactSymFloatMatrix) {
             return m.elementMultiplySum(this); // for now, this ought to be somewhat optimized already
         }
         else if (m instanceof Outer1View) {   
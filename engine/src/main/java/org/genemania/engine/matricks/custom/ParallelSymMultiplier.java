@@ -0,0 +1,319 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.genemania.engine.matricks.RowBlockSymMatrix;
+import org.genemania.engine.matricks.SymMatrix;
+
+/**
+ * computes y = A*x for a symmetric matrix split into row blocks,
+ * each multiplied on its own thread in the given pool. since only
+ * the lower triangle is stored, each row also scatters into earlier
+ * entries of y, so every block writes into its own buffer and the
+ * buffers are summed at the end.
+ *
+ * blocks are sized to hold about the same number of stored entries,
+ * and the buffers are kept between calls. meant to be created once
+ * per matrix and reused over the iterations of a solver, not shared
+ * between threads.
+ *
+ * can also multiply several vectors at once, stored row-major, for
+ * solvers working on many right hand sides. the matrix entries are
+ * then read once for all the vectors. the arrays may be longer than
+ * width vectors, as when a solver drops converged columns from a
+ * block but keeps its arrays.
+ *
+ * a MultiOPCSymMatrix over a RowBlockSymMatrix is split the same way
+ * on its sparse part, and the low rank attribute terms are added
+ * afterwards. other matrices, or ones too small to be worth splitting,
+ * are multiplied serially.
+ */
+public class ParallelSymMultiplier {
+
+    // below this many rows per block, not worth the task overhead
+    static final int MIN_ROWS_PER_BLOCK = 1024;
+
+    SymMatrix matrix;
+    RowBlockSymMatrix blocked; // part of matrix split across blocks
+    OuterProductComboSymMatrix [] combos; // rest of matrix, if any
+    ForkJoinPool pool;
+    int [] blockStarts; // numBlocks+1 entries
+    double [][] buffers;
+    int bufferWidth;
+    double [] xj, yj; // one column of a block, n long
+
+    public ParallelSymMultiplier(SymMatrix matrix, ForkJoinPool pool) {
+        this.matrix = matrix;
+        this.pool = pool;
+
+        if (matrix instanceof RowBlockSymMatrix) {
+            blocked = (RowBlockSymMatrix) matrix;
+        }
+        else if (matrix instanceof MultiOPCSymMatrix) {
+            MultiOPCSymMatrix multi = (MultiOPCSymMatrix) matrix;
+            if (multi.getMatrix() instanceof RowBlockSymMatrix) {
+                blocked = (RowBlockSymMatrix) multi.getMatrix();
+                combos = multi.getCombos();
+            }
+        }
+
+        int n = matrix.numRows();
+        int numBlocks = 1;
+        if (blocked != null && pool != null) {
+            numBlocks = Math.max(1, Math.min(pool.getParallelism(), n/MIN_ROWS_PER_BLOCK));
+        }
+
+        if (numBlocks > 1) {
+            blockStarts = partition(blocked, numBlocks);
+        }
+    }
+
+    /*
+     * block b only touches y up to its last row
+     */
+    private void allocateBuffers(int width) {
+        if (buffers != null && bufferWidth == width) {
+            return;
+        }
+
+        int numBlocks = getNumBlocks();
+        buffers = new double[numBlocks][];
+        for (int b=0; b<numBlocks; b++) {
+            buffers[b] = new double[blockStarts[b+1]*width];
+        }
+        bufferWidth = width;
+    }
+
+    public int getNumBlocks() {
+        return blockStarts == null ? 1 : blockStarts.length - 1;
+    }
+
+    /*
+     * y = A*x
+     */
+    public void mult(double [] x, double [] y) {
+        mult(x, y, 1);
+    }
+
+    /*
+     * Y = A*X for width vectors stored row-major,
+     * entry i of vector j at [i*width + j]
+     */
+    public void mult(double [] x, double [] y, int width) {
+        if (blockStarts == null) {
+            serialMult(x, y, width);
+            return;
+        }
+
+        allocateBuffers(width);
+
+        int numBlocks = getNumBlocks();
+        List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(numBlocks);
+        for (int b=0; b<numBlocks; b++) {
+            tasks.add(new BlockMult(blocked, x, width, b));
+        }
+        pool.invoke(new InvokeAll(tasks));
+
+        tasks.clear();
+        for (int b=0; b<numBlocks; b++) {
+            tasks.add(new BlockSum(y, width, b));
+        }
+        pool.invoke(new InvokeAll(tasks));
+
+        addCombos(x, y, width);
+    }
+
+    private void serialMult(double [] x, double [] y, int width) {
+        if (width == 1 && isColumn(x) && isColumn(y)) {
+            matrix.mult(x, y);
+        }
+        else if (blocked != null) {
+            FlexSymFloatMatrix.clear(y);
+            blocked.multAddRows(x, y, width, 0, matrix.numRows());
+            addCombos(x, y, width);
+        }
+        else {
+            // one vector at a time
+            int n = matrix.numRows();
+            allocateColumns();
+            for (int j=0; j<width; j++) {
+                for (int i=0; i<n; i++) {
+                    xj[i] = x[i*width + j];
+                }
+                matrix.mult(xj, yj);
+                for (int i=0; i<n; i++) {
+                    y[i*width + j] = yj[i];
+                }
+            }
+        }
+    }
+
+    /*
+     * y = y + C*x for the outer product combos C, if any. these
+     * are low rank so cheap next to the sparse part, and done
+     * serially one vector at a time.
+     */
+    private void addCombos(double [] x, double [] y, int width) {
+        if (combos == null) {
+            return;
+        }
+
+        if (width == 1 && isColumn(x) && isColumn(y)) {
+            for (OuterProductComboSymMatrix combo: combos) {
+                combo.multAdd(x, y);
+            }
+            return;
+        }
+
+        // the combos work over the whole length of their
+        // arguments, so copy each vector out to its own
+        int n = matrix.numRows();
+        allocateColumns();
+        for (int j=0; j<width; j++) {
+            for (int i=0; i<n; i++) {
+                xj[i] = x[i*width + j];
+                yj[i] = y[i*width + j];
+            }
+            for (OuterProductComboSymMatrix combo: combos) {
+                combo.multAdd(xj, yj);
+            }
+            for (int i=0; i<n; i++) {
+                y[i*width + j] = yj[i];
+            }
+        }
+    }
+
+    private boolean isColumn(double [] v) {
+        return v.length == matrix.numRows();
+    }
+
+    private void allocateColumns() {
+        if (xj == null) {
+            int n = matrix.numRows();
+            xj = new double[n];
+            yj = new double[n];
+        }
+    }
+
+    /*
+     * split rows so each block has about the same count of
+     * stored entries, counting the diagonal
+     */
+    static int [] partition(RowBlockSymMatrix matrix, int numBlocks) {
+        int n = matrix.numRows();
+        long total = 0;
+        for (int row=0; row<n; row++) {
+            total += matrix.rowEntries(row) + 1;
+        }
+
+        List<Integer> starts = new ArrayList<Integer>();
+        starts.add(0);
+        long target = total/numBlocks + 1;
+        long count = 0;
+        for (int row=0; row<n; row++) {
+            count += matrix.rowEntries(row) + 1;
+            if (count >= target && row+1 < n && starts.size() < numBlocks) {
+                starts.add(row+1);
+                count = 0;
+            }
+        }
+        starts.add(n);
+
+        int [] result = new int[starts.size()];
+        for (int i=0; i<result.length; i++) {
+            result[i] = starts.get(i);
+        }
+        return result;
+    }
+
+    class BlockMult extends RecursiveAction {
+        RowBlockSymMatrix m;
+        double [] x;
+        int width;
+        int block;
+
+        BlockMult(RowBlockSymMatrix m, double [] x, int width, int block) {
+            this.m = m;
+            this.x = x;
+            this.width = width;
+            this.block = block;
+        }
+
+        @Override
+        protected void compute() {
+            double [] buffer = buffers[block];
+            FlexSymFloatMatrix.clear(buffer);
+            if (width == 1) {
+                m.multAddRows(x, buffer, blockStarts[block], blockStarts[block+1]);
+            }
+            else {
+                m.multAddRows(x, buffer, width, blockStarts[block], blockStarts[block+1]);
+            }
+        }
+    }
+
+    /*
+     * rows of block b got contributions from b and every later block
+     */
+    class BlockSum extends RecursiveAction {
+        double [] y;
+        int width;
+        int block;
+
+        BlockSum(double [] y, int width, int block) {
+            this.y = y;
+            this.width = width;
+            this.block = block;
+        }
+
+        @Override
+        protected void compute() {
+            int start = blockStarts[block]*width;
+            int end = blockStarts[block+1]*width;
+            int numBlocks = buffers.length;
+
+            System.arraycopy(buffers[block], start, y, start, end-start);
+            for (int b=block+1; b<numBlocks; b++) {
+                double [] buffer = buffers[b];
+                for (int i=start; i<end; i++) {
+                    y[i] += buffer[i];
+                }
+            }
+        }
+    }
+
+    static class InvokeAll extends RecursiveAction {
+        List<RecursiveAction> tasks;
+
+        InvokeAll(List<RecursiveAction> tasks) {
+            this.tasks = tasks;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(tasks);
+        }
+    }
+}
@@ -98,10 +98,14 @@ public class DataCacheGeneMediator implements GeneMediator {
             return null;
         }
         
-        // check given id exists
-        long geneId = Long.parseLong(symbol.substring(4));
-        long nodeId = geneId; // our assumption for datacache driven mediators
-        return nodeId;
+        try {
+            long geneId = Long.parseLong(symbol.substring(4));
+            long nodeId = geneId; // our assumption for datacache driven mediators
+            return nodeId;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
 	}
 
 	public Set<String> getSynonyms(long organismId, String symbol) {
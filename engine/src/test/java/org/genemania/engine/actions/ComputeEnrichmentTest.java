@@ -180,6 +180,37 @@ public class ComputeEnrichmentTest {
         assertEquals(7.76573e-2, p, 1e-6);
     }
 
+    /*
+     * table based batch computation should agree with the
+     * per category computation
+     */
+    @Test
+    public void testBatchCumulHyperGeo() throws ApplicationException {
+        int N = 200;
+        int n = 30;
+        double [] logFactorials = new double[N+1];
+        for (int i=0; i<=N; i++) {
+            logFactorials[i] = org.apache.commons.math.special.Gamma.logGamma(i+1);
+        }
+
+        double [] x = {0, 1, 4, 10, 25, 30, 3};
+        double [] k = {5, 5, 6, 40, 180, 190, 0};
+        double [] pvals = new double[x.length];
+        ComputeEnrichment.computeCumulHyperGeo(x, k, N, n, logFactorials, pvals, new SimpleProgressReporter());
+
+        for (int i=0; i<x.length; i++) {
+            double expected = ComputeEnrichment.computeCumulHyperGeo(x[i], N, n, k[i]);
+            assertEquals(expected, pvals[i], 1e-12);
+        }
+
+        // matches the small example above
+        double [] p = new double[1];
+        double [] lf = new double[21];
+        System.arraycopy(logFactorials, 0, lf, 0, 21);
+        ComputeEnrichment.computeCumulHyperGeo(new double[] {4}, new double[] {6}, 20, 7, lf, p, null);
+        assertEquals(7.76573e-2, p[0], 1e-6);
+    }
+
     @Test
     public void testComputeFDRqval() {
         double[] data = {.5, .3, .8, .02, .1};
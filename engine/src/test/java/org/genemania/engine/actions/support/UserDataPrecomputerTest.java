@@ -20,8 +20,10 @@
 
 package org.genemania.engine.actions.support;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
+import no.uib.cipr.matrix.DenseVector;
 import no.uib.cipr.matrix.Matrices;
 import no.uib.cipr.matrix.Matrix;
 
@@ -34,7 +36,9 @@ import org.genemania.engine.cache.RandomDataCacheConfig;
 import org.genemania.engine.core.data.Data;
 import org.genemania.engine.core.data.Network;
 import org.genemania.engine.core.data.NetworkIds;
+import org.genemania.engine.core.data.NetworkSummary;
 import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
 import org.genemania.exception.ApplicationException;
 import org.genemania.util.NullProgressReporter;
 import org.junit.After;
@@ -263,6 +267,80 @@ public class UserDataPrecomputerTest {
         }   
     }
 
+    /*
+     * a user network with no interactions on the nodes of any
+     * core network is skipped using the network summaries, and
+     * its products should all come out zero
+     */
+    @Test
+    public void testAddDisjointNetwork() throws Exception {
+        System.out.println("addDisjointNetwork");
+        String namespace = "user1";
+        int organismId = 1;
+        UserDataPrecomputer instance = new UserDataPrecomputer(namespace, organismId, cacheBuilder.getCache(), NullProgressReporter.instance());
+
+        // summaries are written along with the core networks
+        long id = config.getOrg1NetworkIds()[0];
+        SymMatrix coreNetwork = cacheBuilder.getCache().getNetwork(Data.CORE, organismId, id).getData();
+        NetworkSummary summary = cacheBuilder.getCache().getNetworkSummary(namespace, organismId, id);
+        DenseVector rowSums = new DenseVector(coreNetwork.numRows());
+        coreNetwork.rowSums(rowSums.getData());
+        for (int i=0; i<coreNetwork.numRows(); i++) {
+            assertEquals(rowSums.get(i) != 0d, summary.getNodes().get(i));
+        }
+
+        // a network with a single interaction on nodes no core network
+        // touches. the random networks may leave no such nodes
+        int [] isolated = isolatedNodes(organismId, coreNetwork.numRows());
+        if (isolated == null) {
+            return;
+        }
+
+        SymMatrix userNetwork = new FlexSymFloatMatrix(coreNetwork.numRows());
+        userNetwork.set(isolated[0], isolated[1], 1d);
+        int userNetworkId = -1;
+
+        Network userNetworkObj = new Network(namespace, organismId, userNetworkId);
+        userNetworkObj.setData(userNetwork);
+        cacheBuilder.getCache().putNetwork(userNetworkObj);
+
+        instance.addNetwork(userNetworkId, userNetwork);
+
+        Matrix userKtK_BASIC = cacheBuilder.getCache().getKtK(namespace, organismId, Constants.DataFileNames.KtK_BASIC.getCode()).getData();
+        NetworkIds userNetworkIds = cacheBuilder.getCache().getNetworkIds(namespace, organismId);
+        int newIndex = userNetworkIds.getIndexForId(userNetworkId)+1;
+
+        assertEquals(2d, userKtK_BASIC.get(0, newIndex), 10e-10);
+        assertEquals(2d, userKtK_BASIC.get(newIndex, newIndex), 10e-10);
+        for (int i=1; i<newIndex; i++) {
+            assertEquals(0d, userKtK_BASIC.get(newIndex, i), 0d);
+            assertEquals(0d, userKtK_BASIC.get(i, newIndex), 0d);
+        }
+    }
+
+    /*
+     * two nodes without interactions in any of the core networks
+     */
+    private int [] isolatedNodes(int organismId, int numNodes) throws ApplicationException {
+        boolean [] used = new boolean[numNodes];
+        for (long id: config.getOrg1NetworkIds()) {
+            BitSet nodes = cacheBuilder.getCache().getNetworkSummary(Data.CORE, organismId, id).getNodes();
+            for (int i=0; i<numNodes; i++) {
+                used[i] = used[i] || nodes.get(i);
+            }
+        }
+
+        int [] isolated = new int[2];
+        int n = 0;
+        for (int i=0; i<numNodes && n<2; i++) {
+            if (!used[i]) {
+                isolated[n++] = i;
+            }
+        }
+
+        return n == 2 ? isolated : null;
+    }
+
     /*
      * adding a second user network is a bit different from the first one,
      * since the second one requires computations against other user networks
@@ -19,6 +19,7 @@
 
 package org.genemania.engine.cache;
 
+import java.io.File;
 import java.util.List;
 
 import org.junit.After;
@@ -93,4 +94,19 @@ public class FileSerializedObjectCacheTest {
         
     }
 
+    /*
+     * writes go through a temp file, which shouldn't be left behind
+     */
+    @Test public void testOverwrite() throws Exception {
+        IObjectCache cache = new FileSerializedObjectCache(tempDir.getTempDir());
+
+        String [] key = {"A", "B.txt"};
+        cache.put(key, "first", true);
+        cache.put(key, "second", true);
+
+        assertEquals("second", cache.get(key, true));
+        assertEquals(1, cache.list(new String[] {"A"}).size());
+        assertEquals(1, new File(tempDir.getTempDir(), "A").list().length);
+    }
+
 }
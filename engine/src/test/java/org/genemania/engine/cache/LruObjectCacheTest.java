@@ -0,0 +1,319 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.genemania.engine.core.data.GoAnnotations;
+import org.genemania.engine.matricks.custom.FlexFloatMatrix;
+import org.genemania.exception.ApplicationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LruObjectCacheTest {
+
+    public static TempDirManager tempDir = new TempDirManager();
+
+    // each test object is a long[100], ~816 bytes
+    static final int OBJECT_LENGTH = 100;
+    static final long OBJECT_SIZE = ObjectSizeEstimator.estimate(new long[OBJECT_LENGTH]);
+
+    FileSerializedObjectCache fileCache;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir.setUp();
+        fileCache = new FileSerializedObjectCache(tempDir.getTempDir());
+        for (int i=0; i<5; i++) {
+            fileCache.put(key("CORE", 1, i), new long[OBJECT_LENGTH], false);
+            fileCache.put(key("CORE", 2, i), new long[OBJECT_LENGTH], false);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        tempDir.tearDown();
+    }
+
+    static String [] key(String namespace, long organismId, int i) {
+        return new String [] {namespace, "" + organismId, "obj" + i};
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        LruObjectCache cache = new LruObjectCache(fileCache, 10*OBJECT_SIZE, null);
+
+        Object first = cache.get(key("CORE", 1, 0), false);
+        Object second = cache.get(key("CORE", 1, 0), false);
+        assertSame(first, second);
+
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getLoads());
+        assertEquals(1, cache.getSize());
+        assertEquals(OBJECT_SIZE, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        LruObjectCache cache = new LruObjectCache(fileCache, 3*OBJECT_SIZE, null);
+
+        cache.get(key("CORE", 1, 0), false);
+        cache.get(key("CORE", 1, 1), false);
+        cache.get(key("CORE", 1, 2), false);
+
+        // touch 0 so 1 is the oldest
+        cache.get(key("CORE", 1, 0), false);
+        cache.get(key("CORE", 1, 3), false);
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getSize());
+        assertTrue(cache.getTotalBytes() <= cache.getMaxBytes());
+
+        long loads = cache.getLoads();
+        cache.get(key("CORE", 1, 0), false);
+        assertEquals(loads, cache.getLoads());
+        cache.get(key("CORE", 1, 1), false);
+        assertEquals(loads + 1, cache.getLoads());
+    }
+
+    @Test
+    public void testPinnedOrganism() throws Exception {
+        LruObjectCache cache = new LruObjectCache(fileCache, 3*OBJECT_SIZE, new long [] {2});
+
+        cache.get(key("CORE", 2, 0), false);
+        for (int i=0; i<5; i++) {
+            cache.get(key("CORE", 1, i), false);
+        }
+
+        long loads = cache.getLoads();
+        cache.get(key("CORE", 2, 0), false);
+        assertEquals(loads, cache.getLoads());
+
+        // pinning only applies to core data
+        assertFalse(cache.isPinned(key("user1", 2, 0)));
+    }
+
+    @Test
+    public void testTooBigNotCached() throws Exception {
+        LruObjectCache cache = new LruObjectCache(fileCache, OBJECT_SIZE/2, null);
+
+        cache.get(key("CORE", 1, 0), false);
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testVolatileSkipsCache() throws Exception {
+        LruObjectCache cache = new LruObjectCache(fileCache, 10*OBJECT_SIZE, null);
+
+        cache.put(key("user1", 1, 0), new long [] {1}, true);
+        cache.get(key("user1", 1, 0), true);
+        cache.get(key("user1", 1, 0), true);
+
+        assertEquals(0, cache.getSize());
+        assertEquals(2, cache.getLoads());
+    }
+
+    @Test
+    public void testRemoveOrganism() throws Exception {
+        LruObjectCache cache = new LruObjectCache(fileCache, 10*OBJECT_SIZE, null);
+
+        cache.get(key("CORE", 1, 0), false);
+        cache.get(key("CORE", 1, 1), false);
+        cache.get(key("CORE", 2, 0), false);
+
+        cache.remove(new String [] {"CORE", "1"});
+        assertEquals(1, cache.getSize());
+        assertEquals(OBJECT_SIZE, cache.getTotalBytes());
+        assertFalse(cache.exists(key("CORE", 1, 0)));
+    }
+
+    @Test
+    public void testClearMemCache() throws Exception {
+        LruObjectCache cache = new LruObjectCache(fileCache, 10*OBJECT_SIZE, null);
+        DataCache dataCache = new DataCache(cache);
+
+        cache.get(key("CORE", 1, 0), false);
+        dataCache.clearMemCache();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getTotalBytes());
+
+        // still in the underlying cache
+        assertNotNull(cache.get(key("CORE", 1, 0), false));
+    }
+
+    /*
+     * underlying cache that holds every get until released,
+     * counting how many reach it
+     */
+    static class SlowObjectCache extends FileSerializedObjectCache {
+        AtomicInteger gets = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        SlowObjectCache(String cacheDir) {
+            super(cacheDir);
+        }
+
+        @Override
+        public Object get(String [] key, boolean isVolatile) throws ApplicationException {
+            gets.incrementAndGet();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                throw new ApplicationException(e);
+            }
+            return super.get(key, isVolatile);
+        }
+    }
+
+    @Test
+    public void testSingleFlightLoad() throws Exception {
+        SlowObjectCache slowCache = new SlowObjectCache(tempDir.getTempDir());
+        final LruObjectCache cache = new LruObjectCache(slowCache, 10*OBJECT_SIZE, null);
+
+        int numThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (int i=0; i<numThreads; i++) {
+            results.add(executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    return cache.get(key("CORE", 1, 0), false);
+                }
+            }));
+        }
+
+        // give everyone time to pile up on the load
+        while (cache.getMisses() + cache.getHits() < numThreads) {
+            Thread.sleep(10);
+        }
+        slowCache.release.countDown();
+
+        Object first = results.get(0).get();
+        for (Future<Object> result: results) {
+            assertSame(first, result.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1, slowCache.gets.get());
+        assertEquals(1, cache.getLoads());
+    }
+
+    /*
+     * a load on one key mustn't hold up another
+     */
+    @Test
+    public void testUnrelatedKeysLoadInParallel() throws Exception {
+        SlowObjectCache slowCache = new SlowObjectCache(tempDir.getTempDir());
+        final LruObjectCache cache = new LruObjectCache(slowCache, 10*OBJECT_SIZE, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Object> a = executor.submit(new Callable<Object>() {
+            public Object call() throws Exception {
+                return cache.get(key("CORE", 1, 0), false);
+            }
+        });
+        Future<Object> b = executor.submit(new Callable<Object>() {
+            public Object call() throws Exception {
+                return cache.get(key("CORE", 1, 1), false);
+            }
+        });
+
+        while (slowCache.gets.get() < 2) {
+            Thread.sleep(10);
+        }
+        slowCache.release.countDown();
+
+        assertNotNull(a.get());
+        assertNotNull(b.get());
+        executor.shutdown();
+        assertEquals(2, cache.getLoads());
+    }
+
+    @Test
+    public void testPutReplacesCachedValue() throws Exception {
+        LruObjectCache cache = new LruObjectCache(fileCache, 10*OBJECT_SIZE, null);
+
+        cache.get(key("CORE", 1, 0), false);
+        long [] replacement = new long [] {42};
+        cache.put(key("CORE", 1, 0), replacement, false);
+
+        assertSame(replacement, cache.get(key("CORE", 1, 0), false));
+        assertEquals(ObjectSizeEstimator.estimate(replacement), cache.getTotalBytes());
+    }
+
+    @Test
+    public void testDerivedObject() throws Exception {
+        LruObjectCache cache = new LruObjectCache(fileCache, 10*OBJECT_SIZE, null);
+        final AtomicInteger builds = new AtomicInteger();
+        Callable<Object> loader = new Callable<Object>() {
+            public Object call() throws Exception {
+                builds.incrementAndGet();
+                return new long[OBJECT_LENGTH];
+            }
+        };
+
+        String [] derivedKey = key("CORE", 1, 99);
+        Object first = cache.getDerived(derivedKey, loader);
+        Object second = cache.getDerived(derivedKey, loader);
+        assertSame(first, second);
+        assertEquals(1, builds.get());
+        assertEquals(OBJECT_SIZE, cache.getTotalBytes());
+
+        // memory only, and dropped with the organism
+        assertFalse(fileCache.exists(derivedKey));
+        cache.remove(new String [] {"CORE", "1"});
+        assertEquals(0, cache.getTotalBytes());
+        cache.getDerived(derivedKey, loader);
+        assertEquals(2, builds.get());
+    }
+
+    /*
+     * genes by categories, but only a few annotations each. weighed
+     * as dense this would be ~800MB and never fit
+     */
+    @Test
+    public void testSparseAnnotationsWeighedByEntries() throws Exception {
+        int numGenes = 20000;
+        FlexFloatMatrix data = new FlexFloatMatrix(numGenes, 5000);
+        for (int i=0; i<numGenes; i++) {
+            data.set(i, i % 5000, 1);
+            data.set(i, (7*i) % 5000, 1);
+        }
+        GoAnnotations annos = new GoAnnotations(1, "BP");
+        annos.setData(data);
+
+        long size = ObjectSizeEstimator.estimate(annos);
+        assertTrue(size > 2*numGenes*ObjectSizeEstimator.SPARSE_ELEMENT_BYTES);
+        assertTrue(size < 4*1024*1024);
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.genemania.engine.matricks.custom.MappedSymFloatMatrix;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedObjectCacheTest {
+
+    public static TempDirManager tempDir = new TempDirManager();
+
+    @Before
+    public void setUp() {
+        tempDir.setUp();
+    }
+
+    @After
+    public void tearDown() {
+        tempDir.tearDown();
+    }
+
+    static FlexSymFloatMatrix randomMatrix(Random random, int size, double sparsity) {
+        FlexSymFloatMatrix m = new FlexSymFloatMatrix(size);
+        for (int i=0; i<size; i++) {
+            for (int j=0; j<i; j++) {
+                if (random.nextDouble() < sparsity) {
+                    m.set(i, j, random.nextFloat());
+                }
+            }
+        }
+        m.compact();
+        return m;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Random random = new Random(1234);
+        FlexSymFloatMatrix m = randomMatrix(random, 50, 0.2);
+        m.set(3, 3, 0.5);
+
+        IObjectCache cache = new MappedObjectCache(tempDir.getTempDir());
+        String [] key = {"CORE", "1", "10"};
+        cache.put(key, m, false);
+
+        assertTrue(cache.exists(key));
+        Object value = cache.get(key, false);
+        assertTrue(value instanceof MappedSymFloatMatrix);
+
+        SymMatrix mapped = (SymMatrix) value;
+        assertEquals(m.numRows(), mapped.numRows());
+        for (int i=0; i<m.numRows(); i++) {
+            for (int j=0; j<m.numCols(); j++) {
+                assertEquals(m.get(i, j), mapped.get(i, j), 0d);
+            }
+        }
+
+        assertEquals(m.elementSum(), mapped.elementSum(), 1e-6);
+        assertEquals(m.elementMultiplySum(m), mapped.elementMultiplySum(m), 1e-6);
+        assertEquals(m.elementMultiplySum(m), m.elementMultiplySum(mapped), 1e-6);
+    }
+
+    @Test
+    public void testProducts() throws Exception {
+        Random random = new Random(42);
+        int size = 40;
+        FlexSymFloatMatrix m = randomMatrix(random, size, 0.3);
+
+        IObjectCache cache = new MappedObjectCache(tempDir.getTempDir());
+        String [] key = {"CORE", "1", "11"};
+        cache.put(key, m, false);
+        SymMatrix mapped = (SymMatrix) cache.get(key, false);
+
+        double [] x = new double[size];
+        for (int i=0; i<size; i++) {
+            x[i] = random.nextDouble();
+        }
+
+        double [] y1 = new double[size];
+        double [] y2 = new double[size];
+        m.mult(x, y1);
+        mapped.mult(x, y2);
+        assertArrayEquals(y1, y2, 1e-9);
+
+        m.multAdd(0.5, x, y1);
+        mapped.multAdd(0.5, x, y2);
+        assertArrayEquals(y1, y2, 1e-9);
+
+        double [] s1 = new double[size];
+        double [] s2 = new double[size];
+        m.rowSums(s1);
+        mapped.rowSums(s2);
+        assertArrayEquals(s1, s2, 1e-9);
+
+        assertEquals(m.sumDotMultOuterProd(x), mapped.sumDotMultOuterProd(x), 1e-9);
+
+        int [] rowcols = {1, 5, 7, 20, 39};
+        SymMatrix sub1 = m.subMatrix(rowcols);
+        SymMatrix sub2 = mapped.subMatrix(rowcols);
+        assertEquals(sub1.elementSum(), sub2.elementSum(), 1e-6);
+    }
+
+    @Test
+    public void testCursor() throws Exception {
+        Random random = new Random(7);
+        FlexSymFloatMatrix m = randomMatrix(random, 30, 0.25);
+
+        IObjectCache cache = new MappedObjectCache(tempDir.getTempDir());
+        String [] key = {"CORE", "1", "12"};
+        cache.put(key, m, false);
+        SymMatrix mapped = (SymMatrix) cache.get(key, false);
+
+        double sum = 0d;
+        MatrixCursor cursor = mapped.cursor();
+        while (cursor.next()) {
+            assertEquals(m.get(cursor.row(), cursor.col()), cursor.val(), 0d);
+            sum += cursor.val();
+        }
+        assertEquals(m.elementSum(), sum, 1e-6);
+    }
+
+    /*
+     * serializing a mapped matrix should give back a heap copy
+     */
+    @Test
+    public void testSerializable() throws Exception {
+        FlexSymFloatMatrix m = randomMatrix(new Random(3), 20, 0.3);
+
+        IObjectCache cache = new MappedObjectCache(tempDir.getTempDir());
+        String [] key = {"CORE", "1", "13"};
+        cache.put(key, m, false);
+        MappedSymFloatMatrix mapped = (MappedSymFloatMatrix) cache.get(key, false);
+
+        ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream());
+        out.writeObject(mapped);
+        out.close();
+
+        FlexSymFloatMatrix copy = mapped.toFlexSymFloatMatrix();
+        assertEquals(m.elementSum(), copy.elementSum(), 1e-6);
+    }
+
+    @Test(expected=MatricksException.class)
+    public void testReadOnly() throws Exception {
+        FlexSymFloatMatrix m = randomMatrix(new Random(5), 10, 0.5);
+
+        IObjectCache cache = new MappedObjectCache(tempDir.getTempDir());
+        String [] key = {"CORE", "1", "14"};
+        cache.put(key, m, false);
+        SymMatrix mapped = (SymMatrix) cache.get(key, false);
+        mapped.set(1, 0, 1d);
+    }
+
+    /*
+     * non-matrix objects go through serialization, and
+     * existing .ser matrices are still readable
+     */
+    @Test
+    public void testFallback() throws Exception {
+        FileSerializedObjectCache fileCache = new FileSerializedObjectCache(tempDir.getTempDir());
+        FlexSymFloatMatrix m = randomMatrix(new Random(9), 10, 0.5);
+        String [] matrixKey = {"CORE", "1", "15"};
+        fileCache.put(matrixKey, m, false);
+
+        IObjectCache cache = new MappedObjectCache(tempDir.getTempDir());
+        String [] idsKey = {"CORE", "1", "ids"};
+        cache.put(idsKey, new long[] {1, 2, 3}, false);
+
+        long [] ids = (long []) cache.get(idsKey, false);
+        assertEquals(3, ids.length);
+
+        Object value = cache.get(matrixKey, false);
+        assertTrue(value instanceof FlexSymFloatMatrix);
+
+        List<String []> keys = cache.list(new String [] {"CORE", "1"});
+        assertEquals(2, keys.size());
+
+        cache.remove(matrixKey);
+        assertFalse(cache.exists(matrixKey));
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.genemania.dto.EnrichmentEngineRequestDto;
+import org.genemania.engine.core.data.Data;
+import org.junit.Test;
+
+public class QueryResultCacheTest {
+
+    static final int OBJECT_LENGTH = 100;
+
+    static long entrySize() throws Exception {
+        return QueryResultCache.serialize(new long[OBJECT_LENGTH]).length;
+    }
+
+    static long [] response(long value) {
+        long [] response = new long[OBJECT_LENGTH];
+        Arrays.fill(response, value);
+        return response;
+    }
+
+    @Test
+    public void testGetReturnsCopy() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10*entrySize());
+        assertTrue(cache.isEnabled());
+
+        assertNull(cache.get("a"));
+        cache.put("a", Data.CORE, response(1), cache.getGeneration());
+
+        long [] first = (long []) cache.get("a");
+        assertArrayEquals(response(1), first);
+
+        // changing a returned response must not change the cached one
+        first[0] = 42;
+        long [] second = (long []) cache.get("a");
+        assertNotSame(first, second);
+        assertEquals(1, second[0]);
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        QueryResultCache cache = new QueryResultCache(0);
+        assertFalse(cache.isEnabled());
+
+        cache.put("a", Data.CORE, response(1), cache.getGeneration());
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+        QueryResultCache cache = new QueryResultCache(3*entrySize());
+
+        cache.put("a", Data.CORE, response(1), cache.getGeneration());
+        cache.put("b", Data.CORE, response(2), cache.getGeneration());
+        cache.put("c", Data.CORE, response(3), cache.getGeneration());
+        assertEquals(3, cache.getSize());
+        assertEquals(3*entrySize(), cache.getTotalBytes());
+
+        // touch a, so b is the least recently used
+        assertNotNull(cache.get("a"));
+        cache.put("d", Data.CORE, response(4), cache.getGeneration());
+
+        assertEquals(3, cache.getSize());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertNotNull(cache.get("d"));
+    }
+
+    @Test
+    public void testTooLargeNotCached() throws Exception {
+        QueryResultCache cache = new QueryResultCache(entrySize() - 1);
+        cache.put("a", Data.CORE, response(1), cache.getGeneration());
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testInvalidateNamespace() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10*entrySize());
+
+        cache.put("core", Data.CORE, response(1), cache.getGeneration());
+        cache.put("user1", "user1", response(2), cache.getGeneration());
+        cache.put("user2", "user2", response(3), cache.getGeneration());
+
+        cache.invalidateNamespace("user1");
+        assertNull(cache.get("user1"));
+        assertNotNull(cache.get("user2"));
+        assertNotNull(cache.get("core"));
+        assertEquals(2*entrySize(), cache.getTotalBytes());
+
+        // changes to core data affect every query
+        cache.invalidateNamespace(Data.CORE);
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    public void testStaleGenerationNotCached() throws Exception {
+        QueryResultCache cache = new QueryResultCache(10*entrySize());
+
+        // data changes while the response is being computed
+        long generation = cache.getGeneration();
+        cache.invalidateNamespace("user1");
+        cache.put("a", "user2", response(1), generation);
+        assertNull(cache.get("a"));
+
+        generation = cache.getGeneration();
+        cache.clear();
+        cache.put("a", Data.CORE, response(1), generation);
+        assertNull(cache.get("a"));
+
+        cache.put("a", Data.CORE, response(1), cache.getGeneration());
+        assertNotNull(cache.get("a"));
+    }
+
+    @Test
+    public void testEnrichmentKey() throws Exception {
+        List<Long> nodes = new ArrayList<Long>();
+        for (long i=0; i<20; i++) {
+            nodes.add(i);
+        }
+
+        EnrichmentEngineRequestDto request = enrichmentRequest(nodes, 0.1);
+        String key = QueryResultCache.getKey(request);
+
+        // order of the genes doesn't matter
+        List<Long> shuffled = new ArrayList<Long>(nodes);
+        Collections.shuffle(shuffled);
+        assertEquals(key, QueryResultCache.getKey(enrichmentRequest(shuffled, 0.1)));
+
+        // but the genes and parameters do
+        assertFalse(key.equals(QueryResultCache.getKey(enrichmentRequest(nodes.subList(1, 20), 0.1))));
+        assertFalse(key.equals(QueryResultCache.getKey(enrichmentRequest(nodes, 0.05))));
+    }
+
+    static EnrichmentEngineRequestDto enrichmentRequest(List<Long> nodes, double qval) {
+        EnrichmentEngineRequestDto request = new EnrichmentEngineRequestDto();
+        request.setOrganismId(1);
+        request.setOntologyId(2);
+        request.setNodes(nodes);
+        request.setqValueThreshold(qval);
+        request.setMinCategories(10);
+        return request;
+    }
+}
@@ -165,7 +165,7 @@ public class RandomDataCacheBuilder {
             networkIds[n - 1] = networkId;
 
             Network network = new Network(Data.CORE, organismId, networkId, data);
-            getCache().putNetwork(network);
+            getCache().putNetwork(network, true);
 
             networkDegrees.zero();
             data.rowSums(networkDegrees.getData());
@@ -342,6 +342,44 @@ public class MatrixUtilsTest {
 
     }
 
+    /*
+     * compare against sorting everything, with tied scores, scores
+     * under the threshold, repeated query nodes, and sparse vectors
+     */
+    @Test
+    public void testGetIndicesForTopScoresMatchesSort() {
+        java.util.Random random = new java.util.Random(41);
+
+        for (int repeat=0; repeat<50; repeat++) {
+            int n = 1 + random.nextInt(300);
+            double [] data = new double[n];
+            for (int i=0; i<n; i++) {
+                // coarse values so there are plenty of ties
+                data[i] = Math.round(random.nextGaussian()*4)/4d;
+            }
+
+            List<Integer> positives = new ArrayList<Integer>();
+            int numPositives = random.nextInt(6);
+            for (int k=0; k<numPositives; k++) {
+                positives.add(random.nextInt(n));
+            }
+            if (numPositives > 0) {
+                positives.add(positives.get(0));
+            }
+
+            int limitResults = random.nextInt(n + 5);
+            double threshold = random.nextBoolean() ? 0d : -0.5d;
+
+            Vector scores = new DenseVector(data);
+            assertArrayEquals(MatrixUtils.getIndicesForTopScoresBySort(scores, positives, limitResults, threshold),
+                    MatrixUtils.getIndicesForTopScores(scores, positives, limitResults, threshold));
+
+            Vector sparse = new SparseVector(scores);
+            assertArrayEquals(MatrixUtils.getIndicesForTopScoresBySort(sparse, positives, limitResults, threshold),
+                    MatrixUtils.getIndicesForTopScores(sparse, positives, limitResults, threshold));
+        }
+    }
+
     // these constants from a numerical example that came up
     static final double TEST_VAL = 5.64385619d;
     static final int TEST_DATA_LEN = 24;
@@ -0,0 +1,68 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.genemania.engine.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TopScoreHeapTest {
+
+    @Test
+    public void testKeepsBest() {
+        double [] x = {5, 2, 3, 8, 4, 8, 1};
+        TopScoreHeap heap = new TopScoreHeap(4);
+        for (int i=0; i<x.length; i++) {
+            heap.offer(i, x[i]);
+        }
+        assertEquals(4, heap.size());
+
+        int [] indices = new int[4];
+        double [] scores = new double[4];
+        heap.drain(indices, scores);
+        assertEquals(0, heap.size());
+
+        // tie between 3 and 5 goes to the lower index
+        assertArrayEquals(new int[] {3, 5, 0, 4}, indices);
+        assertArrayEquals(new double[] {8, 8, 5, 4}, scores, 0d);
+    }
+
+    /*
+     * when the cut falls on a tie, the lower indices are kept
+     */
+    @Test
+    public void testTieAtCutoff() {
+        TopScoreHeap heap = new TopScoreHeap(2);
+        heap.offer(0, 1d);
+        heap.offer(1, 1d);
+        heap.offer(2, 1d);
+        heap.offer(3, 2d);
+
+        int [] indices = new int[2];
+        heap.drain(indices, new double[2]);
+        assertArrayEquals(new int[] {3, 0}, indices);
+    }
+
+    @Test
+    public void testEmpty() {
+        TopScoreHeap heap = new TopScoreHeap(0);
+        heap.offer(0, 1d);
+        assertEquals(0, heap.size());
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.genemania.engine.core.data;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.genemania.exception.ApplicationException;
+import org.junit.Test;
+
+public class IdIndexTest {
+
+    static long [] randomIds(int n, long seed) {
+        Random random = new Random(seed);
+        long [] ids = new long[n];
+        for (int i=0; i<n; i++) {
+            ids[i] = random.nextLong();
+        }
+        return ids;
+    }
+
+    static void checkIndex(long [] ids) throws ApplicationException {
+        IdIndex index = IdIndex.build(ids);
+        for (int i=0; i<ids.length; i++) {
+            assertEquals(i, index.indexOf(ids, ids[i]));
+        }
+        assertEquals(-1, index.indexOf(ids, Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testUnsorted() throws ApplicationException {
+        checkIndex(randomIds(1000, 1));
+        checkIndex(new long[] {5, 3, 9, 0, -2});
+        checkIndex(new long[] {});
+    }
+
+    @Test
+    public void testSorted() throws ApplicationException {
+        long [] ids = randomIds(1000, 2);
+        Arrays.sort(ids);
+        checkIndex(ids);
+
+        assertEquals(-1, IdIndex.build(new long[] {1, 3, 5}).indexOf(new long[] {1, 3, 5}, 4));
+    }
+
+    @Test(expected=ApplicationException.class)
+    public void testRepeated() throws ApplicationException {
+        IdIndex.build(new long[] {4, 7, 2, 7});
+    }
+
+    @Test
+    public void testShared() throws ApplicationException {
+        long [] ids = new long[] {3, 1, 2};
+        assertSame(IdIndex.forIds(ids), IdIndex.forIds(ids));
+    }
+
+    @Test
+    public void testNodeIdsBulk() throws ApplicationException {
+        NodeIds nodeIds = new NodeIds(1);
+        nodeIds.setNodeIds(new long[] {40, 10, 30, 20});
+
+        assertArrayEquals(new int[] {1, 3, 0}, nodeIds.indicesForIds(new long[] {10, 20, 40}));
+        assertArrayEquals(new long[] {30, 40}, nodeIds.idsForIndices(new int[] {2, 0}));
+        assertTrue(nodeIds.containsId(30));
+        assertFalse(nodeIds.containsId(50));
+    }
+
+    @Test(expected=ApplicationException.class)
+    public void testNodeIdsMissing() throws ApplicationException {
+        NodeIds nodeIds = new NodeIds(1);
+        nodeIds.setNodeIds(new long[] {40, 10, 30, 20});
+        nodeIds.indicesForIds(new long[] {10, 50});
+    }
+
+    @Test
+    public void testNetworkIdsAddRemove() throws ApplicationException {
+        NetworkIds networkIds = new NetworkIds(Data.CORE, 1);
+        networkIds.setNetworkIds(new long[] {7, 8});
+        assertEquals(1, networkIds.getIndexForId(8));
+
+        networkIds.addNetwork(-1);
+        assertEquals(2, networkIds.getIndexForId(-1));
+
+        networkIds.removeNetwork(7);
+        assertArrayEquals(new int[] {1, 0}, networkIds.indicesForIds(new long[] {-1, 8}));
+        assertFalse(networkIds.containsId(7));
+    }
+
+    @Test
+    public void testAttributeGroups() throws ApplicationException {
+        HashMap<Long, ArrayList<Long>> groups = new HashMap<Long, ArrayList<Long>>();
+        groups.put(1L, new ArrayList<Long>(Arrays.asList(11L, 13L, 12L)));
+        groups.put(2L, new ArrayList<Long>(Arrays.asList(21L)));
+
+        AttributeGroups attributeGroups = new AttributeGroups(Data.CORE, 1);
+        attributeGroups.setAttributeGroups(groups);
+
+        assertEquals(2, attributeGroups.getIndexForAttributeId(1, 12));
+        assertArrayEquals(new int[] {2, 0}, attributeGroups.indicesForIds(1, new long[] {12, 11}));
+        assertArrayEquals(new long[] {13, 11}, attributeGroups.idsForIndices(1, new int[] {1, 0}));
+        assertEquals(2, attributeGroups.getGroupForAttribute(21));
+        assertEquals(1, attributeGroups.getGroupForAttribute(13));
+    }
+}
@@ -21,11 +21,15 @@ package org.genemania.engine.core.evaluation;
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.genemania.engine.Utils;
 import org.genemania.engine.core.KHeap;
+import org.genemania.engine.core.data.NodeIds;
 import org.genemania.engine.core.evaluation.correlation.CorrelationFactory.CorrelationType;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
 import org.genemania.exception.ApplicationException;
 
 import org.junit.Test;
@@ -872,6 +876,52 @@ public class ProfileToNetworkDriverTest {
         assertNull(networkMap.get("GENE1-GENE3")); // no features in common, shouldn't appear. if you turn threshold off it does!
     }
 
+    /*
+     * setting the network straight into a matrix should give
+     * the same interactions as writing it out
+     */
+    @Test
+    public void testProcessToMatrix() throws Exception {
+        String data = "header,feature1,feature2,feature3\n" +
+        "10,0.2,0.1,0.3\n" +
+        "11,0.8,0.9,0.8\n" +
+        "12,0.1,0.3,0.4\n" +
+        "13,0.8,0.2,0.3\n" +
+        "14,0.5,0.6,0.1\n";
+
+        Map<String, String> synonyms = new LinkedHashMap<String, String>();
+        NodeIds nodeIds = new NodeIds(1);
+        nodeIds.setNodeIds(new long[] {14, 13, 12, 11, 10, 9});
+        for (long id: nodeIds.getNodeIds()) {
+            synonyms.put("" + id, "" + id);
+        }
+
+        StringWriter writer = new StringWriter();
+        ProfileToNetworkDriver loader = new ProfileToNetworkDriver();
+        loader.setK(2);
+        loader.setSepChar(',');
+        loader.setSynonyms(synonyms);
+        loader.setThreshold(ProfileToNetworkDriver.THRESHOLD_OFF);
+        loader.process(new StringReader(data), writer);
+        Map<String, Double> networkMap = Utils.networkToMap(new StringReader(writer.toString()), '\t');
+
+        SymMatrix matrix = new FlexSymFloatMatrix(nodeIds.getNodeIds().length);
+        loader = new ProfileToNetworkDriver();
+        loader.setK(2);
+        loader.setSepChar(',');
+        loader.setSynonyms(synonyms);
+        loader.setThreshold(ProfileToNetworkDriver.THRESHOLD_OFF);
+        int n = loader.process(new StringReader(data), matrix, nodeIds);
+
+        assertEquals(networkMap.size(), n);
+        for (Map.Entry<String, Double> entry: networkMap.entrySet()) {
+            String [] ids = entry.getKey().split("-");
+            int i = nodeIds.getIndexForId(Long.parseLong(ids[0]));
+            int j = nodeIds.getIndexForId(Long.parseLong(ids[1]));
+            assertEquals(entry.getValue(), matrix.get(i, j), testTolerance);
+        }
+    }
+
     @Test
     public void testLevelControl() throws Exception {
         StringBuilder synonyms = new StringBuilder();
@@ -0,0 +1,193 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.evaluation;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.Vector;
+
+import org.genemania.engine.SimpleProgressReporter;
+import org.genemania.engine.core.KHeap;
+import org.genemania.engine.core.evaluation.correlation.Correlation;
+import org.genemania.engine.core.evaluation.correlation.MutualInformationBinary;
+import org.genemania.engine.core.evaluation.correlation.Pearson;
+import org.genemania.engine.core.evaluation.correlation.Spearman;
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.util.NullProgressReporter;
+import org.genemania.util.ProgressReporter;
+import org.junit.Test;
+
+public class TopCorrelationsTest {
+    private static double testTolerance = 1e-10;
+
+    // more than two tiles worth, with a few repeated genes
+    private static final int NUM_ROWS = 2 * TopCorrelations.TILE_SIZE + 17;
+    private static final int NUM_FEATURES = 20;
+
+    @Test
+    public void testPearson() throws Exception {
+        double [][] data = randomProfile(new Random(11), false);
+        int [][] groups = groups(new Random(12));
+        compare(new Pearson(), new Pearson(), data, groups, false);
+    }
+
+    @Test
+    public void testSpearman() throws Exception {
+        double [][] data = randomProfile(new Random(13), false);
+        int [][] groups = groups(new Random(14));
+        compare(new Spearman(), new Spearman(), data, groups, false);
+    }
+
+    /*
+     * goes through computeCorrelations() on the pool. binary mutual
+     * information has lots of ties, so keep them all
+     */
+    @Test
+    public void testMutualInformation() throws Exception {
+        double [][] data = randomProfile(new Random(15), true);
+        int [][] groups = groups(new Random(16));
+        compare(new MutualInformationBinary(), new MutualInformationBinary(), data, groups, true);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        double [][] data = randomProfile(new Random(17), false);
+        Correlation cor = new Pearson();
+        cor.init(profile(data));
+
+        ProgressReporter progress = new SimpleProgressReporter();
+        progress.cancel();
+
+        TopCorrelations correlations = new TopCorrelations(cor, groups(new Random(18)), 5, false, false, 0d, progress);
+        try {
+            correlations.compute(new ForkJoinPool(4));
+            fail("expected cancellation");
+        }
+        catch (CancellationException e) {
+        }
+    }
+
+    /*
+     * scores on a pool of 4 and compares to offering every pair to the
+     * heaps in turn
+     */
+    void compare(Correlation cor, Correlation reference, double [][] data, int [][] groups, boolean keepAllTies) throws Exception {
+        int k = 7;
+        cor.init(profile(data));
+        reference.init(profile(data));
+
+        TopCorrelations correlations = new TopCorrelations(cor, groups, k, keepAllTies, false, 0d, NullProgressReporter.instance());
+        KHeap [] heaps = correlations.compute(new ForkJoinPool(4));
+
+        KHeap [] expected = new KHeap[groups.length];
+        for (int i=0; i<groups.length; i++) {
+            expected[i] = new KHeap(k, keepAllTies);
+        }
+        for (int i=0; i<groups.length; i++) {
+            for (int j=i+1; j<groups.length; j++) {
+                double total = 0;
+                for (int i1: groups[i]) {
+                    for (int j1: groups[j]) {
+                        total += reference.computeCorrelations(i1, j1);
+                    }
+                }
+                total = total / (groups[i].length * groups[j].length);
+                expected[i].offer(groups[j][0], total);
+                expected[j].offer(groups[i][0], total);
+            }
+        }
+
+        assertEquals(groups.length, heaps.length);
+        for (int i=0; i<groups.length; i++) {
+            double [] wanted = sortedWeights(expected[i]);
+            double [] actual = sortedWeights(heaps[i]);
+            assertEquals(wanted.length, actual.length);
+            for (int j=0; j<wanted.length; j++) {
+                assertEquals(wanted[j], actual[j], testTolerance);
+            }
+        }
+    }
+
+    /*
+     * ids of tied correlations depend on the order they were offered in, so
+     * only compare the weights
+     */
+    static double [] sortedWeights(KHeap heap) {
+        double [] weights = new double[heap.size()];
+        for (int i=0; i<weights.length; i++) {
+            weights[i] = heap.getWeight(i);
+        }
+        Arrays.sort(weights);
+        return weights;
+    }
+
+    static double [][] randomProfile(Random random, boolean binary) {
+        double [][] data = new double[NUM_ROWS][NUM_FEATURES];
+        for (int i=0; i<NUM_ROWS; i++) {
+            for (int j=0; j<NUM_FEATURES; j++) {
+                data[i][j] = binary ? random.nextInt(2) : random.nextGaussian();
+            }
+        }
+        return data;
+    }
+
+    static ProfileData profile(double [][] data) {
+        List<Vector> geneExpression = new ArrayList<Vector>();
+        List<String> geneName = new ArrayList<String>();
+        for (int i=0; i<data.length; i++) {
+            geneExpression.add(new DenseVector(data[i].clone()));
+            geneName.add("GENE" + i);
+        }
+        return new ProfileData(geneExpression, geneName);
+    }
+
+    /*
+     * most rows on their own, every tenth added to the group before it
+     */
+    static int [][] groups(Random random) {
+        List<List<Integer>> groups = new ArrayList<List<Integer>>();
+        for (int i=0; i<NUM_ROWS; i++) {
+            if (i % 10 == 9) {
+                groups.get(random.nextInt(groups.size())).add(i);
+            }
+            else {
+                List<Integer> group = new ArrayList<Integer>();
+                group.add(i);
+                groups.add(group);
+            }
+        }
+
+        int [][] result = new int[groups.size()][];
+        for (int g=0; g<result.length; g++) {
+            result[g] = new int[groups.get(g).size()];
+            for (int i=0; i<result[g].length; i++) {
+                result[g][i] = groups.get(g).get(i);
+            }
+        }
+        return result;
+    }
+}
@@ -24,6 +24,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import org.genemania.engine.Constants.NetworkType;
 import org.genemania.engine.cache.NetworkMemCache;
@@ -84,6 +87,54 @@ public class CombineNetworksOnlyTest {
         assertNotNull(result);
     }
 
+    /*
+     * blocks filled concurrently give the same sum
+     */
+    @Test
+    public void testParallelCombine() throws ApplicationException {
+        FeatureWeightMap weights = getRandomFeatureWeightMap(getFeatures());
+
+        SymMatrix expected = CombineNetworksOnly.combineWithAdder(weights, Data.CORE, config.getOrg1Id(),
+                cacheBuilder.getCache(), NullProgressReporter.instance(), null, 0d);
+        SymMatrix result = CombineNetworksOnly.combineWithAdder(weights, Data.CORE, config.getOrg1Id(),
+                cacheBuilder.getCache(), NullProgressReporter.instance(), new ForkJoinPool(4), 0d);
+
+        int n = expected.numRows();
+        for (int i=0; i<n; i++) {
+            for (int j=0; j<n; j++) {
+                assertEquals(expected.get(i, j), result.get(i, j), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testSparseFeaturesTolerance() throws ApplicationException {
+        FeatureWeightMap weights = getRandomFeatureWeightMap(getFeatures());
+
+        List<Feature> all = CombineNetworksOnly.sparseFeatures(weights, 0d);
+        assertEquals(config.getOrg1NetworkIds().length, all.size());
+        for (int i=1; i<all.size(); i++) {
+            assertTrue(weights.get(all.get(i-1)) >= weights.get(all.get(i)));
+        }
+
+        // keep only those within half the largest weight
+        double max = weights.get(all.get(0));
+        List<Feature> some = CombineNetworksOnly.sparseFeatures(weights, 0.5d);
+        for (Feature feature: all) {
+            assertEquals(weights.get(feature) >= 0.5d*max, some.contains(feature));
+        }
+    }
+
+    FeatureWeightMap getRandomFeatureWeightMap(FeatureList features) {
+        Random random = new Random(config.getSeed());
+        FeatureWeightMap weights = new FeatureWeightMap();
+        for (Feature feature: features) {
+            weights.put(feature, random.nextDouble());
+        }
+
+        return weights;
+    }
+
     /*
      * set all weights to 1
      */
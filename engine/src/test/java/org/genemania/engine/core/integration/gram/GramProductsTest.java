@@ -0,0 +1,173 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.genemania.engine.core.integration.gram;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import no.uib.cipr.matrix.DenseMatrix;
+
+import org.genemania.engine.SimpleProgressReporter;
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.matricks.SymMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.genemania.exception.ApplicationException;
+import org.junit.Test;
+
+public class GramProductsTest {
+
+    static final GramProducts.PairProduct PRODUCT = new GramProducts.PairProduct() {
+        public double compute(int i, int j) {
+            return 100*i + j;
+        }
+    };
+
+    @Test
+    public void testLowerTriangle() throws Exception {
+        int n = 23;
+        GramProducts products = new GramProducts(new ForkJoinPool(4), new SimpleProgressReporter());
+        products.setTileSize(5);
+
+        DenseMatrix result = new DenseMatrix(n, n);
+        products.lowerTriangle(result, 1, n, PRODUCT);
+
+        for (int i=0; i<n; i++) {
+            for (int j=0; j<=i; j++) {
+                double expected = (j == 0) ? 0d : 100*i + j;
+                assertEquals(expected, result.get(i, j), 0d);
+                assertEquals(expected, result.get(j, i), 0d);
+            }
+        }
+    }
+
+    @Test
+    public void testRectangle() throws Exception {
+        GramProducts products = new GramProducts(new ForkJoinPool(3), new SimpleProgressReporter());
+        products.setTileSize(4);
+
+        DenseMatrix result = new DenseMatrix(20, 20);
+        products.rectangle(result, 1, 12, 12, 20, PRODUCT);
+
+        for (int i=0; i<20; i++) {
+            for (int j=0; j<20; j++) {
+                double expected = 0d;
+                if (i >= 1 && i < 12 && j >= 12) {
+                    expected = 100*i + j;
+                }
+                else if (j >= 1 && j < 12 && i >= 12) {
+                    expected = 100*j + i;
+                }
+                assertEquals(expected, result.get(i, j), 0d);
+            }
+        }
+    }
+
+    /*
+     * each tile loads its own features, so a feature is loaded
+     * once per tile it's in rather than once per pair
+     */
+    @Test
+    public void testLoadingTiles() throws Exception {
+        int n = 23;
+        int tileSize = 5;
+        GramProducts products = new GramProducts(new ForkJoinPool(4), new SimpleProgressReporter());
+        products.setTileSize(tileSize);
+
+        final AtomicInteger loads = new AtomicInteger();
+        GramProducts.FeatureSource source = new GramProducts.FeatureSource() {
+            public SymMatrix load(int i) {
+                loads.incrementAndGet();
+                FlexSymFloatMatrix feature = new FlexSymFloatMatrix(1);
+                feature.set(0, 0, i);
+                return feature;
+            }
+        };
+        GramProducts.FeatureProduct product = new GramProducts.FeatureProduct() {
+            public double compute(SymMatrix feature_i, SymMatrix feature_j) {
+                return 100*feature_i.get(0, 0) + feature_j.get(0, 0);
+            }
+        };
+
+        DenseMatrix result = new DenseMatrix(n, n);
+        products.lowerTriangle(result, 1, n, source, product);
+
+        for (int i=0; i<n; i++) {
+            for (int j=0; j<=i; j++) {
+                double expected = (j == 0) ? 0d : 100*i + j;
+                assertEquals(expected, result.get(i, j), 0d);
+                assertEquals(expected, result.get(j, i), 0d);
+            }
+        }
+
+        // blocks of 5, 5, 5, 5 and 2 features. the 5 diagonal tiles
+        // load 22 features between them, the other 10 tiles 88
+        assertEquals(110, loads.get());
+    }
+
+    @Test
+    public void testForEach() throws Exception {
+        GramProducts products = new GramProducts(new ForkJoinPool(4), new SimpleProgressReporter());
+        final double [] done = new double[50];
+        products.forEach(10, 50, new GramProducts.FeatureTask() {
+            public void run(int i) {
+                done[i] += i;
+            }
+        });
+
+        for (int i=0; i<50; i++) {
+            assertEquals(i < 10 ? 0d : i, done[i], 0d);
+        }
+    }
+
+    /*
+     * first failure is rethrown, and stops the remaining work
+     */
+    @Test
+    public void testFailure() throws Exception {
+        GramProducts products = new GramProducts(new ForkJoinPool(2), new SimpleProgressReporter());
+        products.setTileSize(2);
+        final AtomicInteger computed = new AtomicInteger();
+
+        try {
+            products.lowerTriangle(new DenseMatrix(200, 200), 0, 200, new GramProducts.PairProduct() {
+                public double compute(int i, int j) throws ApplicationException {
+                    computed.incrementAndGet();
+                    throw new ApplicationException("bad feature " + i);
+                }
+            });
+            fail("expected exception");
+        }
+        catch (ApplicationException e) {
+            assertTrue(e.getMessage().startsWith("bad feature"));
+        }
+
+        assertTrue(computed.get() < 200*201/2);
+    }
+
+    @Test(expected=CancellationException.class)
+    public void testCancel() throws Exception {
+        SimpleProgressReporter progress = new SimpleProgressReporter();
+        progress.cancel();
+
+        GramProducts products = new GramProducts(new ForkJoinPool(2), progress);
+        products.lowerTriangle(new DenseMatrix(10, 10), 1, 10, PRODUCT);
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.propagation;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import no.uib.cipr.matrix.DenseVector;
+import no.uib.cipr.matrix.sparse.CG;
+import no.uib.cipr.matrix.sparse.DefaultIterationMonitor;
+
+import org.genemania.engine.SimpleProgressReporter;
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.matricks.custom.EyePlusLaplacianMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.genemania.engine.matricks.mtj.SymWrap;
+import org.junit.Test;
+
+public class ConjugateGradientTest {
+
+    static FlexSymFloatMatrix randomNetwork(Random random, int size, int entriesPerRow) {
+        FlexSymFloatMatrix m = new FlexSymFloatMatrix(size);
+        for (int i=1; i<size; i++) {
+            for (int k=0; k<entriesPerRow; k++) {
+                m.set(i, random.nextInt(i), random.nextFloat());
+            }
+        }
+        m.compact();
+        return m;
+    }
+
+    static double [] randomLabels(Random random, int size) {
+        double [] b = new double[size];
+        for (int i=0; i<size; i++) {
+            double u = random.nextDouble();
+            b[i] = u < 0.01 ? 1d : (u < 0.5 ? -1d : -0.9d);
+        }
+        return b;
+    }
+
+    /*
+     * solve the same system with MTJ's CG, as we used to
+     */
+    static double [] mtjSolve(FlexSymFloatMatrix network, double [] b) throws Exception {
+        DenseVector x = new DenseVector(b.length);
+        CG cg = new CG(new DenseVector(b.length));
+        cg.setIterationMonitor(new DefaultIterationMonitor(100000, 1e-10, 1e-50, 1e+5));
+        cg.solve(new SymWrap(new EyePlusLaplacianMatrix(network)), new DenseVector(b), x);
+        return x.getData();
+    }
+
+    @Test
+    public void testMatchesMtj() throws Exception {
+        Random random = new Random(17);
+        int size = 10000;
+        FlexSymFloatMatrix network = randomNetwork(random, size, 4);
+        double [] b = randomLabels(random, size);
+
+        double [] expected = mtjSolve(network, b);
+
+        for (boolean preconditioned: new boolean [] {false, true}) {
+            ConjugateGradient cg = new ConjugateGradient(new ForkJoinPool(4));
+            cg.setPreconditioned(preconditioned);
+
+            double [] x = new double[size];
+            int iterations = cg.solve(network, b, x, new SimpleProgressReporter());
+
+            assertTrue(iterations > 0);
+            assertTrue(cg.getRelativeResidual() <= 1e-10);
+            assertArrayEquals(expected, x, 1e-7);
+        }
+    }
+
+    @Test
+    public void testWarmStart() throws Exception {
+        Random random = new Random(23);
+        int size = 2000;
+        FlexSymFloatMatrix network = randomNetwork(random, size, 4);
+        double [] b = randomLabels(random, size);
+
+        ConjugateGradient cg = new ConjugateGradient();
+        double [] x = new double[size];
+        int coldIterations = cg.solve(network, b, x, new SimpleProgressReporter());
+
+        // nudge the labels a bit, and restart from the previous solution
+        b[0] = 1d;
+        b[1] = 1d;
+        double [] warm = x.clone();
+        int warmIterations = cg.solve(network, b, warm, new SimpleProgressReporter());
+        assertTrue(warmIterations < coldIterations);
+
+        double [] cold = new double[size];
+        cg.solve(network, b, cold, new SimpleProgressReporter());
+        assertArrayEquals(cold, warm, 1e-7);
+    }
+
+    @Test
+    public void testAlreadySolved() throws Exception {
+        FlexSymFloatMatrix network = randomNetwork(new Random(1), 50, 2);
+        double [] x = new double[50];
+
+        ConjugateGradient cg = new ConjugateGradient();
+        assertEquals(0, cg.solve(network, new double[50], x, new SimpleProgressReporter()));
+    }
+
+    @Test(expected=CancellationException.class)
+    public void testCancel() throws Exception {
+        Random random = new Random(29);
+        int size = 500;
+        FlexSymFloatMatrix network = randomNetwork(random, size, 4);
+
+        SimpleProgressReporter progress = new SimpleProgressReporter();
+        progress.cancel();
+
+        ConjugateGradient cg = new ConjugateGradient();
+        cg.solve(network, randomLabels(random, size), new double[size], progress);
+    }
+}
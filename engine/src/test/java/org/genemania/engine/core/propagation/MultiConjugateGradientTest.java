@@ -0,0 +1,154 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.core.propagation;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.genemania.engine.SimpleProgressReporter;
+import org.genemania.engine.exception.CancellationException;
+import org.genemania.engine.matricks.custom.DenseDoubleVector;
+import org.genemania.engine.matricks.custom.FlexFloatMatrix;
+import org.genemania.engine.matricks.custom.FlexSymFloatMatrix;
+import org.genemania.engine.matricks.custom.MultiOPCSymMatrix;
+import org.genemania.engine.matricks.custom.OuterProductComboSymMatrix;
+import org.junit.Test;
+
+public class MultiConjugateGradientTest {
+
+    /*
+     * each column should come out as if solved on its own
+     */
+    @Test
+    public void testMatchesSingleSolves() throws Exception {
+        Random random = new Random(31);
+        int size = 5000;
+        int k = 4;
+        FlexSymFloatMatrix network = ConjugateGradientTest.randomNetwork(random, size, 4);
+
+        double [][] b = new double[k][];
+        double [][] x = new double[k][];
+        for (int j=0; j<k; j++) {
+            b[j] = ConjugateGradientTest.randomLabels(random, size);
+            x[j] = new double[size];
+        }
+        // one that converges immediately, to exercise dropping columns
+        b[2] = new double[size];
+
+        MultiConjugateGradient mcg = new MultiConjugateGradient(new ForkJoinPool(2));
+        int iterations = mcg.solve(network, b, x, new SimpleProgressReporter());
+
+        int maxIterations = 0;
+        for (int j=0; j<k; j++) {
+            double [] expected = new double[size];
+            ConjugateGradient cg = new ConjugateGradient();
+            int expectedIterations = cg.solve(network, b[j], expected, new SimpleProgressReporter());
+
+            assertEquals(expectedIterations, mcg.getIterations(j));
+            assertArrayEquals(expected, x[j], 1e-8);
+            assertTrue(mcg.getRelativeResidual(j) <= mcg.getRelativeTolerance());
+            maxIterations = Math.max(maxIterations, expectedIterations);
+        }
+
+        assertEquals(0, mcg.getIterations(2));
+        assertEquals(maxIterations, iterations);
+    }
+
+    /*
+     * attribute combos with a zeroed diagonal, as CombinedKernelBuilder
+     * makes. columns converge at different iterations, so the last one
+     * left is multiplied on its own out of the packed block.
+     */
+    @Test
+    public void testAttributeCombosColumnsConvergeApart() throws Exception {
+        Random random = new Random(41);
+        int size = 3000;
+        int numAttributes = 20;
+        int k = 3;
+        FlexSymFloatMatrix network = ConjugateGradientTest.randomNetwork(random, size, 4);
+
+        FlexFloatMatrix attributes = new FlexFloatMatrix(size, numAttributes);
+        DenseDoubleVector weights = new DenseDoubleVector(numAttributes);
+        for (int a=0; a<numAttributes; a++) {
+            for (int i=0; i<10; i++) {
+                attributes.set(random.nextInt(size), a, 1);
+            }
+            weights.set(a, 0.01*random.nextDouble());
+        }
+        MultiOPCSymMatrix combined = new MultiOPCSymMatrix(network, new OuterProductComboSymMatrix(attributes, weights, true));
+
+        double [][] b = new double[k][];
+        double [][] x = new double[k][];
+        double [][] guess = new double[k][];
+        for (int j=0; j<k; j++) {
+            b[j] = ConjugateGradientTest.randomLabels(random, size);
+            guess[j] = new double[size];
+        }
+        // converges straight away, and another from a rough warm start,
+        // so the last column finishes alone
+        b[1] = new double[size];
+        ConjugateGradient rough = new ConjugateGradient();
+        rough.setRelativeTolerance(1e-2);
+        rough.solve(combined, b[2], guess[2], new SimpleProgressReporter());
+        for (int j=0; j<k; j++) {
+            x[j] = guess[j].clone();
+        }
+
+        MultiConjugateGradient mcg = new MultiConjugateGradient(new ForkJoinPool(2));
+        int iterations = mcg.solve(combined, b, x, new SimpleProgressReporter());
+
+        for (int j=0; j<k; j++) {
+            double [] expected = guess[j].clone();
+            ConjugateGradient cg = new ConjugateGradient();
+            int expectedIterations = cg.solve(combined, b[j], expected, new SimpleProgressReporter());
+
+            assertEquals(expectedIterations, mcg.getIterations(j));
+            assertArrayEquals(expected, x[j], 1e-8);
+        }
+
+        assertEquals(0, mcg.getIterations(1));
+        assertTrue(mcg.getIterations(2) < iterations);
+        assertEquals(iterations, mcg.getIterations(0));
+    }
+
+    @Test
+    public void testEmptyBatch() throws Exception {
+        FlexSymFloatMatrix network = ConjugateGradientTest.randomNetwork(new Random(3), 10, 2);
+        MultiConjugateGradient mcg = new MultiConjugateGradient();
+        assertEquals(0, mcg.solve(network, new double[0][], new double[0][], new SimpleProgressReporter()));
+    }
+
+    @Test(expected=CancellationException.class)
+    public void testCancel() throws Exception {
+        Random random = new Random(37);
+        int size = 500;
+        FlexSymFloatMatrix network = ConjugateGradientTest.randomNetwork(random, size, 4);
+
+        SimpleProgressReporter progress = new SimpleProgressReporter();
+        progress.cancel();
+
+        double [][] b = {ConjugateGradientTest.randomLabels(random, size), ConjugateGradientTest.randomLabels(random, size)};
+        double [][] x = new double[2][size];
+        MultiConjugateGradient mcg = new MultiConjugateGradient();
+        mcg.solve(network, b, x, progress);
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.genemania.engine.matricks.custom;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.genemania.engine.matricks.MatricksException;
+import org.genemania.engine.matricks.MatrixCursor;
+import org.genemania.engine.matricks.SymMatrix;
+import org.junit.Test;
+
+public class CompactSymFloatMatrixTest {
+
+    static final double TOL = 1e-5;
+
+    static FlexSymFloatMatrix randomFlex(int n, double density, long seed) {
+        Random random = new Random(seed);
+        FlexSymFloatMatrix m = new FlexSymFloatMatrix(n);
+        for (int i=0; i<n; i++) {
+            m.set(i, i, random.nextFloat());
+            for (int j=0; j<i; j++) {
+                if (random.nextDouble() < density) {
+                    m.set(i, j, random.nextFloat());
+                }
+            }
+        }
+        return m;
+    }
+
+    static double [] randomVector(int n, long seed) {
+        Random random = new Random(seed);
+        double [] x = new double[n];
+        for (int i=0; i<n; i++) {
+            x[i] = random.nextDouble();
+        }
+        return x;
+    }
+
+    @Test
+    public void testGet() {
+        FlexSymFloatMatrix flex = randomFlex(50, 0.2, 1);
+        CompactSymFloatMatrix compact = CompactSymFloatMatrix.compact(flex);
+
+        assertEquals(50, compact.numRows());
+        for (int i=0; i<50; i++) {
+            for (int j=0; j<50; j++) {
+                assertEquals(flex.get(i, j), compact.get(i, j), 0d);
+            }
+        }
+        assertEquals(flex.elementSum(), compact.elementSum(), TOL);
+        assertSame(compact, CompactSymFloatMatrix.compact(compact));
+    }
+
+    @Test
+    public void testMult() {
+        int n = 80;
+        FlexSymFloatMatrix flex = randomFlex(n, 0.1, 2);
+        CompactSymFloatMatrix compact = CompactSymFloatMatrix.compact(flex);
+        double [] x = randomVector(n, 3);
+
+        double [] expected = new double[n];
+        double [] result = new double[n];
+        flex.mult(x, expected);
+        compact.mult(x, result);
+        assertArrayEquals(expected, result, TOL);
+
+        // same again in two row blocks
+        double [] blocks = new double[n];
+        compact.multAddRows(x, blocks, 0, n/3);
+        compact.multAddRows(x, blocks, n/3, n);
+        assertArrayEquals(expected, blocks, TOL);
+    }
+
+    @Test
+    public void testMultAddRowsWidth() {
+        int n = 40, width = 3;
+        FlexSymFloatMatrix flex = randomFlex(n, 0.3, 4);
+        CompactSymFloatMatrix compact = CompactSymFloatMatrix.compact(flex);
+        double [] x = randomVector(n*width, 5);
+
+        double [] result = new double[n*width];
+        compact.multAddRows(x, result, width, 0, n);
+
+        for (int j=0; j<width; j++) {
+            double [] xj = new double[n];
+            for (int i=0; i<n; i++) {
+                xj[i] = x[i*width + j];
+            }
+            double [] expected = new double[n];
+            flex.mult(xj, expected);
+            for (int i=0; i<n; i++) {
+                assertEquals(expected[i], result[i*width + j], TOL);
+            }
+        }
+    }
+
+    @Test
+    public void testElementMultiplySum() throws MatricksException {
+        FlexSymFloatMatrix a = randomFlex(60, 0.2, 6);
+        FlexSymFloatMatrix b = randomFlex(60, 0.2, 7);
+        CompactSymFloatMatrix ca = CompactSymFloatMatrix.compact(a);
+        CompactSymFloatMatrix cb = CompactSymFloatMatrix.compact(b);
+
+        double expected = a.elementMultiplySum(b);
+        assertEquals(expected, ca.elementMultiplySum(cb), TOL);
+        assertEquals(expected, ca.elementMultiplySum(b), TOL);
+        assertEquals(expected, a.elementMultiplySum(cb), TOL);
+    }
+
+    @Test
+    public void testElementMultiplySumByLookup() throws MatricksException {
+        FlexSymFloatMatrix a = randomFlex(60, 0.05, 9);
+        FlexSymFloatMatrix b = randomFlex(60, 0.4, 10);
+        CompactSymFloatMatrix ca = CompactSymFloatMatrix.compact(a);
+
+        double expected = a.elementMultiplySum(b);
+        assertEquals(expected, ca.elementMultiplySumByLookup(b), TOL);
+        assertEquals(expected, ca.elementMultiplySumByLookup(CompactSymFloatMatrix.compact(b)), TOL);
+    }
+
+    @Test
+    public void testSubMatrix() {
+        FlexSymFloatMatrix flex = randomFlex(30, 0.3, 8);
+        CompactSymFloatMatrix compact = CompactSymFloatMatrix.compact(flex);
+
+        int [][] indices = {{1, 4, 7, 20, 29}, {20, 3, 11, 0}};
+        for (int [] rowcols: indices) {
+            SymMatrix expected = flex.subMatrix(rowcols);
+            SymMatrix result = compact.subMatrix(rowcols);
+            for (int i=0; i<rowcols.length; i++) {
+                for (int j=0; j<rowcols.length; j++) {
+                    assertEquals(expected.get(i, j), result.get(i, j), 0d);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCursor() {
+        FlexSymFloatMatrix flex = randomFlex(20, 0.3, 9);
+        CompactSymFloatMatrix compact = CompactSymFloatMatrix.compact(flex);
+
+        MatrixCursor cursor = compact.cursor();
+        double total = 0;
+        while (cursor.next()) {
+            assertEquals(flex.get(cursor.row(), cursor.col()), cursor.val(), 0d);
+            total += cursor.val();
+        }
+        assertEquals(flex.elementSum(), total, TOL);
+    }
+
+    @Test
+    public void testRowSums() {
+        FlexSymFloatMatrix flex = randomFlex(25, 0.3, 10);
+        CompactSymFloatMatrix compact = CompactSymFloatMatrix.compact(flex);
+
+        double [] expected = new double[25];
+        double [] result = new double[25];
+        flex.rowSums(expected);
+        compact.rowSums(result);
+        assertArrayEquals(expected, result, TOL);
+    }
+
+    @Test
+    public void testSetStored() throws MatricksException {
+        FlexSymFloatMatrix flex = randomFlex(10, 1d, 11);
+        CompactSymFloatMatrix compact = CompactSymFloatMatrix.compact(flex);
+
+        compact.set(2, 7, 0.5);
+        assertEquals(0.5, compact.get(7, 2), TOL);
+        compact.set(3, 3, 0.25);
+        assertEquals(0.25, compact.get(3, 3), TOL);
+    }
+
+    @Test(expected=MatricksException.class)
+    public void testSetMissing() throws MatricksException {
+        FlexSymFloatMatrix flex = new FlexSymFloatMatrix(10);
+        flex.set(2, 1, 1d);
+        CompactSymFloatMatrix compact = CompactSymFloatMatrix.compact(flex);
+        compact.set(5, 4, 1d);
+    }
+
+    @Test
+    public void testDotDivOuterProd() {
+        FlexSymFloatMatrix flex = randomFlex(30, 0.2, 12);
+        CompactSymFloatMatrix compact = CompactSymFloatMatrix.compact(flex);
+        double [] x = randomVector(30, 13);
+        for (int i=0; i<x.length; i++) {
+            x[i] += 1d;
+        }
+
+        flex.dotDivOuterProd(x);
+        compact.dotDivOuterProd(x);
+        for (int i=0; i<30; i++) {
+            for (int j=0; j<30; j++) {
+                assertEquals(flex.get(i, j), compact.get(i, j), TOL);
+            }
+        }
+    }
+
+    @Test
+    public void testAddToFlex() throws MatricksException {
+        FlexSymFloatMatrix a = randomFlex(40, 0.2, 14);
+        FlexSymFloatMatrix b = randomFlex(40, 0.2, 15);
+        FlexSymFloatMatrix expected = randomFlex(40, 0.2, 14);
+
+        expected.add(0.5, b);
+        a.add(0.5, CompactSymFloatMatrix.compact(b));
+        for (int i=0; i<40; i++) {
+            for (int j=0; j<40; j++) {
+                assertEquals(expected.get(i, j), a.get(i, j), TOL);
+            }
+        }
+    }
+}
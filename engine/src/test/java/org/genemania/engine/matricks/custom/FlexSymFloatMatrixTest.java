@@ -0,0 +1,93 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package org.genemania.engine.matricks.custom;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Random;
+
+import org.genemania.engine.matricks.SymMatrix;
+import org.junit.Test;
+
+public class FlexSymFloatMatrixTest {
+
+    static FlexSymFloatMatrix randomMatrix(Random random, int size, double density) {
+        FlexSymFloatMatrix m = new FlexSymFloatMatrix(size);
+        for (int i=0; i<size; i++) {
+            for (int j=0; j<i; j++) {
+                if (random.nextDouble() < density) {
+                    m.set(i, j, random.nextFloat());
+                }
+            }
+            if (i % 3 == 0) {
+                m.set(i, i, random.nextFloat());
+            }
+        }
+        return m;
+    }
+
+    static void checkSubMatrix(SymMatrix m, int [] rowcols) {
+        SymMatrix sub = m.subMatrix(rowcols);
+        assertEquals(rowcols.length, sub.numRows());
+        for (int i=0; i<rowcols.length; i++) {
+            for (int j=0; j<rowcols.length; j++) {
+                assertEquals(m.get(rowcols[i], rowcols[j]), sub.get(i, j), 0d);
+            }
+        }
+    }
+
+    /*
+     * indices given in order, out of order, and with repeats
+     */
+    @Test
+    public void testSubMatrix() {
+        Random random = new Random(31);
+        FlexSymFloatMatrix m = randomMatrix(random, 200, 0.2);
+
+        checkSubMatrix(m, new int[] {2, 5, 17, 40, 41, 199});
+        checkSubMatrix(m, new int[] {150, 3, 77, 0, 12, 149, 64});
+        checkSubMatrix(m, new int[] {10, 30, 10, 100});
+        checkSubMatrix(m, new int[] {});
+
+        int [] shuffled = new int[200];
+        for (int i=0; i<200; i++) {
+            shuffled[i] = (i*37) % 200;
+        }
+        checkSubMatrix(m, shuffled);
+    }
+
+    @Test
+    public void testMappedSubMatrix() throws Exception {
+        Random random = new Random(37);
+        FlexSymFloatMatrix m = randomMatrix(random, 100, 0.3);
+
+        File file = File.createTempFile("submatrix", ".bin");
+        try {
+            MappedSymFloatMatrix.write(m, file);
+            MappedSymFloatMatrix mapped = MappedSymFloatMatrix.map(file);
+
+            checkSubMatrix(mapped, new int[] {99, 1, 50, 49, 7});
+            checkSubMatrix(mapped, new int[] {4, 4, 60});
+        }
+        finally {
+            file.delete();
+        }
+    }
+}
@@ -20,7 +20,12 @@ package org.genemania.engine.matricks.custom;
 
 import static org.junit.Assert.*;
 
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.genemania.engine.matricks.MatrixAccumulator;
 
 import org.junit.After;
 import org.junit.Before;
@@ -115,6 +120,51 @@ public class FloatSymMatrixAccumulatorTest {
         }
     }
 
+    /*
+     * fill blocks concurrently, compare to the serial sum
+     */
+    @Test
+    public void testBlocks() {
+        Random random = new Random(7);
+        int l = 300;
+        int n = 5;
+        final FlexSymFloatMatrix[] dataset = new FlexSymFloatMatrix[n];
+        for (int i=0; i<n; i++) {
+            dataset[i] = randomData(random, l, 0.1);
+        }
+
+        FlexSymFloatMatrix expected = new FlexSymFloatMatrix(l);
+        FloatSymMatrixAccumulator adder = new FloatSymMatrixAccumulator(expected, 1000*4);
+        while (adder.nextBlock()) {
+            for (int i=0; i<n; i++) {
+                adder.add(i+1d, dataset[i]);
+            }
+        }
+
+        FlexSymFloatMatrix sum = new FlexSymFloatMatrix(l);
+        List<MatrixAccumulator> blocks = new FloatSymMatrixAccumulator(sum, 1000*4).blocks(8);
+        assertTrue(blocks.size() >= 8);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (final MatrixAccumulator block: blocks) {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    while (block.nextBlock()) {
+                        for (int i=0; i<dataset.length; i++) {
+                            block.add(i+1d, dataset[i]);
+                        }
+                    }
+                }
+            });
+        }
+
+        for (int i=0; i<l; i++) {
+            for (int j=0; j<i; j++) {
+                assertEquals(expected.get(i, j), sum.get(i, j), 0d);
+            }
+        }
+    }
 
     FlexSymFloatMatrix randomData(Random random, int size, double sparsity) {
 
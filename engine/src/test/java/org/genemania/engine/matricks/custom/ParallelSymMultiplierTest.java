@@ -0,0 +1,194 @@
+/**
+ * This file is part of GeneMANIA.
+ * Copyright (C) 2010 University of Toronto.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package org.genemania.engine.matricks.custom;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+public class ParallelSymMultiplierTest {
+
+    static FlexSymFloatMatrix randomMatrix(Random random, int size, int entriesPerRow) {
+        FlexSymFloatMatrix m = new FlexSymFloatMatrix(size);
+        for (int i=1; i<size; i++) {
+            for (int k=0; k<entriesPerRow; k++) {
+                m.set(i, random.nextInt(i), random.nextFloat());
+            }
+        }
+        for (int i=0; i<size; i+=7) {
+            m.set(i, i, random.nextFloat());
+        }
+        m.compact();
+        return m;
+    }
+
+    static double [] randomVector(Random random, int size) {
+        double [] x = new double[size];
+        for (int i=0; i<size; i++) {
+            x[i] = random.nextDouble();
+        }
+        return x;
+    }
+
+    @Test
+    public void testMatchesSerialMult() throws Exception {
+        Random random = new Random(11);
+        int size = 5*ParallelSymMultiplier.MIN_ROWS_PER_BLOCK;
+        FlexSymFloatMatrix m = randomMatrix(random, size, 5);
+        double [] x = randomVector(random, size);
+
+        double [] expected = new double[size];
+        m.mult(x, expected);
+
+        ParallelSymMultiplier multiplier = new ParallelSymMultiplier(m, new ForkJoinPool(4));
+        assertEquals(4, multiplier.getNumBlocks());
+
+        // twice, to check buffers get reset between calls
+        double [] y = new double[size];
+        for (int k=0; k<2; k++) {
+            multiplier.mult(x, y);
+            assertArrayEquals(expected, y, 1e-9);
+        }
+    }
+
+    @Test
+    public void testPartitionCoversAllRows() throws Exception {
+        FlexSymFloatMatrix m = randomMatrix(new Random(3), 1000, 3);
+        int [] starts = ParallelSymMultiplier.partition(m, 6);
+
+        assertEquals(0, starts[0]);
+        assertEquals(1000, starts[starts.length-1]);
+        assertTrue(starts.length <= 7);
+        for (int i=1; i<starts.length; i++) {
+            assertTrue(starts[i] > starts[i-1]);
+        }
+    }
+
+    /*
+     * small matrices, or pools of 1, just fall through to the matrix
+     */
+    @Test
+    public void testSerialFallback() throws Exception {
+        Random random = new Random(5);
+        FlexSymFloatMatrix m = randomMatrix(random, 100, 3);
+        double [] x = randomVector(random, 100);
+
+        double [] expected = new double[100];
+        m.mult(x, expected);
+
+        ParallelSymMultiplier multiplier = new ParallelSymMultiplier(m, new ForkJoinPool(4));
+        assertEquals(1, multiplier.getNumBlocks());
+
+        double [] y = new double[100];
+        multiplier.mult(x, y);
+        assertArrayEquals(expected, y, 0d);
+    }
+
+    /*
+     * several vectors at once, row-major, against one at a time
+     */
+    @Test
+    public void testMultipleVectors() throws Exception {
+        Random random = new Random(17);
+        int size = 3*ParallelSymMultiplier.MIN_ROWS_PER_BLOCK;
+        int width = 3;
+        FlexSymFloatMatrix m = randomMatrix(random, size, 4);
+
+        double [] x = randomVector(random, size*width);
+        double [] expected = new double[size*width];
+        double [] xj = new double[size];
+        double [] yj = new double[size];
+        for (int j=0; j<width; j++) {
+            for (int i=0; i<size; i++) {
+                xj[i] = x[i*width + j];
+            }
+            m.mult(xj, yj);
+            for (int i=0; i<size; i++) {
+                expected[i*width + j] = yj[i];
+            }
+        }
+
+        ParallelSymMultiplier multiplier = new ParallelSymMultiplier(m, new ForkJoinPool(3));
+        assertEquals(3, multiplier.getNumBlocks());
+
+        double [] y = new double[size*width];
+        multiplier.mult(x, y, width);
+        assertArrayEquals(expected, y, 1e-9);
+
+        // switching back to a single vector
+        multiplier.mult(xj, yj);
+        double [] expectedj = new double[size];
+        m.mult(xj, expectedj);
+        assertArrayEquals(expectedj, yj, 1e-9);
+
+        // and serially
+        ParallelSymMultiplier serial = new ParallelSymMultiplier(m, null);
+        serial.mult(x, y, width);
+        assertArrayEquals(expected, y, 1e-9);
+    }
+
+    /*
+     * sparse part split into blocks, attribute terms added after
+     */
+    @Test
+    public void testMultiOPC() throws Exception {
+        Random random = new Random(23);
+        int size = 2*ParallelSymMultiplier.MIN_ROWS_PER_BLOCK;
+        int numAttributes = 10;
+        FlexSymFloatMatrix m = randomMatrix(random, size, 3);
+
+        FlexFloatMatrix a = new FlexFloatMatrix(size, numAttributes);
+        for (int i=0; i<size; i++) {
+            a.set(i, random.nextInt(numAttributes), 1);
+        }
+        DenseDoubleVector w = new DenseDoubleVector(numAttributes);
+        for (int j=0; j<numAttributes; j++) {
+            w.set(j, random.nextDouble());
+        }
+        MultiOPCSymMatrix multi = new MultiOPCSymMatrix(m, new OuterProductComboSymMatrix(a, w, true));
+
+        double [] x = randomVector(random, size);
+        double [] expected = new double[size];
+        multi.mult(x, expected);
+
+        ParallelSymMultiplier multiplier = new ParallelSymMultiplier(multi, new ForkJoinPool(2));
+        assertEquals(2, multiplier.getNumBlocks());
+
+        double [] y = new double[size];
+        multiplier.mult(x, y);
+        assertArrayEquals(expected, y, 1e-9);
+
+        // same vector twice side by side
+        double [] x2 = new double[2*size];
+        for (int i=0; i<size; i++) {
+            x2[2*i] = x[i];
+            x2[2*i+1] = x[i];
+        }
+        double [] y2 = new double[2*size];
+        multiplier.mult(x2, y2, 2);
+        for (int i=0; i<size; i++) {
+            assertEquals(expected[i], y2[2*i], 1e-9);
+            assertEquals(expected[i], y2[2*i+1], 1e-9);
+        }
+    }
+}
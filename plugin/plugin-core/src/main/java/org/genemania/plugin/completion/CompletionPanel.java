@@ -772,7 +772,7 @@ public class CompletionPanel extends JPanel {
 		lastCompletionCount = 0;
 		proposalModel.clear();
 		if (provider != null) {
-			provider.computeProposals(consumer, query);
+			provider.computeProposals(consumer, query, limit);
 			proposalModel.sort(new Comparator<Gene>() {
 				public int compare(Gene gene1, Gene gene2) {
 					return gene1.getSymbol().compareTo(gene2.getSymbol());
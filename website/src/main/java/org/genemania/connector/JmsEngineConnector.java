@@ -6,9 +6,7 @@ import org.genemania.dao.NetworkDao;
 import org.genemania.dao.NodeDao;
 import org.genemania.dao.OrganismDao;
 import org.genemania.domain.InteractionNetwork;
-import org.genemania.domain.Ontology;
 import org.genemania.domain.OntologyCategory;
-import org.genemania.domain.Organism;
 import org.genemania.dto.RelatedGenesWebRequestDto;
 import org.genemania.dto.RelatedGenesWebResponseDto;
 import org.genemania.dto.UploadNetworkWebRequestDto;
@@ -22,17 +20,29 @@ import org.genemania.util.BrokerUtils;
 import org.genemania.exception.ApplicationException;
 
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.jms.JmsException;
 
 import org.springframework.stereotype.Component;
-
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import javax.jms.TextMessage;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 @Component
-public class JmsEngineConnector implements EngineConnector  {
+public class JmsEngineConnector implements AsyncEngineConnector  {
     private static final Logger LOG = Logger.getLogger(JmsEngineConnector.class);
     public static final int DEFAULT_TIMEOUT_MILLIS = 10*60*1000;
     public static final int DEFAULT_MESSAGE_EXPIRATION_MILLIS = 10*60*1000;
@@ -45,6 +55,12 @@ public class JmsEngineConnector implements EngineConnector  {
     private OrganismDao organismDao;
     private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
     private long messageExpirationMillis = DEFAULT_MESSAGE_EXPIRATION_MILLIS;
+    private volatile boolean binaryProtocol = true;
+    private boolean binaryRequests = false;
+    private boolean sharedReplyConsumer = true;
+    private boolean persistentRequests = true;
+    private int replyThreads = JmsReplyDispatcher.DEFAULT_REPLY_THREADS;
+    private JmsReplyDispatcher replyDispatcher;
 
 
     public JmsEngineConnector() {}
@@ -52,80 +68,258 @@ public class JmsEngineConnector implements EngineConnector  {
     @Override
     @Cacheable("searchResultsCache")
     public RelatedGenesWebResponseDto getRelatedGenes(RelatedGenesWebRequestDto dto) throws ApplicationException {
-        LOG.info("getRelatedGenes request");
+        return await(getRelatedGenesAsync(dto));
+    }
 
-        RelatedGenesRequestMessage request = BrokerUtils.dto2msg(dto);
-        RelatedGenesWebResponseDto ret;
+    @Override
+    public UploadNetworkWebResponseDto uploadNetwork(UploadNetworkWebRequestDto dto) throws ApplicationException {
+        return await(uploadNetworkAsync(dto));
+    }
+
+    /*
+     * bypasses searchResultsCache, see AsyncEngineConnector
+     */
+    @Override
+    public ListenableFuture<RelatedGenesWebResponseDto> getRelatedGenesAsync(RelatedGenesWebRequestDto dto)
+            throws ApplicationException {
+        LOG.info("getRelatedGenes request");
 
-        JmsRequestResponse sessionCallback = new JmsRequestResponse(request.toXml(),
-                MessageType.RELATED_GENES.getCode(), requestQueueName, responseQueueName,
-                jmsTemplate.getDestinationResolver(), timeoutMillis, messageExpirationMillis);
+        final RelatedGenesRequestMessage request = BrokerUtils.dto2msg(dto);
+        final SettableListenableFuture<RelatedGenesWebResponseDto> ret =
+                new SettableListenableFuture<RelatedGenesWebResponseDto>();
+
+        // ask for a binary reply. workers that predate the binary format
+        // answer with an xml unknown message type error, in which case we
+        // use xml from now on. binary requests would be silently dropped
+        // by those workers, so they are only sent when enabled explicitly.
+        if (binaryProtocol) {
+            ListenableFuture<Message> reply;
+            if (binaryRequests) {
+                reply = send(request.toBytes(), MessageType.RELATED_GENES_BINARY, "get related genes");
+            }
+            else {
+                reply = send(request.toXml(), MessageType.RELATED_GENES_BINARY, "get related genes");
+            }
 
-        String responseText;
-        try {
-            responseText = jmsTemplate.execute(sessionCallback, true);
+            reply.addCallback(new ReplyCallback<RelatedGenesWebResponseDto>(ret) {
+                @Override
+                void onReply(Message reply) throws ApplicationException {
+                    if (reply instanceof BytesMessage) {
+                        ret.set(toWebResponse(RelatedGenesResponseMessage.fromBytes(getBytes((BytesMessage) reply))));
+                    }
+                    else {
+                        LOG.warn("engine worker does not support binary messages, switching to xml");
+                        binaryProtocol = false;
+                        sendXml(request, ret);
+                    }
+                }
+            });
         }
-        catch (JmsException e) {
-            throw new ApplicationException("JMS error processing get related genes request", e);
+        else {
+            sendXml(request, ret);
         }
 
-        if (responseText == null) {
-            throw new ApplicationException("engine request timed out");
-        }
+        return ret;
+    }
 
-        RelatedGenesResponseMessage responseMessage = RelatedGenesResponseMessage.fromXml(responseText);
-        if (responseMessage.getErrorCode() == 0) {
-            RelatedGenesWebResponseDto hollowResponseDto = BrokerUtils.msg2dto(responseMessage);
-            try {
-                ret = load(hollowResponseDto);
-            }
-            catch (DataStoreException e) {
-                throw new ApplicationException("data access error processing get related genes request", e);
+    @Override
+    public ListenableFuture<UploadNetworkWebResponseDto> uploadNetworkAsync(UploadNetworkWebRequestDto dto)
+            throws ApplicationException {
+        LOG.info("uploadNetwork request");
+
+        UploadNetworkRequestMessage request = BrokerUtils.dto2msg(dto);
+        final SettableListenableFuture<UploadNetworkWebResponseDto> ret =
+                new SettableListenableFuture<UploadNetworkWebResponseDto>();
+
+        send(request.toXml(), MessageType.TEXT2NETWORK, "upload network").addCallback(
+                new ReplyCallback<UploadNetworkWebResponseDto>(ret) {
+            @Override
+            void onReply(Message reply) throws ApplicationException {
+                UploadNetworkResponseMessage responseMessage = UploadNetworkResponseMessage.fromXml(getText(reply));
+                if (responseMessage.getErrorCode() != 0) {
+                    throw new ApplicationException(responseMessage.getErrorMessage(),
+                            responseMessage.getErrorCode());
+                }
+
+                ret.set(BrokerUtils.msg2dto(responseMessage));
+                LOG.info("completed uploadNetwork request");
             }
+        });
+
+        return ret;
+    }
+
+    /*
+     * stop the shared reply consumer, failing any requests still waiting
+     */
+    public synchronized void destroy() {
+        if (replyDispatcher != null) {
+            replyDispatcher.close();
+            replyDispatcher = null;
         }
-        else {
+    }
+
+    private void sendXml(RelatedGenesRequestMessage request,
+                         final SettableListenableFuture<RelatedGenesWebResponseDto> ret) throws ApplicationException {
+        send(request.toXml(), MessageType.RELATED_GENES, "get related genes").addCallback(
+                new ReplyCallback<RelatedGenesWebResponseDto>(ret) {
+            @Override
+            void onReply(Message reply) throws ApplicationException {
+                ret.set(toWebResponse(RelatedGenesResponseMessage.fromXml(getText(reply))));
+            }
+        });
+    }
+
+    private RelatedGenesWebResponseDto toWebResponse(RelatedGenesResponseMessage responseMessage)
+            throws ApplicationException {
+        if (responseMessage.getErrorCode() != 0) {
             throw new ApplicationException(responseMessage.getErrorMessage(),
                     responseMessage.getErrorCode());
         }
 
+        RelatedGenesWebResponseDto ret;
+        RelatedGenesWebResponseDto hollowResponseDto = BrokerUtils.msg2dto(responseMessage);
+        try {
+            ret = load(hollowResponseDto);
+        }
+        catch (DataStoreException e) {
+            throw new ApplicationException("data access error processing get related genes request", e);
+        }
+
         LOG.info("completed getRelatedGenes request");
         return ret;
     }
 
-    @Override
-    public UploadNetworkWebResponseDto uploadNetwork(UploadNetworkWebRequestDto dto) throws ApplicationException {
-        LOG.info("uploadNetwork request");
+    /*
+     * send request. with the shared reply consumer the future completes when
+     * the reply arrives, otherwise we wait for the reply on a consumer of our
+     * own and return it already completed.
+     */
+    private ListenableFuture<Message> send(final String text, MessageType type, String requestName)
+            throws ApplicationException {
+        if (sharedReplyConsumer) {
+            return getReplyDispatcher().request(new MessageCreator() {
+                @Override
+                public Message createMessage(Session session) throws JMSException {
+                    return session.createTextMessage(text);
+                }
+            }, type.getCode(), requestQueueName, timeoutMillis, messageExpirationMillis, persistentRequests);
+        }
 
-        UploadNetworkRequestMessage request = BrokerUtils.dto2msg(dto);
-        UploadNetworkWebResponseDto ret;
+        return execute(new JmsRequestResponse(text, type.getCode(), requestQueueName, responseQueueName,
+                jmsTemplate.getDestinationResolver(), timeoutMillis, messageExpirationMillis), requestName);
+    }
+
+    private ListenableFuture<Message> send(final byte[] bytes, MessageType type, String requestName)
+            throws ApplicationException {
+        if (sharedReplyConsumer) {
+            return getReplyDispatcher().request(new MessageCreator() {
+                @Override
+                public Message createMessage(Session session) throws JMSException {
+                    BytesMessage message = session.createBytesMessage();
+                    message.writeBytes(bytes);
+                    return message;
+                }
+            }, type.getCode(), requestQueueName, timeoutMillis, messageExpirationMillis, persistentRequests);
+        }
+
+        return execute(new JmsRequestResponse(bytes, type.getCode(), requestQueueName, responseQueueName,
+                jmsTemplate.getDestinationResolver(), timeoutMillis, messageExpirationMillis), requestName);
+    }
 
-        JmsRequestResponse sessionCallback = new JmsRequestResponse(request.toXml(),
-                MessageType.TEXT2NETWORK.getCode(), requestQueueName, responseQueueName,
-                jmsTemplate.getDestinationResolver(), timeoutMillis, messageExpirationMillis);
+    private ListenableFuture<Message> execute(JmsRequestResponse sessionCallback, String requestName)
+            throws ApplicationException {
+        sessionCallback.setPersistent(persistentRequests);
 
-        String responseText;
+        Message reply;
         try {
-            responseText = jmsTemplate.execute(sessionCallback, true);
+            reply = jmsTemplate.execute(sessionCallback, true);
         }
         catch (JmsException e) {
-            throw new ApplicationException("JMS error processing upload network request", e);
+            throw new ApplicationException("JMS error processing " + requestName + " request", e);
         }
 
-        if (responseText == null) {
+        if (reply == null) {
             throw new ApplicationException("engine request timed out");
         }
 
-        UploadNetworkResponseMessage responseMessage = UploadNetworkResponseMessage.fromXml(responseText);
-        if (responseMessage.getErrorCode() == 0) {
-            ret = BrokerUtils.msg2dto(responseMessage);
+        SettableListenableFuture<Message> ret = new SettableListenableFuture<Message>();
+        ret.set(reply);
+        return ret;
+    }
+
+    private synchronized JmsReplyDispatcher getReplyDispatcher() {
+        if (replyDispatcher == null) {
+            replyDispatcher = new JmsReplyDispatcher(jmsTemplate, replyThreads);
         }
-        else {
-            throw new ApplicationException(responseMessage.getErrorMessage(),
-                    responseMessage.getErrorCode());
+        return replyDispatcher;
+    }
+
+    private static <T> T await(ListenableFuture<T> future) throws ApplicationException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApplicationException("interrupted waiting for engine reply", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof ApplicationException) {
+                throw (ApplicationException) e.getCause();
+            }
+            throw new ApplicationException("error processing engine request", e.getCause());
         }
+    }
 
-        LOG.info("completed uploadNetwork request");
-        return ret;
+    private static String getText(Message reply) throws ApplicationException {
+        if (!(reply instanceof TextMessage)) {
+            throw new ApplicationException("unexpected reply message type: " + reply.getClass().getName());
+        }
+        try {
+            return ((TextMessage) reply).getText();
+        }
+        catch (JMSException e) {
+            throw new ApplicationException("JMS error reading reply", e);
+        }
+    }
+
+    private static byte[] getBytes(BytesMessage reply) throws ApplicationException {
+        try {
+            byte[] body = new byte[(int) reply.getBodyLength()];
+            reply.readBytes(body);
+            return body;
+        }
+        catch (JMSException e) {
+            throw new ApplicationException("JMS error reading reply", e);
+        }
+    }
+
+    /*
+     * handle a reply, passing any failure on to the result
+     */
+    private abstract static class ReplyCallback<T> implements ListenableFutureCallback<Message> {
+        private final SettableListenableFuture<T> result;
+
+        ReplyCallback(SettableListenableFuture<T> result) {
+            this.result = result;
+        }
+
+        abstract void onReply(Message reply) throws ApplicationException;
+
+        @Override
+        public void onSuccess(Message reply) {
+            try {
+                onReply(reply);
+            }
+            catch (ApplicationException | RuntimeException e) {
+                result.setException(e);
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            result.setException(t);
+        }
     }
 
     private RelatedGenesWebResponseDto load(
@@ -134,9 +328,15 @@ public class JmsEngineConnector implements EngineConnector  {
         RelatedGenesWebResponseDto ret = hollowResponseDto;
         NetworkDao netDao = getNetworkDao();
 
+        long[] networkIds = new long[hollowResponseDto.getNetworks().size()];
+        int i = 0;
+        for (InteractionNetwork hollowNetwork : hollowResponseDto.getNetworks()) {
+            networkIds[i++] = hollowNetwork.getId();
+        }
+        Map<Long, InteractionNetwork> networks = netDao.findNetworks(networkIds);
+
         for (InteractionNetwork hollowNetwork : hollowResponseDto.getNetworks()) {
-            InteractionNetwork network = netDao.findNetwork(hollowNetwork
-                    .getId());
+            InteractionNetwork network = networks.get(hollowNetwork.getId());
 
             if (network != null) { // predefined networks
                 hollowNetwork.setDefaultSelected(network.isDefaultSelected());
@@ -147,13 +347,22 @@ public class JmsEngineConnector implements EngineConnector  {
 
         }
 
-        // extract organism id
-        long organismId = hollowResponseDto.getOrganismId();
         // load ontology categories
-        Organism organism = getOrganismDao().findOrganism(organismId);
-        Ontology ontology = organism.getOntology();
         Map<Long, Collection<OntologyCategory>> annotations = hollowResponseDto
                 .getAnnotations();
+        Set<Long> categoryIds = new HashSet<Long>();
+        for (Collection<OntologyCategory> categories : annotations.values()) {
+            for (OntologyCategory hollowCategory : categories) {
+                categoryIds.add(hollowCategory.getId());
+            }
+        }
+        long[] ids = new long[categoryIds.size()];
+        i = 0;
+        for (Long id : categoryIds) {
+            ids[i++] = id;
+        }
+        Map<Long, OntologyCategory> loadedCategories = getOrganismDao()
+                .findCategories(ids);
         Iterator<Long> nodeIterator = annotations.keySet().iterator();
 
         while (nodeIterator.hasNext()) {
@@ -161,8 +370,8 @@ public class JmsEngineConnector implements EngineConnector  {
             Collection<OntologyCategory> categories = annotations.get(nodeId);
 
             for (OntologyCategory hollowCategory : categories) {
-                OntologyCategory category = getOntologyCategory(hollowCategory
-                        .getId(), ontology);
+                OntologyCategory category = loadedCategories.get(hollowCategory
+                        .getId());
 
                 if (category != null) {
                     hollowCategory.setDescription(category.getDescription());
@@ -177,23 +386,6 @@ public class JmsEngineConnector implements EngineConnector  {
         return ret;
     }
 
-    private OntologyCategory getOntologyCategory(long ontologyCategoryId,
-                                                 Ontology ontology) {
-        OntologyCategory ret = null;
-        Collection<OntologyCategory> categories = ontology.getCategories();
-        for (OntologyCategory cat : categories) {
-            if (cat != null) {
-                if (cat.getId() == ontologyCategoryId) {
-                    ret = cat;
-                    break;
-                }
-            } else {
-                LOG.warn("null ontology category found");
-            }
-        }
-        return ret;
-    }
-
     public NetworkDao getNetworkDao() {
         return this.networkDao;
     }
@@ -257,4 +449,44 @@ public class JmsEngineConnector implements EngineConnector  {
     public void setMessageExpirationMillis(long messageExpirationMillis) {
         this.messageExpirationMillis = messageExpirationMillis;
     }
+
+    public boolean isBinaryProtocol() {
+        return binaryProtocol;
+    }
+
+    public void setBinaryProtocol(boolean binaryProtocol) {
+        this.binaryProtocol = binaryProtocol;
+    }
+
+    public boolean isBinaryRequests() {
+        return binaryRequests;
+    }
+
+    public void setBinaryRequests(boolean binaryRequests) {
+        this.binaryRequests = binaryRequests;
+    }
+
+    public boolean isSharedReplyConsumer() {
+        return sharedReplyConsumer;
+    }
+
+    public void setSharedReplyConsumer(boolean sharedReplyConsumer) {
+        this.sharedReplyConsumer = sharedReplyConsumer;
+    }
+
+    public boolean isPersistentRequests() {
+        return persistentRequests;
+    }
+
+    public void setPersistentRequests(boolean persistentRequests) {
+        this.persistentRequests = persistentRequests;
+    }
+
+    public int getReplyThreads() {
+        return replyThreads;
+    }
+
+    public void setReplyThreads(int replyThreads) {
+        this.replyThreads = replyThreads;
+    }
 }
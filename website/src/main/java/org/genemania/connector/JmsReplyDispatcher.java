@@ -0,0 +1,250 @@
+package org.genemania.connector;
+
+import org.apache.log4j.Logger;
+import org.genemania.exception.ApplicationException;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.jms.core.SessionCallback;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import javax.jms.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * asynchronous request/response sharing a single long-lived reply consumer.
+ *
+ * replies come back on a temporary queue owned by the dispatcher's own
+ * connection, so there is one consumer per website node and no selector
+ * for the broker to evaluate per request. each request registers a future
+ * under its correlation id, which is completed when the matching reply
+ * arrives, or failed by the scheduler when the timeout passes first.
+ * futures are completed on a small pool of reply threads so that work done
+ * in their callbacks doesn't hold up the consumer.
+ */
+public class JmsReplyDispatcher implements MessageListener, ExceptionListener {
+    private static final Logger LOG = Logger.getLogger(JmsReplyDispatcher.class);
+    public static final int DEFAULT_REPLY_THREADS = 4;
+
+    private final JmsTemplate jmsTemplate;
+    private final ConcurrentHashMap<String, PendingReply> pending = new ConcurrentHashMap<String, PendingReply>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService replyExecutor;
+
+    private Connection connection;
+    private Destination replyQueue;
+    private boolean closed;
+
+    public JmsReplyDispatcher(JmsTemplate jmsTemplate, int replyThreads) {
+        this.jmsTemplate = jmsTemplate;
+        scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("jms-reply-timeout"));
+        replyExecutor = Executors.newFixedThreadPool(replyThreads, new DaemonThreadFactory("jms-reply"));
+    }
+
+    /*
+     * send a request built by the given creator, returns the future reply.
+     * the correlation id, reply-to and type headers are set here.
+     */
+    public ListenableFuture<Message> request(final MessageCreator messageCreator, final String msgType,
+                                             final String requestQueueName, long timeoutMillis,
+                                             final long messageExpirationMillis, final boolean persistent)
+            throws ApplicationException {
+        final Destination replyTo = getReplyQueue();
+        final String correlationId = UUID.randomUUID().toString();
+
+        // the entry is visible to failPending() and onMessage() as soon as
+        // it's put, before the timeout below is scheduled. both go through
+        // cancelTimeout(), which allows for that
+        final PendingReply reply = new PendingReply();
+        pending.put(correlationId, reply);
+        reply.timeout = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (pending.remove(correlationId, reply)) {
+                    LOG.warn("no reply within timeout for correlationId: " + correlationId);
+                    reply.future.setException(new ApplicationException("engine request timed out"));
+                }
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+
+        // failed while we were scheduling, don't leave the timeout behind
+        if (reply.future.isDone()) {
+            reply.cancelTimeout();
+        }
+
+        try {
+            jmsTemplate.execute(new SessionCallback<Void>() {
+                @Override
+                public Void doInJms(Session session) throws JMSException {
+                    MessageProducer producer = null;
+                    try {
+                        Destination requestQueue = jmsTemplate.getDestinationResolver()
+                                .resolveDestinationName(session, requestQueueName, false);
+
+                        Message message = messageCreator.createMessage(session);
+                        message.setJMSCorrelationID(correlationId);
+                        message.setJMSReplyTo(replyTo);
+                        message.setJMSType(msgType);
+
+                        LOG.debug("sending request message for " + correlationId);
+                        producer = session.createProducer(requestQueue);
+                        producer.send(requestQueue, message,
+                                persistent ? DeliveryMode.PERSISTENT : DeliveryMode.NON_PERSISTENT,
+                                Message.DEFAULT_PRIORITY, messageExpirationMillis);
+                        return null;
+                    }
+                    finally {
+                        JmsUtils.closeMessageProducer(producer);
+                    }
+                }
+            }, true);
+        }
+        catch (JmsException e) {
+            pending.remove(correlationId);
+            reply.cancelTimeout();
+            throw new ApplicationException("JMS error sending " + msgType + " request", e);
+        }
+
+        return reply.future;
+    }
+
+    /*
+     * implement MessageListener, called on the consumer's thread for each reply
+     */
+    @Override
+    public void onMessage(Message message) {
+        String correlationId;
+        try {
+            correlationId = message.getJMSCorrelationID();
+        }
+        catch (JMSException e) {
+            LOG.error("failed to read correlation id of reply", e);
+            return;
+        }
+
+        final PendingReply reply = correlationId == null ? null : pending.remove(correlationId);
+        if (reply == null) {
+            LOG.warn("dropping reply for unknown or expired request, correlationId: " + correlationId);
+            return;
+        }
+
+        reply.cancelTimeout();
+        final Message replyMessage = message;
+        replyExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                reply.future.set(replyMessage);
+            }
+        });
+    }
+
+    /*
+     * the temporary queue goes away with the connection, so requests still
+     * waiting on it will never see their reply. fail them, and reconnect on
+     * the next request.
+     */
+    @Override
+    public synchronized void onException(JMSException e) {
+        LOG.error("JMS exception on reply connection", e);
+        closeConnection();
+        failPending(new ApplicationException("lost connection to message broker", e));
+    }
+
+    public synchronized void close() {
+        closed = true;
+        closeConnection();
+        scheduler.shutdownNow();
+        replyExecutor.shutdown();
+        failPending(new ApplicationException("engine connector shut down"));
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private synchronized Destination getReplyQueue() throws ApplicationException {
+        if (closed) {
+            throw new ApplicationException("engine connector shut down");
+        }
+
+        if (replyQueue == null) {
+            try {
+                connection = jmsTemplate.getConnectionFactory().createConnection();
+                connection.setExceptionListener(this);
+                Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                TemporaryQueue queue = session.createTemporaryQueue();
+                session.createConsumer(queue).setMessageListener(this);
+                connection.start();
+                replyQueue = queue;
+                LOG.info("listening for engine replies on " + queue);
+            }
+            catch (JMSException e) {
+                closeConnection();
+                throw new ApplicationException("JMS error setting up reply consumer", e);
+            }
+        }
+
+        return replyQueue;
+    }
+
+    private void closeConnection() {
+        JmsUtils.closeConnection(connection);
+        connection = null;
+        replyQueue = null;
+    }
+
+    private void failPending(Throwable t) {
+        Iterator<Map.Entry<String, PendingReply>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            PendingReply reply = iterator.next().getValue();
+            iterator.remove();
+            reply.cancelTimeout();
+            reply.future.setException(t);
+        }
+    }
+
+    private static class PendingReply {
+        final SettableListenableFuture<Message> future = new SettableListenableFuture<Message>();
+        volatile ScheduledFuture<?> timeout;
+
+        // timeout is null until the request has scheduled it
+        void cancelTimeout() {
+            ScheduledFuture<?> t = timeout;
+            if (t != null) {
+                t.cancel(false);
+            }
+        }
+    }
+
+    /*
+     * named daemon threads, so they show up sensibly in thread dumps
+     * and don't hold the jvm up on exit
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -9,27 +9,45 @@ import javax.jms.*;
 import java.util.UUID;
 
 /*
- * generic synchronous request/response with plain string messages, based on
+ * generic synchronous request/response with plain string or byte messages, based on
  *
  *   http://codedependents.com/2010/03/04/synchronous-request-response-with-activemq-and-spring/
  *
- * returns null if specified timeout is exceeded.
+ * returns the reply message, which may be of either kind, or null if specified
+ * timeout is exceeded.
  */
-public class JmsRequestResponse implements SessionCallback<String> {
+public class JmsRequestResponse implements SessionCallback<Message> {
     private static final Logger LOG = Logger.getLogger(JmsRequestResponse.class);
 
     private final String msg;
+    private final byte[] bytes;
     private final String msgType;
     private final DestinationResolver destinationResolver;
     private final String requestQueueName;
     private final String responseQueueName;
     private final long timeoutMillis;
     private final long messageExpirationMillis;
+    private boolean persistent = true;
 
     public JmsRequestResponse(final String msg, String msgType, String requestQueueName,
                               String responseQueueName, final DestinationResolver destinationResolver,
                               long timeoutMillis, long messageExpirationMillis) {
+        this(msg, null, msgType, requestQueueName, responseQueueName, destinationResolver,
+                timeoutMillis, messageExpirationMillis);
+    }
+
+    public JmsRequestResponse(final byte[] bytes, String msgType, String requestQueueName,
+                              String responseQueueName, final DestinationResolver destinationResolver,
+                              long timeoutMillis, long messageExpirationMillis) {
+        this(null, bytes, msgType, requestQueueName, responseQueueName, destinationResolver,
+                timeoutMillis, messageExpirationMillis);
+    }
+
+    private JmsRequestResponse(final String msg, final byte[] bytes, String msgType, String requestQueueName,
+                               String responseQueueName, final DestinationResolver destinationResolver,
+                               long timeoutMillis, long messageExpirationMillis) {
         this.msg = msg;
+        this.bytes = bytes;
         this.msgType = msgType;
         this.requestQueueName = requestQueueName;
         this.responseQueueName = responseQueueName;
@@ -38,7 +56,11 @@ public class JmsRequestResponse implements SessionCallback<String> {
         this.messageExpirationMillis = messageExpirationMillis;
     }
 
-    public String doInJms(final Session session) throws JMSException {
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    public Message doInJms(final Session session) throws JMSException {
         MessageConsumer consumer = null;
         MessageProducer producer = null;
         final String correlationId = UUID.randomUUID().toString();
@@ -54,27 +76,28 @@ public class JmsRequestResponse implements SessionCallback<String> {
             consumer = session.createConsumer(replyQueue, "JMSCorrelationID = '" + correlationId + "'");
 
             // construct & send request
-            final TextMessage textMessage = session.createTextMessage(msg);
-            textMessage.setJMSCorrelationID(correlationId);
-            textMessage.setJMSReplyTo(replyQueue);
-            textMessage.setJMSType(msgType);
-            textMessage.setJMSDeliveryMode(DeliveryMode.PERSISTENT);
+            final Message requestMessage;
+            if (bytes != null) {
+                BytesMessage bytesMessage = session.createBytesMessage();
+                bytesMessage.writeBytes(bytes);
+                requestMessage = bytesMessage;
+            }
+            else {
+                requestMessage = session.createTextMessage(msg);
+            }
+            requestMessage.setJMSCorrelationID(correlationId);
+            requestMessage.setJMSReplyTo(replyQueue);
+            requestMessage.setJMSType(msgType);
 
             LOG.debug("sending request message for " + correlationId);
             producer = session.createProducer(requestQueue);
             producer.setTimeToLive(messageExpirationMillis);
-            producer.send(requestQueue, textMessage);
+            producer.setDeliveryMode(persistent ? DeliveryMode.PERSISTENT : DeliveryMode.NON_PERSISTENT);
+            producer.send(requestQueue, requestMessage);
 
-            // block on reply for specified timeout
+            // block on reply for specified timeout, null if we timed out
             LOG.debug("waiting for response message for " + correlationId);
-            TextMessage response = (TextMessage) consumer.receive(timeoutMillis);
-
-            if (response != null) {
-                return response.getText();
-            }
-            else { // we timed out
-                return null;
-            }
+            return consumer.receive(timeoutMillis);
 
         }
         finally {
@@ -2,10 +2,12 @@ package org.genemania.connector;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.genemania.broker.SyncWorker;
@@ -15,9 +17,7 @@ import org.genemania.dao.OrganismDao;
 import org.genemania.domain.Interaction;
 import org.genemania.domain.InteractionNetwork;
 import org.genemania.domain.Node;
-import org.genemania.domain.Ontology;
 import org.genemania.domain.OntologyCategory;
-import org.genemania.domain.Organism;
 import org.genemania.dto.InteractionDto;
 import org.genemania.dto.NetworkDto;
 import org.genemania.dto.OntologyCategoryDto;
@@ -113,8 +113,15 @@ public class SyncWorkerConnector implements EngineConnector {
 		RelatedGenesWebResponseDto ret = hollowResponseDto;
 		NetworkDao netDao = getNetworkDao();
 
+		long[] networkIds = new long[hollowResponseDto.getNetworks().size()];
+		int i = 0;
 		for (InteractionNetwork hollowNetwork : hollowResponseDto.getNetworks()) {
-			InteractionNetwork network = netDao.findNetwork(hollowNetwork.getId());
+			networkIds[i++] = hollowNetwork.getId();
+		}
+		Map<Long, InteractionNetwork> networks = netDao.findNetworks(networkIds);
+
+		for (InteractionNetwork hollowNetwork : hollowResponseDto.getNetworks()) {
+			InteractionNetwork network = networks.get(hollowNetwork.getId());
 
 			if (network != null) { // predefined networks
 				hollowNetwork.setDefaultSelected(network.isDefaultSelected());
@@ -125,12 +132,20 @@ public class SyncWorkerConnector implements EngineConnector {
 
 		}
 
-		// extract organism id
-		long organismId = hollowResponseDto.getOrganismId();
 		// load ontology categories
-		Organism organism = getOrganismDao().findOrganism(organismId);
-		Ontology ontology = organism.getOntology();
 		Map<Long, Collection<OntologyCategory>> annotations = hollowResponseDto.getAnnotations();
+		Set<Long> categoryIds = new HashSet<Long>();
+		for (Collection<OntologyCategory> categories : annotations.values()) {
+			for (OntologyCategory hollowCategory : categories) {
+				categoryIds.add(hollowCategory.getId());
+			}
+		}
+		long[] ids = new long[categoryIds.size()];
+		i = 0;
+		for (Long id : categoryIds) {
+			ids[i++] = id;
+		}
+		Map<Long, OntologyCategory> loadedCategories = getOrganismDao().findCategories(ids);
 		Iterator<Long> nodeIterator = annotations.keySet().iterator();
 
 		while (nodeIterator.hasNext()) {
@@ -138,7 +153,7 @@ public class SyncWorkerConnector implements EngineConnector {
 			Collection<OntologyCategory> categories = annotations.get(nodeId);
 
 			for (OntologyCategory hollowCategory : categories) {
-				OntologyCategory category = getOntologyCategory(hollowCategory.getId(), ontology);
+				OntologyCategory category = loadedCategories.get(hollowCategory.getId());
 
 				if (category != null) {
 					hollowCategory.setDescription(category.getDescription());
@@ -166,22 +181,6 @@ public class SyncWorkerConnector implements EngineConnector {
         return ret;
 	}
 
-	private OntologyCategory getOntologyCategory(long ontologyCategoryId, Ontology ontology) {
-		OntologyCategory ret = null;
-		Collection<OntologyCategory> categories = ontology.getCategories();
-		for (OntologyCategory cat : categories) {
-			if (cat != null) {
-				if (cat.getId() == ontologyCategoryId) {
-					ret = cat;
-					break;
-				}
-			} else {
-				LOG.warn("null ontology category found");
-			}
-		}
-		return ret;
-	}
-
 	public NetworkDao getNetworkDao() {
 		return this.networkDao;
 	}
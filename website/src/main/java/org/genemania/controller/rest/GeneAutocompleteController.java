@@ -3,8 +3,8 @@ package org.genemania.controller.rest;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 
-import org.genemania.controller.rest.GeneValidationController.ValidationRequest;
 import org.genemania.exception.ApplicationException;
+import org.genemania.exception.DataStoreException;
 import org.genemania.service.GeneService;
 import org.genemania.service.GeneService.AutocompleteResult;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,10 +20,17 @@ public class GeneAutocompleteController {
 	@Autowired
 	private GeneService geneService;
 
-	public class AutocompleteRequest {
+	@Autowired
+	private MappingJackson2HttpMessageConverter httpConverter;
+
+	public static class AutocompleteRequest {
 		private Integer organism;
 		private String gene;
 
+		public AutocompleteRequest() {
+			super();
+		}
+
 		public Integer getOrganism() {
 			return organism;
 		}
@@ -40,15 +47,50 @@ public class GeneAutocompleteController {
 			this.gene = gene;
 		}
 
+		public boolean assertParamsSet() throws ApplicationException {
+			if (this.gene == null) {
+				throw new ApplicationException("`gene` not set");
+			}
+
+			if (this.organism == null) {
+				throw new ApplicationException("`organism` not set");
+			}
+
+			return true;
+		}
+
 	}
 
 	@RequestMapping(method = RequestMethod.POST, value = "/gene_autocompletion")
 	@ResponseBody
 	public AutocompleteResult list(HttpSession session, HttpServletRequest req)
 			throws ApplicationException {
-		// TODO
-		return null;
+		AutocompleteRequest aReq = null;
+
+		String contentType = req.getHeader("Content-Type");
+		contentType = contentType != null ? contentType : "";
+
+		if (contentType.toLowerCase().contains("application/json")) {
+			try {
+				aReq = httpConverter.getObjectMapper().readValue(
+						req.getInputStream(), AutocompleteRequest.class);
+			} catch (Exception e) {
+				throw new ApplicationException("invalid autocompletion request", e);
+			}
+		} else { // assume form params
+			aReq = new AutocompleteRequest();
+			aReq.setGene(req.getParameter("gene"));
+			String organism = req.getParameter("organism");
+			aReq.setOrganism(organism != null ? Integer.valueOf(organism) : null);
+		}
+
+		aReq.assertParamsSet();
 
+		try {
+			return geneService.autocompleteGene(aReq.getOrganism(), aReq.getGene());
+		} catch (DataStoreException e) {
+			throw new ApplicationException("failed to autocomplete " + aReq.getGene(), e);
+		}
 	}
 
 	public GeneService getGeneService() {
@@ -59,5 +101,14 @@ public class GeneAutocompleteController {
 		this.geneService = geneService;
 	}
 
+	public MappingJackson2HttpMessageConverter getHttpConverter() {
+		return httpConverter;
+	}
+
+	public void setHttpConverter(
+			MappingJackson2HttpMessageConverter httpConverter) {
+		this.httpConverter = httpConverter;
+	}
+
 
 }
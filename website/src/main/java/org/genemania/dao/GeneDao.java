@@ -25,6 +25,7 @@
 package org.genemania.dao;
 
 import java.util.List;
+import java.util.Map;
 
 import org.genemania.domain.Gene;
 import org.genemania.exception.DataStoreException;
@@ -34,6 +35,9 @@ public interface GeneDao {
 	List<Gene> getGenesForSymbols(long organismId, List<String> geneSymbols) throws DataStoreException;
 	boolean isValid(long organismId, String nextSymbol);
 	Long getNodeId(long organismId, String symbol);
+	List<Long> getNodeIds(long organismId, List<String> symbols);
 	Gene findGeneForId(long organismId, long id);
+	Map<Long, Gene> findGenesForIds(long organismId, long[] ids);
+	List<Gene> findGenesForPrefix(long organismId, String prefix, int limit);
 	
 }
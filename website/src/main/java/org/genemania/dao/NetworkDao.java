@@ -25,6 +25,7 @@
 package org.genemania.dao;
 
 import java.util.Collection;
+import java.util.Map;
 
 import org.genemania.domain.InteractionNetwork;
 import org.genemania.domain.InteractionNetworkGroup;
@@ -33,5 +34,6 @@ import org.genemania.exception.DataStoreException;
 public interface NetworkDao {
 
 	InteractionNetwork findNetwork(long networkId) throws DataStoreException;
+	Map<Long, InteractionNetwork> findNetworks(long[] networkIds) throws DataStoreException;
 	boolean isValidNetwork(long organismId, long networkId) throws DataStoreException;
 }
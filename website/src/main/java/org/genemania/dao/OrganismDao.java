@@ -25,9 +25,11 @@
 package org.genemania.dao;
 
 import java.util.List;
+import java.util.Map;
 
 import org.genemania.domain.Gene;
 import org.genemania.domain.InteractionNetwork;
+import org.genemania.domain.OntologyCategory;
 import org.genemania.domain.Organism;
 import org.genemania.exception.DataStoreException;
 
@@ -38,5 +40,6 @@ public interface OrganismDao {
 	Organism findOrganism(long organismId) throws DataStoreException;
 	List<Gene> getDefaultGenes(long organismId) throws DataStoreException;
 	List<InteractionNetwork> getDefaultNetworks(long organismId) throws DataStoreException;
+	Map<Long, OntologyCategory> findCategories(long[] categoryIds) throws DataStoreException;
 	
 }
@@ -24,9 +24,13 @@
  */
 package org.genemania.dao.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.genemania.completion.SymbolPrefixIndex;
 import org.genemania.connector.LuceneConnector;
 import org.genemania.dao.GeneDao;
 import org.genemania.domain.Gene;
@@ -46,25 +50,60 @@ public class LuceneGeneDao implements GeneDao {
 		connector = LuceneConnector.getInstance();
 	}
 
+	// __[public helpers]______________________________________________________
+	public void init() throws DataStoreException {
+		connector.loadSymbolDictionaries();
+	}
+
 	// __[interface implementation]____________________________________________
 	@Cacheable("genesForSymbolsCache")
 	public List<Gene> getGenesForSymbols(long organismId, List<String> geneSymbols) throws DataStoreException {
 		return connector.findGenesBySymbol(organismId, geneSymbols);
 	}
 
-	@Cacheable("geneIsValidCache")
 	public boolean isValid(long organismId, String nextSymbol) {
 		return connector.isValid(organismId, nextSymbol);
 	}
 
-	@Cacheable("nodeIdCache")
 	public Long getNodeId(long organismId, String symbol) {
 		return connector.getNodeId(organismId, symbol);
 	}
 
+	public List<Long> getNodeIds(long organismId, List<String> symbols) {
+		return connector.getNodeIds(organismId, symbols);
+	}
+
 	@Cacheable("geneForIdCache")
 	public Gene findGeneForId(long organismId, long id) {
-		Node node = connector.findNodeById(id, organismId);
+		return getPreferredGene(connector.findNodeById(id, organismId));
+	}
+
+	// not cached, array keys don't hash by value; the node lookups behind
+	// this are batched instead
+	public Map<Long, Gene> findGenesForIds(long organismId, long[] ids) {
+		Map<Long, Gene> ret = new HashMap<Long, Gene>();
+		for (Map.Entry<Long, Node> entry : connector.findNodesByIds(ids, organismId).entrySet()) {
+			ret.put(entry.getKey(), getPreferredGene(entry.getValue()));
+		}
+		return ret;
+	}
+
+	// genes carry just the symbol and node id, straight from the prefix
+	// index, so completing a keystroke doesn't touch the search index
+	public List<Gene> findGenesForPrefix(long organismId, String prefix, int limit) {
+		SymbolPrefixIndex index = connector.getSymbolPrefixIndex(organismId);
+		int[] entries = index.complete(prefix, limit);
+		List<Gene> ret = new ArrayList<Gene>(entries.length);
+		for (int entry : entries) {
+			Node node = new Node();
+			node.setId(index.getNodeId(entry));
+			ret.add(new Gene(index.getSymbol(entry), null, null, node, null));
+		}
+		return ret;
+	}
+
+	// __[private helpers]_____________________________________________________
+	private Gene getPreferredGene(Node node) {
 		Gene ret = null;
 		byte bestRank = Byte.MIN_VALUE;
 
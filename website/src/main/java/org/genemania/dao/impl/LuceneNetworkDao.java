@@ -19,6 +19,8 @@
 
 package org.genemania.dao.impl;
 
+import java.util.Map;
+
 import org.genemania.connector.LuceneConnector;
 import org.genemania.dao.NetworkDao;
 import org.genemania.domain.InteractionNetwork;
@@ -41,6 +43,10 @@ public class LuceneNetworkDao implements NetworkDao {
 		return connector.findNetworkById(networkId);
 	}
 
+	public Map<Long, InteractionNetwork> findNetworks(long[] networkIds) throws DataStoreException {
+		return connector.findNetworksByIds(networkIds);
+	}
+
 	// need to use a string as a key, since ehcache doesn't hash two long params
 	// correctly (we get collisions for the same networks for different
 	// organisms)
@@ -25,11 +25,13 @@
 package org.genemania.dao.impl;
 
 import java.util.List;
+import java.util.Map;
 
 import org.genemania.connector.LuceneConnector;
 import org.genemania.dao.OrganismDao;
 import org.genemania.domain.Gene;
 import org.genemania.domain.InteractionNetwork;
+import org.genemania.domain.OntologyCategory;
 import org.genemania.domain.Organism;
 import org.genemania.exception.DataStoreException;
 import org.springframework.cache.annotation.Cacheable;
@@ -65,4 +67,8 @@ public class LuceneOrganismDao implements OrganismDao {
 		return connector.retrieveDefaultNetworksFor(organismId);
 	}
 
+	public Map<Long, OntologyCategory> findCategories(long[] categoryIds) throws DataStoreException {
+		return connector.findCategoriesByIds(categoryIds);
+	}
+
 }
@@ -247,10 +247,9 @@ public interface GeneService {
 	 * @param organismId
 	 *            The internal ID of the organism to search against
 	 * @param query
-	 *            This string matches against the gene somehow (name, synonym,
-	 *            description, etc)
+	 *            The start of a gene symbol or synonym
 	 * @return An autocompletion result, containing the gene names that could
-	 *         match
+	 *         match, those from the best ranked naming sources first
 	 */
 	public AutocompleteResult autocompleteGene(int organsismId, String query)
 			throws DataStoreException;
@@ -20,12 +20,12 @@
 package org.genemania.service.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
 
 import org.genemania.dao.GeneDao;
 import org.genemania.dao.OrganismDao;
@@ -36,6 +36,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 public class GeneServiceImpl implements GeneService {
 
+	// most genes proposed for a single autocompletion query
+	private static final int AUTOCOMPLETE_LIMIT = 15;
+
 	@Autowired
 	private GeneDao geneDao;
 
@@ -57,23 +60,22 @@ public class GeneServiceImpl implements GeneService {
 
 		public ValidationOracle(int organismId, List<String> genes) {
 			lineToGene = new ArrayList<String>(genes.size());
-			lineToId = new ArrayList<Long>(genes.size());
-
-			// create the initial lookup maps
-			int lineNumber = 0;
 			for (String line : genes) {
-				String gene = line.toLowerCase();
+				lineToGene.add(line.toLowerCase());
+			}
 
-				// add to lines map
-				lineToGene.add(gene);
+			// resolve all the lines in one go
+			lineToId = geneDao.getNodeIds(organismId, lineToGene);
 
+			// create the initial lookup maps
+			int lineNumber = 0;
+			for (String gene : lineToGene) {
 				// add to synonyms map
-				Long id = geneDao.getNodeId(organismId, gene);
+				Long id = lineToId.get(lineNumber);
 				if (!synonyms.containsKey(id)) {
 					synonyms.put(id, new LinkedList<Integer>());
 				}
 				synonyms.get(id).add(lineNumber);
-				lineToId.add(id);
 
 				// add to duplicates map
 				if (!duplicates.containsKey(gene)) {
@@ -160,6 +162,20 @@ public class GeneServiceImpl implements GeneService {
 
 			return gene.equals("");
 		}
+
+		/*
+		 * node ids of all the valid genes, each once
+		 */
+		public long[] getValidIds() {
+			long[] ids = new long[synonyms.size()];
+			int n = 0;
+			for (Long id : synonyms.keySet()) {
+				if (id != null) {
+					ids[n++] = id;
+				}
+			}
+			return Arrays.copyOf(ids, n);
+		}
 	}
 
 	public GeneDao getGeneDao() {
@@ -192,6 +208,10 @@ public class GeneServiceImpl implements GeneService {
 		ValidationOracle oracle = new ValidationOracle(organismId, genes);
 		ValidationResult result = new ValidationResult();
 
+		// genes for the descriptions of the valid lines
+		Map<Long, Gene> idToGene = geneDao.findGenesForIds(organismId,
+				oracle.getValidIds());
+
 		for (int line = 0; line < genes.size(); line++) {
 			String gene = genes.get(line);
 			PossibleGene possibleGene;
@@ -211,8 +231,7 @@ public class GeneServiceImpl implements GeneService {
 							PossibleGene.Type.VALID);
 					
 					// set the optional description for the valid gene
-					Long geneId = geneDao.getNodeId(organismId, gene);
-					Gene geneObj = geneDao.findGeneForId(organismId, geneId);
+					Gene geneObj = idToGene.get(oracle.lineToId.get(line));
 					String descr = geneObj.getNode().getGeneData().getDescription();
 					possibleGene.setDescription(descr);
 				}
@@ -276,15 +295,10 @@ public class GeneServiceImpl implements GeneService {
 	@Override
 	public AutocompleteResult autocompleteGene(int organismId, String query)
 			throws DataStoreException {
-		List<String> geneNames = new LinkedList<String>();
-		geneNames.add(query);
-
-		Collection<Gene> genes = this.findGenesForOrganism(organismId,
-				geneNames);
-		List<Gene> genesList = new Vector<Gene>();
-		genesList.addAll(genes);
+		List<Gene> genes = geneDao.findGenesForPrefix(organismId, query,
+				AUTOCOMPLETE_LIMIT);
 
-		AutocompleteResult result = new AutocompleteResult(query, genesList);
+		AutocompleteResult result = new AutocompleteResult(query, genes);
 
 		return result;
 	}
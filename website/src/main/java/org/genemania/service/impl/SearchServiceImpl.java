@@ -185,10 +185,21 @@ public class SearchServiceImpl implements SearchService {
 		// add genes
 		// ==================================================
 
+		// look up all the result genes together rather than one at a time
+		long[] resultIds = new long[isQueryToId.get(true).size()
+				+ isQueryToId.get(false).size()];
+		int n = 0;
+		for (Set<Long> ids : isQueryToId.values()) {
+			for (Long id : ids) {
+				resultIds[n++] = id;
+			}
+		}
+		Map<Long, Gene> idToGene = geneDao.findGenesForIds(
+				responseDto.getOrganismId(), resultIds);
+
 		for (boolean isQuery : isQueryToId.keySet()) {
 			for (Long id : isQueryToId.get(isQuery)) {
-				Gene gene = geneDao.findGeneForId(responseDto.getOrganismId(),
-						id);
+				Gene gene = idToGene.get(id);
 
 				double score;
 				if (responseDto.getNodeScoresMap().isEmpty()) {